@@ -0,0 +1,55 @@
+package br.com.softplan.security.zap.api.report;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building the Spider results reports for very large crawls.
+ * 
+ * @author pdsec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SpiderResultsReportBenchmark {
+
+	@Param({"1000000"})
+	private int numberOfUrls;
+	
+	private List<String> urls;
+	
+	@Setup
+	public void setUp() {
+		urls = new ArrayList<>(numberOfUrls);
+		for (int i = 0; i < numberOfUrls; i++) {
+			urls.add("http://localhost:8080/app" + (i % 20) + "/module" + (i % 7) + "/page" + i + ".jsp?id=" + i);
+		}
+	}
+	
+	@Benchmark
+	public String htmlReport() {
+		return SpiderResultsReportBuilder.buildHtmlReport(urls);
+	}
+	
+	@Benchmark
+	public String xmlReport() {
+		return SpiderResultsReportBuilder.buildXmlReport(urls);
+	}
+	
+}
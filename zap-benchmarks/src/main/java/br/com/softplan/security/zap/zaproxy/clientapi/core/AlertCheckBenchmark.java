@@ -0,0 +1,95 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Matching of the alerts found by ZAP against large ignore/require baselines.
+ * <p>
+ * {@code linearMatches} is the plain {@link Alert#matches(Alert)} scan, {@code indexedMatches} is the lookup used by
+ * {@code ClientApi.checkForAlerts} and {@code checkAlerts} is the whole check, including the paginated alerts retrieval.
+ * 
+ * @author pdsec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlertCheckBenchmark {
+
+	@Param({"10000"})
+	private int numberOfAlerts;
+	
+	@Param({"100", "5000"})
+	private int baselineSize;
+	
+	private List<Alert> alerts;
+	private List<Alert> ignoreAlerts;
+	private List<Alert> requireAlerts;
+	private ClientApi api;
+	
+	@Setup
+	public void setUp() {
+		alerts = BenchmarkData.alerts(numberOfAlerts);
+		ignoreAlerts = BenchmarkData.alertFilters(baselineSize);
+		requireAlerts = BenchmarkData.alertFilters(baselineSize / 2);
+		api = new ClientApi("localhost", 8090, false, new InMemoryAlertsTransport(numberOfAlerts, ClientApi.DEFAULT_ALERTS_PAGE_SIZE));
+	}
+	
+	@TearDown
+	public void tearDown() {
+		api.close();
+	}
+	
+	@Benchmark
+	public void linearMatches(Blackhole blackhole) {
+		for (Alert alert : alerts) {
+			Alert match = null;
+			for (Alert filter : ignoreAlerts) {
+				if (alert.matches(filter)) {
+					match = filter;
+					break;
+				}
+			}
+			blackhole.consume(match);
+		}
+	}
+	
+	@Benchmark
+	public void indexedMatches(Blackhole blackhole) {
+		AlertFilterIndex index = new AlertFilterIndex(ignoreAlerts);
+		for (Alert alert : alerts) {
+			blackhole.consume(index.findFirstMatch(alert));
+		}
+	}
+	
+	@Benchmark
+	public String checkAlerts() {
+		try {
+			// checkAlerts removes the found alerts from the required ones
+			api.checkAlerts(ignoreAlerts, new ArrayList<>(requireAlerts));
+			return null;
+		} catch (ClientApiException e) {
+			// Expected: the alerts that are not ignored are reported as a failure
+			return e.getMessage();
+		}
+	}
+	
+}
@@ -0,0 +1,94 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jdom.JDOMException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Saving the alerts found by an analysis and loading the ignore/require baselines with {@link AlertsFile}.
+ * 
+ * @author pdsec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlertsFileBenchmark {
+
+	private static final String IGNORE_ALERT = "ignoreAlert";
+	
+	@Param({"10000"})
+	private int numberOfAlerts;
+	
+	private List<Alert> alerts;
+	private File outputFile;
+	private File baselineFile;
+	private PrintStream systemOut;
+	
+	@Setup
+	public void setUp() throws IOException {
+		alerts = BenchmarkData.alerts(numberOfAlerts);
+		outputFile = File.createTempFile("zap-alerts", ".xml");
+		baselineFile = File.createTempFile("zap-baseline", ".xml");
+		
+		StringBuilder baseline = new StringBuilder("<alerts>");
+		for (Alert alert : alerts) {
+			baseline.append('<').append(IGNORE_ALERT)
+				.append(" alert=\"").append(alert.getAlert())
+				.append("\" url=\"").append(alert.getUrl().replace("&", "&amp;"))
+				.append("\" risk=\"").append(alert.getRisk())
+				.append("\" confidence=\"").append(alert.getConfidence())
+				.append("\"/>");
+		}
+		Files.write(baselineFile.toPath(), baseline.append("</alerts>").toString().getBytes(StandardCharsets.UTF_8));
+		
+		// AlertsFile logs every save to the standard output
+		systemOut = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {}
+		}));
+	}
+	
+	@TearDown
+	public void tearDown() {
+		System.setOut(systemOut);
+		outputFile.delete();
+		baselineFile.delete();
+	}
+	
+	@Benchmark
+	public File save() throws JDOMException, IOException {
+		List<Alert> none = Collections.emptyList();
+		AlertsFile.saveAlertsToFile(none, alerts, none, outputFile);
+		return outputFile;
+	}
+	
+	@Benchmark
+	public List<Alert> load() throws JDOMException, IOException {
+		return AlertsFile.getAlertsFromFile(baselineFile, IGNORE_ALERT);
+	}
+	
+}
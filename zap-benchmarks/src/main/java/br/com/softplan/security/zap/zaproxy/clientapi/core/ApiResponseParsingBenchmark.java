@@ -0,0 +1,78 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of realistic alert, message and URL responses by each {@link ApiResponseParser}.
+ * The {@code DOM} parser is the one built on {@link ApiResponseFactory}.
+ * 
+ * @author pdsec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApiResponseParsingBenchmark {
+
+	@Param({"DOM", "STAX", "JSON"})
+	private String parserType;
+	
+	@Param({"alerts", "messages", "urls"})
+	private String payload;
+	
+	@Param({"1000"})
+	private int size;
+	
+	private ApiResponseParser parser;
+	private byte[] response;
+	
+	@Setup
+	public void setUp() {
+		boolean json = "JSON".equals(parserType);
+		switch (parserType) {
+		case "DOM":
+			parser = new DomApiResponseParser();
+			break;
+		case "STAX":
+			parser = new StaxApiResponseParser();
+			break;
+		default:
+			parser = new JsonApiResponseParser();
+		}
+		
+		String body;
+		switch (payload) {
+		case "alerts":
+			body = json ? BenchmarkData.alertsJson(size) : BenchmarkData.alertsXml(0, size);
+			break;
+		case "messages":
+			body = json ? BenchmarkData.messagesJson(size) : BenchmarkData.messagesXml(size);
+			break;
+		default:
+			body = json ? BenchmarkData.urlsJson(size) : BenchmarkData.urlsXml(size);
+		}
+		response = body.getBytes(StandardCharsets.UTF_8);
+	}
+	
+	@Benchmark
+	public ApiResponse parse() throws ClientApiException {
+		return parser.parse(new ByteArrayInputStream(response));
+	}
+	
+}
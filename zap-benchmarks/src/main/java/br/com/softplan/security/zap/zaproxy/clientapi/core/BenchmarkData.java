@@ -0,0 +1,148 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Realistic ZAP API payloads and alerts shared by the benchmarks.
+ * 
+ * @author pdsec
+ */
+final class BenchmarkData {
+
+	private static final String[] ALERT_NAMES = {
+		"Cross Site Scripting (Reflected)", "SQL Injection", "X-Frame-Options Header Not Set",
+		"Cookie No HttpOnly Flag", "Web Browser XSS Protection Not Enabled", "Path Traversal",
+		"Application Error Disclosure", "Incomplete or No Cache-control and Pragma HTTP Header Set"
+	};
+	
+	static List<Alert> alerts(int size) {
+		List<Alert> alerts = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			alerts.add(new Alert(alertName(i), url(i), risk(i), confidence(i), "param" + (i % 10), ""));
+		}
+		return alerts;
+	}
+	
+	/**
+	 * Filters in the way they are usually written: by name, most of them also by risk, a few by confidence.
+	 */
+	static List<Alert> alertFilters(int size) {
+		List<Alert> filters = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			Alert.Risk risk = i % 3 == 0 ? null : risk(i);
+			Alert.Confidence confidence = i % 5 == 0 ? confidence(i) : null;
+			filters.add(new Alert(alertName(i) + (i < ALERT_NAMES.length ? "" : " #" + i), null, risk, confidence));
+		}
+		return filters;
+	}
+	
+	static String alertsXml(int start, int end) {
+		StringBuilder sb = new StringBuilder("<alerts type=\"list\">");
+		for (int i = start; i < end; i++) {
+			sb.append("<alert type=\"set\">")
+				.append("<alert>").append(alertName(i)).append("</alert>")
+				.append("<url>").append(url(i)).append("</url>")
+				.append("<risk>").append(risk(i)).append("</risk>")
+				.append("<confidence>").append(confidence(i)).append("</confidence>")
+				.append("<param>param").append(i % 10).append("</param><other></other>")
+				.append("<attack>&lt;script&gt;alert(1);&lt;/script&gt;</attack>")
+				.append("<description>The page reflects the parameter without encoding it.</description>")
+				.append("<reference>https://www.owasp.org/index.php/Cross_Site_Scripting</reference>")
+				.append("<solution>Encode the output according to its context.</solution>")
+				.append("<evidence>&lt;script&gt;</evidence>")
+				.append("<cweid>79</cweid><wascid>8</wascid>")
+				.append("</alert>");
+		}
+		return sb.append("</alerts>").toString();
+	}
+	
+	static String alertsJson(int size) {
+		StringBuilder sb = new StringBuilder("{\"alerts\":[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append("{\"alert\":\"").append(alertName(i))
+				.append("\",\"url\":\"").append(url(i))
+				.append("\",\"risk\":\"").append(risk(i))
+				.append("\",\"confidence\":\"").append(confidence(i))
+				.append("\",\"param\":\"param").append(i % 10)
+				.append("\",\"other\":\"\",\"attack\":\"<script>alert(1);</script>\"")
+				.append(",\"description\":\"The page reflects the parameter without encoding it.\"")
+				.append(",\"reference\":\"https://www.owasp.org/index.php/Cross_Site_Scripting\"")
+				.append(",\"solution\":\"Encode the output according to its context.\"")
+				.append(",\"evidence\":\"<script>\",\"cweid\":\"79\",\"wascid\":\"8\"}");
+		}
+		return sb.append("]}").toString();
+	}
+	
+	static String messagesXml(int size) {
+		StringBuilder sb = new StringBuilder("<messages type=\"list\">");
+		for (int i = 0; i < size; i++) {
+			sb.append("<message type=\"set\">")
+				.append("<id>").append(i).append("</id>")
+				.append("<requestHeader>GET ").append(url(i)).append(" HTTP/1.1\r\nHost: localhost:8080\r\n</requestHeader>")
+				.append("<requestBody></requestBody>")
+				.append("<responseHeader>HTTP/1.1 200 OK\r\nContent-Type: text/html\r\n</responseHeader>")
+				.append("<responseBody>&lt;html&gt;&lt;body&gt;page ").append(i).append("&lt;/body&gt;&lt;/html&gt;</responseBody>")
+				.append("<cookieParams></cookieParams><note></note><type>1</type><rtt>12</rtt>")
+				.append("<timestamp>1454500000000</timestamp>")
+				.append("</message>");
+		}
+		return sb.append("</messages>").toString();
+	}
+	
+	static String messagesJson(int size) {
+		StringBuilder sb = new StringBuilder("{\"messages\":[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append("{\"id\":\"").append(i)
+				.append("\",\"requestHeader\":\"GET ").append(url(i)).append(" HTTP/1.1\\r\\nHost: localhost:8080\\r\\n\"")
+				.append(",\"requestBody\":\"\",\"responseHeader\":\"HTTP/1.1 200 OK\\r\\nContent-Type: text/html\\r\\n\"")
+				.append(",\"responseBody\":\"<html><body>page ").append(i).append("</body></html>\"")
+				.append(",\"cookieParams\":\"\",\"note\":\"\",\"type\":\"1\",\"rtt\":\"12\",\"timestamp\":\"1454500000000\"}");
+		}
+		return sb.append("]}").toString();
+	}
+	
+	static String urlsXml(int size) {
+		StringBuilder sb = new StringBuilder("<results type=\"list\">");
+		for (int i = 0; i < size; i++) {
+			sb.append("<url>").append(url(i)).append("</url>");
+		}
+		return sb.append("</results>").toString();
+	}
+	
+	static String urlsJson(int size) {
+		StringBuilder sb = new StringBuilder("{\"results\":[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append('"').append(url(i)).append('"');
+		}
+		return sb.append("]}").toString();
+	}
+	
+	static String url(int i) {
+		return "http://localhost:8080/app" + (i % 20) + "/module" + (i % 7) + "/page" + i + ".jsp?id=" + i;
+	}
+	
+	private static String alertName(int i) {
+		return ALERT_NAMES[i % ALERT_NAMES.length];
+	}
+	
+	private static Alert.Risk risk(int i) {
+		return Alert.Risk.values()[i % Alert.Risk.values().length];
+	}
+	
+	private static Alert.Confidence confidence(int i) {
+		return Alert.Confidence.values()[i % Alert.Confidence.values().length];
+	}
+	
+	private BenchmarkData() {}
+	
+}
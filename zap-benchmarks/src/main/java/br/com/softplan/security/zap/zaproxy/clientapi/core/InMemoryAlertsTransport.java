@@ -0,0 +1,48 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link ClientApiTransport} that serves pre-rendered {@code core/view/alerts} pages from memory,
+ * so the benchmarks measure the client and not the network.
+ * 
+ * @author pdsec
+ */
+class InMemoryAlertsTransport implements ClientApiTransport {
+
+	private final Map<Integer, byte[]> pages = new HashMap<>();
+	private final byte[] emptyPage = BenchmarkData.alertsXml(0, 0).getBytes(StandardCharsets.UTF_8);
+	
+	InMemoryAlertsTransport(int numberOfAlerts, int pageSize) {
+		for (int start = 0; start < numberOfAlerts; start += pageSize) {
+			String page = BenchmarkData.alertsXml(start, Math.min(numberOfAlerts, start + pageSize));
+			pages.put(start, page.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+	
+	@Override
+	public InputStream openStream(URL url) {
+		byte[] page = pages.get(getStart(url.getQuery()));
+		return new ByteArrayInputStream(page != null ? page : emptyPage);
+	}
+	
+	private static int getStart(String query) {
+		if (query != null) {
+			for (String param : query.split("&")) {
+				if (param.startsWith("start=")) {
+					return Integer.parseInt(param.substring("start=".length()));
+				}
+			}
+		}
+		return 0;
+	}
+	
+	@Override
+	public void close() {}
+	
+}
@@ -0,0 +1,66 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building of the API request URLs, done for every call sent to ZAP.
+ * 
+ * @author pdsec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestUrlBenchmark {
+
+	private Map<String, String> statusParams;
+	private Map<String, String> includeParams;
+	
+	@Setup
+	public void setUp() {
+		statusParams = new HashMap<>();
+		statusParams.put("scanId", "12");
+		
+		includeParams = new HashMap<>();
+		includeParams.put("apikey", "8cf9ad3b2c1e4f6a9d7e5b3c1a2f4e6d");
+		includeParams.put("contextName", "Default Context");
+		StringBuilder regex = new StringBuilder("(?:");
+		for (int i = 0; i < 50; i++) {
+			regex.append(i > 0 ? "|" : "").append("\\Q").append(BenchmarkData.url(i)).append("\\E");
+		}
+		includeParams.put("regex", regex.append(").*").toString());
+	}
+	
+	@Benchmark
+	public URL viewWithoutParams() throws MalformedURLException {
+		return ClientApi.buildZapRequestUrl("xml", "core", "view", "version", null);
+	}
+	
+	@Benchmark
+	public URL statusView() throws MalformedURLException {
+		return ClientApi.buildZapRequestUrl("xml", "spider", "view", "status", statusParams);
+	}
+	
+	@Benchmark
+	public URL actionWithLongRegex() throws MalformedURLException {
+		return ClientApi.buildZapRequestUrl("xml", "context", "action", "includeInContext", includeParams);
+	}
+	
+}
@@ -0,0 +1,189 @@
+package br.com.softplan.security.zap.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.softplan.security.zap.api.exception.ZapClientException;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ApiResponse;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ClientApiException;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.DaemonThreadFactory;
+
+/**
+ * A batch of ZAP API calls that are sent concurrently.
+ * <p>
+ * Calls are grouped in lanes: the calls of a lane are sent in order (e.g. calls that change the same
+ * list on ZAP), while different lanes are sent concurrently. Every call is executed, even if others fail,
+ * and the failures are reported together in a single {@link ZapClientException}: the first one is its
+ * cause and the others are suppressed.
+ *
+ * @author pdsec
+ */
+public class ApiCallBatch {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(ApiCallBatch.class);
+	
+	public static final int DEFAULT_MAX_CONCURRENT_CALLS = 4;
+	
+	private final int maxConcurrentCalls;
+	private final Map<String, List<DescribedCall>> lanes = new LinkedHashMap<>();
+	private int size;
+	
+	/**
+	 * A single ZAP API call, which must answer {@code OK} to be considered successful.
+	 */
+	public interface ApiCall {
+		
+		ApiResponse call() throws ClientApiException;
+		
+	}
+	
+	public ApiCallBatch() {
+		this(DEFAULT_MAX_CONCURRENT_CALLS);
+	}
+	
+	public ApiCallBatch(int maxConcurrentCalls) {
+		if (maxConcurrentCalls < 1) {
+			throw new IllegalArgumentException("The batch must allow at least one concurrent call.");
+		}
+		this.maxConcurrentCalls = maxConcurrentCalls;
+	}
+	
+	/**
+	 * Adds a call to the batch, in a lane of its own.
+	 *
+	 * @param operationDescription the description of the operation, used in the error messages.
+	 * @param call the API call.
+	 * @return this {@code ApiCallBatch} instance.
+	 */
+	public ApiCallBatch add(String operationDescription, ApiCall call) {
+		return add("#" + size, operationDescription, call);
+	}
+	
+	/**
+	 * Adds a call to the given lane of the batch. It will be sent after the calls previously added to the same lane.
+	 *
+	 * @param lane the lane name.
+	 * @param operationDescription the description of the operation, used in the error messages.
+	 * @param call the API call.
+	 * @return this {@code ApiCallBatch} instance.
+	 */
+	public ApiCallBatch add(String lane, String operationDescription, ApiCall call) {
+		List<DescribedCall> laneCalls = lanes.get(lane);
+		if (laneCalls == null) {
+			laneCalls = new ArrayList<>();
+			lanes.put(lane, laneCalls);
+		}
+		laneCalls.add(new DescribedCall(operationDescription, call));
+		size++;
+		return this;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Executes all the calls of the batch, waiting for them to finish.
+	 *
+	 * @throws ZapClientException if any of the calls fails or doesn't answer {@code OK}.
+	 */
+	public void execute() {
+		if (lanes.isEmpty()) {
+			return;
+		}
+		List<Throwable> failures = new ArrayList<>();
+		if (lanes.size() == 1 || maxConcurrentCalls == 1) {
+			for (List<DescribedCall> laneCalls : lanes.values()) {
+				failures.addAll(executeLane(laneCalls));
+			}
+		} else {
+			failures.addAll(executeLanesConcurrently());
+		}
+		throwIfFailed(failures);
+	}
+	
+	private List<Throwable> executeLanesConcurrently() {
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(maxConcurrentCalls, lanes.size()), new DaemonThreadFactory("zap-api-batch-"));
+		try {
+			List<Future<List<Throwable>>> futures = new ArrayList<>();
+			for (final List<DescribedCall> laneCalls : lanes.values()) {
+				futures.add(executor.submit(new Callable<List<Throwable>>() {
+					@Override
+					public List<Throwable> call() {
+						return executeLane(laneCalls);
+					}
+				}));
+			}
+			
+			List<Throwable> failures = new ArrayList<>();
+			for (Future<List<Throwable>> future : futures) {
+				try {
+					failures.addAll(future.get());
+				} catch (ExecutionException e) {
+					failures.add(e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					failures.add(e);
+					break;
+				}
+			}
+			return failures;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private static List<Throwable> executeLane(List<DescribedCall> laneCalls) {
+		List<Throwable> failures = Collections.emptyList();
+		for (DescribedCall describedCall : laneCalls) {
+			try {
+				ZapHelper.validateResponse(describedCall.call.call(), describedCall.operationDescription);
+			} catch (ClientApiException | RuntimeException e) {
+				LOGGER.debug("ZAP API call failed: {}.", describedCall.operationDescription, e);
+				if (failures.isEmpty()) {
+					failures = new ArrayList<>();
+				}
+				failures.add(e);
+			}
+		}
+		return failures;
+	}
+	
+	private void throwIfFailed(List<Throwable> failures) {
+		if (failures.isEmpty()) {
+			return;
+		}
+		String message = failures.size() + " of " + size + " ZAP API calls failed.";
+		LOGGER.error(message);
+		ZapClientException exception = new ZapClientException(message, failures.get(0));
+		for (int i = 1; i < failures.size(); i++) {
+			exception.addSuppressed(failures.get(i));
+		}
+		throw exception;
+	}
+	
+	private static class DescribedCall {
+		
+		private final String operationDescription;
+		private final ApiCall call;
+		
+		DescribedCall(String operationDescription, ApiCall call) {
+			this.operationDescription = operationDescription;
+			this.call = call;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,222 @@
+package br.com.softplan.security.zap.api;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.softplan.security.zap.api.exception.ZapClientException;
+import br.com.softplan.security.zap.api.model.ScanProfile;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ApiResponse;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ClientApi;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ClientApiException;
+
+/**
+ * Class to apply a {@link ScanProfile} to ZAP and restore the options it changed, also used to restore the
+ * options changed by the Active Scan throttling.
+ * <p>
+ * The options are global on ZAP, so an instance must be used by a single analysis, and analyses with different
+ * profiles should not run at the same time on the same ZAP instance.
+ *
+ * @author pdsec
+ */
+public class ScanProfileManager {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(ScanProfileManager.class);
+	
+	private final ClientApi api;
+	private final String apiKey;
+	private final Map<ScanOption, Integer> previousValues = new EnumMap<>(ScanOption.class);
+	
+	public ScanProfileManager(ClientApi api, String apiKey) {
+		this.api = api;
+		this.apiKey = apiKey;
+	}
+	
+	/**
+	 * Saves the current values of the options set by the profile and then applies the profile.
+	 *
+	 * @param profile the profile to be applied.
+	 * @throws ZapClientException if the options can't be read or set; the options already read are restored by {@link #restore()}.
+	 */
+	public void apply(ScanProfile profile) {
+		LOGGER.debug("Applying the '{}' scan profile.", profile);
+		save();
+		
+		Map<ScanOption, Integer> values = new EnumMap<>(ScanOption.class);
+		for (ScanOption option : ScanOption.values()) {
+			values.put(option, option.valueIn(profile));
+		}
+		set(values, "Apply the '" + profile + "' scan profile");
+		LOGGER.info("Scan profile '{}' applied.", profile);
+	}
+	
+	/**
+	 * Saves the current values of the options, so they are restored by {@link #restore()} even if they are changed
+	 * during the analysis (e.g. by the Active Scan throttling). The values saved first are kept.
+	 *
+	 * @throws ZapClientException if the options can't be read.
+	 */
+	public void save() {
+		for (ScanOption option : ScanOption.values()) {
+			if (!previousValues.containsKey(option)) {
+				previousValues.put(option, read(option));
+			}
+		}
+	}
+	
+	/**
+	 * Restores the options to the values saved by {@link #save()} or {@link #apply(ScanProfile)}.
+	 * It does nothing if the options were not saved.
+	 *
+	 * @throws ZapClientException if the options can't be restored.
+	 */
+	public void restore() {
+		if (previousValues.isEmpty()) {
+			return;
+		}
+		LOGGER.debug("Restoring the scan options: {}", previousValues);
+		
+		Map<ScanOption, Integer> values = new EnumMap<>(previousValues);
+		previousValues.clear();
+		set(values, "Restore the scan options");
+	}
+	
+	private int read(ScanOption option) {
+		try {
+			return Integer.parseInt(ZapHelper.extractResponse(option.view(api)).trim());
+		} catch (ClientApiException | NumberFormatException e) {
+			LOGGER.error("Error reading the ZAP option " + option + ".", e);
+			throw new ZapClientException(e);
+		}
+	}
+	
+	private void set(Map<ScanOption, Integer> values, String operationDescription) {
+		ApiCallBatch batch = new ApiCallBatch();
+		for (final Map.Entry<ScanOption, Integer> entry : values.entrySet()) {
+			batch.add(operationDescription + ": set " + entry.getKey() + " to " + entry.getValue() + ".", new ApiCallBatch.ApiCall() {
+				@Override
+				public ApiResponse call() throws ClientApiException {
+					return entry.getKey().set(api, apiKey, entry.getValue());
+				}
+			});
+		}
+		try {
+			batch.execute();
+		} catch (ZapClientException e) {
+			LOGGER.error("Error during the following operation: " + operationDescription + ".", e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * The ZAP options set by the profiles.
+	 */
+	private enum ScanOption {
+		
+		SPIDER_THREAD_COUNT("spider.optionThreadCount") {
+			@Override
+			ApiResponse view(ClientApi api) throws ClientApiException {
+				return api.spider.optionThreadCount();
+			}
+			@Override
+			ApiResponse set(ClientApi api, String apiKey, int value) throws ClientApiException {
+				return api.spider.setOptionThreadCount(apiKey, value);
+			}
+			@Override
+			int valueIn(ScanProfile profile) {
+				return profile.getSpiderThreadCount();
+			}
+		},
+		SPIDER_MAX_DEPTH("spider.optionMaxDepth") {
+			@Override
+			ApiResponse view(ClientApi api) throws ClientApiException {
+				return api.spider.optionMaxDepth();
+			}
+			@Override
+			ApiResponse set(ClientApi api, String apiKey, int value) throws ClientApiException {
+				return api.spider.setOptionMaxDepth(apiKey, value);
+			}
+			@Override
+			int valueIn(ScanProfile profile) {
+				return profile.getSpiderMaxDepth();
+			}
+		},
+		SPIDER_REQUEST_WAIT_TIME("spider.optionRequestWaitTime") {
+			@Override
+			ApiResponse view(ClientApi api) throws ClientApiException {
+				return api.spider.optionRequestWaitTime();
+			}
+			@Override
+			ApiResponse set(ClientApi api, String apiKey, int value) throws ClientApiException {
+				return api.spider.setOptionRequestWaitTime(apiKey, value);
+			}
+			@Override
+			int valueIn(ScanProfile profile) {
+				return profile.getSpiderRequestWaitTimeInMillis();
+			}
+		},
+		ASCAN_THREAD_PER_HOST("ascan.optionThreadPerHost") {
+			@Override
+			ApiResponse view(ClientApi api) throws ClientApiException {
+				return api.ascan.optionThreadPerHost();
+			}
+			@Override
+			ApiResponse set(ClientApi api, String apiKey, int value) throws ClientApiException {
+				return api.ascan.setOptionThreadPerHost(apiKey, value);
+			}
+			@Override
+			int valueIn(ScanProfile profile) {
+				return profile.getActiveScanThreadsPerHost();
+			}
+		},
+		ASCAN_HOST_PER_SCAN("ascan.optionHostPerScan") {
+			@Override
+			ApiResponse view(ClientApi api) throws ClientApiException {
+				return api.ascan.optionHostPerScan();
+			}
+			@Override
+			ApiResponse set(ClientApi api, String apiKey, int value) throws ClientApiException {
+				return api.ascan.setOptionHostPerScan(apiKey, value);
+			}
+			@Override
+			int valueIn(ScanProfile profile) {
+				return profile.getActiveScanHostsPerScan();
+			}
+		},
+		ASCAN_DELAY_IN_MS("ascan.optionDelayInMs") {
+			@Override
+			ApiResponse view(ClientApi api) throws ClientApiException {
+				return api.ascan.optionDelayInMs();
+			}
+			@Override
+			ApiResponse set(ClientApi api, String apiKey, int value) throws ClientApiException {
+				return api.ascan.setOptionDelayInMs(apiKey, value);
+			}
+			@Override
+			int valueIn(ScanProfile profile) {
+				return profile.getActiveScanDelayInMillis();
+			}
+		};
+		
+		private final String name;
+		
+		private ScanOption(String name) {
+			this.name = name;
+		}
+		
+		abstract ApiResponse view(ClientApi api) throws ClientApiException;
+		
+		abstract ApiResponse set(ClientApi api, String apiKey, int value) throws ClientApiException;
+		
+		abstract int valueIn(ScanProfile profile);
+		
+		@Override
+		public String toString() {
+			return this.name;
+		}
+		
+	}
+
+}
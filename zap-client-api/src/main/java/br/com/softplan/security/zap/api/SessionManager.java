@@ -1,10 +1,18 @@
 package br.com.softplan.security.zap.api;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import br.com.softplan.security.zap.api.exception.ZapClientException;
+import br.com.softplan.security.zap.api.model.AnalysisInfo;
+import br.com.softplan.security.zap.commons.ZapInfo;
 import br.com.softplan.security.zap.zaproxy.clientapi.core.ApiResponse;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ApiResponseElement;
 import br.com.softplan.security.zap.zaproxy.clientapi.core.ClientApi;
 import br.com.softplan.security.zap.zaproxy.clientapi.core.ClientApiException;
 
@@ -18,6 +26,12 @@ public class SessionManager {
 	private static final Logger LOGGER = LoggerFactory.getLogger(SessionManager.class);
 	
 	private static final String SESSION_PREFIX = "zap-session-";
+	private static final String SNAPSHOT_PREFIX = "zap-snapshot-";
+	
+	// Must be changed whenever the configuration stored in the snapshots changes, to invalidate the old ones
+	private static final String SNAPSHOT_FORMAT_VERSION = "1";
+	
+	private static final String ZAP_SUCCESS_RESPONSE = "OK";
 	
 	private int sessionId;
 	
@@ -37,4 +51,81 @@ public class SessionManager {
 		}
 	}
 	
+	/**
+	 * Loads the session snapshot with the given fingerprint, if ZAP has one, and switches to a new session
+	 * copied from it, so the snapshot itself is not modified by the analysis.
+	 * 
+	 * @param api the ZAP API client.
+	 * @param apiKey the ZAP API key.
+	 * @param fingerprint the fingerprint of the configuration stored in the snapshot.
+	 * @return {@code true} if the snapshot was loaded, {@code false} if ZAP doesn't have it.
+	 */
+	public boolean loadSnapshot(ClientApi api, String apiKey, String fingerprint) {
+		LOGGER.debug("Loading ZAP session snapshot {}.", fingerprint);
+		
+		try {
+			ApiResponse response = api.core.loadSession(apiKey, SNAPSHOT_PREFIX + fingerprint);
+			// ZAP describes the failure (e.g. the snapshot doesn't exist) in a non element response
+			if (!(response instanceof ApiResponseElement) || !ZAP_SUCCESS_RESPONSE.equals(ZapHelper.extractResponse(response))) {
+				LOGGER.debug("ZAP session snapshot {} is not available: {}", fingerprint, response);
+				return false;
+			}
+		} catch (ClientApiException e) {
+			LOGGER.debug("ZAP session snapshot {} is not available: {}", fingerprint, e.getMessage());
+			return false;
+		}
+		saveCurrentSessionAs(api, apiKey, SESSION_PREFIX + sessionId++);
+		return true;
+	}
+	
+	/**
+	 * Saves the current (already configured) session as the snapshot with the given fingerprint,
+	 * and switches to a new session copied from it, so the snapshot itself is not modified by the analysis.
+	 * 
+	 * @param api the ZAP API client.
+	 * @param apiKey the ZAP API key.
+	 * @param fingerprint the fingerprint of the configuration stored in the snapshot.
+	 */
+	public void saveSnapshot(ClientApi api, String apiKey, String fingerprint) {
+		LOGGER.debug("Saving ZAP session snapshot {}.", fingerprint);
+		saveCurrentSessionAs(api, apiKey, SNAPSHOT_PREFIX + fingerprint);
+		saveCurrentSessionAs(api, apiKey, SESSION_PREFIX + sessionId++);
+	}
+	
+	private void saveCurrentSessionAs(ClientApi api, String apiKey, String name) {
+		try {
+			ApiResponse response = api.core.saveSession(apiKey, name, Boolean.TRUE.toString());
+			ZapHelper.validateResponse(response, "Save the ZAP session as " + name);
+		} catch (ClientApiException e) {
+			LOGGER.error("Error saving the ZAP session.", e);
+			throw new ZapClientException(e);
+		}
+	}
+	
+	/**
+	 * Computes the fingerprint of the session configuration (context and technologies) of an analysis
+	 * on a given ZAP instance. Analyses with the same fingerprint can share the same session snapshot.
+	 * 
+	 * @param zapInfo the ZAP instance information.
+	 * @param analysisInfo the analysis information.
+	 * @return the hexadecimal SHA-256 fingerprint.
+	 */
+	public static String snapshotFingerprint(ZapInfo zapInfo, AnalysisInfo analysisInfo) {
+		StringBuilder configuration = new StringBuilder()
+				.append(SNAPSHOT_FORMAT_VERSION).append('\n')
+				.append(zapInfo.getHost()).append(':').append(zapInfo.getPort()).append('\n')
+				.append(Arrays.toString(ZapHelper.resolveContextUrls(analysisInfo))).append('\n')
+				.append(analysisInfo.getTechnologiesSeparatedByComma());
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(configuration.toString().getBytes(StandardCharsets.UTF_8));
+			StringBuilder fingerprint = new StringBuilder();
+			for (byte b : digest) {
+				fingerprint.append(String.format("%02x", b));
+			}
+			return fingerprint.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new ZapClientException(e);
+		}
+	}
+	
 }
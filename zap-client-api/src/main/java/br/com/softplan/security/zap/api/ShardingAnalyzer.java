@@ -0,0 +1,201 @@
+package br.com.softplan.security.zap.api;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.softplan.security.zap.api.analysis.Analyzer;
+import br.com.softplan.security.zap.api.exception.ZapClientException;
+import br.com.softplan.security.zap.api.model.AnalysisInfo;
+import br.com.softplan.security.zap.api.model.AuthenticationInfo;
+import br.com.softplan.security.zap.api.model.ScanType;
+import br.com.softplan.security.zap.api.report.ZapReport;
+import br.com.softplan.security.zap.api.report.ZapReportMerger;
+import br.com.softplan.security.zap.commons.ZapInfo;
+import br.com.softplan.security.zap.commons.ZapInfoPool;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.DaemonThreadFactory;
+
+/**
+ * {@link Analyzer} that splits the context of an analysis across the ZAP instances of a {@link ZapInfoPool}.
+ * <p>
+ * The context URLs ({@link AnalysisInfo#getContext()}) are distributed among the instances in a round-robin fashion,
+ * and the instances run in parallel. Each instance analyzes its context URLs one after the other, in the same session,
+ * using each URL as the context and as the starting point of the Spider and the Active Scan. The analysis timeout
+ * applies to each instance: each of its URLs gets an equal share of the time left, so the time a URL doesn't use
+ * rolls over to the next ones, and the phase budgets apply to the share of each URL.
+ * <p>
+ * The reports of all the instances are merged with {@link ZapReportMerger}.
+ * <p>
+ * The ZAP instances must be started (e.g. with {@link ZapInfoPool#startAll()}) before the analysis.
+ * 
+ * @author pdsec
+ */
+public class ShardingAnalyzer implements Analyzer {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ShardingAnalyzer.class);
+	
+	private final ZapInfoPool zapInfoPool;
+	private final AuthenticationInfo authenticationInfo;
+	
+	public ShardingAnalyzer(ZapInfoPool zapInfoPool) {
+		this(zapInfoPool, null);
+	}
+	
+	public ShardingAnalyzer(ZapInfoPool zapInfoPool, AuthenticationInfo authenticationInfo) {
+		this.zapInfoPool = zapInfoPool;
+		this.authenticationInfo = authenticationInfo;
+	}
+	
+	@Override
+	public ZapReport analyze(final AnalysisInfo analysisInfo) {
+		String[] context = ZapHelper.resolveContextUrls(analysisInfo);
+		if (context.length == 0) {
+			LOGGER.warn("The context is empty, the target URL {} will be analyzed by a single ZAP instance.", analysisInfo.getTargetUrl());
+			context = new String[] {analysisInfo.getTargetUrl()};
+		}
+		List<List<String>> shards = splitContext(context, zapInfoPool.size());
+		LOGGER.info("--- Starting analysis on {} ZAP instances ---", shards.size());
+		
+		ExecutorService executor = Executors.newFixedThreadPool(shards.size(), new DaemonThreadFactory("zap-shard-"));
+		try {
+			List<Future<ZapReport>> futures = new ArrayList<>();
+			for (int i = 0; i < shards.size(); i++) {
+				final ZapInfo zapInfo = zapInfoPool.getZapInfos().get(i);
+				final List<String> shard = shards.get(i);
+				futures.add(executor.submit(new Callable<ZapReport>() {
+					@Override
+					public ZapReport call() {
+						return analyzeShard(zapInfo, shard, analysisInfo);
+					}
+				}));
+			}
+			List<ZapReport> reports = waitForReports(futures);
+			ZapReport zapReport;
+			try {
+				zapReport = ZapReportMerger.merge(reports);
+			} finally {
+				if (reports.size() > 1) {
+					// The merged report has its own files
+					deleteTemporaryFiles(reports);
+				}
+			}
+			LOGGER.info("--- Finished analysis on {} ZAP instances ---\n", shards.size());
+			return zapReport;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	static List<List<String>> splitContext(String[] context, int numberOfInstances) {
+		if (context.length == 0 || numberOfInstances <= 0) {
+			String message = "Can't split " + context.length + " context URLs across " + numberOfInstances + " ZAP instances.";
+			LOGGER.error(message);
+			throw new ZapClientException(message);
+		}
+		int numberOfShards = Math.min(numberOfInstances, context.length);
+		List<List<String>> shards = new ArrayList<>(numberOfShards);
+		for (int i = 0; i < numberOfShards; i++) {
+			shards.add(new ArrayList<String>());
+		}
+		for (int i = 0; i < context.length; i++) {
+			shards.get(i % numberOfShards).add(context[i]);
+		}
+		return shards;
+	}
+	
+	private ZapReport analyzeShard(ZapInfo zapInfo, List<String> shard, AnalysisInfo analysisInfo) {
+		LOGGER.info("ZAP at {}:{} will analyze: {}", zapInfo.getHost(), zapInfo.getPort(), shard);
+		long deadline = System.currentTimeMillis() + analysisInfo.getAnalysisTimeoutInMillis();
+		try (ZapClient zapClient = authenticationInfo != null ? new ZapClient(zapInfo, authenticationInfo) : new ZapClient(zapInfo)) {
+			ZapReport lastReport = null;
+			Set<String> spiderResults = new LinkedHashSet<>();
+			Set<ScanType> incompleteScans = new LinkedHashSet<>();
+			Set<Alert> carriedOverAlerts = new LinkedHashSet<>();
+			Set<Alert> thresholdAlerts = new LinkedHashSet<>();
+			for (int i = 0; i < shard.size(); i++) {
+				String contextUrl = shard.get(i);
+				AnalysisInfo shardAnalysisInfo = AnalysisInfo.builder(analysisInfo)
+						.spiderStartingPointUrl(contextUrl)
+						.activeScanStartingPointUrl(contextUrl)
+						.context(contextUrl)
+						.shouldStartNewSession(i == 0 && analysisInfo.shouldStartNewSession())
+						.analysisTimeoutInMinutes(getTimeoutInMinutes(deadline - System.currentTimeMillis(), shard.size() - i))
+						.build();
+				if (lastReport != null) {
+					lastReport.deleteTemporaryFiles();
+				}
+				lastReport = zapClient.analyze(shardAnalysisInfo);
+				spiderResults.addAll(lastReport.getSpiderResults());
+				incompleteScans.addAll(lastReport.getIncompleteScans());
+				carriedOverAlerts.addAll(lastReport.getCarriedOverAlerts());
+				thresholdAlerts.addAll(lastReport.getThresholdAlerts());
+			}
+			// The session is shared by the URLs of the shard, so the last report has the alerts of all of them
+			ZapReport shardReport;
+			if (lastReport.getHtmlReportFile() != null) {
+				shardReport = new ZapReport(lastReport.getHtmlReportFile(), lastReport.getXmlReportFile(), new ArrayList<>(spiderResults));
+				shardReport.setTemporaryFiles(lastReport.hasTemporaryFiles());
+			} else {
+				shardReport = new ZapReport(lastReport.getHtmlReport(), lastReport.getXmlReport(), new ArrayList<>(spiderResults));
+			}
+			shardReport.setIncompleteScans(new ArrayList<>(incompleteScans));
+			shardReport.setCarriedOverAlerts(new ArrayList<>(carriedOverAlerts));
+			shardReport.setThresholdAlerts(new ArrayList<>(thresholdAlerts));
+			return shardReport;
+		}
+	}
+	
+	/**
+	 * @param remainingMillis the time left to analyze the remaining URLs of a shard.
+	 * @param remainingUrls the number of URLs of the shard that are yet to be analyzed.
+	 * @return the timeout of the next URL: an equal share of the time left, of at least one minute.
+	 */
+	static long getTimeoutInMinutes(long remainingMillis, int remainingUrls) {
+		return Math.max(1, TimeUnit.MILLISECONDS.toMinutes(remainingMillis / remainingUrls));
+	}
+	
+	private static List<ZapReport> waitForReports(List<Future<ZapReport>> futures) {
+		List<ZapReport> reports = new ArrayList<>();
+		List<Throwable> failures = new ArrayList<>();
+		for (Future<ZapReport> future : futures) {
+			try {
+				reports.add(future.get());
+			} catch (ExecutionException e) {
+				failures.add(e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				failures.add(e);
+				break;
+			}
+		}
+		if (!failures.isEmpty()) {
+			deleteTemporaryFiles(reports);
+			String message = failures.size() + " of " + futures.size() + " ZAP instances failed to analyze their share of the context.";
+			LOGGER.error(message);
+			ZapClientException exception = new ZapClientException(message, failures.get(0));
+			for (int i = 1; i < failures.size(); i++) {
+				exception.addSuppressed(failures.get(i));
+			}
+			throw exception;
+		}
+		return reports;
+	}
+	
+	private static void deleteTemporaryFiles(List<ZapReport> reports) {
+		for (ZapReport report : reports) {
+			report.deleteTemporaryFiles();
+		}
+	}
+	
+}
@@ -1,27 +1,40 @@
 package br.com.softplan.security.zap.api;
 
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import br.com.softplan.security.zap.api.analysis.Analyzer;
+import br.com.softplan.security.zap.api.analysis.AnalysisFuture;
+import br.com.softplan.security.zap.api.analysis.AnalysisPhase;
+import br.com.softplan.security.zap.api.analysis.AnalysisTimeline;
 import br.com.softplan.security.zap.api.analysis.AnalyzerFactory;
+import br.com.softplan.security.zap.api.analysis.BaseAnalyzer;
 import br.com.softplan.security.zap.api.authentication.AuthenticationHandler;
 import br.com.softplan.security.zap.api.authentication.AuthenticationHandlerFactory;
+import br.com.softplan.security.zap.api.exception.ZapClientException;
 import br.com.softplan.security.zap.api.model.AnalysisInfo;
 import br.com.softplan.security.zap.api.model.AuthenticationInfo;
 import br.com.softplan.security.zap.api.report.ZapReport;
 import br.com.softplan.security.zap.commons.ZapInfo;
 import br.com.softplan.security.zap.zaproxy.clientapi.core.ClientApi;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.DaemonThreadFactory;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.InMemoryApiMetricsRegistry;
 
 /**
  * The main client for starting a ZAP analysis.
  * 
  * @author pdsec
  */
-public class ZapClient {
+public class ZapClient implements Closeable {
 
+	private ZapInfo zapInfo;
 	private String apiKey;
 	private ClientApi api;
+	private InMemoryApiMetricsRegistry apiMetrics;
+	private AnalysisTimeline timeline;
 	
 	private AuthenticationHandler authenticationHandler;
 	private SessionManager sessionManager;
@@ -34,8 +47,12 @@ public class ZapClient {
 	 * @param zapInfo required information about the ZAP instance.
 	 */
 	public ZapClient(ZapInfo zapInfo) {
+		this.zapInfo = zapInfo;
 		this.apiKey = zapInfo.getApiKey();
 		this.api = new ClientApi(zapInfo.getHost(), zapInfo.getPort());
+		this.apiMetrics = new InMemoryApiMetricsRegistry();
+		this.api.setMetricsRegistry(apiMetrics);
+		this.timeline = new AnalysisTimeline(apiMetrics);
 		this.sessionManager = new SessionManager();
 	}
 
@@ -51,25 +68,171 @@ public class ZapClient {
 	}
 
 	public ZapReport analyze(AnalysisInfo analysisInfo) {
-		if (analysisInfo.shouldStartNewSession()) {
-			sessionManager.createNewSession(api, apiKey);
+		ScanProfileManager scanProfileManager = new ScanProfileManager(api, apiKey);
+		try {
+			prepareAnalysis(analysisInfo, scanProfileManager);
+			
+			BaseAnalyzer analyzer = AnalyzerFactory.makeAnalyzer(apiKey, api, analysisInfo);
+			analyzer.setPhaseListener(timeline);
+			ZapReport zapReport = analyzer.analyze(analysisInfo);
+			
+			LOGGER.info("--- Finished analysis ---\n");
+			
+			return zapReport;
+		} finally {
+			restoreScanOptions(scanProfileManager);
 		}
+	}
 
-		ZapHelper.includeInContext(api, apiKey, analysisInfo);
-		ZapHelper.setTechnologiesInContext(api, apiKey, analysisInfo);
+	/**
+	 * Starts the analysis without blocking the caller thread, running its steps on a shared scheduler of daemon threads.
+	 * 
+	 * @param analysisInfo the information about the analysis to be executed.
+	 * @return the future report of the analysis; cancelling it stops the scan that is running on ZAP.
+	 * @see #analyzeAsync(AnalysisInfo, ScheduledExecutorService)
+	 */
+	public AnalysisFuture analyzeAsync(AnalysisInfo analysisInfo) {
+		return analyzeAsync(analysisInfo, DefaultSchedulerHolder.SCHEDULER);
+	}
+
+	/**
+	 * Starts the analysis without blocking the caller thread.
+	 * <p>
+	 * The setup (session, context and authentication), the start of each scan, each status check and the report
+	 * generation are run as tasks on the given scheduler, and the waits between the status checks are scheduled
+	 * delays, so a few threads can drive many analyses.
+	 * 
+	 * @param analysisInfo the information about the analysis to be executed.
+	 * @param scheduler the scheduler that runs the analysis steps.
+	 * @return the future report of the analysis; cancelling it stops the scan that is running on ZAP.
+	 */
+	public AnalysisFuture analyzeAsync(final AnalysisInfo analysisInfo, ScheduledExecutorService scheduler) {
+		final ScanProfileManager scanProfileManager = new ScanProfileManager(api, apiKey);
+		BaseAnalyzer analyzer = AnalyzerFactory.makeAnalyzer(apiKey, api, analysisInfo);
+		analyzer.setPhaseListener(timeline);
+		AnalysisFuture future = analyzer.analyzeAsync(analysisInfo, scheduler, new Runnable() {
+			@Override
+			public void run() {
+				prepareAnalysis(analysisInfo, scanProfileManager);
+			}
+		});
+		future.addListener(new Runnable() {
+			@Override
+			public void run() {
+				restoreScanOptions(scanProfileManager);
+				LOGGER.info("--- Finished analysis ---\n");
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Returns the metrics of the calls made by this client to ZAP's API, accumulated since it was created.
+	 * 
+	 * @return the API metrics, which can be saved with {@link br.com.softplan.security.zap.api.report.ZapReportUtil#saveApiMetrics(InMemoryApiMetricsRegistry, String) ZapReportUtil.saveApiMetrics()}.
+	 */
+	public InMemoryApiMetricsRegistry getApiMetrics() {
+		return apiMetrics;
+	}
+
+	/**
+	 * Returns the timeline of the analyses run by this client: the start, end, progress and API calls of each phase.
+	 * 
+	 * @return the analysis timeline, which can be saved with {@link br.com.softplan.security.zap.api.report.ZapReportUtil#saveTimeline(AnalysisTimeline, String) ZapReportUtil.saveTimeline()}.
+	 */
+	public AnalysisTimeline getTimeline() {
+		return timeline;
+	}
+
+	/**
+	 * Releases the connections to ZAP kept by this client.
+	 */
+	@Override
+	public void close() {
+		api.close();
+	}
+
+	private void prepareAnalysis(AnalysisInfo analysisInfo, ScanProfileManager scanProfileManager) {
+		boolean succeeded = false;
+		timeline.phaseStarted(AnalysisPhase.CONTEXT_SETUP);
+		try {
+			if (analysisInfo.shouldStartNewSession() && shouldUseSessionSnapshot(analysisInfo)) {
+				startSessionFromSnapshot(analysisInfo);
+			} else {
+				if (analysisInfo.shouldStartNewSession()) {
+					sessionManager.createNewSession(api, apiKey);
+				}
+				configureContext(analysisInfo);
+			}
+			succeeded = true;
+		} finally {
+			timeline.phaseFinished(AnalysisPhase.CONTEXT_SETUP, succeeded);
+		}
 		
 		if (authenticationHandler != null) {
-			authenticationHandler.handleAuthentication(analysisInfo.getTargetUrl());
+			succeeded = false;
+			timeline.phaseStarted(AnalysisPhase.AUTHENTICATION);
+			try {
+				authenticationHandler.handleAuthentication(analysisInfo.getTargetUrl());
+				succeeded = true;
+			} finally {
+				timeline.phaseFinished(AnalysisPhase.AUTHENTICATION, succeeded);
+			}
+		}
+		
+		if (analysisInfo.getScanProfile() != null) {
+			scanProfileManager.apply(analysisInfo.getScanProfile());
+		} else if (analysisInfo.getActiveScanLatencySloInMillis() > 0) {
+			// The throttling changes the Active Scan options
+			scanProfileManager.save();
 		}
 
 		LOGGER.info("--- Starting analysis ---");
+	}
+	
+	private void restoreScanOptions(ScanProfileManager scanProfileManager) {
+		try {
+			scanProfileManager.restore();
+		} catch (ZapClientException e) {
+			// The analysis result is still valid, so it's not discarded because of the options
+			LOGGER.warn("The scan options changed during the analysis could not be restored on ZAP.", e);
+		}
+	}
+
+	private boolean shouldUseSessionSnapshot(AnalysisInfo analysisInfo) {
+		if (!analysisInfo.shouldUseSessionSnapshot()) {
+			return false;
+		}
+		if (authenticationHandler != null) {
+			// Part of the authentication setup (scanner exclusions, forced user, HTTP sessions) is not stored in the session
+			LOGGER.info("Session snapshots are not used with authentication, the session will be configured from scratch.");
+			return false;
+		}
+		return true;
+	}
+	
+	private void startSessionFromSnapshot(AnalysisInfo analysisInfo) {
+		String fingerprint = SessionManager.snapshotFingerprint(zapInfo, analysisInfo);
+		if (sessionManager.loadSnapshot(api, apiKey, fingerprint)) {
+			LOGGER.info("Session restored from snapshot {}.", fingerprint);
+			return;
+		}
+		sessionManager.createNewSession(api, apiKey);
+		configureContext(analysisInfo);
+		sessionManager.saveSnapshot(api, apiKey, fingerprint);
+		LOGGER.info("Session snapshot {} created.", fingerprint);
+	}
+	
+	private void configureContext(AnalysisInfo analysisInfo) {
+		ZapHelper.includeInContext(api, apiKey, analysisInfo);
+		ZapHelper.setTechnologiesInContext(api, apiKey, analysisInfo);
+	}
+	
+	private static final class DefaultSchedulerHolder {
 		
-		Analyzer analyzer = AnalyzerFactory.makeAnalyzer(apiKey, api, analysisInfo);
-		ZapReport zapReport = analyzer.analyze(analysisInfo);
-		
-		LOGGER.info("--- Finished analysis ---\n");
+		private static final ScheduledExecutorService SCHEDULER = Executors.newScheduledThreadPool(
+				Runtime.getRuntime().availableProcessors(), new DaemonThreadFactory("zap-analysis-"));
 		
-		return zapReport;
 	}
 
 }
@@ -1,7 +1,11 @@
 package br.com.softplan.security.zap.api;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
 
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,6 +28,8 @@ public class ZapHelper {
 	private static final String ZAP_SUCCESS_RESPONSE = "OK";
 	private static final String ZAP_DEFAULT_CONTEXT_NAME = "Default Context";
 	
+	static final int MAX_MERGED_REGEX_LENGTH = 2000;
+	
 	public static String extractResponse(ApiResponse response) {
 		return ((ApiResponseElement) response).getValue();
 	}
@@ -38,22 +44,80 @@ public class ZapHelper {
 		}
 	}
 	
-	public static void includeInContext(ClientApi api, String apiKey, AnalysisInfo analysisInfo) {
-		String[] context = analysisInfo.getContext();
+	public static void includeInContext(final ClientApi api, final String apiKey, AnalysisInfo analysisInfo) {
+		String[] context = resolveContextUrls(analysisInfo);
 		LOGGER.debug("Including target '{}' in context.", Arrays.toString(context));
 		
-		try {
-			for (String contextUrl : context) {
-				if (isContextUrlRelative(contextUrl)) {
-					contextUrl = resolveContextUrl(contextUrl, analysisInfo);
+		ApiCallBatch batch = new ApiCallBatch();
+		for (final String regex : mergeIntoAlternations(context, ".*")) {
+			// The includes change the same list on ZAP, so they are sent in order
+			batch.add(ZAP_DEFAULT_CONTEXT_NAME, "Include target in context.", new ApiCallBatch.ApiCall() {
+				@Override
+				public ApiResponse call() throws ClientApiException {
+					return api.context.includeInContext(apiKey, ZAP_DEFAULT_CONTEXT_NAME, regex);
 				}
-				ApiResponse response = api.context.includeInContext(apiKey, ZAP_DEFAULT_CONTEXT_NAME, "\\Q" + contextUrl + "\\E.*");
-				validateResponse(response, "Include target in context.");
-			}
-		} catch (ClientApiException e) {
+			});
+		}
+		try {
+			batch.execute();
+		} catch (ZapClientException e) {
 			LOGGER.error("Error including target in context.", e);
-			throw new ZapClientException(e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Merges literal values (e.g. URLs) into as few regexes as possible, each one an alternation of the quoted values
+	 * followed by the given suffix. Since the values are quoted, a merged regex matches exactly what the individual
+	 * {@code Pattern.quote(value) + suffix} regexes match together.
+	 * <p>
+	 * Each regex is kept under {@value #MAX_MERGED_REGEX_LENGTH} characters, so it fits in an API request URL.
+	 * 
+	 * @param values the literal values.
+	 * @param suffix the regex appended to the values (e.g. {@code ".*"}), may be empty.
+	 * @return the merged regexes.
+	 */
+	public static List<String> mergeIntoAlternations(String[] values, String suffix) {
+		List<String> regexes = new ArrayList<>();
+		List<String> group = new ArrayList<>();
+		int groupLength = 0;
+		for (String value : values) {
+			String quoted = Pattern.quote(value);
+			if (!group.isEmpty() && groupLength + quoted.length() + 1 > MAX_MERGED_REGEX_LENGTH) {
+				regexes.add(toAlternation(group, suffix));
+				group.clear();
+				groupLength = 0;
+			}
+			group.add(quoted);
+			groupLength += quoted.length() + 1;
+		}
+		if (!group.isEmpty()) {
+			regexes.add(toAlternation(group, suffix));
+		}
+		return regexes;
+	}
+	
+	private static String toAlternation(List<String> quotedValues, String suffix) {
+		if (quotedValues.size() == 1) {
+			return quotedValues.get(0) + suffix;
+		}
+		return "(?:" + StringUtils.join(quotedValues, '|') + ")" + suffix;
+	}
+	
+	/**
+	 * Resolves the relative URLs of the analysis context against its Active Scan starting point.
+	 * 
+	 * @param analysisInfo the analysis information.
+	 * @return the absolute URLs of the analysis context.
+	 */
+	public static String[] resolveContextUrls(AnalysisInfo analysisInfo) {
+		String[] context = analysisInfo.getContext();
+		String[] resolvedContext = new String[context.length];
+		for (int i = 0; i < context.length; i++) {
+			String contextUrl = context[i];
+			resolvedContext[i] = isContextUrlRelative(contextUrl) ? resolveContextUrl(contextUrl, analysisInfo) : contextUrl;
 		}
+		return resolvedContext;
 	}
 	
 	private static boolean isContextUrlRelative(String contextUrl) {
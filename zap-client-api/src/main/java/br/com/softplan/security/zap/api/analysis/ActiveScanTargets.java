@@ -0,0 +1,192 @@
+package br.com.softplan.security.zap.api.analysis;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The URLs attacked by the Active Scan step of an analysis, scanned with up to a given number of concurrent scans.
+ * <p>
+ * Targets wait in a queue until a scan slot is free. The progress of the step is the share of targets already
+ * scanned plus the progress of the running scans, so it only reaches 100% when the last target is done.
+ * <p>
+ * The methods are synchronized, as the scans may be stopped by another thread (e.g. when an asynchronous analysis
+ * is cancelled).
+ *
+ * @author pdsec
+ */
+class ActiveScanTargets {
+	
+	private final Deque<Target> pendingTargets;
+	private final Map<String, Integer> runningScans = new LinkedHashMap<>();
+	private final int numberOfTargets;
+	private final int maxConcurrentScans;
+	private int finishedScans;
+	
+	ActiveScanTargets(List<Target> targets, int maxConcurrentScans) {
+		if (maxConcurrentScans < 1) {
+			throw new IllegalArgumentException("At least one Active Scan must be allowed to run.");
+		}
+		this.pendingTargets = new ArrayDeque<>(targets);
+		this.numberOfTargets = targets.size();
+		this.maxConcurrentScans = maxConcurrentScans;
+	}
+	
+	/**
+	 * Builds the targets for the given URLs, each one scanned recursively.
+	 */
+	static List<Target> recursive(Collection<String> urls) {
+		List<Target> targets = new ArrayList<>();
+		for (String url : urls) {
+			targets.add(new Target(url, true));
+		}
+		return targets;
+	}
+	
+	/**
+	 * Splits the subtree of the given URL into its top-level subtrees, so they can be scanned concurrently.
+	 * <p>
+	 * The URL itself is scanned without recursion, and each top-level subtree is scanned recursively from its
+	 * root. When the root of a subtree was never accessed (so ZAP may not know it), the subtree is scanned from
+	 * the roots of the URLs that were accessed in it.
+	 *
+	 * @param url the root of the subtree.
+	 * @param knownUrls the URLs known by ZAP (e.g. {@code core.urls}).
+	 * @return the targets, starting with the given URL.
+	 */
+	static List<Target> splitIntoTopLevelSubtrees(String url, Collection<String> knownUrls) {
+		String base = url.endsWith("/") ? url : url + "/";
+		Map<String, List<String>> subtrees = new TreeMap<>();
+		for (String knownUrl : knownUrls) {
+			String segment = getFirstSegment(knownUrl, base);
+			if (segment != null) {
+				List<String> subtreeUrls = subtrees.get(segment);
+				if (subtreeUrls == null) {
+					subtreeUrls = new ArrayList<>();
+					subtrees.put(segment, subtreeUrls);
+				}
+				subtreeUrls.add(knownUrl);
+			}
+		}
+		
+		List<Target> targets = new ArrayList<>();
+		targets.add(new Target(url, false));
+		for (Map.Entry<String, List<String>> subtree : subtrees.entrySet()) {
+			String subtreeRoot = base + subtree.getKey();
+			if (subtree.getValue().contains(subtreeRoot) || subtree.getValue().contains(subtreeRoot + "/")) {
+				targets.add(new Target(subtreeRoot, true));
+			} else {
+				targets.addAll(recursive(IncrementalBaseline.toSubtreeRoots(subtree.getValue())));
+			}
+		}
+		return targets;
+	}
+	
+	private static String getFirstSegment(String url, String base) {
+		if (!url.startsWith(base) || url.length() == base.length()) {
+			return null;
+		}
+		String path = url.substring(base.length());
+		int end = 0;
+		while (end < path.length() && path.charAt(end) != '/' && path.charAt(end) != '?' && path.charAt(end) != '#') {
+			end++;
+		}
+		return end > 0 ? path.substring(0, end) : null;
+	}
+	
+	/**
+	 * @return the next target to be scanned, or {@code null} if there's no free scan slot or no target left.
+	 */
+	synchronized Target nextToStart() {
+		if (runningScans.size() >= maxConcurrentScans) {
+			return null;
+		}
+		return pendingTargets.poll();
+	}
+	
+	synchronized void started(String scanId) {
+		runningScans.put(scanId, 0);
+	}
+	
+	/**
+	 * Updates the progress of a running scan, releasing its slot once it's finished.
+	 */
+	synchronized void update(String scanId, int progress) {
+		if (!runningScans.containsKey(scanId)) {
+			return;
+		}
+		if (progress >= BaseAnalyzer.MAX_PROGRESS) {
+			runningScans.remove(scanId);
+			finishedScans++;
+		} else {
+			runningScans.put(scanId, progress);
+		}
+	}
+	
+	synchronized List<String> getRunningScanIds() {
+		return new ArrayList<>(runningScans.keySet());
+	}
+	
+	/**
+	 * Discards the targets that were not started yet, e.g. because the scans are being stopped.
+	 */
+	synchronized void clearPendingTargets() {
+		pendingTargets.clear();
+	}
+	
+	synchronized boolean isDone() {
+		return pendingTargets.isEmpty() && runningScans.isEmpty();
+	}
+	
+	int size() {
+		return numberOfTargets;
+	}
+	
+	/**
+	 * @return the progress of the whole step, from 0 to 100.
+	 */
+	synchronized int getOverallProgress() {
+		if (isDone()) {
+			return BaseAnalyzer.MAX_PROGRESS;
+		}
+		int progress = finishedScans * BaseAnalyzer.MAX_PROGRESS;
+		for (int scanProgress : runningScans.values()) {
+			progress += scanProgress;
+		}
+		return Math.min(BaseAnalyzer.MAX_PROGRESS - 1, progress / numberOfTargets);
+	}
+	
+	/**
+	 * A URL attacked by an Active Scan.
+	 */
+	static class Target {
+		
+		private final String url;
+		private final boolean recursive;
+		
+		Target(String url, boolean recursive) {
+			this.url = url;
+			this.recursive = recursive;
+		}
+		
+		String getUrl() {
+			return url;
+		}
+		
+		boolean isRecursive() {
+			return recursive;
+		}
+		
+		@Override
+		public String toString() {
+			return recursive ? url : url + " (not recursive)";
+		}
+		
+	}
+
+}
@@ -0,0 +1,112 @@
+package br.com.softplan.security.zap.api.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Adjusts ZAP's Active Scan threads per host and delay between requests to hold the target's response time under
+ * a latency SLO, following an AIMD (additive increase, multiplicative decrease) rule:
+ * <ul>
+ * <li>when the 90th percentile of the sampled response times is above the SLO, or too many responses are errors,
+ * the threads are halved, and once a single thread is left the delay is doubled;</li>
+ * <li>when the 90th percentile is comfortably under the SLO, the delay is halved until it's gone, and then one
+ * thread is added at a time, up to {@value #MAX_THREADS_PER_HOST};</li>
+ * <li>otherwise the settings are kept.</li>
+ * </ul>
+ * Samples that are too small to be meaningful are ignored.
+ *
+ * @author pdsec
+ */
+class ActiveScanThrottle {
+	
+	static final int MAX_THREADS_PER_HOST = 20;
+	static final int MIN_SAMPLE_SIZE = 5;
+	
+	private static final double LATENCY_PERCENTILE = 0.9;
+	private static final double MAX_ERROR_RATE = 0.05;
+	// The throughput is only increased with some headroom, so the settings don't flap around the SLO
+	private static final double INCREASE_THRESHOLD = 0.8;
+	private static final int INITIAL_DELAY_IN_MILLIS = 100;
+	private static final int MAX_DELAY_IN_MILLIS = 5000;
+	
+	private final long latencySloInMillis;
+	private int threadsPerHost;
+	private int delayInMillis;
+	
+	ActiveScanThrottle(long latencySloInMillis, int threadsPerHost, int delayInMillis) {
+		if (latencySloInMillis <= 0) {
+			throw new IllegalArgumentException("The latency SLO must be positive: " + latencySloInMillis);
+		}
+		this.latencySloInMillis = latencySloInMillis;
+		this.threadsPerHost = Math.max(1, Math.min(MAX_THREADS_PER_HOST, threadsPerHost));
+		this.delayInMillis = Math.max(0, delayInMillis);
+	}
+	
+	/**
+	 * Updates the settings according to a sample of the latest responses of the target.
+	 *
+	 * @param responseTimesInMillis the response times of the sampled messages.
+	 * @param errors how many of the sampled messages failed (e.g. server errors or timeouts).
+	 * @return {@code true} if the settings changed.
+	 */
+	boolean update(List<Long> responseTimesInMillis, int errors) {
+		int sampleSize = responseTimesInMillis.size();
+		if (sampleSize < MIN_SAMPLE_SIZE) {
+			return false;
+		}
+		long latency = percentile(responseTimesInMillis, LATENCY_PERCENTILE);
+		boolean overloaded = latency > latencySloInMillis || errors > sampleSize * MAX_ERROR_RATE;
+		if (overloaded) {
+			return decrease();
+		}
+		if (latency <= latencySloInMillis * INCREASE_THRESHOLD) {
+			return increase();
+		}
+		return false;
+	}
+	
+	private boolean decrease() {
+		if (threadsPerHost > 1) {
+			threadsPerHost = Math.max(1, threadsPerHost / 2);
+			return true;
+		}
+		if (delayInMillis < MAX_DELAY_IN_MILLIS) {
+			delayInMillis = delayInMillis == 0 ? INITIAL_DELAY_IN_MILLIS : Math.min(MAX_DELAY_IN_MILLIS, delayInMillis * 2);
+			return true;
+		}
+		return false;
+	}
+	
+	private boolean increase() {
+		if (delayInMillis > 0) {
+			delayInMillis = delayInMillis / 2 < INITIAL_DELAY_IN_MILLIS ? 0 : delayInMillis / 2;
+			return true;
+		}
+		if (threadsPerHost < MAX_THREADS_PER_HOST) {
+			threadsPerHost++;
+			return true;
+		}
+		return false;
+	}
+	
+	private static long percentile(List<Long> values, double percentile) {
+		List<Long> sorted = new ArrayList<>(values);
+		Collections.sort(sorted);
+		int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+		return sorted.get(Math.max(0, index));
+	}
+	
+	int getThreadsPerHost() {
+		return threadsPerHost;
+	}
+	
+	int getDelayInMillis() {
+		return delayInMillis;
+	}
+	
+	long getLatencySloInMillis() {
+		return latencySloInMillis;
+	}
+
+}
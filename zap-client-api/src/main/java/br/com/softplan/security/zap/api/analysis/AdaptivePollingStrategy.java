@@ -0,0 +1,75 @@
+package br.com.softplan.security.zap.api.analysis;
+
+/**
+ * {@link PollingStrategy} that adapts the interval between the status checks to the scan progress:
+ * <ul>
+ * <li>the first check is done after a short delay, so short scans are noticed as soon as they finish;</li>
+ * <li>while the progress changes, the delay is the time expected for the progress to advance {@link #PROGRESS_STEP}
+ * points (or to finish, if that's sooner), estimated from the rate of the last change;</li>
+ * <li>while the progress doesn't change, the delay is multiplied by {@link #BACKOFF_FACTOR};</li>
+ * <li>the delay is always between the minimum and maximum delays, but never beyond the analysis timeout,
+ * so the last check happens right when the time is up.</li>
+ * </ul>
+ * 
+ * @author pdsec
+ */
+public class AdaptivePollingStrategy implements PollingStrategy {
+
+	static final int PROGRESS_STEP = 5;
+	static final int BACKOFF_FACTOR = 2;
+	private static final int MAX_PROGRESS = 100;
+	
+	private final long initialDelayInMillis;
+	private final long minDelayInMillis;
+	private final long maxDelayInMillis;
+	
+	private boolean firstCheck = true;
+	private int lastProgress;
+	private long lastProgressChangeTime;
+	private long lastDelayInMillis;
+	
+	/**
+	 * @param initialDelayInMillis the delay before the first status check.
+	 * @param minDelayInMillis the minimum delay between the status checks.
+	 * @param maxDelayInMillis the maximum delay between the status checks.
+	 */
+	public AdaptivePollingStrategy(long initialDelayInMillis, long minDelayInMillis, long maxDelayInMillis) {
+		if (minDelayInMillis > maxDelayInMillis) {
+			throw new IllegalArgumentException("The minimum delay can't be greater than the maximum delay.");
+		}
+		this.initialDelayInMillis = initialDelayInMillis;
+		this.minDelayInMillis = minDelayInMillis;
+		this.maxDelayInMillis = maxDelayInMillis;
+	}
+	
+	@Override
+	public long nextDelayInMillis(int progress, long nowInMillis, long remainingTimeInMillis) {
+		long delay;
+		if (firstCheck) {
+			firstCheck = false;
+			lastProgress = progress;
+			lastProgressChangeTime = nowInMillis;
+			delay = initialDelayInMillis;
+		} else if (progress > lastProgress) {
+			delay = clamp(estimateDelayFromRate(progress, nowInMillis));
+			lastProgress = progress;
+			lastProgressChangeTime = nowInMillis;
+		} else {
+			delay = clamp(lastDelayInMillis * BACKOFF_FACTOR);
+		}
+		lastDelayInMillis = delay;
+		return Math.max(0, Math.min(delay, remainingTimeInMillis));
+	}
+
+	private long estimateDelayFromRate(int progress, long nowInMillis) {
+		long elapsedInMillis = Math.max(1, nowInMillis - lastProgressChangeTime);
+		double millisPerPoint = (double) elapsedInMillis / (progress - lastProgress);
+		int pointsToWait = Math.min(PROGRESS_STEP, MAX_PROGRESS - progress);
+		return (long) (millisPerPoint * Math.max(1, pointsToWait));
+	}
+	
+	private long clamp(long delay) {
+		return Math.max(minDelayInMillis, Math.min(maxDelayInMillis, delay));
+	}
+	
+}
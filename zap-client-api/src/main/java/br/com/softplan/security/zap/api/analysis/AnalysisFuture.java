@@ -0,0 +1,155 @@
+package br.com.softplan.security.zap.api.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.softplan.security.zap.api.report.ZapReport;
+
+/**
+ * The future report of an analysis started with {@link BaseAnalyzer#analyzeAsync}.
+ * <p>
+ * Besides the blocking {@link #get()}, listeners can be registered to be notified when the analysis finishes,
+ * either successfully, with an error or because it was cancelled. Cancelling the future stops the scan that
+ * is running on ZAP.
+ * 
+ * @author pdsec
+ */
+public class AnalysisFuture implements Future<ZapReport> {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AnalysisFuture.class);
+	
+	private final CountDownLatch doneLatch = new CountDownLatch(1);
+	private final List<Runnable> listeners = new ArrayList<Runnable>();
+	private final Runnable cancellationHandler;
+	
+	private boolean done;
+	private boolean cancelled;
+	private ZapReport report;
+	private Throwable failure;
+	
+	AnalysisFuture(Runnable cancellationHandler) {
+		this.cancellationHandler = cancellationHandler;
+	}
+	
+	/**
+	 * Registers a listener that is run when the analysis finishes. If it has already finished, the listener is run immediately.
+	 * <p>
+	 * Listeners are run by the thread that finishes the analysis, so they must not block.
+	 * 
+	 * @param listener the listener to be run.
+	 */
+	public void addListener(Runnable listener) {
+		synchronized (this) {
+			if (!done) {
+				listeners.add(listener);
+				return;
+			}
+		}
+		runListener(listener);
+	}
+	
+	boolean complete(ZapReport report) {
+		synchronized (this) {
+			if (done) {
+				return false;
+			}
+			this.report = report;
+			done = true;
+		}
+		finish();
+		return true;
+	}
+	
+	boolean fail(Throwable failure) {
+		synchronized (this) {
+			if (done) {
+				return false;
+			}
+			this.failure = failure;
+			done = true;
+		}
+		finish();
+		return true;
+	}
+	
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		synchronized (this) {
+			if (done) {
+				return false;
+			}
+			cancelled = true;
+			done = true;
+		}
+		try {
+			cancellationHandler.run();
+		} finally {
+			finish();
+		}
+		return true;
+	}
+	
+	private void finish() {
+		doneLatch.countDown();
+		List<Runnable> listenersToRun;
+		synchronized (this) {
+			listenersToRun = new ArrayList<Runnable>(listeners);
+			listeners.clear();
+		}
+		for (Runnable listener : listenersToRun) {
+			runListener(listener);
+		}
+	}
+	
+	private static void runListener(Runnable listener) {
+		try {
+			listener.run();
+		} catch (RuntimeException e) {
+			LOGGER.error("Error running analysis listener.", e);
+		}
+	}
+	
+	@Override
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+	
+	@Override
+	public synchronized boolean isDone() {
+		return done;
+	}
+	
+	@Override
+	public ZapReport get() throws InterruptedException, ExecutionException {
+		doneLatch.await();
+		return getResult();
+	}
+	
+	@Override
+	public ZapReport get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if (!doneLatch.await(timeout, unit)) {
+			throw new TimeoutException("The analysis did not finish in " + timeout + " " + unit.toString().toLowerCase() + ".");
+		}
+		return getResult();
+	}
+	
+	private synchronized ZapReport getResult() throws ExecutionException {
+		if (cancelled) {
+			throw new CancellationException("The analysis was cancelled.");
+		}
+		if (failure != null) {
+			throw new ExecutionException(failure);
+		}
+		return report;
+	}
+	
+}
@@ -0,0 +1,29 @@
+package br.com.softplan.security.zap.api.analysis;
+
+/**
+ * Enumerates the phases of an analysis, as recorded by {@link PhaseListener}s.
+ * 
+ * @author pdsec
+ */
+public enum AnalysisPhase {
+	
+	CONTEXT_SETUP("Context setup"),
+	AUTHENTICATION("Authentication"),
+	SPIDER("Spider"),
+	AJAX_SPIDER("AJAX Spider"),
+	PASSIVE_SCAN_DRAIN("Passive Scan drain"),
+	ACTIVE_SCAN("Active Scan"),
+	REPORT("Report retrieval");
+	
+	private final String name;
+	
+	private AnalysisPhase(String name) {
+		this.name = name;
+	}
+	
+	@Override
+	public String toString() {
+		return this.name;
+	}
+
+}
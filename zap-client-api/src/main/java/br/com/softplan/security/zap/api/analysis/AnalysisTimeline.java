@@ -0,0 +1,243 @@
+package br.com.softplan.security.zap.api.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.softplan.security.zap.zaproxy.clientapi.core.InMemoryApiMetricsRegistry;
+
+/**
+ * {@link PhaseListener} that records the timeline of the analyses: when each phase started and ended, the progress
+ * samples taken while it ran and how many ZAP API calls it made.
+ * <p>
+ * Each phase is also emitted as a JDK Flight Recorder event ({@code br.com.softplan.zap.AnalysisPhase}, with the
+ * progress samples as {@code br.com.softplan.zap.ScanProgress} events) when running on a JVM that supports custom
+ * events, so the phases can be correlated with the rest of a flight recording.
+ * <p>
+ * The timeline can be saved as JSON with {@link br.com.softplan.security.zap.api.report.ZapReportUtil#saveTimeline(AnalysisTimeline, String)
+ * ZapReportUtil.saveTimeline()}.
+ * 
+ * @author pdsec
+ */
+public class AnalysisTimeline implements PhaseListener {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(AnalysisTimeline.class);
+	
+	private final InMemoryApiMetricsRegistry apiMetrics;
+	private final List<PhaseRecord> phases = new ArrayList<>();
+	private final Map<AnalysisPhase, PhaseRecord> runningPhases = new EnumMap<>(AnalysisPhase.class);
+	
+	public AnalysisTimeline() {
+		this(null);
+	}
+	
+	/**
+	 * @param apiMetrics the metrics of the API client used by the analysis, used to count the calls made
+	 * in each phase; may be {@code null}, in which case the calls are not counted.
+	 */
+	public AnalysisTimeline(InMemoryApiMetricsRegistry apiMetrics) {
+		this.apiMetrics = apiMetrics;
+	}
+	
+	@Override
+	public synchronized void phaseStarted(AnalysisPhase phase) {
+		PhaseRecord record = new PhaseRecord(phase, System.currentTimeMillis(), countApiCalls());
+		record.jfrEvent = JfrPhaseEvents.begin(phase);
+		phases.add(record);
+		runningPhases.put(phase, record);
+	}
+	
+	@Override
+	public synchronized void phaseProgress(AnalysisPhase phase, int progress) {
+		PhaseRecord record = runningPhases.get(phase);
+		if (record != null) {
+			record.progressSamples.add(new ProgressSample(System.currentTimeMillis(), progress));
+			JfrPhaseEvents.progress(phase, progress);
+		}
+	}
+	
+	@Override
+	public synchronized void phaseItemsProcessed(AnalysisPhase phase, long items) {
+		PhaseRecord record = runningPhases.get(phase);
+		if (record != null) {
+			record.itemsProcessed = items;
+		}
+	}
+	
+	@Override
+	public synchronized void phaseFinished(AnalysisPhase phase, boolean succeeded) {
+		PhaseRecord record = runningPhases.remove(phase);
+		if (record == null) {
+			return;
+		}
+		record.endTimeInMillis = System.currentTimeMillis();
+		record.succeeded = succeeded;
+		record.requestCount = countApiCalls() - record.startApiCalls;
+		JfrPhaseEvents.end(record.jfrEvent, record);
+		record.jfrEvent = null;
+		LOGGER.debug("{} {} after {} ms ({} API calls).", phase, succeeded ? "finished" : "failed", 
+				record.getDurationInMillis(), record.requestCount);
+	}
+	
+	/**
+	 * @return the recorded phases, in the order they started.
+	 */
+	public synchronized List<PhaseRecord> getPhases() {
+		return Collections.unmodifiableList(new ArrayList<>(phases));
+	}
+	
+	/**
+	 * Builds the JSON representation of the timeline. Times are epoch milliseconds, and phases that are
+	 * still running have an {@code end} of {@code null}.
+	 * 
+	 * @return the timeline as a JSON document.
+	 */
+	public synchronized String toJson() {
+		StringBuilder sb = new StringBuilder("{\n  \"phases\": [");
+		for (int i = 0; i < phases.size(); i++) {
+			PhaseRecord record = phases.get(i);
+			sb.append(i == 0 ? "\n" : ",\n");
+			sb.append("    {\"phase\": \"").append(record.phase.name()).append('"');
+			sb.append(", \"start\": ").append(record.startTimeInMillis);
+			sb.append(", \"end\": ").append(record.isFinished() ? String.valueOf(record.endTimeInMillis) : "null");
+			sb.append(", \"durationMs\": ").append(record.getDurationInMillis());
+			sb.append(", \"outcome\": \"").append(record.getOutcome()).append('"');
+			sb.append(", \"requests\": ").append(record.requestCount);
+			if (record.itemsProcessed >= 0) {
+				sb.append(", \"items\": ").append(record.itemsProcessed);
+				sb.append(", \"itemsPerSecond\": ").append(String.format(Locale.ROOT, "%.1f", record.getItemsPerSecond()));
+			}
+			sb.append(", \"progress\": [");
+			for (int j = 0; j < record.progressSamples.size(); j++) {
+				ProgressSample sample = record.progressSamples.get(j);
+				sb.append(j == 0 ? "" : ", ");
+				sb.append("{\"time\": ").append(sample.timeInMillis).append(", \"percent\": ").append(sample.progress).append('}');
+			}
+			sb.append("]}");
+		}
+		return sb.append(phases.isEmpty() ? "]\n}\n" : "\n  ]\n}\n").toString();
+	}
+	
+	private long countApiCalls() {
+		return apiMetrics == null ? 0 : apiMetrics.getTotalCalls();
+	}
+	
+	/**
+	 * A single execution of an {@link AnalysisPhase}.
+	 */
+	public static class PhaseRecord {
+		
+		private final AnalysisPhase phase;
+		private final long startTimeInMillis;
+		private final long startApiCalls;
+		private final List<ProgressSample> progressSamples = new ArrayList<>();
+		private long endTimeInMillis = -1;
+		private boolean succeeded;
+		private long requestCount;
+		private long itemsProcessed = -1;
+		private Object jfrEvent;
+		
+		PhaseRecord(AnalysisPhase phase, long startTimeInMillis, long startApiCalls) {
+			this.phase = phase;
+			this.startTimeInMillis = startTimeInMillis;
+			this.startApiCalls = startApiCalls;
+		}
+		
+		public AnalysisPhase getPhase() {
+			return phase;
+		}
+		
+		public long getStartTimeInMillis() {
+			return startTimeInMillis;
+		}
+		
+		/**
+		 * @return the end time, or {@code -1} if the phase is still running.
+		 */
+		public long getEndTimeInMillis() {
+			return endTimeInMillis;
+		}
+		
+		public long getDurationInMillis() {
+			return (isFinished() ? endTimeInMillis : System.currentTimeMillis()) - startTimeInMillis;
+		}
+		
+		public boolean isFinished() {
+			return endTimeInMillis != -1;
+		}
+		
+		public boolean isSucceeded() {
+			return succeeded;
+		}
+		
+		/**
+		 * @return {@code RUNNING}, {@code SUCCEEDED} or {@code FAILED}.
+		 */
+		public String getOutcome() {
+			if (!isFinished()) {
+				return "RUNNING";
+			}
+			return succeeded ? "SUCCEEDED" : "FAILED";
+		}
+		
+		/**
+		 * @return the number of ZAP API calls made while the phase ran, by any thread of the client.
+		 */
+		public long getRequestCount() {
+			return requestCount;
+		}
+		
+		/**
+		 * @return the number of items processed by the phase (e.g. passive scan records), or {@code -1} if the phase doesn't count them.
+		 */
+		public long getItemsProcessed() {
+			return itemsProcessed;
+		}
+		
+		/**
+		 * @return the throughput of the phase, in items per second, or {@code 0} if the phase doesn't count its items.
+		 */
+		public double getItemsPerSecond() {
+			return itemsProcessed <= 0 ? 0 : itemsProcessed * 1000.0 / Math.max(1, getDurationInMillis());
+		}
+		
+		public List<ProgressSample> getProgressSamples() {
+			return Collections.unmodifiableList(new ArrayList<>(progressSamples));
+		}
+		
+		int getLastProgress() {
+			return progressSamples.isEmpty() ? 0 : progressSamples.get(progressSamples.size() - 1).progress;
+		}
+		
+	}
+	
+	/**
+	 * The progress reported by ZAP at a given time.
+	 */
+	public static class ProgressSample {
+		
+		private final long timeInMillis;
+		private final int progress;
+		
+		ProgressSample(long timeInMillis, int progress) {
+			this.timeInMillis = timeInMillis;
+			this.progress = progress;
+		}
+		
+		public long getTimeInMillis() {
+			return timeInMillis;
+		}
+		
+		public int getProgress() {
+			return progress;
+		}
+		
+	}
+
+}
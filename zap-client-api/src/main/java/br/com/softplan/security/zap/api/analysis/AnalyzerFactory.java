@@ -10,13 +10,14 @@ import br.com.softplan.security.zap.zaproxy.clientapi.core.ClientApi;
  */
 public final class AnalyzerFactory {
 
-	public static Analyzer makeAnalyzer(String apiKey, ClientApi api, AnalysisInfo analysisInfo) {
+	public static BaseAnalyzer makeAnalyzer(String apiKey, ClientApi api, AnalysisInfo analysisInfo) {
 		switch (analysisInfo.getAnalysisType()) {
 			case WITH_SPIDER:                 return new WithSpiderAnalyzer(apiKey, api);
 			case WITH_AJAX_SPIDER:            return new WithAjaxSpiderAnalyzer(apiKey, api);
 			case ACTIVE_SCAN_ONLY:            return new ActiveScanOnlyAnalyzer(apiKey, api);
 			case SPIDER_ONLY:                 return new SpiderOnlyAnalyzer(apiKey, api);
 			case SPIDER_AND_AJAX_SPIDER_ONLY: return new SpiderAndAjaxSpiderOnlyAnalyzer(apiKey, api);
+			case INCREMENTAL:                 return new IncrementalAnalyzer(apiKey, api);
 			default:               return null;
 		}
 	}
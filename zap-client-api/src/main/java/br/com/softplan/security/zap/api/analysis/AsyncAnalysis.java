@@ -0,0 +1,156 @@
+package br.com.softplan.security.zap.api.analysis;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.softplan.security.zap.api.model.AnalysisInfo;
+import br.com.softplan.security.zap.api.model.ScanType;
+
+/**
+ * Runs the scans of a {@link BaseAnalyzer} as a chain of tasks on a {@link ScheduledExecutorService}:
+ * each scan is started by a task, each status check is a task scheduled with the delay given by the
+ * {@link PollingStrategy}, and the report is generated by the last task.
+ * <p>
+ * Only one task of an analysis is scheduled at a time, so the analysis state is never accessed concurrently,
+ * except by the cancellation.
+ * 
+ * @author pdsec
+ */
+class AsyncAnalysis {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AsyncAnalysis.class);
+	
+	private final BaseAnalyzer analyzer;
+	private final AnalysisInfo analysisInfo;
+	private final ScheduledExecutorService scheduler;
+	private final List<ScanType> scanSequence;
+	private final AnalysisFuture future;
+	
+	private int nextScanIndex;
+	private volatile ScanType currentScanType;
+	private volatile String currentScanId;
+	private PollingStrategy pollingStrategy;
+	private int progress;
+	private volatile ScheduledFuture<?> pendingStep;
+	
+	AsyncAnalysis(BaseAnalyzer analyzer, AnalysisInfo analysisInfo, ScheduledExecutorService scheduler) {
+		this.analyzer = analyzer;
+		this.analysisInfo = analysisInfo;
+		this.scheduler = scheduler;
+		this.scanSequence = analyzer.getScanSequence();
+		this.future = new AnalysisFuture(new Runnable() {
+			@Override
+			public void run() {
+				stopInFlightScan();
+			}
+		});
+	}
+	
+	AnalysisFuture start(final Runnable preparation) {
+		schedule(new Step() {
+			@Override
+			void execute() {
+				if (preparation != null) {
+					preparation.run();
+				}
+				analyzer.init(analysisInfo);
+				startNextScan();
+			}
+		}, 0);
+		return future;
+	}
+	
+	private void startNextScan() {
+		while (nextScanIndex < scanSequence.size() && analyzer.shouldSkipScan(scanSequence.get(nextScanIndex))) {
+			nextScanIndex++;
+		}
+		if (nextScanIndex == scanSequence.size()) {
+			currentScanType = null;
+			future.complete(analyzer.generateReport());
+			return;
+		}
+		ScanType scanType = scanSequence.get(nextScanIndex++);
+		currentScanId = analyzer.startScan(scanType, analysisInfo);
+		currentScanType = scanType;
+		if (future.isCancelled()) {
+			// The cancellation may have happened while the scan was being started
+			stopInFlightScan();
+			return;
+		}
+		pollingStrategy = analyzer.newPollingStrategy(scanType);
+		progress = 0;
+		scheduleNextStatusCheck();
+	}
+	
+	private void scheduleNextStatusCheck() {
+		long now = System.currentTimeMillis();
+		long delay = pollingStrategy.nextDelayInMillis(progress, now, analyzer.getRemainingTimeInMillis(now));
+		schedule(new Step() {
+			@Override
+			void execute() {
+				checkStatus();
+			}
+		}, delay);
+	}
+	
+	private void checkStatus() {
+		progress = analyzer.checkScanProgress(currentScanType, currentScanId);
+		LOGGER.info("{} progress : {}%", currentScanType, progress);
+		if (progress < BaseAnalyzer.MAX_PROGRESS) {
+			scheduleNextStatusCheck();
+		} else {
+			analyzer.scanFinished(currentScanType);
+			startNextScan();
+		}
+	}
+	
+	private void schedule(Step step, long delayInMillis) {
+		try {
+			pendingStep = scheduler.schedule(step, delayInMillis, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			future.fail(e);
+		}
+	}
+	
+	private void stopInFlightScan() {
+		ScheduledFuture<?> step = pendingStep;
+		if (step != null) {
+			step.cancel(false);
+		}
+		ScanType scanType = currentScanType;
+		String scanId = currentScanId;
+		if (scanType != null && scanId != null) {
+			LOGGER.info("Analysis cancelled, stopping the {}.", scanType);
+			try {
+				analyzer.stopScan(scanType, scanId);
+			} catch (RuntimeException e) {
+				LOGGER.warn("The {} could not be stopped after the analysis was cancelled.", scanType);
+			}
+		}
+	}
+	
+	private abstract class Step implements Runnable {
+		
+		@Override
+		public void run() {
+			if (future.isDone()) {
+				return;
+			}
+			try {
+				execute();
+			} catch (Throwable e) {
+				future.fail(e);
+			}
+		}
+		
+		abstract void execute();
+		
+	}
+	
+}
@@ -1,126 +1,489 @@
 package br.com.softplan.security.zap.api.analysis;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXParseException;
 
-import br.com.softplan.security.zap.api.exception.ZapAnalysisTimeoutException;
+import br.com.softplan.security.zap.api.ApiCallBatch;
+import br.com.softplan.security.zap.api.ZapHelper;
 import br.com.softplan.security.zap.api.exception.ZapClientException;
+import br.com.softplan.security.zap.api.model.AlertThreshold;
 import br.com.softplan.security.zap.api.model.AnalysisInfo;
 import br.com.softplan.security.zap.api.model.ScanType;
 import br.com.softplan.security.zap.api.report.ZapReport;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert;
 import br.com.softplan.security.zap.zaproxy.clientapi.core.ApiResponse;
 import br.com.softplan.security.zap.zaproxy.clientapi.core.ApiResponseElement;
 import br.com.softplan.security.zap.zaproxy.clientapi.core.ApiResponseList;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ApiResponseSet;
 import br.com.softplan.security.zap.zaproxy.clientapi.core.ClientApi;
 import br.com.softplan.security.zap.zaproxy.clientapi.core.ClientApiException;
 
 /**
  * Base implementation of {@link Analyzer}.
  * <p>
- * Responsible for the timeout logic and calls to the ZAP API.
- * 
+ * Responsible for the timeout logic and calls to the ZAP API. Subclasses only declare which scans
+ * are run, and in which order, with {@link #getScanSequence()}.
+ * <p>
+ * Each scan is run in three steps (start, status checks and, on timeout, stop), which are shared by
+ * the blocking {@link #analyze(AnalysisInfo)} and the scheduled {@link #analyzeAsync(AnalysisInfo, ScheduledExecutorService)}.
+ * The {@link ScanType#PASSIVE_SCAN} step starts nothing: it waits for ZAP's passive scan queue ({@code pscan.recordsToScan})
+ * to be empty, so the report includes the passive alerts.
+ * <p>
+ * The analysis timeout is split among the scans according to the {@link AnalysisInfo#getPhaseBudgets() phase budgets}
+ * (see {@link TimeBudget}). A scan that runs out of time is stopped and the analysis moves on to the next one, and
+ * once the analysis timeout is reached the remaining scans are skipped. Either way the report is still generated,
+ * flagged as {@link ZapReport#isPartial() partial}.
+ * <p>
+ * With an {@link AnalysisInfo#getActiveScanLatencySloInMillis() Active Scan latency SLO}, each status check of the
+ * Active Scan samples the response times of the latest messages sent by the scans and lets an {@link ActiveScanThrottle}
+ * adjust ZAP's threads per host and delay between requests.
+ * <p>
+ * With a {@link AnalysisInfo#getFailFastThreshold() fail-fast threshold}, each status check also goes through the
+ * alerts found since the previous check. Once the threshold is reached, the running scan is stopped and the remaining
+ * ones are skipped, so the partial report is available right away.
+ *
  * @author pdsec
  */
 public abstract class BaseAnalyzer implements Analyzer {
 	
 	private static final Logger LOGGER = LoggerFactory.getLogger(BaseAnalyzer.class);
 	
-	private static final long SPIDER_STATUS_POLLING_INTERVAL_IN_SECONDS = 1;
-	private static final long AJAX_SPIDER_STATUS_POLLING_INTERVAL_IN_SECONDS = 10;
-	private static final long ACTIVE_SCAN_STATUS_POLLING_INTERVAL_IN_SECONDS = 5;
+	static final int MAX_PROGRESS = 100;
+	
+	private static final long INITIAL_STATUS_POLLING_DELAY_IN_MILLIS = 250;
+	private static final long SPIDER_MIN_STATUS_POLLING_INTERVAL_IN_MILLIS = 250;
+	private static final long SPIDER_MAX_STATUS_POLLING_INTERVAL_IN_MILLIS = TimeUnit.SECONDS.toMillis(2);
+	private static final long AJAX_SPIDER_MIN_STATUS_POLLING_INTERVAL_IN_MILLIS = TimeUnit.SECONDS.toMillis(1);
+	private static final long AJAX_SPIDER_MAX_STATUS_POLLING_INTERVAL_IN_MILLIS = TimeUnit.SECONDS.toMillis(10);
+	private static final long ACTIVE_SCAN_MIN_STATUS_POLLING_INTERVAL_IN_MILLIS = 500;
+	private static final long ACTIVE_SCAN_MAX_STATUS_POLLING_INTERVAL_IN_MILLIS = TimeUnit.SECONDS.toMillis(10);
+	private static final long PASSIVE_SCAN_MIN_STATUS_POLLING_INTERVAL_IN_MILLIS = 250;
+	private static final long PASSIVE_SCAN_MAX_STATUS_POLLING_INTERVAL_IN_MILLIS = TimeUnit.SECONDS.toMillis(5);
+	
+	private static final int MAX_THROTTLE_SAMPLE_SIZE = 20;
+	private static final int ALERTS_PAGE_SIZE = 500;
 	
 	private String apiKey;
 	private ClientApi api;
 	
-	private long analysisTimeoutInMillis;
-	private long analysisStartTime;
+	private TimeBudget timeBudget;
+	private List<ScanType> incompleteScans = new ArrayList<>();
+	
+	private AlertThreshold failFastThreshold;
+	private int checkedAlerts;
+	private List<Alert> thresholdAlerts = new ArrayList<>();
+	private Set<String> thresholdAlertKeys = new HashSet<>();
 	
 	private boolean spiderDidRun = false;
+	private PassiveScanDrain passiveScanDrain;
+	private volatile ActiveScanTargets activeScanTargets;
+	private ActiveScanThrottle activeScanThrottle;
+	private Map<String, Integer> sampledMessagesByScanId = new HashMap<>();
+	
+	private PhaseListener phaseListener = PhaseListener.NONE;
 	
 	public BaseAnalyzer(String apiKey, ClientApi api) {
 		this.api = api;
 		this.apiKey = apiKey;
 	}
 	
-	protected void init(long analysisTimeoutInMillis) {
-		this.analysisTimeoutInMillis = analysisTimeoutInMillis;
-		this.analysisStartTime = System.currentTimeMillis();
+	/**
+	 * Sets the listener that is informed of the start, progress and end of each scan and of the report retrieval.
+	 * 
+	 * @param phaseListener the listener, e.g. an {@link AnalysisTimeline}.
+	 */
+	public void setPhaseListener(PhaseListener phaseListener) {
+		this.phaseListener = phaseListener != null ? phaseListener : PhaseListener.NONE;
 	}
+	
+	/**
+	 * @return the scans run by this analyzer, in the order they are run.
+	 */
+	protected abstract List<ScanType> getScanSequence();
+	
+	/**
+	 * Returns the URLs attacked by the Active Scan. Each one is scanned recursively, with up to
+	 * {@link AnalysisInfo#getMaxConcurrentActiveScans()} scans at a time, and an empty list skips the Active Scan.
+	 * Called right before the Active Scan starts.
+	 * <p>
+	 * When concurrent scans are allowed and a single URL is returned, its top-level subtrees are scanned concurrently.
+	 * 
+	 * @param analysisInfo the information about the analysis being executed.
+	 * @return the context URLs when concurrent scans are allowed and there are many of them, otherwise the
+	 *         Active Scan starting point.
+	 */
+	protected List<String> getActiveScanTargets(AnalysisInfo analysisInfo) {
+		String[] contextUrls = ZapHelper.resolveContextUrls(analysisInfo);
+		if (analysisInfo.getMaxConcurrentActiveScans() > 1 && contextUrls.length > 1) {
+			return Arrays.asList(contextUrls);
+		}
+		return Collections.singletonList(analysisInfo.getActiveScanStartingPointUrl());
+	}
+	
+	@Override
+	public ZapReport analyze(AnalysisInfo analysisInfo) {
+		init(analysisInfo);
 
-	protected void runSpider(AnalysisInfo analysisInfo) {
-		String targetUrl = analysisInfo.getSpiderStartingPointUrl();
-		LOGGER.info("{} : {}", ScanType.SPIDER, targetUrl);
-
-		try {
-			ApiResponse resp = api.spider.scan(apiKey, targetUrl, "", "", "");
-			String scanId = ((ApiResponseElement) resp).getValue();
+		for (ScanType scanType : getScanSequence()) {
+			if (!shouldSkipScan(scanType)) {
+				runScan(scanType, analysisInfo);
+			}
+		}
 
-			waitForScanToFinish(scanId, ScanType.SPIDER);
-			spiderDidRun = true;
-		} catch (ClientApiException e) {
-			handleError("Error running Spider.", e);
+		return generateReport();
+	}
+	
+	/**
+	 * Runs the analysis without blocking the caller thread.
+	 * <p>
+	 * Every step of the analysis (starting the scans, each status check and the report generation) is run as a task
+	 * on the given scheduler, and the waits between the status checks are scheduled delays instead of sleeps.
+	 * Cancelling the returned future stops the scan that is running on ZAP.
+	 *
+	 * @param analysisInfo the information about the analysis to be executed.
+	 * @param scheduler the scheduler that runs the analysis steps.
+	 * @return the future report of the analysis.
+	 */
+	public AnalysisFuture analyzeAsync(AnalysisInfo analysisInfo, ScheduledExecutorService scheduler) {
+		return analyzeAsync(analysisInfo, scheduler, null);
+	}
+	
+	/**
+	 * Same as {@link #analyzeAsync(AnalysisInfo, ScheduledExecutorService)}, running the given preparation
+	 * (e.g. the session, context and authentication setup) on the scheduler before the first scan.
+	 *
+	 * @param analysisInfo the information about the analysis to be executed.
+	 * @param scheduler the scheduler that runs the analysis steps.
+	 * @param preparation the task run before the scans, may be {@code null}.
+	 * @return the future report of the analysis.
+	 */
+	public AnalysisFuture analyzeAsync(AnalysisInfo analysisInfo, ScheduledExecutorService scheduler, Runnable preparation) {
+		return new AsyncAnalysis(this, analysisInfo, scheduler).start(preparation);
+	}
+	
+	protected void init(AnalysisInfo analysisInfo) {
+		this.timeBudget = new TimeBudget(analysisInfo.getAnalysisTimeoutInMillis(), getScanSequence(), 
+				analysisInfo.getPhaseBudgets(), System.currentTimeMillis());
+		this.incompleteScans = new ArrayList<>();
+		this.failFastThreshold = analysisInfo.getFailFastThreshold();
+		this.checkedAlerts = 0;
+		this.thresholdAlerts = new ArrayList<>();
+		this.thresholdAlertKeys = new HashSet<>();
+	}
+	
+	/**
+	 * Checks whether there's still time to run the given scan. If the analysis timeout or the fail-fast threshold
+	 * was already reached, the scan is recorded as incomplete and should be skipped.
+	 */
+	boolean shouldSkipScan(ScanType scanType) {
+		if (isAlertThresholdReached()) {
+			LOGGER.warn("{} skipped, the fail-fast threshold was reached.", scanType);
+			incompleteScans.add(scanType);
+			return true;
 		}
+		if (timeBudget.getAnalysisRemainingTimeInMillis(System.currentTimeMillis()) > 0) {
+			return false;
+		}
+		LOGGER.warn("{} skipped, the analysis timeout was reached.", scanType);
+		incompleteScans.add(scanType);
+		return true;
+	}
+	
+	protected void runScan(ScanType scanType, AnalysisInfo analysisInfo) {
+		String scanId = startScan(scanType, analysisInfo);
+		waitForScanToFinish(scanId, scanType);
+		scanFinished(scanType);
 	}
 	
-	protected void runAjaxSpider(AnalysisInfo analysisInfo) {
+	/**
+	 * Starts the given scan on ZAP.
+	 *
+	 * @return the ID of the scan.
+	 */
+	String startScan(ScanType scanType, AnalysisInfo analysisInfo) {
 		String targetUrl = analysisInfo.getSpiderStartingPointUrl();
-		LOGGER.info("{} : {}", ScanType.AJAX_SPIDER, targetUrl);
+		if (scanType == ScanType.SPIDER || scanType == ScanType.AJAX_SPIDER) {
+			LOGGER.info("{} : {}", scanType, targetUrl);
+		}
+		phaseListener.phaseStarted(phaseOf(scanType));
+		long now = System.currentTimeMillis();
+		LOGGER.debug("{} has {} ms to finish.", scanType, timeBudget.startScan(scanType, now) - now);
 
 		try {
-			ApiResponse resp = api.ajaxSpider.scan(apiKey, targetUrl, "false");
-			String scanId = ((ApiResponseElement) resp).getValue();
-
-			waitForScanToFinish(scanId, ScanType.AJAX_SPIDER);
-		} catch (ClientApiException e) {
-			handleError("Error running Ajax Spider.", e);
+			ApiResponse resp;
+			switch (scanType) {
+			case SPIDER:
+				resp = api.spider.scan(apiKey, targetUrl, "", "", "");
+				break;
+			case AJAX_SPIDER:
+				resp = api.ajaxSpider.scan(apiKey, targetUrl, "false");
+				break;
+			case PASSIVE_SCAN:
+				// There's nothing to start, the passive scanner runs all the time: its queue is just drained
+				int recordsToScan = getRecordsToScan();
+				LOGGER.info("{} : {} records to scan", scanType, recordsToScan);
+				passiveScanDrain = new PassiveScanDrain(recordsToScan, System.currentTimeMillis());
+				return String.valueOf(recordsToScan);
+			default:
+				activeScanTargets = planActiveScan(analysisInfo);
+				// The targets may come with alerts that already reach the threshold (e.g. carried over ones)
+				if (isAlertThresholdReached() && shouldSkipScan(scanType)) {
+					activeScanTargets.clearPendingTargets();
+					return null;
+				}
+				if (activeScanTargets.isDone()) {
+					LOGGER.info("{} : nothing to scan", scanType);
+					return null;
+				}
+				activeScanThrottle = newActiveScanThrottle(analysisInfo);
+				startPendingActiveScans();
+				return activeScanTargets.getRunningScanIds().get(0);
+			}
+			return ((ApiResponseElement) resp).getValue();
+		} catch (NumberFormatException | ClientApiException e) {
+			phaseListener.phaseFinished(phaseOf(scanType), false);
+			handleError(getStartErrorMessage(scanType, e), e);
+			return null;
+		} catch (RuntimeException e) {
+			phaseListener.phaseFinished(phaseOf(scanType), false);
+			throw e;
 		}
 	}
 	
 	@SuppressWarnings("restriction")
-	protected void runActiveScan(AnalysisInfo analysisInfo) {
-		String targetUrl = analysisInfo.getActiveScanStartingPointUrl();
-		LOGGER.info("{} : {}", ScanType.ACTIVE_SCAN, targetUrl);
-
-		try {
-			ApiResponse resp = api.ascan.scan(apiKey, targetUrl, "True", "True", "", "", "");
-			String scanId = ((ApiResponseElement) resp).getValue();
-
-			waitForScanToFinish(scanId, ScanType.ACTIVE_SCAN);
-		} catch (ClientApiException e) {
+	private static String getStartErrorMessage(ScanType scanType, Exception e) {
+		switch (scanType) {
+		case SPIDER:
+			return "Error running Spider.";
+		case AJAX_SPIDER:
+			return "Error running Ajax Spider.";
+		case PASSIVE_SCAN:
+			return "Error retrieving the Passive Scan records.";
+		default:
 			// TODO: rever essa estratégia de tratamento
 			String message = "Error running Active Scan.";
 			if (e.getCause() instanceof SAXParseException || e.getCause() instanceof com.sun.org.apache.xerces.internal.impl.io.MalformedByteSequenceException
-					|| e.getMessage().contains("URL Not Found in the Scan Tree")) {
+					|| (e.getMessage() != null && e.getMessage().contains("URL Not Found in the Scan Tree"))) {
 				message += " One possible cause to this problem is that ZAP crashes when you try to run the Active Scan without any prior navigation made on the target "
 						+ "(i.e. Spidering or proxied navigation were not done before on the Active Scan target).";
 			}
-			handleError(message, e);
+			return message;
+		}
+	}
+	
+	/**
+	 * Retrieves the progress of the given scan. If the time of the scan ran out or the fail-fast threshold was
+	 * reached, the scan is stopped and recorded as incomplete, and its progress is reported as finished so the
+	 * analysis goes on.
+	 *
+	 * @return the scan progress, from 0 to 100.
+	 */
+	int checkScanProgress(ScanType scanType, String scanId) {
+		try {
+			int progress = getScanProgress(scanType, scanId);
+			phaseListener.phaseProgress(phaseOf(scanType), progress);
+			return progress;
+		} catch (RuntimeException e) {
+			phaseListener.phaseFinished(phaseOf(scanType), false);
+			throw e;
+		}
+	}
+	
+	private int getScanProgress(ScanType scanType, String scanId) {
+		int progress = 0;
+		try {
+			switch (scanType) {
+			case SPIDER:
+				progress = Integer.parseInt(((ApiResponseElement) api.spider.status(scanId)).getValue());
+				break;
+			case AJAX_SPIDER:
+				progress = getAjaxSpiderProgress();
+				break;
+			case PASSIVE_SCAN:
+				progress = passiveScanDrain.update(getRecordsToScan());
+				LOGGER.debug("{} : {} records left ({} records/s)", scanType, passiveScanDrain.getRecordsLeft(), 
+						formatRate(passiveScanDrain.getRecordsPerSecond(System.currentTimeMillis())));
+				break;
+			default:
+				progress = getActiveScanProgress();
+			}
+		} catch (NumberFormatException | ClientApiException e) {
+			handleError("Error retrieving " + scanType + " progress.", e);
+		}
+		
+		if (progress < MAX_PROGRESS && checkAlertThreshold()) {
+			LOGGER.warn("{} found {} alerts of the fail-fast threshold ({}), it will be stopped at {}%. The report will be partial.", 
+					scanType, thresholdAlerts.size(), failFastThreshold, progress);
+			incompleteScans.add(scanType);
+			stopScan(scanType, scanId);
+			return MAX_PROGRESS;
+		}
+
+		if (progress < MAX_PROGRESS && scanTimeoutReached()) {
+			// The alerts found so far are still worth a report, so the scan is just cut short
+			if (scanType == ScanType.PASSIVE_SCAN) {
+				LOGGER.warn("{} did not finish in time, {} records were not scanned. Passive alerts may be missing from the report.", 
+						scanType, passiveScanDrain.getRecordsLeft());
+			} else {
+				LOGGER.warn("{} did not finish in time, it will be stopped at {}%. The report will be partial.", scanType, progress);
+			}
+			incompleteScans.add(scanType);
+			stopScan(scanType, scanId);
+			return MAX_PROGRESS;
+		}
+		return progress;
+	}
+	
+	/**
+	 * Stops the given scan on ZAP.
+	 */
+	void stopScan(ScanType scanType, String scanId) {
+		try {
+			switch (scanType) {
+			case SPIDER:
+				api.spider.stop(apiKey, scanId);
+				break;
+			case AJAX_SPIDER:
+				api.ajaxSpider.stop(apiKey);
+				break;
+			case PASSIVE_SCAN:
+				// The passive scanner can't be stopped, the drain is simply abandoned
+				break;
+			default:
+				stopActiveScans();
+			}
+			LOGGER.info("{} STOPPED", scanType);
+		} catch (ClientApiException e) {
+			handleError("Error stopping " + scanType + ".", e);
+		} finally {
+			phaseListener.phaseFinished(phaseOf(scanType), false);
+		}
+	}
+	
+	void scanFinished(ScanType scanType) {
+		if (scanType == ScanType.SPIDER) {
+			spiderDidRun = true;
+		}
+		if (scanType == ScanType.PASSIVE_SCAN) {
+			long now = System.currentTimeMillis();
+			LOGGER.info("{} scanned {} records ({} records/s)", scanType, passiveScanDrain.getRecordsScanned(), 
+					formatRate(passiveScanDrain.getRecordsPerSecond(now)));
+			phaseListener.phaseItemsProcessed(AnalysisPhase.PASSIVE_SCAN_DRAIN, passiveScanDrain.getRecordsScanned());
+		}
+		if (incompleteScans.contains(scanType)) {
+			LOGGER.info("{} stopped", scanType);
+		} else {
+			phaseListener.phaseFinished(phaseOf(scanType), true);
+			LOGGER.info("{} complete", scanType);
+		}
+	}
+	
+	private static AnalysisPhase phaseOf(ScanType scanType) {
+		switch (scanType) {
+		case SPIDER:
+			return AnalysisPhase.SPIDER;
+		case AJAX_SPIDER:
+			return AnalysisPhase.AJAX_SPIDER;
+		case PASSIVE_SCAN:
+			return AnalysisPhase.PASSIVE_SCAN_DRAIN;
+		default:
+			return AnalysisPhase.ACTIVE_SCAN;
 		}
 	}
 	
 	protected ZapReport generateReport() {
 		LOGGER.info("Retrieving reports and Spider results...");
 		ZapReport zapReport = null;
+		phaseListener.phaseStarted(AnalysisPhase.REPORT);
+		// Alerts may have been found after the last status check
+		boolean alertThresholdReached = checkFinalAlertThreshold();
+		File htmlReport = null;
+		File xmlReport = null;
 
 		try {
-			byte[] htmlReport = api.core.htmlreport(apiKey);
-			byte[] xmlReport = api.core.xmlreport(apiKey);
+			htmlReport = downloadReport("htmlreport", ".html");
+			xmlReport = downloadReport("xmlreport", ".xml");
 			List<String> spiderResults = getAndLogSpiderResults();
 			
 			zapReport = new ZapReport(htmlReport, xmlReport, spiderResults);
+			zapReport.setTemporaryFiles(true);
+			zapReport.setIncompleteScans(incompleteScans);
+			if (alertThresholdReached) {
+				zapReport.setThresholdAlerts(thresholdAlerts);
+			}
 			LOGGER.info("Reports retrieved.");
-		} catch (ClientApiException e) {
+			if (zapReport.isPartial()) {
+				LOGGER.warn("The report is partial, these scans did not finish: {}.", incompleteScans);
+			}
+			if (alertThresholdReached) {
+				LOGGER.warn("The fail-fast threshold ({}) was reached, {} alerts matched it.", failFastThreshold, thresholdAlerts.size());
+			}
+		} catch (ClientApiException | IOException e) {
 			handleError("Error retrieving reports.", e);
+		} finally {
+			if (zapReport == null) {
+				deleteTemporaryFile(htmlReport);
+				deleteTemporaryFile(xmlReport);
+			}
+			phaseListener.phaseFinished(AnalysisPhase.REPORT, zapReport != null);
 		}
 
 		return zapReport;
 	}
 	
+	/**
+	 * Streams a ZAP report straight into a temporary file, so the report size doesn't affect heap usage.
+	 * The file is deleted once the report is saved (see {@link ZapReport#hasTemporaryFiles()}).
+	 */
+	private File downloadReport(String reportMethod, String suffix) throws IOException, ClientApiException {
+		File reportFile = File.createTempFile("zapReport", suffix);
+		boolean downloaded = false;
+		
+		Map<String, String> params = new HashMap<>();
+		if (apiKey != null) {
+			params.put("apikey", apiKey);
+		}
+		try (FileChannel channel = FileChannel.open(reportFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long size = api.callApiOther("core", "other", reportMethod, params, channel);
+			LOGGER.debug("{} downloaded to {} ({} bytes).", reportMethod, reportFile, size);
+			downloaded = true;
+		} finally {
+			if (!downloaded) {
+				deleteTemporaryFile(reportFile);
+			}
+		}
+		return reportFile;
+	}
+	
+	private static void deleteTemporaryFile(File file) {
+		if (file == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(file.toPath());
+		} catch (IOException e) {
+			LOGGER.warn("Error deleting the temporary file " + file + ".", e);
+		}
+	}
+	
 	private List<String> getAndLogSpiderResults() {
 		List<String> urls = new ArrayList<String>();
 		if (!spiderDidRun) {
@@ -143,115 +506,331 @@ public abstract class BaseAnalyzer implements Analyzer {
 	
 	private void waitForScanToFinish(String scanId, ScanType scanType) {
 		int progress = 0;
-		final int maxProgress = 100;
+		PollingStrategy pollingStrategy = newPollingStrategy(scanType);
 
-		while (progress < maxProgress) {
-			switch (scanType) {
-			case SPIDER:
-				progress = waitSpider(scanId, progress);
-				break;
-			case AJAX_SPIDER:
-				progress = waitAjaxSpider(scanId, progress);
-				break;
-			case ACTIVE_SCAN:
-				progress = waitActiveScan(scanId, progress);
-			}
+		while (progress < MAX_PROGRESS) {
+			long now = System.currentTimeMillis();
+			sleep(pollingStrategy.nextDelayInMillis(progress, now, getRemainingTimeInMillis(now)));
+			progress = checkScanProgress(scanType, scanId);
 			LOGGER.info("{} progress : {}%", scanType, progress);
 		}
-		LOGGER.info("{} complete", scanType);
 	}
-
-	private int waitSpider(String scanId, int progress) {
-		sleep(SPIDER_STATUS_POLLING_INTERVAL_IN_SECONDS);
-		int newProgress = progress;
+	
+	/**
+	 * Creates the strategy that decides when the status of a scan is checked.
+	 * <p>
+	 * By default an {@link AdaptivePollingStrategy} is used, with a quick first check and intervals
+	 * bounded according to the scan type.
+	 *
+	 * @param scanType the type of the scan that will be polled.
+	 * @return a new {@link PollingStrategy} instance.
+	 */
+	protected PollingStrategy newPollingStrategy(ScanType scanType) {
+		switch (scanType) {
+		case SPIDER:
+			return new AdaptivePollingStrategy(INITIAL_STATUS_POLLING_DELAY_IN_MILLIS,
+					SPIDER_MIN_STATUS_POLLING_INTERVAL_IN_MILLIS, SPIDER_MAX_STATUS_POLLING_INTERVAL_IN_MILLIS);
+		case AJAX_SPIDER:
+			return new AdaptivePollingStrategy(INITIAL_STATUS_POLLING_DELAY_IN_MILLIS,
+					AJAX_SPIDER_MIN_STATUS_POLLING_INTERVAL_IN_MILLIS, AJAX_SPIDER_MAX_STATUS_POLLING_INTERVAL_IN_MILLIS);
+		case PASSIVE_SCAN:
+			return new AdaptivePollingStrategy(INITIAL_STATUS_POLLING_DELAY_IN_MILLIS,
+					PASSIVE_SCAN_MIN_STATUS_POLLING_INTERVAL_IN_MILLIS, PASSIVE_SCAN_MAX_STATUS_POLLING_INTERVAL_IN_MILLIS);
+		default:
+			return new AdaptivePollingStrategy(INITIAL_STATUS_POLLING_DELAY_IN_MILLIS,
+					ACTIVE_SCAN_MIN_STATUS_POLLING_INTERVAL_IN_MILLIS, ACTIVE_SCAN_MAX_STATUS_POLLING_INTERVAL_IN_MILLIS);
+		}
+	}
+	
+	private void handleError(String message, Throwable cause) {
+		LOGGER.error(message, cause);
+		throw new ZapClientException(message, cause);
+	}
+	
+	/**
+	 * Checks the alerts found by ZAP since the previous check against the fail-fast threshold, paging through
+	 * {@code core.alerts} from where the previous check stopped.
+	 *
+	 * @return {@code true} if the threshold was reached.
+	 */
+	private boolean checkAlertThreshold() {
 		try {
-			newProgress = Integer.parseInt(((ApiResponseElement) api.spider.status(scanId)).getValue());
+			return findThresholdAlerts();
 		} catch (NumberFormatException | ClientApiException e) {
-			handleError("Error retrieving Spider progress.", e);
+			handleError("Error checking the alerts against the fail-fast threshold.", e);
+			return false;
 		}
-
-		if (scanTimeoutReached(scanId)) {
-			try {
-				api.spider.stop(apiKey, scanId);
-				LOGGER.info("Spider STOPPED");
-			} catch (ClientApiException e) {
-				handleError("Error stopping Active Scan.", e);
+	}
+	
+	/**
+	 * Same as {@link #checkAlertThreshold()}, but a failure doesn't prevent the report from being generated:
+	 * the threshold is then evaluated with the alerts found by the previous checks.
+	 */
+	private boolean checkFinalAlertThreshold() {
+		try {
+			return findThresholdAlerts();
+		} catch (NumberFormatException | ClientApiException e) {
+			LOGGER.warn("Error checking the last alerts against the fail-fast threshold, only the alerts found by the status checks are considered.", e);
+			return isAlertThresholdReached();
+		}
+	}
+	
+	private boolean findThresholdAlerts() throws ClientApiException {
+		if (failFastThreshold == null || isAlertThresholdReached()) {
+			return isAlertThresholdReached();
+		}
+		int numberOfAlerts = Integer.parseInt(((ApiResponseElement) api.core.numberOfAlerts(null)).getValue());
+		while (!isAlertThresholdReached() && checkedAlerts < numberOfAlerts) {
+			int count = Math.min(ALERTS_PAGE_SIZE, numberOfAlerts - checkedAlerts);
+			for (Alert alert : api.getAlerts(null, checkedAlerts, count)) {
+				addThresholdAlert(alert);
 			}
-
-			String message = "Analysis did not finish before the timeout (" + analysisTimeoutInMillis + " ms).";
-			LOGGER.error(message);
-			throw new ZapAnalysisTimeoutException(message);
+			checkedAlerts += count;
 		}
-		return newProgress;
+		return isAlertThresholdReached();
 	}
 	
-	private int waitAjaxSpider(String scanId, int progress) {
-		sleep(AJAX_SPIDER_STATUS_POLLING_INTERVAL_IN_SECONDS);
-		int newProgress = progress;
-		try {
-			newProgress = getAjaxSpiderProgress();
-		} catch (ClientApiException e) {
-			handleError("Error retrieving Ajax Spider progress.", e);
+	/**
+	 * Counts alerts that ZAP did not find in this analysis, like the ones carried over from a previous analysis,
+	 * towards the fail-fast threshold. An alert that ZAP raises in this analysis too is only counted once.
+	 *
+	 * @param alerts the alerts to be counted.
+	 */
+	protected void addThresholdAlerts(List<Alert> alerts) {
+		if (failFastThreshold == null) {
+			return;
 		}
-
-		if (scanTimeoutReached(scanId)) {
-			try {
-				api.ajaxSpider.stop(scanId);
-				LOGGER.info("AJAX Spider STOPPED");
-			} catch (ClientApiException e) {
-				handleError("Error stopping Active Scan.", e);
+		for (Alert alert : alerts) {
+			addThresholdAlert(alert);
+		}
+	}
+	
+	private void addThresholdAlert(Alert alert) {
+		if (failFastThreshold.matches(alert) && thresholdAlertKeys.add(getAlertKey(alert))) {
+			thresholdAlerts.add(alert);
+		}
+	}
+	
+	/**
+	 * @return what identifies the finding of an alert: its name, URL, parameter and risk. The other attributes,
+	 *         like the evidence, may differ between the analyses that raise it.
+	 */
+	static String getAlertKey(Alert alert) {
+		return alert.getAlert() + '\n' + alert.getUrl() + '\n' + (alert.getParam() != null ? alert.getParam() : "") + '\n' + alert.getRisk();
+	}
+	
+	private boolean isAlertThresholdReached() {
+		return failFastThreshold != null && thresholdAlerts.size() >= failFastThreshold.getCount();
+	}
+	
+	private boolean scanTimeoutReached() {
+		return getRemainingTimeInMillis(System.currentTimeMillis()) <= 0;
+	}
+	
+	/**
+	 * @return the time left for the running scan, according to its budget.
+	 */
+	long getRemainingTimeInMillis(long now) {
+		return timeBudget.getScanRemainingTimeInMillis(now);
+	}
+	
+	private int getRecordsToScan() throws ClientApiException {
+		return Integer.parseInt(((ApiResponseElement) api.pscan.recordsToScan()).getValue());
+	}
+	
+	private static String formatRate(double recordsPerSecond) {
+		return String.format(Locale.ROOT, "%.1f", recordsPerSecond);
+	}
+	
+	private ActiveScanTargets planActiveScan(AnalysisInfo analysisInfo) throws ClientApiException {
+		int maxConcurrentScans = analysisInfo.getMaxConcurrentActiveScans();
+		List<String> urls = getActiveScanTargets(analysisInfo);
+		List<ActiveScanTargets.Target> targets = ActiveScanTargets.recursive(urls);
+		if (maxConcurrentScans > 1 && urls.size() == 1) {
+			targets = ActiveScanTargets.splitIntoTopLevelSubtrees(urls.get(0), getKnownUrls());
+		}
+		if (targets.size() > 1) {
+			LOGGER.info("{} : {} targets, up to {} scans at a time", ScanType.ACTIVE_SCAN, targets.size(), maxConcurrentScans);
+		}
+		return new ActiveScanTargets(targets, maxConcurrentScans);
+	}
+	
+	private List<String> getKnownUrls() throws ClientApiException {
+		List<String> urls = new ArrayList<>();
+		for (ApiResponse response : ((ApiResponseList) api.core.urls()).getItems()) {
+			urls.add(((ApiResponseElement) response).getValue());
+		}
+		return urls;
+	}
+	
+	/**
+	 * Starts scans for the pending Active Scan targets, while there are free scan slots.
+	 */
+	private void startPendingActiveScans() throws ClientApiException {
+		ActiveScanTargets.Target target;
+		while ((target = activeScanTargets.nextToStart()) != null) {
+			LOGGER.info("{} : {}", ScanType.ACTIVE_SCAN, target);
+			String recurse = target.isRecursive() ? "True" : "False";
+			ApiResponse resp = api.ascan.scan(apiKey, target.getUrl(), recurse, "True", "", "", "");
+			activeScanTargets.started(((ApiResponseElement) resp).getValue());
+		}
+	}
+	
+	/**
+	 * Checks the progress of the running Active Scans, starting the pending targets as the scans finish.
+	 * A single scan is checked with {@code ascan.status}, while many of them are checked together with {@code ascan.scans}.
+	 */
+	private int getActiveScanProgress() throws ClientApiException {
+		List<String> runningScanIds = activeScanTargets.getRunningScanIds();
+		if (runningScanIds.size() == 1) {
+			String scanId = runningScanIds.get(0);
+			activeScanTargets.update(scanId, Integer.parseInt(((ApiResponseElement) api.ascan.status(scanId)).getValue()));
+		} else if (!runningScanIds.isEmpty()) {
+			Map<String, Integer> progressByScanId = getActiveScansProgress();
+			for (String scanId : runningScanIds) {
+				// Scans that are gone from ZAP's list won't progress anymore
+				Integer scanProgress = progressByScanId.get(scanId);
+				activeScanTargets.update(scanId, scanProgress != null ? scanProgress : MAX_PROGRESS);
 			}
-
-			String message = "Analysis did not finish before the timeout (" + analysisTimeoutInMillis + " ms).";
-			LOGGER.error(message);
-			throw new ZapAnalysisTimeoutException(message);
 		}
-		return newProgress;
+		throttleActiveScans(runningScanIds);
+		startPendingActiveScans();
+		return activeScanTargets.getOverallProgress();
 	}
-
-	private int waitActiveScan(String scanId, int progress) {
-		sleep(ACTIVE_SCAN_STATUS_POLLING_INTERVAL_IN_SECONDS);
-		int newProgress = progress;
-		try {
-			newProgress = Integer.parseInt(((ApiResponseElement) api.ascan.status(scanId)).getValue());
-		} catch (NumberFormatException | ClientApiException e) {
-			handleError("Error retrieving Active Scan progress.", e);
+	
+	private ActiveScanThrottle newActiveScanThrottle(AnalysisInfo analysisInfo) throws ClientApiException {
+		sampledMessagesByScanId = new HashMap<>();
+		if (analysisInfo.getActiveScanLatencySloInMillis() <= 0) {
+			return null;
 		}
-
-		if (scanTimeoutReached(scanId)) {
-			try {
-				api.ascan.stop(apiKey, scanId);
-				LOGGER.info("Active Scan STOPPED");
-			} catch (ClientApiException e) {
-				handleError("Error stopping Active Scan.", e);
+		if (activeScanTargets.size() <= 1) {
+			// ZAP only applies the new options to the scans started afterwards
+			LOGGER.warn("{} : a single scan will run, the latency SLO of {} ms can't be applied to it", ScanType.ACTIVE_SCAN, 
+					analysisInfo.getActiveScanLatencySloInMillis());
+			return null;
+		}
+		int threadsPerHost = Integer.parseInt(((ApiResponseElement) api.ascan.optionThreadPerHost()).getValue());
+		int delayInMillis = Integer.parseInt(((ApiResponseElement) api.ascan.optionDelayInMs()).getValue());
+		LOGGER.info("{} : throttled to a latency of {} ms, starting with {} threads per host and a delay of {} ms", ScanType.ACTIVE_SCAN,
+				analysisInfo.getActiveScanLatencySloInMillis(), threadsPerHost, delayInMillis);
+		return new ActiveScanThrottle(analysisInfo.getActiveScanLatencySloInMillis(), threadsPerHost, delayInMillis);
+	}
+	
+	/**
+	 * Samples the response times of the latest messages sent while the given Active Scans run and, if the throttle
+	 * decides so, changes ZAP's threads per host and delay. ZAP uses the new values in the scans started afterwards,
+	 * which is why the throttling needs more than one target. The messages are the ones each scan lists in
+	 * {@code ascan.messagesIds}, since the scanner's messages are not part of the session's History, and each check
+	 * only fetches the ones it didn't read before, at most {@value #MAX_THROTTLE_SAMPLE_SIZE} of them.
+	 * <p>
+	 * The throttling is a best effort: a failure to sample or adjust is logged and the scan goes on.
+	 */
+	private void throttleActiveScans(List<String> scanIds) {
+		if (activeScanThrottle == null || scanIds.isEmpty()) {
+			return;
+		}
+		try {
+			List<String> newMessageIds = new ArrayList<>();
+			for (String scanId : scanIds) {
+				List<ApiResponse> messageIds = ((ApiResponseList) api.ascan.messagesIds(scanId)).getItems();
+				Integer sampledMessages = sampledMessagesByScanId.get(scanId);
+				for (int i = sampledMessages != null ? sampledMessages : 0; i < messageIds.size(); i++) {
+					newMessageIds.add(((ApiResponseElement) messageIds.get(i)).getValue());
+				}
+				sampledMessagesByScanId.put(scanId, messageIds.size());
 			}
 			
-			String message = "Analysis did not finish before the timeout (" + analysisTimeoutInMillis + " ms).";
-			LOGGER.error(message);
-			throw new ZapAnalysisTimeoutException(message);
+			// Only the latest of the new messages reflect the current load on the target
+			List<Long> responseTimes = new ArrayList<>();
+			int errors = 0;
+			for (String messageId : newMessageIds.subList(Math.max(0, newMessageIds.size() - MAX_THROTTLE_SAMPLE_SIZE), newMessageIds.size())) {
+				ApiResponseSet message = (ApiResponseSet) api.core.message(messageId);
+				responseTimes.add(Long.parseLong(message.getAttribute("rtt")));
+				if (isErrorResponse(message.getAttribute("responseHeader"))) {
+					errors++;
+				}
+			}
+			
+			if (activeScanThrottle.update(responseTimes, errors)) {
+				LOGGER.info("{} : {} errors in {} responses, throttled to {} threads per host and a delay of {} ms", ScanType.ACTIVE_SCAN, 
+						errors, responseTimes.size(), activeScanThrottle.getThreadsPerHost(), activeScanThrottle.getDelayInMillis());
+				setActiveScanThrottleOptions(activeScanThrottle.getThreadsPerHost(), activeScanThrottle.getDelayInMillis());
+			}
+		} catch (ClientApiException | ZapClientException | NumberFormatException e) {
+			LOGGER.warn("Error throttling the Active Scan, the current settings will be kept.", e);
 		}
-		return newProgress;
 	}
-
-	private void handleError(String message, Throwable cause) {
-		LOGGER.error(message, cause);
-		throw new ZapClientException(message, cause);
+	
+	private static boolean isErrorResponse(String responseHeader) {
+		// e.g. HTTP/1.1 503 Service Unavailable; an empty header means the request failed (e.g. a timeout)
+		String[] statusLine = responseHeader != null ? responseHeader.trim().split("\\s+", 3) : new String[0];
+		if (statusLine.length < 2) {
+			return true;
+		}
+		int statusCode = Integer.parseInt(statusLine[1]);
+		return statusCode >= 500 || statusCode == 429;
 	}
 	
-	private boolean scanTimeoutReached(String scanId) {
-		long elapsedTimeInMillis = System.currentTimeMillis() - analysisStartTime;
-		return elapsedTimeInMillis >= analysisTimeoutInMillis;
+	private void setActiveScanThrottleOptions(final int threadsPerHost, final int delayInMillis) {
+		new ApiCallBatch()
+				.add("Set the Active Scan threads per host to " + threadsPerHost + ".", new ApiCallBatch.ApiCall() {
+					@Override
+					public ApiResponse call() throws ClientApiException {
+						return api.ascan.setOptionThreadPerHost(apiKey, threadsPerHost);
+					}
+				})
+				.add("Set the Active Scan delay to " + delayInMillis + " ms.", new ApiCallBatch.ApiCall() {
+					@Override
+					public ApiResponse call() throws ClientApiException {
+						return api.ascan.setOptionDelayInMs(apiKey, delayInMillis);
+					}
+				})
+				.execute();
 	}
-
+	
+	private Map<String, Integer> getActiveScansProgress() throws ClientApiException {
+		Map<String, Integer> progressByScanId = new HashMap<>();
+		for (ApiResponse response : ((ApiResponseList) api.ascan.scans()).getItems()) {
+			ApiResponseSet scan = (ApiResponseSet) response;
+			progressByScanId.put(scan.getAttribute("id"), Integer.parseInt(scan.getAttribute("progress")));
+		}
+		return progressByScanId;
+	}
+	
+	/**
+	 * Stops all the running Active Scans at once, discarding the pending targets.
+	 */
+	private void stopActiveScans() throws ClientApiException {
+		ActiveScanTargets targets = activeScanTargets;
+		if (targets == null) {
+			return;
+		}
+		targets.clearPendingTargets();
+		List<String> runningScanIds = targets.getRunningScanIds();
+		if (runningScanIds.size() == 1) {
+			api.ascan.stop(apiKey, runningScanIds.get(0));
+			return;
+		}
+		ApiCallBatch batch = new ApiCallBatch(runningScanIds.size());
+		for (final String scanId : runningScanIds) {
+			batch.add("Stop Active Scan " + scanId + ".", new ApiCallBatch.ApiCall() {
+				@Override
+				public ApiResponse call() throws ClientApiException {
+					return api.ascan.stop(apiKey, scanId);
+				}
+			});
+		}
+		batch.execute();
+	}
+	
 	private int getAjaxSpiderProgress() throws ClientApiException {
 		String progress = ((ApiResponseElement) api.ajaxSpider.status()).getValue();
-		final int maxProgress = 100;
-		return progress.equalsIgnoreCase("running") ? 0 : maxProgress;
+		return progress.equalsIgnoreCase("running") ? 0 : MAX_PROGRESS;
 	}
-
-	private static void sleep(long seconds) {
+	
+	private static void sleep(long millis) {
 		try {
-			Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+			Thread.sleep(millis);
 		} catch(InterruptedException e) {
 			Thread.currentThread().interrupt();
 			LOGGER.error(e.getMessage(), e);
@@ -0,0 +1,228 @@
+package br.com.softplan.security.zap.api.analysis;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.softplan.security.zap.api.exception.ZapClientException;
+import br.com.softplan.security.zap.api.model.AnalysisInfo;
+import br.com.softplan.security.zap.api.model.ScanType;
+import br.com.softplan.security.zap.api.report.CarriedOverAlertsReportBuilder;
+import br.com.softplan.security.zap.api.report.ZapReport;
+import br.com.softplan.security.zap.api.report.ZapReportMerger;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ApiResponse;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ApiResponseElement;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ApiResponseList;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ApiResponseSet;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ClientApi;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ClientApiException;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ParallelPageRetriever;
+
+/**
+ * Analyzer that only attacks what changed since the previous analysis.
+ * <p>
+ * The Spider runs as usual, then the response of each visited URL is fingerprinted and compared to the
+ * {@link IncrementalBaseline} saved by the previous analysis ({@link AnalysisInfo#getBaselineFile()}). The Active Scan
+ * only attacks the subtrees of the new or changed URLs, and the alerts of the unchanged URLs that ZAP doesn't raise
+ * again are carried over from the baseline ({@link ZapReport#getCarriedOverAlerts()}): they are added to the HTML and
+ * XML reports and counted towards the fail-fast threshold. Without a baseline, the whole application is scanned.
+ * <p>
+ * The baseline is replaced after the report is generated. If the analysis ran out of time, the changed URLs
+ * keep their previous fingerprints, so they are scanned again by the next analysis.
+ * 
+ * @author pdsec
+ */
+public class IncrementalAnalyzer extends BaseAnalyzer {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(IncrementalAnalyzer.class);
+	
+	private final ClientApi api;
+	
+	private File baselineFile;
+	private IncrementalBaseline previousBaseline;
+	private Map<String, String> currentFingerprints;
+	private List<String> changedUrls;
+	private List<Alert> carriedOverAlerts;
+	
+	public IncrementalAnalyzer(String apiKey, ClientApi api) {
+		super(apiKey, api);
+		this.api = api;
+	}
+	
+	@Override
+	protected List<ScanType> getScanSequence() {
+		return Arrays.asList(ScanType.SPIDER, ScanType.ACTIVE_SCAN, ScanType.PASSIVE_SCAN);
+	}
+	
+	@Override
+	protected void init(AnalysisInfo analysisInfo) {
+		super.init(analysisInfo);
+		this.baselineFile = analysisInfo.getBaselineFile();
+		this.previousBaseline = null;
+		this.currentFingerprints = null;
+		this.changedUrls = Collections.emptyList();
+		this.carriedOverAlerts = Collections.emptyList();
+	}
+	
+	@Override
+	protected List<String> getActiveScanTargets(AnalysisInfo analysisInfo) {
+		currentFingerprints = fetchFingerprints();
+		previousBaseline = IncrementalBaseline.load(baselineFile);
+		if (previousBaseline == null) {
+			LOGGER.info("No baseline found at {}, the whole application will be scanned.", baselineFile);
+			changedUrls = new ArrayList<>(currentFingerprints.keySet());
+			return super.getActiveScanTargets(analysisInfo);
+		}
+		
+		changedUrls = previousBaseline.findChangedUrls(currentFingerprints);
+		Set<String> unchangedUrls = new LinkedHashSet<>(currentFingerprints.keySet());
+		unchangedUrls.removeAll(changedUrls);
+		carriedOverAlerts = previousBaseline.getAlertsOf(unchangedUrls);
+		addThresholdAlerts(carriedOverAlerts);
+		
+		List<String> targets = IncrementalBaseline.toSubtreeRoots(changedUrls);
+		LOGGER.info("{} of {} URLs are new or changed since the baseline, {} subtrees will be scanned and {} alerts carried over.", 
+				changedUrls.size(), currentFingerprints.size(), targets.size(), carriedOverAlerts.size());
+		return targets;
+	}
+	
+	@Override
+	protected ZapReport generateReport() {
+		ZapReport zapReport = super.generateReport();
+		if (currentFingerprints == null) {
+			LOGGER.warn("The changes were not checked, the baseline at {} was kept.", baselineFile);
+			return zapReport;
+		}
+		List<Alert> alerts = fetchAlerts();
+		carriedOverAlerts = withoutAlertsRaisedAgain(carriedOverAlerts, alerts);
+		zapReport.setCarriedOverAlerts(carriedOverAlerts);
+		ZapReport renderedReport = renderCarriedOverAlerts(zapReport);
+		
+		Map<String, String> fingerprints = new LinkedHashMap<>(currentFingerprints);
+		if (zapReport.isPartial()) {
+			// The changed URLs may not have been scanned, so they must still look changed next time
+			for (String url : changedUrls) {
+				String previousFingerprint = previousBaseline != null ? previousBaseline.getFingerprints().get(url) : null;
+				if (previousFingerprint != null) {
+					fingerprints.put(url, previousFingerprint);
+				} else {
+					fingerprints.remove(url);
+				}
+			}
+		}
+		alerts.addAll(carriedOverAlerts);
+		new IncrementalBaseline(fingerprints, alerts).save(baselineFile);
+		LOGGER.info("Baseline saved to {}.", baselineFile);
+		return renderedReport;
+	}
+	
+	/**
+	 * Drops the carried over alerts that ZAP raised again in this analysis, like the passive alerts of the
+	 * unchanged URLs, so they are not reported twice.
+	 */
+	private static List<Alert> withoutAlertsRaisedAgain(List<Alert> carriedOverAlerts, List<Alert> alerts) {
+		Set<String> alertKeys = new HashSet<>();
+		for (Alert alert : alerts) {
+			alertKeys.add(getAlertKey(alert));
+		}
+		List<Alert> alertsNotRaisedAgain = new ArrayList<>();
+		for (Alert alert : carriedOverAlerts) {
+			if (!alertKeys.contains(getAlertKey(alert))) {
+				alertsNotRaisedAgain.add(alert);
+			}
+		}
+		return alertsNotRaisedAgain;
+	}
+	
+	/**
+	 * Merges the carried over alerts into the HTML and XML reports, which only have the alerts found by ZAP.
+	 */
+	private ZapReport renderCarriedOverAlerts(ZapReport zapReport) {
+		if (carriedOverAlerts.isEmpty()) {
+			return zapReport;
+		}
+		ZapReport carriedOverReport = new ZapReport(
+				CarriedOverAlertsReportBuilder.buildHtmlReport(carriedOverAlerts).getBytes(StandardCharsets.UTF_8), 
+				CarriedOverAlertsReportBuilder.buildXmlReport(carriedOverAlerts).getBytes(StandardCharsets.UTF_8), 
+				Collections.<String>emptyList());
+		try {
+			return ZapReportMerger.merge(Arrays.asList(zapReport, carriedOverReport));
+		} finally {
+			zapReport.deleteTemporaryFiles();
+		}
+	}
+	
+	/**
+	 * Fingerprints the latest response of each URL visited by the Spider. The messages are fingerprinted
+	 * one page at a time, so their bodies are dropped as soon as they are hashed.
+	 * <p>
+	 * The URLs without a response in the session's History (e.g. the ones the Spider only found in a sitemap)
+	 * can't be compared to the baseline and are left out, instead of being scanned again on every analysis.
+	 */
+	private Map<String, String> fetchFingerprints() {
+		try (ParallelPageRetriever retriever = new ParallelPageRetriever(api)) {
+			final Map<String, String> fingerprints = new LinkedHashMap<>();
+			for (ApiResponse response : ((ApiResponseList) api.spider.results("")).getItems()) {
+				fingerprints.put(((ApiResponseElement) response).getValue(), "");
+			}
+			retriever.forEachMessagesPage(null, new ParallelPageRetriever.PageHandler<ApiResponse>() {
+				@Override
+				public void handle(List<ApiResponse> page) {
+					for (ApiResponse response : page) {
+						ApiResponseSet message = (ApiResponseSet) response;
+						String url = getRequestUrl(message.getAttribute("requestHeader"));
+						if (fingerprints.containsKey(url)) {
+							fingerprints.put(url, IncrementalBaseline.fingerprint(message.getAttribute("responseHeader"), message.getAttribute("responseBody")));
+						}
+					}
+				}
+			});
+			
+			List<String> urlsWithoutResponse = new ArrayList<>();
+			for (Map.Entry<String, String> entry : fingerprints.entrySet()) {
+				if (entry.getValue().isEmpty()) {
+					urlsWithoutResponse.add(entry.getKey());
+				}
+			}
+			if (!urlsWithoutResponse.isEmpty()) {
+				LOGGER.warn("{} URLs visited by the Spider have no response to fingerprint and won't be checked for changes: {}", 
+						urlsWithoutResponse.size(), urlsWithoutResponse);
+				fingerprints.keySet().removeAll(urlsWithoutResponse);
+			}
+			return fingerprints;
+		} catch (ClientApiException e) {
+			String message = "Error retrieving the responses of the URLs visited by the Spider.";
+			LOGGER.error(message, e);
+			throw new ZapClientException(message, e);
+		}
+	}
+	
+	private static String getRequestUrl(String requestHeader) {
+		// e.g. GET http://myapp.com/page HTTP/1.1
+		String[] requestLine = requestHeader != null ? requestHeader.split("\\s+", 3) : new String[0];
+		return requestLine.length > 1 ? requestLine[1] : null;
+	}
+	
+	private List<Alert> fetchAlerts() {
+		try (ParallelPageRetriever retriever = new ParallelPageRetriever(api)) {
+			return retriever.getAllAlerts(null);
+		} catch (ClientApiException e) {
+			String message = "Error retrieving the alerts for the baseline.";
+			LOGGER.error(message, e);
+			throw new ZapClientException(message, e);
+		}
+	}
+
+}
@@ -0,0 +1,267 @@
+package br.com.softplan.security.zap.api.analysis;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import br.com.softplan.security.zap.api.exception.ZapClientException;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert;
+
+/**
+ * The state of the application in a previous analysis, used by the {@link IncrementalAnalyzer} to find out what changed.
+ * <p>
+ * It holds a fingerprint of the response of each URL visited by the Spider and a summary of the alerts found on them
+ * (name, URL, risk, confidence and parameter), and is stored as a small XML file:
+ * <pre>
+ * &lt;zapBaseline&gt;
+ *   &lt;url fingerprint="..."&gt;http://myapp.com/page&lt;/url&gt;
+ *   &lt;alert name="..." url="http://myapp.com/page" risk="High" confidence="Medium" param="..."/&gt;
+ * &lt;/zapBaseline&gt;
+ * </pre>
+ * 
+ * @author pdsec
+ */
+class IncrementalBaseline {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(IncrementalBaseline.class);
+	
+	private static final String ROOT_ELEMENT = "zapBaseline";
+	private static final String URL_ELEMENT = "url";
+	private static final String ALERT_ELEMENT = "alert";
+	
+	private final Map<String, String> fingerprints;
+	private final List<Alert> alerts;
+	
+	/**
+	 * @param fingerprints the response fingerprint of each URL.
+	 * @param alerts the alerts found on the URLs, which are summarized and deduplicated.
+	 */
+	IncrementalBaseline(Map<String, String> fingerprints, List<Alert> alerts) {
+		this.fingerprints = new LinkedHashMap<>(fingerprints);
+		Set<Alert> summaries = new LinkedHashSet<>();
+		for (Alert alert : alerts) {
+			summaries.add(summarize(alert));
+		}
+		this.alerts = new ArrayList<>(summaries);
+	}
+	
+	private static Alert summarize(Alert alert) {
+		Alert summary = new Alert(alert.getAlert(), alert.getUrl(), alert.getRisk(), alert.getConfidence());
+		summary.setParam(alert.getParam() != null ? alert.getParam() : "");
+		return summary;
+	}
+	
+	/**
+	 * Fingerprints a response by its status line and body. The other headers are ignored, as they usually
+	 * change on every request (e.g. {@code Date} and cookies).
+	 * 
+	 * @param responseHeader the response header, starting with the status line.
+	 * @param responseBody the response body.
+	 * @return the SHA-256 of the response, in hexadecimal.
+	 */
+	static String fingerprint(String responseHeader, String responseBody) {
+		String header = responseHeader != null ? responseHeader : "";
+		int statusLineEnd = header.indexOf('\n');
+		String statusLine = (statusLineEnd >= 0 ? header.substring(0, statusLineEnd) : header).trim();
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(statusLine.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) '\n');
+			digest.update((responseBody != null ? responseBody : "").getBytes(StandardCharsets.UTF_8));
+			return String.format("%064x", new BigInteger(1, digest.digest()));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Reduces the given URLs to the roots of their subtrees: URLs below another URL of the list are dropped,
+	 * as a recursive scan of the parent already covers them.
+	 * 
+	 * @param urls the URLs.
+	 * @return the sorted roots of the subtrees.
+	 */
+	static List<String> toSubtreeRoots(Collection<String> urls) {
+		List<String> roots = new ArrayList<>();
+		for (String url : new TreeSet<>(urls)) {
+			if (!isBelowAny(url, roots)) {
+				roots.add(url);
+			}
+		}
+		return roots;
+	}
+	
+	private static boolean isBelowAny(String url, List<String> parents) {
+		for (String parent : parents) {
+			if (isBelow(url, parent)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static boolean isBelow(String url, String parent) {
+		if (!url.startsWith(parent) || url.length() == parent.length()) {
+			return false;
+		}
+		char next = url.charAt(parent.length());
+		return parent.endsWith("/") || next == '/' || next == '?';
+	}
+	
+	/**
+	 * @param currentFingerprints the response fingerprint of each URL in the current analysis.
+	 * @return the URLs that are not in the baseline or whose response changed.
+	 */
+	List<String> findChangedUrls(Map<String, String> currentFingerprints) {
+		List<String> changedUrls = new ArrayList<>();
+		for (Map.Entry<String, String> entry : currentFingerprints.entrySet()) {
+			if (!entry.getValue().equals(fingerprints.get(entry.getKey()))) {
+				changedUrls.add(entry.getKey());
+			}
+		}
+		return changedUrls;
+	}
+	
+	/**
+	 * @param urls the URLs.
+	 * @return the alerts of the baseline found on the given URLs.
+	 */
+	List<Alert> getAlertsOf(Collection<String> urls) {
+		Set<String> urlSet = new TreeSet<>(urls);
+		List<Alert> urlAlerts = new ArrayList<>();
+		for (Alert alert : alerts) {
+			if (urlSet.contains(alert.getUrl())) {
+				urlAlerts.add(alert);
+			}
+		}
+		return urlAlerts;
+	}
+	
+	Map<String, String> getFingerprints() {
+		return Collections.unmodifiableMap(fingerprints);
+	}
+	
+	List<Alert> getAlerts() {
+		return Collections.unmodifiableList(alerts);
+	}
+	
+	/**
+	 * Loads a baseline saved by {@link #save(File)}.
+	 * 
+	 * @param file the baseline file.
+	 * @return the baseline, or {@code null} if the file doesn't exist.
+	 * @throws ZapClientException if the file can't be read.
+	 */
+	static IncrementalBaseline load(File file) {
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			Document document = newDocumentBuilderFactory().newDocumentBuilder().parse(file);
+			
+			Map<String, String> fingerprints = new LinkedHashMap<>();
+			NodeList urlElements = document.getElementsByTagName(URL_ELEMENT);
+			for (int i = 0; i < urlElements.getLength(); i++) {
+				Element urlElement = (Element) urlElements.item(i);
+				fingerprints.put(urlElement.getTextContent(), urlElement.getAttribute("fingerprint"));
+			}
+			
+			List<Alert> alerts = new ArrayList<>();
+			NodeList alertElements = document.getElementsByTagName(ALERT_ELEMENT);
+			for (int i = 0; i < alertElements.getLength(); i++) {
+				Element alertElement = (Element) alertElements.item(i);
+				alerts.add(new Alert(alertElement.getAttribute("name"), alertElement.getAttribute("url"), 
+						emptyToNull(alertElement.getAttribute("risk")), emptyToNull(alertElement.getAttribute("confidence")), 
+						alertElement.getAttribute("param"), null));
+			}
+			return new IncrementalBaseline(fingerprints, alerts);
+		} catch (Exception e) {
+			String message = "Error reading the baseline file " + file + ".";
+			LOGGER.error(message, e);
+			throw new ZapClientException(message, e);
+		}
+	}
+	
+	/**
+	 * Saves the baseline, replacing the given file.
+	 * 
+	 * @param file the baseline file.
+	 * @throws ZapClientException if the file can't be written.
+	 */
+	void save(File file) {
+		try {
+			Document document = newDocumentBuilderFactory().newDocumentBuilder().newDocument();
+			Element root = document.createElement(ROOT_ELEMENT);
+			document.appendChild(root);
+			for (Map.Entry<String, String> entry : fingerprints.entrySet()) {
+				Element urlElement = document.createElement(URL_ELEMENT);
+				urlElement.setAttribute("fingerprint", entry.getValue());
+				urlElement.setTextContent(entry.getKey());
+				root.appendChild(urlElement);
+			}
+			for (Alert alert : alerts) {
+				Element alertElement = document.createElement(ALERT_ELEMENT);
+				alertElement.setAttribute("name", alert.getAlert());
+				alertElement.setAttribute("url", alert.getUrl());
+				alertElement.setAttribute("risk", alert.getRisk() != null ? alert.getRisk().name() : "");
+				alertElement.setAttribute("confidence", alert.getConfidence() != null ? alert.getConfidence().name() : "");
+				alertElement.setAttribute("param", alert.getParam() != null ? alert.getParam() : "");
+				root.appendChild(alertElement);
+			}
+			
+			File parent = file.getAbsoluteFile().getParentFile();
+			if (parent != null) {
+				parent.mkdirs();
+			}
+			Transformer transformer = TransformerFactory.newInstance().newTransformer();
+			transformer.setOutputProperty(OutputKeys.ENCODING, StandardCharsets.UTF_8.name());
+			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+			try (OutputStream out = Files.newOutputStream(file.toPath())) {
+				transformer.transform(new DOMSource(document), new StreamResult(out));
+			}
+		} catch (Exception e) {
+			String message = "Error saving the baseline file " + file + ".";
+			LOGGER.error(message, e);
+			throw new ZapClientException(message, e);
+		}
+	}
+	
+	private static DocumentBuilderFactory newDocumentBuilderFactory() throws Exception {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+		factory.setExpandEntityReferences(false);
+		return factory;
+	}
+	
+	private static String emptyToNull(String value) {
+		return value == null || value.isEmpty() ? null : value;
+	}
+
+}
@@ -0,0 +1,154 @@
+package br.com.softplan.security.zap.api.analysis;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Emits the {@link AnalysisTimeline} phases as JDK Flight Recorder events.
+ * <p>
+ * The plugin targets Java 7, so the {@code jdk.jfr} API (Java 11+, or 8u262+) is only used through reflection:
+ * the event types are defined at runtime with {@code jdk.jfr.EventFactory}, and nothing is emitted on JVMs without it.
+ * Events are cheap when no recording is running, since JFR discards them before they are written.
+ * 
+ * @author pdsec
+ */
+final class JfrPhaseEvents {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(JfrPhaseEvents.class);
+	
+	static final String PHASE_EVENT_NAME = "br.com.softplan.zap.AnalysisPhase";
+	static final String PROGRESS_EVENT_NAME = "br.com.softplan.zap.ScanProgress";
+	
+	// Field indexes, in the order they are declared
+	private static final int PHASE = 0;
+	private static final int OUTCOME = 1;
+	private static final int REQUESTS = 2;
+	private static final int PROGRESS = 3;
+	private static final int ITEMS = 4;
+	
+	private static final Jfr JFR = Jfr.load();
+	
+	/**
+	 * Begins the event of a phase.
+	 * 
+	 * @return the event, to be given to {@link #end(Object, AnalysisTimeline.PhaseRecord)}; {@code null} if JFR is not available.
+	 */
+	static Object begin(AnalysisPhase phase) {
+		if (JFR == null) {
+			return null;
+		}
+		try {
+			Object event = JFR.newPhaseEvent.invoke(JFR.phaseFactory);
+			JFR.set.invoke(event, PHASE, phase.name());
+			JFR.begin.invoke(event);
+			return event;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			LOGGER.debug("Could not begin the JFR event of the {} phase.", phase, e);
+			return null;
+		}
+	}
+	
+	static void end(Object event, AnalysisTimeline.PhaseRecord record) {
+		if (JFR == null || event == null) {
+			return;
+		}
+		try {
+			JFR.end.invoke(event);
+			JFR.set.invoke(event, OUTCOME, record.getOutcome());
+			JFR.set.invoke(event, REQUESTS, record.getRequestCount());
+			JFR.set.invoke(event, PROGRESS, record.getLastProgress());
+			JFR.set.invoke(event, ITEMS, record.getItemsProcessed());
+			JFR.commit.invoke(event);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			LOGGER.debug("Could not commit the JFR event of the {} phase.", record.getPhase(), e);
+		}
+	}
+	
+	static void progress(AnalysisPhase phase, int progress) {
+		if (JFR == null) {
+			return;
+		}
+		try {
+			Object event = JFR.newProgressEvent.invoke(JFR.progressFactory);
+			JFR.set.invoke(event, 0, phase.name());
+			JFR.set.invoke(event, 1, progress);
+			JFR.commit.invoke(event);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			LOGGER.debug("Could not commit the JFR progress event of the {} phase.", phase, e);
+		}
+	}
+	
+	/**
+	 * The reflective handles to the {@code jdk.jfr} API.
+	 */
+	private static class Jfr {
+		
+		private Object phaseFactory;
+		private Object progressFactory;
+		private Method newPhaseEvent;
+		private Method newProgressEvent;
+		private Method set;
+		private Method begin;
+		private Method end;
+		private Method commit;
+		
+		private Class<?> annotationElementClass;
+		private Class<?> valueDescriptorClass;
+		
+		static Jfr load() {
+			try {
+				Jfr jfr = new Jfr();
+				jfr.annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+				jfr.valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+				
+				jfr.phaseFactory = jfr.createFactory(PHASE_EVENT_NAME, "ZAP Analysis Phase", 
+						jfr.field(String.class, "phase"), jfr.field(String.class, "outcome"), 
+						jfr.field(long.class, "requests"), jfr.field(int.class, "progress"), jfr.field(long.class, "items"));
+				jfr.progressFactory = jfr.createFactory(PROGRESS_EVENT_NAME, "ZAP Scan Progress",
+						jfr.field(String.class, "phase"), jfr.field(int.class, "progress"));
+				jfr.newPhaseEvent = jfr.phaseFactory.getClass().getMethod("newEvent");
+				jfr.newProgressEvent = jfr.progressFactory.getClass().getMethod("newEvent");
+				
+				Class<?> eventClass = Class.forName("jdk.jfr.Event");
+				jfr.set = eventClass.getMethod("set", int.class, Object.class);
+				jfr.begin = eventClass.getMethod("begin");
+				jfr.end = eventClass.getMethod("end");
+				jfr.commit = eventClass.getMethod("commit");
+				return jfr;
+			} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+				LOGGER.debug("JDK Flight Recorder events are not available, the analysis phases will not be emitted to JFR.", e);
+				return null;
+			}
+		}
+		
+		private Object createFactory(String name, String label, Object... fields) throws ReflectiveOperationException {
+			List<Object> annotations = Arrays.asList(
+					annotation("jdk.jfr.Name", name),
+					annotation("jdk.jfr.Label", label),
+					annotation("jdk.jfr.Category", new String[] {"ZAP"}));
+			Method create = Class.forName("jdk.jfr.EventFactory").getMethod("create", List.class, List.class);
+			return create.invoke(null, annotations, Arrays.asList(fields));
+		}
+		
+		private Object annotation(String annotationClassName, Object value) throws ReflectiveOperationException {
+			Class<? extends Annotation> annotationClass = Class.forName(annotationClassName).asSubclass(Annotation.class);
+			Constructor<?> constructor = annotationElementClass.getConstructor(Class.class, Object.class);
+			return constructor.newInstance(annotationClass, value);
+		}
+		
+		private Object field(Class<?> type, String name) throws ReflectiveOperationException {
+			Constructor<?> constructor = valueDescriptorClass.getConstructor(Class.class, String.class);
+			return constructor.newInstance(type, name);
+		}
+		
+	}
+	
+	private JfrPhaseEvents() {}
+
+}
@@ -0,0 +1,56 @@
+package br.com.softplan.security.zap.api.analysis;
+
+/**
+ * Tracks the drain of ZAP's passive scan queue, as reported by {@code pscan.recordsToScan}, converting the
+ * number of records left into a progress and measuring the passive scan throughput.
+ * <p>
+ * Records may still be added to the queue while it drains, so the progress is relative to the largest
+ * queue size observed, and only reaches 100 when the queue is empty.
+ * 
+ * @author pdsec
+ */
+class PassiveScanDrain {
+	
+	private static final int MAX_PROGRESS = 100;
+	
+	private final long startTimeInMillis;
+	private int maxRecords;
+	private int recordsLeft;
+	
+	PassiveScanDrain(int recordsToScan, long nowInMillis) {
+		this.startTimeInMillis = nowInMillis;
+		this.maxRecords = recordsToScan;
+		this.recordsLeft = recordsToScan;
+	}
+	
+	/**
+	 * @param recordsToScan the number of records left in the queue.
+	 * @return the progress of the drain, from 0 to 100.
+	 */
+	int update(int recordsToScan) {
+		recordsLeft = recordsToScan;
+		maxRecords = Math.max(maxRecords, recordsToScan);
+		return getProgress();
+	}
+	
+	int getProgress() {
+		if (recordsLeft <= 0) {
+			return MAX_PROGRESS;
+		}
+		return Math.min(MAX_PROGRESS - 1, (maxRecords - recordsLeft) * MAX_PROGRESS / maxRecords);
+	}
+	
+	int getRecordsLeft() {
+		return recordsLeft;
+	}
+	
+	int getRecordsScanned() {
+		return maxRecords - recordsLeft;
+	}
+	
+	double getRecordsPerSecond(long nowInMillis) {
+		long elapsedInMillis = Math.max(1, nowInMillis - startTimeInMillis);
+		return getRecordsScanned() * 1000.0 / elapsedInMillis;
+	}
+
+}
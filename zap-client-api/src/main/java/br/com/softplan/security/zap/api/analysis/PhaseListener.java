@@ -0,0 +1,55 @@
+package br.com.softplan.security.zap.api.analysis;
+
+/**
+ * Receives the start, progress and end of each {@link AnalysisPhase}.
+ * <p>
+ * Implementations must be thread-safe, since the phases of asynchronous analyses are reported from the scheduler threads.
+ * 
+ * @author pdsec
+ * @see AnalysisTimeline
+ */
+public interface PhaseListener {
+	
+	/**
+	 * Listener that ignores all the phases.
+	 */
+	PhaseListener NONE = new PhaseListener() {
+		@Override
+		public void phaseStarted(AnalysisPhase phase) {}
+		
+		@Override
+		public void phaseProgress(AnalysisPhase phase, int progress) {}
+		
+		@Override
+		public void phaseItemsProcessed(AnalysisPhase phase, long items) {}
+		
+		@Override
+		public void phaseFinished(AnalysisPhase phase, boolean succeeded) {}
+	};
+	
+	void phaseStarted(AnalysisPhase phase);
+	
+	/**
+	 * @param phase the running phase.
+	 * @param progress the progress reported by ZAP, from 0 to 100.
+	 */
+	void phaseProgress(AnalysisPhase phase, int progress);
+	
+	/**
+	 * Informs how many items (e.g. passive scan records) the phase processed, for phases that measure their throughput.
+	 * 
+	 * @param phase the running phase.
+	 * @param items the number of items processed since the phase started.
+	 */
+	void phaseItemsProcessed(AnalysisPhase phase, long items);
+	
+	/**
+	 * Informs that the phase finished. It may be called more than once for the same phase when it fails
+	 * (e.g. when a timed out scan is stopped), so only the first call after {@link #phaseStarted(AnalysisPhase)} counts.
+	 * 
+	 * @param phase the finished phase.
+	 * @param succeeded {@code false} if the phase failed, timed out or was cancelled.
+	 */
+	void phaseFinished(AnalysisPhase phase, boolean succeeded);
+
+}
@@ -0,0 +1,22 @@
+package br.com.softplan.security.zap.api.analysis;
+
+/**
+ * Decides how long to wait before each status check of a running scan.
+ * <p>
+ * Instances are stateful and must be used for a single scan.
+ * 
+ * @author pdsec
+ */
+public interface PollingStrategy {
+
+	/**
+	 * Calculates the delay before the next status check.
+	 * 
+	 * @param progress the last progress observed (0 to 100), or 0 before the first check.
+	 * @param nowInMillis the current time, in milliseconds.
+	 * @param remainingTimeInMillis the time left before the analysis timeout, in milliseconds.
+	 * @return the delay before the next status check, in milliseconds.
+	 */
+	long nextDelayInMillis(int progress, long nowInMillis, long remainingTimeInMillis);
+	
+}
@@ -1,7 +1,9 @@
 package br.com.softplan.security.zap.api.analysis;
 
-import br.com.softplan.security.zap.api.model.AnalysisInfo;
-import br.com.softplan.security.zap.api.report.ZapReport;
+import java.util.Arrays;
+import java.util.List;
+
+import br.com.softplan.security.zap.api.model.ScanType;
 import br.com.softplan.security.zap.zaproxy.clientapi.core.ClientApi;
 
 public class SpiderAndAjaxSpiderOnlyAnalyzer extends BaseAnalyzer {
@@ -10,13 +12,9 @@ public class SpiderAndAjaxSpiderOnlyAnalyzer extends BaseAnalyzer {
 		super(apiKey, api);
 	}
 
-	public ZapReport analyze(AnalysisInfo analysisInfo) {
-		init(analysisInfo.getAnalysisTimeoutInMillis());
-
-		runSpider(analysisInfo);
-		runAjaxSpider(analysisInfo);
-
-		return generateReport();
+	@Override
+	protected List<ScanType> getScanSequence() {
+		return Arrays.asList(ScanType.SPIDER, ScanType.AJAX_SPIDER, ScanType.PASSIVE_SCAN);
 	}
 	
 }
@@ -0,0 +1,109 @@
+package br.com.softplan.security.zap.api.analysis;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import br.com.softplan.security.zap.api.model.PhaseBudget;
+import br.com.softplan.security.zap.api.model.ScanType;
+
+/**
+ * Splits the analysis timeout among the scans of an analysis, according to their {@link PhaseBudget}s.
+ * <p>
+ * When a scan starts, its deadline is calculated as follows:
+ * <ul>
+ * <li>a scan with a budget gets its allocation plus the time left unused by the previous scans with budgets;</li>
+ * <li>a scan without a budget gets all the remaining time;</li>
+ * <li>either way, the time reserved for the budgets of the next scans is kept for them, and the deadline
+ * is never after the analysis deadline.</li>
+ * </ul>
+ * Without budgets, every scan is simply limited by the analysis timeout.
+ * 
+ * @author pdsec
+ */
+class TimeBudget {
+	
+	private final long analysisDeadline;
+	private final List<ScanType> scanSequence;
+	private final long[] allocations;
+	
+	private int currentScanIndex = -1;
+	private long currentScanStartTime;
+	private long phaseDeadline;
+	private long unusedBudgetedTime;
+	
+	/**
+	 * @param analysisTimeoutInMillis the timeout of the whole analysis.
+	 * @param scanSequence the scans of the analysis, in the order they are run.
+	 * @param budgets the budgets of the scans; scans without a budget are limited only by the analysis timeout.
+	 * @param nowInMillis the time the analysis started.
+	 */
+	TimeBudget(long analysisTimeoutInMillis, List<ScanType> scanSequence, Map<ScanType, PhaseBudget> budgets, long nowInMillis) {
+		this.analysisDeadline = nowInMillis + analysisTimeoutInMillis;
+		this.phaseDeadline = analysisDeadline;
+		this.scanSequence = scanSequence;
+		this.allocations = new long[scanSequence.size()];
+		for (int i = 0; i < allocations.length; i++) {
+			PhaseBudget budget = budgets.get(scanSequence.get(i));
+			allocations[i] = budget != null ? budget.getAllocationInMillis(analysisTimeoutInMillis) : -1;
+		}
+	}
+	
+	TimeBudget(long analysisTimeoutInMillis, long nowInMillis) {
+		this(analysisTimeoutInMillis, Collections.<ScanType>emptyList(), Collections.<ScanType, PhaseBudget>emptyMap(), nowInMillis);
+	}
+	
+	/**
+	 * Starts the budget of the next scan of the given type, finishing the previous one.
+	 * 
+	 * @return the deadline of the scan.
+	 */
+	long startScan(ScanType scanType, long nowInMillis) {
+		finishCurrentScan(nowInMillis);
+		currentScanStartTime = nowInMillis;
+		
+		int searchStart = Math.min(currentScanIndex + 1, scanSequence.size());
+		int offset = scanSequence.subList(searchStart, scanSequence.size()).indexOf(scanType);
+		if (offset == -1) {
+			// Not part of the planned sequence, so it's only limited by the analysis deadline
+			currentScanIndex = scanSequence.size();
+			phaseDeadline = analysisDeadline;
+			return phaseDeadline;
+		}
+		currentScanIndex = searchStart + offset;
+		
+		long available = analysisDeadline - nowInMillis - getReservedTimeAfter(currentScanIndex);
+		if (allocations[currentScanIndex] >= 0) {
+			available = Math.min(available, allocations[currentScanIndex] + unusedBudgetedTime);
+			unusedBudgetedTime = 0;
+		}
+		phaseDeadline = Math.min(analysisDeadline, nowInMillis + Math.max(0, available));
+		return phaseDeadline;
+	}
+	
+	private void finishCurrentScan(long nowInMillis) {
+		if (currentScanIndex < 0 || currentScanIndex >= allocations.length || allocations[currentScanIndex] < 0) {
+			return;
+		}
+		long budget = phaseDeadline - currentScanStartTime;
+		long used = nowInMillis - currentScanStartTime;
+		unusedBudgetedTime += Math.max(0, budget - used);
+	}
+	
+	private long getReservedTimeAfter(int scanIndex) {
+		long reserved = 0;
+		for (int i = scanIndex + 1; i < allocations.length; i++) {
+			reserved += Math.max(0, allocations[i]);
+		}
+		return reserved;
+	}
+	
+	long getScanRemainingTimeInMillis(long nowInMillis) {
+		return phaseDeadline - nowInMillis;
+	}
+	
+	long getAnalysisRemainingTimeInMillis(long nowInMillis) {
+		return analysisDeadline - nowInMillis;
+	}
+
+}
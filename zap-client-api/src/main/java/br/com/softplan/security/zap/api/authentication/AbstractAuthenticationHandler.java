@@ -8,6 +8,7 @@ import java.util.Arrays;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import br.com.softplan.security.zap.api.ApiCallBatch;
 import br.com.softplan.security.zap.api.ZapHelper;
 import br.com.softplan.security.zap.api.exception.ZapClientException;
 import br.com.softplan.security.zap.api.model.AuthenticationInfo;
@@ -79,22 +80,33 @@ public abstract class AbstractAuthenticationHandler implements AuthenticationHan
 	protected abstract void setupAuthentication(String targetUrl);
 	
 	protected void excludeUrlsFromScanners() {
-		try {
-			String[] excludeFromScan = authenticationInfo.getExcludeFromScan();
-			if (excludeFromScan != null) {
-				for (String url : excludeFromScan) {
-					LOGGER.debug("Excluding URL '{}' from scanners.", url);
-					
-					ApiResponse responseFromSpider = api.spider.excludeFromScan(apiKey, "\\Q" + url + "\\E");
-					ZapHelper.validateResponse(responseFromSpider, "Exclude '" + url + "' from Spider.");
-					
-					ApiResponse responseFromAScan = api.ascan.excludeFromScan(apiKey, "\\Q" + url + "\\E");
-					ZapHelper.validateResponse(responseFromAScan, "Exclude '" + url + "' from Active Scan.");
+		String[] excludeFromScan = authenticationInfo.getExcludeFromScan();
+		if (excludeFromScan == null) {
+			return;
+		}
+		LOGGER.debug("Excluding URLs '{}' from scanners.", Arrays.toString(excludeFromScan));
+		
+		// Each scanner keeps its own exclusion list, so the Spider and Active Scan calls are sent concurrently
+		ApiCallBatch batch = new ApiCallBatch();
+		for (final String regex : ZapHelper.mergeIntoAlternations(excludeFromScan, "")) {
+			batch.add("spider", "Exclude '" + regex + "' from Spider.", new ApiCallBatch.ApiCall() {
+				@Override
+				public ApiResponse call() throws ClientApiException {
+					return api.spider.excludeFromScan(apiKey, regex);
 				}
-			}
-		} catch (ClientApiException e) {
+			});
+			batch.add("ascan", "Exclude '" + regex + "' from Active Scan.", new ApiCallBatch.ApiCall() {
+				@Override
+				public ApiResponse call() throws ClientApiException {
+					return api.ascan.excludeFromScan(apiKey, regex);
+				}
+			});
+		}
+		try {
+			batch.execute();
+		} catch (ZapClientException e) {
 			LOGGER.error("Error excluding URLs from scanners.", e);
-			throw new ZapClientException(e);
+			throw e;
 		}
 	}
 	
@@ -1,10 +1,13 @@
 package br.com.softplan.security.zap.api.exception;
 
 /**
- * This will be thrown if the analysis timeout expires.
+ * This used to be thrown if the analysis timeout expired.
  * 
  * @author pdsec
+ * @deprecated no longer thrown: when the analysis timeout expires, the running scan is stopped and a partial report
+ * is generated instead, listing the incomplete scans (see {@link br.com.softplan.security.zap.api.report.ZapReport#isPartial()}).
  */
+@Deprecated
 public class ZapAnalysisTimeoutException extends RuntimeException {
 
 	private static final long serialVersionUID = -8195267976688210143L;
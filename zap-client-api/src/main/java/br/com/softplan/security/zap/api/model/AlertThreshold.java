@@ -0,0 +1,107 @@
+package br.com.softplan.security.zap.api.model;
+
+import java.util.Locale;
+
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert.Confidence;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert.Risk;
+
+/**
+ * A number of alerts of at least a given risk (and, optionally, a given confidence) that makes an analysis fail fast:
+ * once ZAP has found that many alerts, the analysis is stopped and a partial report is generated.
+ *
+ * @author pdsec
+ * @see AnalysisInfo.Builder#failFastThreshold(AlertThreshold)
+ */
+public final class AlertThreshold {
+	
+	private final int count;
+	private final Risk minimumRisk;
+	private final Confidence minimumConfidence;
+	
+	/**
+	 * @param count the number of alerts, at least 1.
+	 * @param minimumRisk the lowest risk of the alerts that are counted.
+	 * @param minimumConfidence the lowest confidence of the alerts that are counted, or {@code null} for any confidence.
+	 */
+	public AlertThreshold(int count, Risk minimumRisk, Confidence minimumConfidence) {
+		if (count < 1) {
+			throw new IllegalArgumentException("The alert threshold must count at least one alert: " + count);
+		}
+		if (minimumRisk == null) {
+			throw new IllegalArgumentException("The alert threshold must have a risk.");
+		}
+		this.count = count;
+		this.minimumRisk = minimumRisk;
+		this.minimumConfidence = minimumConfidence;
+	}
+	
+	/**
+	 * Parses a threshold as an optional number of alerts followed by the risk and, optionally, the confidence
+	 * separated by a slash, ignoring the case (e.g. {@code High}, {@code 3 High} or {@code 1 High/Confirmed}).
+	 *
+	 * @param threshold the threshold as a string.
+	 * @return the parsed threshold.
+	 * @throws IllegalArgumentException if the threshold is not valid.
+	 */
+	public static AlertThreshold parse(String threshold) {
+		String[] parts = threshold == null ? new String[0] : threshold.trim().split("\\s+");
+		if (parts.length == 1 || parts.length == 2) {
+			String[] levels = parts[parts.length - 1].split("/");
+			if (levels.length <= 2) {
+				try {
+					int count = parts.length == 2 ? Integer.parseInt(parts[0]) : 1;
+					Risk risk = parseLevel(Risk.class, levels[0]);
+					Confidence confidence = levels.length == 2 ? parseLevel(Confidence.class, levels[1]) : null;
+					return new AlertThreshold(count, risk, confidence);
+				} catch (IllegalArgumentException e) {
+					throw invalidThreshold(threshold, e);
+				}
+			}
+		}
+		throw invalidThreshold(threshold, null);
+	}
+	
+	private static IllegalArgumentException invalidThreshold(String threshold, Exception cause) {
+		return new IllegalArgumentException("Invalid alert threshold '" + threshold + "': it must be an optional number of alerts "
+				+ "followed by a risk and optionally a confidence (e.g. 3 High or 1 High/Confirmed).", cause);
+	}
+	
+	private static <E extends Enum<E>> E parseLevel(Class<E> levels, String name) {
+		for (E level : levels.getEnumConstants()) {
+			if (level.name().equalsIgnoreCase(name)) {
+				return level;
+			}
+		}
+		throw new IllegalArgumentException("Unknown " + levels.getSimpleName().toLowerCase(Locale.ROOT) + ": " + name);
+	}
+	
+	/**
+	 * @param alert an alert found by ZAP.
+	 * @return {@code true} if the alert is counted by this threshold.
+	 */
+	public boolean matches(Alert alert) {
+		if (alert.getRisk() == null || alert.getRisk().compareTo(minimumRisk) < 0) {
+			return false;
+		}
+		return minimumConfidence == null || (alert.getConfidence() != null && alert.getConfidence().compareTo(minimumConfidence) >= 0);
+	}
+	
+	public int getCount() {
+		return count;
+	}
+	
+	public Risk getMinimumRisk() {
+		return minimumRisk;
+	}
+	
+	public Confidence getMinimumConfidence() {
+		return minimumConfidence;
+	}
+	
+	@Override
+	public String toString() {
+		return count + " " + minimumRisk + (minimumConfidence != null ? "/" + minimumConfidence : "");
+	}
+
+}
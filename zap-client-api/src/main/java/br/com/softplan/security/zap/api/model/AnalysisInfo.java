@@ -1,6 +1,11 @@
 package br.com.softplan.security.zap.api.model;
 
+import java.io.File;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
@@ -17,6 +22,10 @@ public class AnalysisInfo {
 	private static final long DEFAULT_ANALYSIS_TIMEOUT_IN_MINUTES = 480;
 	private static final AnalysisType DEFAULT_ANALYSIS_TYPE = AnalysisType.WITH_SPIDER;
 	private static final boolean DEFAULT_SHOULD_START_NEW_SESSION = true;
+	private static final boolean DEFAULT_SHOULD_USE_SESSION_SNAPSHOT = false;
+	private static final String DEFAULT_BASELINE_FILE = "zapBaseline.xml";
+	private static final int DEFAULT_MAX_CONCURRENT_ACTIVE_SCANS = 1;
+	private static final long DEFAULT_ACTIVE_SCAN_LATENCY_SLO_IN_MILLIS = 0;
 	
 	private String targetUrl;
 	private String spiderStartingPointUrl;
@@ -28,11 +37,45 @@ public class AnalysisInfo {
 	private long analysisTimeoutInMinutes;
 	private AnalysisType analysisType;
 	private boolean shouldStartNewSession;
+	private boolean shouldUseSessionSnapshot;
+	private File baselineFile;
+	private int maxConcurrentActiveScans;
+	private long activeScanLatencySloInMillis;
+	private Map<ScanType, PhaseBudget> phaseBudgets;
+	private ScanProfile scanProfile;
+	private AlertThreshold failFastThreshold;
 	
 	public static Builder builder() {
 		return new Builder();
 	}
 	
+	/**
+	 * Creates a builder initialized with the values of the given instance, to build a modified copy of it.
+	 * 
+	 * @param analysisInfo the instance to be copied.
+	 * @return a new {@code Builder} instance.
+	 */
+	public static Builder builder(AnalysisInfo analysisInfo) {
+		Builder builder = new Builder();
+		builder.targetUrl                    = analysisInfo.targetUrl;
+		builder.spiderStartingPointUrl       = analysisInfo.spiderStartingPointUrl;
+		builder.activeScanStartingPointUrl   = analysisInfo.activeScanStartingPointUrl;
+		builder.context                      = analysisInfo.context;
+		builder.technologies                 = analysisInfo.technologies;
+		builder.technologiesSeparatedByComma = analysisInfo.technologiesSeparatedByComma;
+		builder.analysisTimeoutInMinutes     = analysisInfo.analysisTimeoutInMinutes;
+		builder.analysisType                 = analysisInfo.analysisType;
+		builder.shouldStartNewSession        = analysisInfo.shouldStartNewSession;
+		builder.shouldUseSessionSnapshot     = analysisInfo.shouldUseSessionSnapshot;
+		builder.baselineFile                 = analysisInfo.baselineFile;
+		builder.maxConcurrentActiveScans     = analysisInfo.maxConcurrentActiveScans;
+		builder.activeScanLatencySloInMillis = analysisInfo.activeScanLatencySloInMillis;
+		builder.phaseBudgets.putAll(analysisInfo.phaseBudgets);
+		builder.scanProfile                  = analysisInfo.scanProfile;
+		builder.failFastThreshold            = analysisInfo.failFastThreshold;
+		return builder;
+	}
+	
 	public String getTargetUrl() {
 		return targetUrl;
 	}
@@ -82,6 +125,49 @@ public class AnalysisInfo {
 		return shouldStartNewSession;
 	}
 	
+	public boolean shouldUseSessionSnapshot() {
+		return shouldUseSessionSnapshot;
+	}
+	
+	/**
+	 * @return the file with the state of the previous analysis, used by the {@link AnalysisType#INCREMENTAL} analysis.
+	 */
+	public File getBaselineFile() {
+		return baselineFile;
+	}
+	
+	public int getMaxConcurrentActiveScans() {
+		return maxConcurrentActiveScans;
+	}
+	
+	/**
+	 * @return the target response time the Active Scan is throttled to, or {@code 0} if it's not throttled.
+	 */
+	public long getActiveScanLatencySloInMillis() {
+		return activeScanLatencySloInMillis;
+	}
+	
+	/**
+	 * @return the time budgets of the scans; scans without a budget are limited only by the analysis timeout.
+	 */
+	public Map<ScanType, PhaseBudget> getPhaseBudgets() {
+		return phaseBudgets;
+	}
+	
+	/**
+	 * @return the profile of ZAP's scan options applied during the analysis, or {@code null} to keep ZAP's current options.
+	 */
+	public ScanProfile getScanProfile() {
+		return scanProfile;
+	}
+	
+	/**
+	 * @return the alerts that make the analysis stop early, or {@code null} if it always runs to the end.
+	 */
+	public AlertThreshold getFailFastThreshold() {
+		return failFastThreshold;
+	}
+	
 	public static class Builder {
 		
 		private String targetUrl;
@@ -93,6 +179,13 @@ public class AnalysisInfo {
 		private long analysisTimeoutInMinutes = DEFAULT_ANALYSIS_TIMEOUT_IN_MINUTES;
 		private AnalysisType analysisType = DEFAULT_ANALYSIS_TYPE;
 		private boolean shouldStartNewSession = DEFAULT_SHOULD_START_NEW_SESSION;
+		private boolean shouldUseSessionSnapshot = DEFAULT_SHOULD_USE_SESSION_SNAPSHOT;
+		private File baselineFile = new File(DEFAULT_BASELINE_FILE);
+		private int maxConcurrentActiveScans = DEFAULT_MAX_CONCURRENT_ACTIVE_SCANS;
+		private long activeScanLatencySloInMillis = DEFAULT_ACTIVE_SCAN_LATENCY_SLO_IN_MILLIS;
+		private Map<ScanType, PhaseBudget> phaseBudgets = new EnumMap<>(ScanType.class);
+		private ScanProfile scanProfile;
+		private AlertThreshold failFastThreshold;
 		
 		/**
 		 * Sets the target URL.
@@ -179,6 +272,8 @@ public class AnalysisInfo {
 	 	 *     <li><b>SPIDER_ONLY</b>: </li> no Active Scan is executed after the Spider. This is useful when on wants to run the
 	 	 *                                   passive scan only.
 	 	 *     <li><b>SPIDER_AND_AJAX_SPIDER_ONLY</b>: Just like the previous, but including the AJAX Spider.</li>
+	 	 *     <li><b>INCREMENTAL</b>: like WITH_SPIDER, but the Active Scan only attacks the URLs that are new or changed since
+	 	 *                             the previous analysis (see {@link #baselineFile(File)}).</li>
 	 	 * </ul> 
 		 * @return this {@code Builder} instance.
 		 */
@@ -200,6 +295,8 @@ public class AnalysisInfo {
 	 	 *     <li><b>SPIDER_ONLY</b>: </li> no Active Scan is executed after the Spider. This is useful when on wants to run the
 	 	 *                                   passive scan only.
 	 	 *     <li><b>SPIDER_AND_AJAX_SPIDER_ONLY</b>: Just like the previous, but including the AJAX Spider.</li>
+	 	 *     <li><b>INCREMENTAL</b>: like WITH_SPIDER, but the Active Scan only attacks the URLs that are new or changed since
+	 	 *                             the previous analysis (see {@link #baselineFile(File)}).</li>
 	 	 * </ul> 
 		 * @return this {@code Builder} instance.
 		 */
@@ -222,12 +319,175 @@ public class AnalysisInfo {
 			return this;
 		}
 		
+		/**
+		 * Sets whether the new session should be restored from a snapshot of a previously configured session
+		 * (context and technologies), instead of being configured from scratch. The snapshot is created on ZAP
+		 * the first time the same configuration is analyzed. It only applies when a new session is started.
+		 * 
+		 * @param shouldUseSessionSnapshot {@code true} if the session snapshots should be used,
+		 *                                 {@code false} otherwise (default: {@code false}). 
+		 * @return this {@code Builder} instance.
+		 */
+		public Builder shouldUseSessionSnapshot(boolean shouldUseSessionSnapshot) {
+			this.shouldUseSessionSnapshot = shouldUseSessionSnapshot;
+			return this;
+		}
+		
+		/**
+		 * Sets the file with the state of the previous analysis, which is read and then replaced by the
+		 * {@link AnalysisType#INCREMENTAL} analysis. It must be kept between the analyses.
+		 * 
+		 * @param baselineFile the baseline file (default: {@code zapBaseline.xml}, in the working directory).
+		 * @return this {@code Builder} instance.
+		 */
+		public Builder baselineFile(File baselineFile) {
+			if (baselineFile != null) {
+				this.baselineFile = baselineFile;
+			}
+			return this;
+		}
+		
+		/**
+		 * Sets how many Active Scans may run at the same time. With more than one, the Active Scan is split per
+		 * context URL (or, with a single context URL, per top-level subtree of the Active Scan starting point)
+		 * and the parts are scanned concurrently, instead of walking the whole tree through a single scan.
+		 * 
+		 * @param maxConcurrentActiveScans the maximum number of concurrent Active Scans (default: {@code 1}).
+		 * @return this {@code Builder} instance.
+		 */
+		public Builder maxConcurrentActiveScans(int maxConcurrentActiveScans) {
+			if (maxConcurrentActiveScans < 1) {
+				throw new IllegalArgumentException("At least one Active Scan must be allowed to run: " + maxConcurrentActiveScans);
+			}
+			this.maxConcurrentActiveScans = maxConcurrentActiveScans;
+			return this;
+		}
+		
+		/**
+		 * Sets the response time of the target the Active Scan should hold, e.g. on a shared environment.
+		 * <p>
+		 * During the Active Scan, the response times and errors of the latest requests are sampled and ZAP's threads
+		 * per host and delay between requests are lowered when the 90th percentile goes over this value (or the target
+		 * answers errors), and raised again while it stays comfortably under it.
+		 * <p>
+		 * ZAP only applies the new values to the scans started afterwards, so the Active Scan must be split into
+		 * several scans: this requires {@link #maxConcurrentActiveScans(int) concurrent Active Scans}, and it's ignored
+		 * when the Active Scan has a single target anyway (e.g. an application without subtrees).
+		 * 
+		 * @param activeScanLatencySloInMillis the target response time in milliseconds, or {@code 0} to keep ZAP's
+		 *                                     settings during the scan (default: {@code 0}).
+		 * @return this {@code Builder} instance.
+		 */
+		public Builder activeScanLatencySloInMillis(long activeScanLatencySloInMillis) {
+			if (activeScanLatencySloInMillis < 0) {
+				throw new IllegalArgumentException("The Active Scan latency SLO can't be negative: " + activeScanLatencySloInMillis);
+			}
+			this.activeScanLatencySloInMillis = activeScanLatencySloInMillis;
+			return this;
+		}
+		
+		/**
+		 * Sets the time budget of a scan, so a slow scan can't take the time of the scans that come after it.
+		 * <p>
+		 * When a scan runs out of its budget it is stopped and the analysis proceeds to the next scan. The time a scan
+		 * leaves unused rolls over to the next scans with budgets. When the analysis timeout is reached, the remaining
+		 * scans are skipped; in both cases the report is still generated, and flagged as partial.
+		 * 
+		 * @param scanType the scan.
+		 * @param budget the budget of the scan, or {@code null} to remove it (default: no budget).
+		 * @return this {@code Builder} instance.
+		 */
+		public Builder phaseBudget(ScanType scanType, PhaseBudget budget) {
+			if (budget != null) {
+				this.phaseBudgets.put(scanType, budget);
+			} else {
+				this.phaseBudgets.remove(scanType);
+			}
+			return this;
+		}
+		
+		/**
+		 * Sets the time budgets of the scans, given as strings.
+		 * 
+		 * @param phaseBudgets a map from the scan type names (case-insensitive, e.g. {@code ACTIVE_SCAN}) to
+		 *                     the budgets, as accepted by {@link PhaseBudget#parse(String)}; may be {@code null}.
+		 * @return this {@code Builder} instance.
+		 * @see #phaseBudget(ScanType, PhaseBudget)
+		 */
+		public Builder phaseBudgets(Map<String, String> phaseBudgets) {
+			if (phaseBudgets != null) {
+				for (Map.Entry<String, String> entry : phaseBudgets.entrySet()) {
+					phaseBudget(ScanType.valueOf(entry.getKey().trim().toUpperCase(Locale.ROOT)), PhaseBudget.parse(entry.getValue()));
+				}
+			}
+			return this;
+		}
+		
+		/**
+		 * Sets the profile of ZAP's Spider and Active Scan performance options (threads, depth and delays) to be
+		 * applied before the analysis. The previous values of the options are restored after the analysis.
+		 * 
+		 * @param scanProfile the scan profile (default: {@code null}, which keeps ZAP's current options).
+		 * @return this {@code Builder} instance.
+		 */
+		public Builder scanProfile(ScanProfile scanProfile) {
+			this.scanProfile = scanProfile;
+			return this;
+		}
+		
+		/**
+		 * Sets the profile of ZAP's Spider and Active Scan performance options.
+		 * 
+		 * @param scanProfile the scan profile name, as accepted by {@link ScanProfile#parse(String)}; may be {@code null}.
+		 * @return this {@code Builder} instance.
+		 * @see #scanProfile(ScanProfile)
+		 */
+		public Builder scanProfile(String scanProfile) {
+			if (scanProfile != null) {
+				this.scanProfile = ScanProfile.parse(scanProfile);
+			}
+			return this;
+		}
+		
+		/**
+		 * Sets the alerts that make the analysis fail fast. While the scans run, the new alerts found by ZAP are
+		 * checked, and once the threshold is reached the running scan is stopped, the remaining scans are skipped
+		 * and the report is generated right away, flagged as {@link br.com.softplan.security.zap.api.report.ZapReport#isPartial() partial}.
+		 * 
+		 * @param failFastThreshold the alert threshold (default: {@code null}, the analysis always runs to the end).
+		 * @return this {@code Builder} instance.
+		 */
+		public Builder failFastThreshold(AlertThreshold failFastThreshold) {
+			this.failFastThreshold = failFastThreshold;
+			return this;
+		}
+		
+		/**
+		 * Sets the alerts that make the analysis fail fast.
+		 * 
+		 * @param failFastThreshold the alert threshold, as accepted by {@link AlertThreshold#parse(String)} (e.g. {@code 3 High});
+		 *                          may be {@code null}.
+		 * @return this {@code Builder} instance.
+		 * @see #failFastThreshold(AlertThreshold)
+		 */
+		public Builder failFastThreshold(String failFastThreshold) {
+			if (failFastThreshold != null) {
+				this.failFastThreshold = AlertThreshold.parse(failFastThreshold);
+			}
+			return this;
+		}
+		
 		/**
 		 * Builds a {@link AnalysisInfo} instance based on the builder parameters.
 		 * 
 		 * @return a {@link AnalysisInfo} instance.
+		 * @throws IllegalArgumentException if a latency SLO is set without concurrent Active Scans.
 		 */
 		public AnalysisInfo build() {
+			if (activeScanLatencySloInMillis > 0 && maxConcurrentActiveScans <= 1) {
+				throw new IllegalArgumentException("The Active Scan latency SLO requires concurrent Active Scans "
+						+ "(maxConcurrentActiveScans > 1): ZAP only applies the throttled settings to the scans started afterwards.");
+			}
 			return new AnalysisInfo(this);
 		}
 		
@@ -243,6 +503,13 @@ public class AnalysisInfo {
 		this.analysisTimeoutInMinutes     = builder.analysisTimeoutInMinutes;
 		this.analysisType                 = builder.analysisType;
 		this.shouldStartNewSession        = builder.shouldStartNewSession;
+		this.shouldUseSessionSnapshot     = builder.shouldUseSessionSnapshot;
+		this.baselineFile                 = builder.baselineFile;
+		this.maxConcurrentActiveScans     = builder.maxConcurrentActiveScans;
+		this.activeScanLatencySloInMillis = builder.activeScanLatencySloInMillis;
+		this.phaseBudgets                 = Collections.unmodifiableMap(new EnumMap<>(builder.phaseBudgets));
+		this.scanProfile                  = builder.scanProfile;
+		this.failFastThreshold            = builder.failFastThreshold;
 	}
 	
 	@Override
@@ -256,6 +523,13 @@ public class AnalysisInfo {
 				.append("analysisTimeoutInMinutes", analysisTimeoutInMinutes)
 				.append("analysisType", analysisType)
 				.append("shouldStartNewSession", shouldStartNewSession)
+				.append("shouldUseSessionSnapshot", shouldUseSessionSnapshot)
+				.append("baselineFile", baselineFile)
+				.append("maxConcurrentActiveScans", maxConcurrentActiveScans)
+				.append("activeScanLatencySloInMillis", activeScanLatencySloInMillis)
+				.append("phaseBudgets", phaseBudgets)
+				.append("scanProfile", scanProfile)
+				.append("failFastThreshold", failFastThreshold)
 				.toString();
 	}
 	
@@ -11,6 +11,7 @@ public enum AnalysisType {
 	WITH_AJAX_SPIDER, 
 	ACTIVE_SCAN_ONLY, 
 	SPIDER_ONLY, 
-	SPIDER_AND_AJAX_SPIDER_ONLY;
+	SPIDER_AND_AJAX_SPIDER_ONLY, 
+	INCREMENTAL;
 	
 }
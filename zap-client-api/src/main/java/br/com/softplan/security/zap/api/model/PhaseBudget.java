@@ -0,0 +1,91 @@
+package br.com.softplan.security.zap.api.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The share of the analysis timeout assigned to a scan: either a fraction of the timeout or a fixed duration.
+ * <p>
+ * A scan with a budget is stopped when its budget (plus the time left unused by the previous scans with budgets)
+ * runs out, and the analysis proceeds to the next scan. Scans without a budget may use all the time that is not
+ * reserved for the budgets of the scans that come after them.
+ * 
+ * @author pdsec
+ * @see AnalysisInfo.Builder#phaseBudget(ScanType, PhaseBudget)
+ */
+public final class PhaseBudget {
+	
+	private final double fraction;
+	private final long durationInMillis;
+	
+	/**
+	 * @param fraction the fraction of the analysis timeout, greater than 0 and up to 1 (e.g. {@code 0.25}).
+	 * @return a budget proportional to the analysis timeout.
+	 */
+	public static PhaseBudget ofFraction(double fraction) {
+		if (!(fraction > 0 && fraction <= 1)) {
+			throw new IllegalArgumentException("The budget fraction must be greater than 0 and up to 1: " + fraction);
+		}
+		return new PhaseBudget(fraction, -1);
+	}
+	
+	/**
+	 * @param durationInMinutes the fixed duration of the budget, in minutes.
+	 * @return a budget with a fixed duration, limited by the analysis timeout.
+	 */
+	public static PhaseBudget ofMinutes(long durationInMinutes) {
+		return ofMillis(TimeUnit.MINUTES.toMillis(durationInMinutes));
+	}
+	
+	/**
+	 * @param durationInMillis the fixed duration of the budget, in milliseconds.
+	 * @return a budget with a fixed duration, limited by the analysis timeout.
+	 */
+	public static PhaseBudget ofMillis(long durationInMillis) {
+		if (durationInMillis <= 0) {
+			throw new IllegalArgumentException("The budget duration must be positive: " + durationInMillis);
+		}
+		return new PhaseBudget(-1, durationInMillis);
+	}
+	
+	/**
+	 * Parses a budget as a percentage of the analysis timeout (e.g. {@code 25%}) or as a number of minutes (e.g. {@code 30}).
+	 * 
+	 * @param budget the budget as a string.
+	 * @return the parsed budget.
+	 * @throws IllegalArgumentException if the budget is not valid.
+	 */
+	public static PhaseBudget parse(String budget) {
+		String value = budget == null ? "" : budget.trim();
+		try {
+			if (value.endsWith("%")) {
+				return ofFraction(Double.parseDouble(value.substring(0, value.length() - 1).trim()) / 100);
+			}
+			return ofMinutes(Long.parseLong(value));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid budget '" + budget + "': it must be a percentage (e.g. 25%) or a number of minutes (e.g. 30).", e);
+		}
+	}
+	
+	/**
+	 * @param analysisTimeoutInMillis the analysis timeout.
+	 * @return the time assigned by this budget, never greater than the analysis timeout.
+	 */
+	public long getAllocationInMillis(long analysisTimeoutInMillis) {
+		long allocation = fraction > 0 ? (long) (analysisTimeoutInMillis * fraction) : durationInMillis;
+		return Math.min(allocation, analysisTimeoutInMillis);
+	}
+	
+	@Override
+	public String toString() {
+		if (fraction > 0) {
+			return (fraction * 100) + "%";
+		}
+		return durationInMillis + "ms";
+	}
+	
+	private PhaseBudget(double fraction, long durationInMillis) {
+		this.fraction = fraction;
+		this.durationInMillis = durationInMillis;
+	}
+
+}
@@ -0,0 +1,88 @@
+package br.com.softplan.security.zap.api.model;
+
+/**
+ * Named sets of ZAP's Spider and Active Scan performance options, applied before the analysis and restored afterwards.
+ * <p>
+ * For reference, ZAP's defaults are 2 Spider threads, a maximum depth of 5 and a request wait time of 200ms for the
+ * Spider, and 2 threads per host, 2 hosts per scan and no delay for the Active Scan.
+ * <ul>
+ * <li><b>ci-fast</b>: a shallow crawl and many scanner threads, for quick feedback on CI builds;</li>
+ * <li><b>balanced</b>: a moderate increase of the concurrency over ZAP's defaults;</li>
+ * <li><b>deep</b>: a deeper crawl with a gentle load on the target, for nightly or release analyses.</li>
+ * </ul>
+ *
+ * @author pdsec
+ * @see AnalysisInfo.Builder#scanProfile(ScanProfile)
+ */
+public enum ScanProfile {
+	
+	CI_FAST ("ci-fast",  8, 3,  0,   8, 4, 0),
+	BALANCED("balanced", 4, 5,  100, 4, 2, 0),
+	DEEP    ("deep",     2, 10, 200, 2, 1, 0);
+	
+	private final String name;
+	private final int spiderThreadCount;
+	private final int spiderMaxDepth;
+	private final int spiderRequestWaitTimeInMillis;
+	private final int activeScanThreadsPerHost;
+	private final int activeScanHostsPerScan;
+	private final int activeScanDelayInMillis;
+	
+	private ScanProfile(String name, int spiderThreadCount, int spiderMaxDepth, int spiderRequestWaitTimeInMillis,
+			int activeScanThreadsPerHost, int activeScanHostsPerScan, int activeScanDelayInMillis) {
+		this.name                          = name;
+		this.spiderThreadCount             = spiderThreadCount;
+		this.spiderMaxDepth                = spiderMaxDepth;
+		this.spiderRequestWaitTimeInMillis = spiderRequestWaitTimeInMillis;
+		this.activeScanThreadsPerHost      = activeScanThreadsPerHost;
+		this.activeScanHostsPerScan        = activeScanHostsPerScan;
+		this.activeScanDelayInMillis       = activeScanDelayInMillis;
+	}
+	
+	/**
+	 * Parses a profile by its name (e.g. {@code ci-fast}) or its constant name (e.g. {@code CI_FAST}), ignoring the case.
+	 *
+	 * @param profile the profile as a string.
+	 * @return the parsed profile.
+	 * @throws IllegalArgumentException if there's no profile with the given name.
+	 */
+	public static ScanProfile parse(String profile) {
+		String value = profile == null ? "" : profile.trim();
+		for (ScanProfile scanProfile : values()) {
+			if (scanProfile.name.equalsIgnoreCase(value) || scanProfile.name().equalsIgnoreCase(value)) {
+				return scanProfile;
+			}
+		}
+		throw new IllegalArgumentException("Invalid scan profile '" + profile + "': it must be one of ci-fast, balanced or deep.");
+	}
+	
+	public int getSpiderThreadCount() {
+		return spiderThreadCount;
+	}
+	
+	public int getSpiderMaxDepth() {
+		return spiderMaxDepth;
+	}
+	
+	public int getSpiderRequestWaitTimeInMillis() {
+		return spiderRequestWaitTimeInMillis;
+	}
+	
+	public int getActiveScanThreadsPerHost() {
+		return activeScanThreadsPerHost;
+	}
+	
+	public int getActiveScanHostsPerScan() {
+		return activeScanHostsPerScan;
+	}
+	
+	public int getActiveScanDelayInMillis() {
+		return activeScanDelayInMillis;
+	}
+	
+	@Override
+	public String toString() {
+		return this.name;
+	}
+
+}
@@ -9,7 +9,8 @@ public enum ScanType {
 	
 	SPIDER("Spider"),
 	AJAX_SPIDER("AJAX Spider"),
-	ACTIVE_SCAN("Active Scan");
+	ACTIVE_SCAN("Active Scan"),
+	PASSIVE_SCAN("Passive Scan");
 	
 	private final String name;
 	
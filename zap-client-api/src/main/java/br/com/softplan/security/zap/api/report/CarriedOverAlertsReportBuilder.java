@@ -0,0 +1,133 @@
+package br.com.softplan.security.zap.api.report;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert;
+
+/**
+ * Class that builds the HTML and XML reports with the alerts carried over by an incremental analysis, in the
+ * format of ZAP's reports, so they can be merged into them with {@link ZapReportMerger}.
+ * 
+ * @author pdsec
+ */
+public final class CarriedOverAlertsReportBuilder {
+
+	private static final String TITLE = "Carried Over Alerts";
+	private static final String DESCRIPTION = "Alerts of the URLs that didn't change since the previous analysis, which were not scanned again.";
+	private static final String[] HEADERS = {"Alert", "Risk", "Confidence", "URL", "Parameter"};
+	
+	public static String buildHtmlReport(List<Alert> alerts) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("<html>\n");
+		
+		builder.append("  <head>\n");
+		builder.append("    <META http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\">\n");
+		builder.append("    <title>").append(TITLE).append("</title>\n");
+		builder.append("  </head>\n");
+		
+		builder.append("  <body text=\"#000000\">\n");
+		builder.append("    <p><strong>").append(TITLE).append("</strong></p>\n");
+		builder.append("    <p><font size=\"2\" face=\"Arial, Helvetica, sans-serif\">").append(DESCRIPTION).append("</font></p>\n");
+		
+		builder.append("    <table width=\"100%\" border=\"0\">\n");
+		builder.append("      <tr bgcolor=\"#666666\" height=\"24\">\n");
+		for (String header : HEADERS) {
+			builder.append("      <td><strong><font color=\"#FFFFFF\" size=\"2\" face=\"Arial, Helvetica, sans-serif\">")
+				   .append(header).append("</font></strong></td>\n");
+		}
+		builder.append("      </tr>\n");
+		
+		for (Alert alert : alerts) {
+			builder.append("      <tr bgcolor=\"#e8e8e8\">");
+			for (String value : new String[] {alert.getAlert(), name(alert.getRisk()), name(alert.getConfidence()), alert.getUrl(), alert.getParam()}) {
+				builder.append("<td><font size=\"2\" face=\"Arial, Helvetica, sans-serif\">").append(escape(value)).append("</font></td>");
+			}
+			builder.append("</tr>\n");
+		}
+		
+		builder.append("    </table>\n");
+		builder.append("  </body>\n");
+		builder.append("</html>\n");
+		
+		return builder.toString();
+	}
+	
+	/**
+	 * Builds the XML report, with the alerts grouped by site like ZAP does, so the merged report lists them
+	 * under the sites of ZAP's report.
+	 */
+	public static String buildXmlReport(List<Alert> alerts) {
+		Map<String, List<Alert>> alertsBySite = new LinkedHashMap<>();
+		for (Alert alert : alerts) {
+			String site = getSite(alert.getUrl());
+			if (!alertsBySite.containsKey(site)) {
+				alertsBySite.put(site, new ArrayList<Alert>());
+			}
+			alertsBySite.get(site).add(alert);
+		}
+		
+		StringBuilder builder = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		builder.append("<OWASPZAPReport>\n");
+		for (Map.Entry<String, List<Alert>> site : alertsBySite.entrySet()) {
+			builder.append("  <site name=\"").append(escape(site.getKey())).append("\">\n");
+			builder.append("    <alerts>\n");
+			for (Alert alert : site.getValue()) {
+				builder.append("      <alertitem>\n");
+				builder.append("        <alert>").append(escape(alert.getAlert())).append("</alert>\n");
+				if (alert.getRisk() != null) {
+					builder.append("        <riskcode>").append(alert.getRisk().ordinal()).append("</riskcode>\n");
+				}
+				if (alert.getConfidence() != null) {
+					builder.append("        <confidence>").append(alert.getConfidence().ordinal() + 1).append("</confidence>\n");
+				}
+				builder.append("        <riskdesc>").append(name(alert.getRisk())).append(" (").append(name(alert.getConfidence())).append(")</riskdesc>\n");
+				builder.append("        <uri>").append(escape(alert.getUrl())).append("</uri>\n");
+				builder.append("        <param>").append(escape(alert.getParam())).append("</param>\n");
+				builder.append("        <otherinfo>").append(DESCRIPTION).append("</otherinfo>\n");
+				builder.append("      </alertitem>\n");
+			}
+			builder.append("    </alerts>\n");
+			builder.append("  </site>\n");
+		}
+		builder.append("</OWASPZAPReport>\n");
+		
+		return builder.toString();
+	}
+	
+	/**
+	 * @return the scheme, host and port of the URL, which ZAP uses as the name of the site.
+	 */
+	private static String getSite(String url) {
+		if (url == null) {
+			return "";
+		}
+		try {
+			URI uri = new URI(url);
+			if (uri.getScheme() == null || uri.getHost() == null) {
+				return url;
+			}
+			return uri.getScheme() + "://" + uri.getHost() + (uri.getPort() >= 0 ? ":" + uri.getPort() : "");
+		} catch (URISyntaxException e) {
+			return url;
+		}
+	}
+	
+	private static String name(Enum<?> level) {
+		return level != null ? level.name() : "";
+	}
+	
+	private static String escape(String text) {
+		if (text == null) {
+			return "";
+		}
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+	}
+	
+	private CarriedOverAlertsReportBuilder() {}
+	
+}
@@ -1,25 +1,52 @@
 package br.com.softplan.security.zap.api.report;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.softplan.security.zap.api.exception.ZapClientException;
+import br.com.softplan.security.zap.api.model.ScanType;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert;
+
 /**
  * Class that encapsulates the results of a ZAP analysis.
  * <p>
- * Reports are available in XML and HTML formats.
+ * Reports are available in XML and HTML formats. They are either kept in memory or, when created with
+ * {@link #ZapReport(File, File, List)}, stored in files so that large reports don't need to fit on the heap.
+ * The files downloaded by an analysis are {@link #hasTemporaryFiles() temporary}: they are deleted once the
+ * reports are saved with {@link ZapReportUtil#saveAllReports(ZapReport, String)}, or by {@link #deleteTemporaryFiles()}.
+ * <p>
+ * A report is partial when some scans were stopped before finishing, e.g. because their time budget ran out
+ * (see {@link #getIncompleteScans()}).
  * 
  * @author pdsec
  */
 public class ZapReport {
 	
+	private static final Logger LOGGER = LoggerFactory.getLogger(ZapReport.class);
+	
 	private byte[] htmlReport;
 	private byte[] xmlReport;
 	
+	private File htmlReportFile;
+	private File xmlReportFile;
+	private boolean temporaryFiles;
+	
 	private List<String> spiderResults;
 	private String htmlSpiderResults;
 	private String xmlSpiderResults;
 	
+	private List<ScanType> incompleteScans = Collections.emptyList();
+	private List<Alert> carriedOverAlerts = Collections.emptyList();
+	private List<Alert> thresholdAlerts = Collections.emptyList();
+	
 	/**
 	 * Creates a new {@code ZapReport} instance based on the ZAP reports and the Spider results.
 	 * 
@@ -34,6 +61,24 @@ public class ZapReport {
 		
 		buildSpiderResultsReports(spiderResults);
 	}
+	
+	/**
+	 * Creates a new {@code ZapReport} instance based on ZAP reports stored in files and the Spider results.
+	 * <p>
+	 * The files are only read when the report contents are requested, and {@link ZapReportUtil} copies them
+	 * without loading them into memory.
+	 * 
+	 * @param htmlReportFile the file holding the HTML Report.
+	 * @param xmlReportFile the file holding the XML Report.
+	 * @param spiderResults the list with the URLs visited by the Spider.
+	 */
+	public ZapReport(File htmlReportFile, File xmlReportFile, List<String> spiderResults) {
+		this.htmlReportFile = htmlReportFile;
+		this.xmlReportFile = xmlReportFile;
+		this.spiderResults = spiderResults;
+		
+		buildSpiderResultsReports(spiderResults);
+	}
 
 	private void buildSpiderResultsReports(List<String> spiderResults) {
 		this.htmlSpiderResults = SpiderResultsReportBuilder.buildHtmlReport(spiderResults);
@@ -41,21 +86,102 @@ public class ZapReport {
 	}
 	
 	public String getHtmlReportAsString() {
-		return new String(this.htmlReport, StandardCharsets.UTF_8);
+		return new String(getHtmlReport(), StandardCharsets.UTF_8);
 	}
 	
 	public byte[] getHtmlReport() {
+		if (htmlReportFile != null) {
+			return readReport(htmlReportFile);
+		}
 		return this.htmlReport;
 	}
+	
+	/**
+	 * @return the file holding the HTML report, or {@code null} if the report is kept in memory.
+	 */
+	public File getHtmlReportFile() {
+		return htmlReportFile;
+	}
 
 	public String getXmlReportAsString() {
-		return new String(this.xmlReport, StandardCharsets.UTF_8);
+		return new String(getXmlReport(), StandardCharsets.UTF_8);
 	}
 	
 	public byte[] getXmlReport() {
+		if (xmlReportFile != null) {
+			return readReport(xmlReportFile);
+		}
 		return this.xmlReport;
 	}
 	
+	/**
+	 * @return the file holding the XML report, or {@code null} if the report is kept in memory.
+	 */
+	public File getXmlReportFile() {
+		return xmlReportFile;
+	}
+	
+	private static byte[] readReport(File reportFile) {
+		try {
+			return Files.readAllBytes(reportFile.toPath());
+		} catch (IOException e) {
+			String message = "Error reading report file " + reportFile + ".";
+			LOGGER.error(message, e);
+			throw new ZapClientException(message, e);
+		}
+	}
+	
+	/**
+	 * @return {@code true} if the report files are temporary and must be deleted once they are no longer needed.
+	 */
+	public boolean hasTemporaryFiles() {
+		return temporaryFiles;
+	}
+	
+	/**
+	 * Flags the report files as temporary, so they are deleted once the reports are saved with
+	 * {@link ZapReportUtil#saveAllReports(ZapReport, String)} or by {@link #deleteTemporaryFiles()}.
+	 * 
+	 * @param temporaryFiles whether the report files are temporary.
+	 */
+	public void setTemporaryFiles(boolean temporaryFiles) {
+		this.temporaryFiles = temporaryFiles;
+	}
+	
+	/**
+	 * Deletes the report files if they are temporary. It must be called for reports that are not saved with
+	 * {@link ZapReportUtil#saveAllReports(ZapReport, String)}, once their contents are no longer needed:
+	 * the HTML and XML reports can't be read afterwards.
+	 */
+	public void deleteTemporaryFiles() {
+		if (!temporaryFiles) {
+			return;
+		}
+		temporaryFiles = false;
+		deleteReportFile(htmlReportFile);
+		deleteReportFile(xmlReportFile);
+	}
+	
+	/**
+	 * Replaces the temporary report files by their saved copies, deleting the temporary ones.
+	 * It does nothing if the report files are not temporary.
+	 */
+	void replaceTemporaryFiles(File savedHtmlReportFile, File savedXmlReportFile) {
+		if (temporaryFiles) {
+			deleteTemporaryFiles();
+			this.htmlReportFile = savedHtmlReportFile;
+			this.xmlReportFile = savedXmlReportFile;
+		}
+	}
+	
+	private static void deleteReportFile(File reportFile) {
+		try {
+			Files.deleteIfExists(reportFile.toPath());
+		} catch (IOException e) {
+			LOGGER.warn("Error deleting the temporary report file " + reportFile + ".", e);
+		}
+	}
+	
 	public List<String> getSpiderResults() {
 		return Collections.unmodifiableList(spiderResults);
 	}
@@ -76,4 +202,53 @@ public class ZapReport {
 		return xmlSpiderResults.getBytes();
 	}
 	
+	/**
+	 * @return {@code true} if any scan of the analysis was stopped before finishing.
+	 */
+	public boolean isPartial() {
+		return !incompleteScans.isEmpty();
+	}
+	
+	/**
+	 * @return the scans that were stopped before finishing, in the order they were run.
+	 */
+	public List<ScanType> getIncompleteScans() {
+		return Collections.unmodifiableList(incompleteScans);
+	}
+	
+	public void setIncompleteScans(List<ScanType> incompleteScans) {
+		this.incompleteScans = new ArrayList<>(incompleteScans);
+	}
+	
+	/**
+	 * @return the alerts of the URLs that didn't change since the previous analysis, which were not scanned again
+	 *         by an incremental analysis; empty for the other analyses.
+	 */
+	public List<Alert> getCarriedOverAlerts() {
+		return Collections.unmodifiableList(carriedOverAlerts);
+	}
+	
+	public void setCarriedOverAlerts(List<Alert> carriedOverAlerts) {
+		this.carriedOverAlerts = new ArrayList<>(carriedOverAlerts);
+	}
+	
+	/**
+	 * @return {@code true} if the analysis found enough alerts to reach its fail-fast threshold.
+	 * @see br.com.softplan.security.zap.api.model.AnalysisInfo#getFailFastThreshold()
+	 */
+	public boolean isAlertThresholdReached() {
+		return !thresholdAlerts.isEmpty();
+	}
+	
+	/**
+	 * @return the alerts that reached the fail-fast threshold of the analysis; empty if it was not reached.
+	 */
+	public List<Alert> getThresholdAlerts() {
+		return Collections.unmodifiableList(thresholdAlerts);
+	}
+	
+	public void setThresholdAlerts(List<Alert> thresholdAlerts) {
+		this.thresholdAlerts = new ArrayList<>(thresholdAlerts);
+	}
+	
 }
@@ -0,0 +1,471 @@
+package br.com.softplan.security.zap.api.report;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.softplan.security.zap.api.exception.ZapClientException;
+import br.com.softplan.security.zap.api.model.ScanType;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert;
+
+/**
+ * Merges the reports of analyses run on different ZAP instances into a single {@link ZapReport}.
+ * <ul>
+ * <li>XML: the {@code site} elements of all the reports are put under the root of the first report. Sites that
+ * appear in more than one report have their alerts merged, ignoring repeated alerts;</li>
+ * <li>HTML: the body of each report is appended to the body of the first report;</li>
+ * <li>Spider results: the URLs visited by all the Spiders, without repetitions;</li>
+ * <li>Incomplete scans: the scans that were stopped in any of the analyses, so the merged report is partial
+ * if any of the reports is;</li>
+ * <li>Carried over alerts: the alerts carried over by all the analyses, without repetitions.</li>
+ * </ul>
+ * The reports are streamed into temporary files (see {@link ZapReport#hasTemporaryFiles()}), so neither the
+ * reports being merged nor the merged one need to fit on the heap: the XML reports are copied event by event,
+ * and the HTML reports section by section.
+ * 
+ * @author pdsec
+ */
+public final class ZapReportMerger {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ZapReportMerger.class);
+	
+	private static final String SITE_ELEMENT = "site";
+	private static final String ALERTS_ELEMENT = "alerts";
+	private static final QName SITE_NAME_ATTRIBUTE = new QName("name");
+	
+	private static final byte[] BODY_START_TAG = "<body".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] BODY_END_TAG = "</body>".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] BODY_SEPARATOR = "\n<hr/>\n".getBytes(StandardCharsets.US_ASCII);
+	private static final int BUFFER_SIZE = 8 * 1024;
+	
+	public static ZapReport merge(List<ZapReport> reports) {
+		if (reports.isEmpty()) {
+			throw new IllegalArgumentException("There are no reports to be merged.");
+		}
+		if (reports.size() == 1) {
+			return reports.get(0);
+		}
+		File htmlReport = null;
+		File xmlReport = null;
+		try {
+			htmlReport = File.createTempFile("zapReport", ".html");
+			mergeHtmlReports(reports, htmlReport);
+			xmlReport = File.createTempFile("zapReport", ".xml");
+			mergeXmlReports(reports, xmlReport);
+		} catch (IOException | XMLStreamException | RuntimeException e) {
+			deleteQuietly(htmlReport);
+			deleteQuietly(xmlReport);
+			String message = "Error merging the reports.";
+			LOGGER.error(message, e);
+			throw new ZapClientException(message, e);
+		}
+		
+		ZapReport merged = new ZapReport(htmlReport, xmlReport, mergeSpiderResults(reports));
+		merged.setTemporaryFiles(true);
+		merged.setIncompleteScans(mergeIncompleteScans(reports));
+		merged.setCarriedOverAlerts(mergeCarriedOverAlerts(reports));
+		merged.setThresholdAlerts(mergeThresholdAlerts(reports));
+		return merged;
+	}
+	
+	private static void mergeHtmlReports(List<ZapReport> reports, File mergedReport) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(mergedReport.toPath()), BUFFER_SIZE)) {
+			ZapReport first = reports.get(0);
+			long firstBodyEnd = findHtmlBody(first)[1];
+			copyHtmlReport(first, out, 0, firstBodyEnd < 0 ? Long.MAX_VALUE : firstBodyEnd);
+			for (int i = 1; i < reports.size(); i++) {
+				out.write(BODY_SEPARATOR);
+				long[] body = findHtmlBody(reports.get(i));
+				if (body[0] < 0 || body[1] < body[0]) {
+					copyHtmlReport(reports.get(i), out, 0, Long.MAX_VALUE);
+				} else {
+					copyHtmlReport(reports.get(i), out, body[0], body[1]);
+				}
+			}
+			if (firstBodyEnd >= 0) {
+				copyHtmlReport(first, out, firstBodyEnd, Long.MAX_VALUE);
+			}
+		}
+	}
+	
+	/**
+	 * Finds, ignoring the case, where the contents of the body of an HTML report start (right after the first
+	 * {@code <body ...>} tag) and end (at the last {@code </body>} tag). The tags are plain ASCII, so the bytes of
+	 * the report are searched without decoding them.
+	 *
+	 * @return the offsets of the start and the end of the body contents, {@code -1} for the ones that were not found.
+	 */
+	private static long[] findHtmlBody(ZapReport report) throws IOException {
+		long bodyStart = -1;
+		long bodyEnd = -1;
+		boolean inBodyStartTag = false;
+		int startTagMatch = 0;
+		int endTagMatch = 0;
+		try (InputStream in = openHtmlReport(report)) {
+			long offset = 0;
+			int b;
+			while ((b = in.read()) != -1) {
+				int lowerCase = Character.toLowerCase(b);
+				if (inBodyStartTag) {
+					if (b == '>') {
+						inBodyStartTag = false;
+						bodyStart = offset + 1;
+					}
+				} else if (bodyStart < 0) {
+					startTagMatch = match(BODY_START_TAG, startTagMatch, lowerCase);
+					if (startTagMatch == BODY_START_TAG.length) {
+						inBodyStartTag = true;
+					}
+				}
+				endTagMatch = match(BODY_END_TAG, endTagMatch, lowerCase);
+				if (endTagMatch == BODY_END_TAG.length) {
+					bodyEnd = offset - BODY_END_TAG.length + 1;
+					endTagMatch = 0;
+				}
+				offset++;
+			}
+		}
+		return new long[] {bodyStart, bodyEnd};
+	}
+	
+	/**
+	 * Advances the match of a tag by one byte. The tags only have a {@code '<'} at their start, so a mismatch
+	 * can only restart the match at that byte.
+	 */
+	private static int match(byte[] tag, int matched, int b) {
+		if (b == tag[matched]) {
+			return matched + 1;
+		}
+		return b == tag[0] ? 1 : 0;
+	}
+	
+	private static void copyHtmlReport(ZapReport report, OutputStream out, long start, long end) throws IOException {
+		try (InputStream in = openHtmlReport(report)) {
+			long skipped = 0;
+			while (skipped < start) {
+				long n = in.skip(start - skipped);
+				if (n <= 0) {
+					return;
+				}
+				skipped += n;
+			}
+			byte[] buffer = new byte[BUFFER_SIZE];
+			long remaining = end - start;
+			int read;
+			while (remaining > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+				out.write(buffer, 0, read);
+				remaining -= read;
+			}
+		}
+	}
+	
+	private static void mergeXmlReports(List<ZapReport> reports, File mergedReport) throws IOException, XMLStreamException {
+		XMLInputFactory inputFactory = newInputFactory();
+		
+		// Each site is written once, where it first appears, with the alerts of its occurrences in the later reports
+		Map<String, Integer> firstReportBySite = new LinkedHashMap<>();
+		for (int i = 0; i < reports.size(); i++) {
+			for (String site : readSiteNames(inputFactory, reports.get(i))) {
+				if (!firstReportBySite.containsKey(site)) {
+					firstReportBySite.put(site, i);
+				}
+			}
+		}
+		
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(mergedReport.toPath()), BUFFER_SIZE);
+				InputStream in = openXmlReport(reports.get(0))) {
+			XMLEventWriter writer = XMLOutputFactory.newInstance().createXMLEventWriter(out, StandardCharsets.UTF_8.name());
+			XMLEventReader reader = inputFactory.createXMLEventReader(in);
+			Set<String> writtenSites = new HashSet<>();
+			int depth = 0;
+			while (reader.hasNext()) {
+				XMLEvent event = reader.nextEvent();
+				if (event.isStartDocument()) {
+					writer.add(XMLEventFactory.newInstance().createStartDocument(StandardCharsets.UTF_8.name(), "1.0"));
+					continue;
+				}
+				if (depth == 1 && isSite(event) && writtenSites.add(getSiteName(event))) {
+					copySite(reader, event.asStartElement(), writer, reports, 1, inputFactory);
+					continue;
+				}
+				if (depth == 1 && event.isEndElement()) {
+					// The sites that are not in the first report go at the end of its root
+					for (Map.Entry<String, Integer> site : firstReportBySite.entrySet()) {
+						if (site.getValue() > 0) {
+							writeSite(site.getKey(), site.getValue(), writer, reports, inputFactory);
+						}
+					}
+				}
+				depth += event.isStartElement() ? 1 : event.isEndElement() ? -1 : 0;
+				writer.add(event);
+			}
+			reader.close();
+			writer.close();
+		}
+	}
+	
+	private static List<String> readSiteNames(XMLInputFactory inputFactory, ZapReport report) throws IOException, XMLStreamException {
+		List<String> sites = new ArrayList<>();
+		try (InputStream in = openXmlReport(report)) {
+			XMLEventReader reader = inputFactory.createXMLEventReader(in);
+			int depth = 0;
+			while (reader.hasNext()) {
+				XMLEvent event = reader.nextEvent();
+				if (depth == 1 && isSite(event)) {
+					sites.add(getSiteName(event));
+				}
+				depth += event.isStartElement() ? 1 : event.isEndElement() ? -1 : 0;
+			}
+			reader.close();
+		}
+		return sites;
+	}
+	
+	/**
+	 * Copies the first occurrence of the given site in the given report, with the alerts of its occurrences in the following reports.
+	 */
+	private static void writeSite(String siteName, int reportIndex, XMLEventWriter writer, List<ZapReport> reports,
+			XMLInputFactory inputFactory) throws IOException, XMLStreamException {
+		try (InputStream in = openXmlReport(reports.get(reportIndex))) {
+			XMLEventReader reader = inputFactory.createXMLEventReader(in);
+			int depth = 0;
+			while (reader.hasNext()) {
+				XMLEvent event = reader.nextEvent();
+				if (depth == 1 && isSite(event) && siteName.equals(getSiteName(event))) {
+					copySite(reader, event.asStartElement(), writer, reports, reportIndex + 1, inputFactory);
+					break;
+				}
+				depth += event.isStartElement() ? 1 : event.isEndElement() ? -1 : 0;
+			}
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Copies a site, whose start element was just read, adding the alerts of the same site in the reports from the
+	 * given index on to its first {@code alerts} element (created if the site has none).
+	 */
+	private static void copySite(XMLEventReader reader, StartElement site, XMLEventWriter writer, List<ZapReport> reports,
+			int nextReportIndex, XMLInputFactory inputFactory) throws IOException, XMLStreamException {
+		String siteName = getSiteName(site);
+		Set<ByteBuffer> alerts = new HashSet<>();
+		boolean alertsMerged = false;
+		
+		writer.add(site);
+		int depth = 1;
+		boolean inAlerts = false;
+		while (depth > 0) {
+			XMLEvent event = reader.nextEvent();
+			if (inAlerts && depth == 2 && event.isStartElement()) {
+				List<XMLEvent> alertItem = readElement(reader, event);
+				alerts.add(digestTextContent(alertItem));
+				writeAll(alertItem, writer);
+				continue;
+			}
+			if (event.isStartElement()) {
+				depth++;
+				inAlerts = !alertsMerged && depth == 2 && ALERTS_ELEMENT.equals(event.asStartElement().getName().getLocalPart());
+			} else if (event.isEndElement()) {
+				depth--;
+				if (inAlerts && depth == 1) {
+					inAlerts = false;
+					alertsMerged = true;
+					appendAlerts(siteName, reports, nextReportIndex, alerts, writer, false, inputFactory);
+				} else if (depth == 0 && !alertsMerged) {
+					appendAlerts(siteName, reports, nextReportIndex, alerts, writer, true, inputFactory);
+				}
+			}
+			writer.add(event);
+		}
+	}
+	
+	/**
+	 * Writes the alerts of the given site in the reports from the given index on, ignoring the alerts already written.
+	 */
+	private static void appendAlerts(String siteName, List<ZapReport> reports, int fromReportIndex, Set<ByteBuffer> alerts,
+			XMLEventWriter writer, boolean wrapInAlertsElement, XMLInputFactory inputFactory) throws IOException, XMLStreamException {
+		XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+		boolean wrapperStarted = false;
+		for (int i = fromReportIndex; i < reports.size(); i++) {
+			try (InputStream in = openXmlReport(reports.get(i))) {
+				XMLEventReader reader = inputFactory.createXMLEventReader(in);
+				int depth = 0;
+				boolean inSite = false;
+				boolean inAlerts = false;
+				while (reader.hasNext()) {
+					XMLEvent event = reader.nextEvent();
+					if (inAlerts && depth == 3 && event.isStartElement()) {
+						List<XMLEvent> alertItem = readElement(reader, event);
+						if (alerts.add(digestTextContent(alertItem))) {
+							if (wrapInAlertsElement && !wrapperStarted) {
+								writer.add(eventFactory.createStartElement("", "", ALERTS_ELEMENT));
+								wrapperStarted = true;
+							}
+							writeAll(alertItem, writer);
+						}
+						continue;
+					}
+					if (event.isStartElement()) {
+						if (depth == 1) {
+							inSite = isSite(event) && siteName.equals(getSiteName(event));
+						} else if (depth == 2) {
+							inAlerts = inSite && ALERTS_ELEMENT.equals(event.asStartElement().getName().getLocalPart());
+						}
+						depth++;
+					} else if (event.isEndElement()) {
+						depth--;
+						inAlerts = inAlerts && depth > 2;
+					}
+				}
+				reader.close();
+			}
+		}
+		if (wrapperStarted) {
+			writer.add(eventFactory.createEndElement("", "", ALERTS_ELEMENT));
+		}
+	}
+	
+	/**
+	 * Reads an element, whose start element was just read, up to its end. Only used for single alerts, which are small.
+	 */
+	private static List<XMLEvent> readElement(XMLEventReader reader, XMLEvent start) throws XMLStreamException {
+		List<XMLEvent> events = new ArrayList<>();
+		events.add(start);
+		int depth = 1;
+		while (depth > 0) {
+			XMLEvent event = reader.nextEvent();
+			depth += event.isStartElement() ? 1 : event.isEndElement() ? -1 : 0;
+			events.add(event);
+		}
+		return events;
+	}
+	
+	private static void writeAll(List<XMLEvent> events, XMLEventWriter writer) throws XMLStreamException {
+		for (XMLEvent event : events) {
+			writer.add(event);
+		}
+	}
+	
+	/**
+	 * Digests the text content of an alert, so repeated alerts are recognized without keeping their texts.
+	 */
+	private static ByteBuffer digestTextContent(List<XMLEvent> events) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (XMLEvent event : events) {
+				if (event.isCharacters()) {
+					digest.update(event.asCharacters().getData().getBytes(StandardCharsets.UTF_8));
+				}
+			}
+			return ByteBuffer.wrap(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private static boolean isSite(XMLEvent event) {
+		return event.isStartElement() && SITE_ELEMENT.equals(event.asStartElement().getName().getLocalPart());
+	}
+	
+	private static String getSiteName(XMLEvent site) {
+		Attribute name = site.asStartElement().getAttributeByName(SITE_NAME_ATTRIBUTE);
+		return name != null ? name.getValue() : "";
+	}
+	
+	private static XMLInputFactory newInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		return factory;
+	}
+	
+	private static InputStream openHtmlReport(ZapReport report) throws IOException {
+		if (report.getHtmlReportFile() != null) {
+			return new BufferedInputStream(Files.newInputStream(report.getHtmlReportFile().toPath()), BUFFER_SIZE);
+		}
+		return new ByteArrayInputStream(report.getHtmlReport());
+	}
+	
+	private static InputStream openXmlReport(ZapReport report) throws IOException {
+		if (report.getXmlReportFile() != null) {
+			return new BufferedInputStream(Files.newInputStream(report.getXmlReportFile().toPath()), BUFFER_SIZE);
+		}
+		return new ByteArrayInputStream(report.getXmlReport());
+	}
+	
+	private static void deleteQuietly(File file) {
+		if (file == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(file.toPath());
+		} catch (IOException e) {
+			LOGGER.warn("Error deleting the temporary file " + file + ".", e);
+		}
+	}
+	
+	private static List<String> mergeSpiderResults(List<ZapReport> reports) {
+		Set<String> urls = new LinkedHashSet<>();
+		for (ZapReport report : reports) {
+			urls.addAll(report.getSpiderResults());
+		}
+		return new ArrayList<>(urls);
+	}
+	
+	private static List<ScanType> mergeIncompleteScans(List<ZapReport> reports) {
+		Set<ScanType> scans = new LinkedHashSet<>();
+		for (ZapReport report : reports) {
+			scans.addAll(report.getIncompleteScans());
+		}
+		return new ArrayList<>(scans);
+	}
+	
+	private static List<Alert> mergeCarriedOverAlerts(List<ZapReport> reports) {
+		Set<Alert> alerts = new LinkedHashSet<>();
+		for (ZapReport report : reports) {
+			alerts.addAll(report.getCarriedOverAlerts());
+		}
+		return new ArrayList<>(alerts);
+	}
+	
+	private static List<Alert> mergeThresholdAlerts(List<ZapReport> reports) {
+		Set<Alert> alerts = new LinkedHashSet<>();
+		for (ZapReport report : reports) {
+			alerts.addAll(report.getThresholdAlerts());
+		}
+		return new ArrayList<>(alerts);
+	}
+	
+	private ZapReportMerger() {}
+	
+}
@@ -4,13 +4,17 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import br.com.softplan.security.zap.api.analysis.AnalysisTimeline;
 import br.com.softplan.security.zap.api.exception.ZapClientException;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.InMemoryApiMetricsRegistry;
 
 /**
  * Class responsible to save ZAP reports.
@@ -28,25 +32,27 @@ public final class ZapReportUtil {
 	 * Saves all available reports to the default path (target/zap-reports/). 
 	 * 
 	 * @param report the {@link ZapReport} holding the reports to be saved.
+	 * @see #saveAllReports(ZapReport, String)
 	 */
 	public static void saveAllReports(ZapReport report) {
-		saveHtmlReport(report);
-		saveXmlReport(report);
-		saveHtmlSpiderResults(report);
-		saveXmlSpiderResults(report);
+		saveAllReports(report, DEFAULT_REPORTS_PATH);
 	}
 	
 	/**
 	 * Saves all available reports to the given path. 
+	 * <p>
+	 * If the report is held in {@link ZapReport#hasTemporaryFiles() temporary files}, they are deleted once copied
+	 * and the report is read from the saved files from then on.
 	 * 
 	 * @param report the {@link ZapReport} holding the reports to be saved.
 	 * @param path the path to save the reports.
 	 */
 	public static void saveAllReports(ZapReport report, String path) {
-		saveHtmlReport(report, path);
-		saveXmlReport(report, path);
+		File htmlReport = saveHtmlReport(report, path);
+		File xmlReport = saveXmlReport(report, path);
 		saveHtmlSpiderResults(report, path);
 		saveXmlSpiderResults(report, path);
+		report.replaceTemporaryFiles(htmlReport, xmlReport);
 	}
 	
 	/**
@@ -67,6 +73,9 @@ public final class ZapReportUtil {
 	 * @return the saved HTML report as a {@code File} instance.
 	 */
 	public static File saveHtmlReport(ZapReport report, String path) {
+		if (report.getHtmlReportFile() != null) {
+			return copyReport(report.getHtmlReportFile(), "zapReport.html", path);
+		}
 		return saveReport(report.getHtmlReport(), "zapReport.html", path);
 	}
 
@@ -88,6 +97,9 @@ public final class ZapReportUtil {
 	 * @return the saved XML report as a {@code File} instance.
 	 */
 	public static File saveXmlReport(ZapReport report, String path) {
+		if (report.getXmlReportFile() != null) {
+			return copyReport(report.getXmlReportFile(), "zapReport.xml", path);
+		}
 		return saveReport(report.getXmlReport(), "zapReport.xml", path);
 	}
 
@@ -133,6 +145,48 @@ public final class ZapReportUtil {
 		return saveReport(report.getXmlSpiderResults(), "zapSpiderResults.xml", path);
 	}
 	
+	/**
+	 * Saves the summary of the ZAP API metrics to the default path (target/zap-reports/).
+	 * 
+	 * @param apiMetrics the metrics collected during the analysis.
+	 * @return the saved summary as a {@code File} instance.
+	 */
+	public static File saveApiMetrics(InMemoryApiMetricsRegistry apiMetrics) {
+		return saveApiMetrics(apiMetrics, DEFAULT_REPORTS_PATH);
+	}
+	
+	/**
+	 * Saves the summary of the ZAP API metrics to the given path.
+	 * 
+	 * @param apiMetrics the metrics collected during the analysis.
+	 * @param path the path to save the summary.
+	 * @return the saved summary as a {@code File} instance.
+	 */
+	public static File saveApiMetrics(InMemoryApiMetricsRegistry apiMetrics, String path) {
+		return saveReport(apiMetrics.getSummary().getBytes(StandardCharsets.UTF_8), "zapApiMetrics.txt", path);
+	}
+	
+	/**
+	 * Saves the analysis timeline, as JSON, to the default path (target/zap-reports/).
+	 * 
+	 * @param timeline the timeline of the analysis.
+	 * @return the saved timeline as a {@code File} instance.
+	 */
+	public static File saveTimeline(AnalysisTimeline timeline) {
+		return saveTimeline(timeline, DEFAULT_REPORTS_PATH);
+	}
+	
+	/**
+	 * Saves the analysis timeline, as JSON, to the given path.
+	 * 
+	 * @param timeline the timeline of the analysis.
+	 * @param path the path to save the timeline.
+	 * @return the saved timeline as a {@code File} instance.
+	 */
+	public static File saveTimeline(AnalysisTimeline timeline, String path) {
+		return saveReport(timeline.toJson().getBytes(StandardCharsets.UTF_8), "zapTimeline.json", path);
+	}
+	
 	private static File saveReport(byte[] report, String name, String path) {
 		createReportsFolder(path);
 		File reportFile = new File(path, name);
@@ -149,6 +203,22 @@ public final class ZapReportUtil {
 		return reportFile;
 	}
 	
+	private static File copyReport(File source, String name, String path) {
+		createReportsFolder(path);
+		File reportFile = new File(path, name);
+		
+		try {
+			Files.copy(source.toPath(), reportFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			LOGGER.info("{} saved to {}", name, path);
+		} catch(IOException e) {
+			String message = "Error saving reports.";
+			LOGGER.error(message, e);
+			throw new ZapClientException(message, e);
+		}
+		
+		return reportFile;
+	}
+	
 	private static void createReportsFolder(String path) {
 		try {
 			Files.createDirectories(Paths.get(path));
@@ -0,0 +1,147 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert.Confidence;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert.Risk;
+
+/**
+ * Index of alert filters (as used by {@link Alert#matches(Alert)}) keyed on the alert name, risk and confidence.
+ * <p>
+ * A {@code null} field in a filter is a wildcard, so an alert can only be matched by the filters stored under
+ * the 8 combinations of its own fields and wildcards. Each key keeps the positions of its filters in ascending
+ * order, so the first matching filter (in the original list order) is found with at most 8 lookups, and it can
+ * be removed in constant time.
+ * 
+ * @author pdsec
+ */
+class AlertFilterIndex {
+
+	private final List<Alert> filters;
+	private final boolean[] removed;
+	private final Map<FilterKey, ArrayDeque<Integer>> positionsByKey = new HashMap<>();
+	
+	AlertFilterIndex(List<Alert> filters) {
+		this.filters = new ArrayList<>(filters);
+		this.removed = new boolean[filters.size()];
+		for (int i = 0; i < this.filters.size(); i++) {
+			Alert filter = this.filters.get(i);
+			FilterKey key = new FilterKey(filter.getAlert(), filter.getRisk(), filter.getConfidence());
+			ArrayDeque<Integer> positions = positionsByKey.get(key);
+			if (positions == null) {
+				positions = new ArrayDeque<>();
+				positionsByKey.put(key, positions);
+			}
+			positions.addLast(i);
+		}
+	}
+	
+	/**
+	 * @param alert the alert to be matched.
+	 * @return the first filter (in the original order) that matches the alert, or {@code null} if none does.
+	 */
+	Alert findFirstMatch(Alert alert) {
+		ArrayDeque<Integer> positions = findFirstMatchPositions(alert);
+		return positions == null ? null : filters.get(positions.peekFirst());
+	}
+	
+	/**
+	 * Removes the first filter (in the original order) that matches the alert.
+	 * 
+	 * @param alert the alert to be matched.
+	 * @return the removed filter, or {@code null} if no filter matches the alert.
+	 */
+	Alert removeFirstMatch(Alert alert) {
+		ArrayDeque<Integer> positions = findFirstMatchPositions(alert);
+		if (positions == null) {
+			return null;
+		}
+		int position = positions.pollFirst();
+		removed[position] = true;
+		return filters.get(position);
+	}
+	
+	/**
+	 * @return the filters that weren't removed, in the original order.
+	 */
+	List<Alert> getRemainingFilters() {
+		List<Alert> remaining = new ArrayList<>();
+		for (int i = 0; i < filters.size(); i++) {
+			if (!removed[i]) {
+				remaining.add(filters.get(i));
+			}
+		}
+		return remaining;
+	}
+	
+	private ArrayDeque<Integer> findFirstMatchPositions(Alert alert) {
+		if (positionsByKey.isEmpty()) {
+			return null;
+		}
+		ArrayDeque<Integer> first = null;
+		for (String name : wildcardOr(alert.getAlert())) {
+			for (Risk risk : wildcardOr(alert.getRisk())) {
+				for (Confidence confidence : wildcardOr(alert.getConfidence())) {
+					ArrayDeque<Integer> positions = positionsByKey.get(new FilterKey(name, risk, confidence));
+					if (positions != null && !positions.isEmpty()
+							&& (first == null || positions.peekFirst() < first.peekFirst())) {
+						first = positions;
+					}
+				}
+			}
+		}
+		return first;
+	}
+	
+	private static <T> List<T> wildcardOr(T value) {
+		List<T> values = new ArrayList<>(2);
+		values.add(null);
+		if (value != null) {
+			values.add(value);
+		}
+		return values;
+	}
+	
+	private static final class FilterKey {
+		
+		private final String name;
+		private final Risk risk;
+		private final Confidence confidence;
+		
+		FilterKey(String name, Risk risk, Confidence confidence) {
+			this.name = name;
+			this.risk = risk;
+			this.confidence = confidence;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + ((name == null) ? 0 : name.hashCode());
+			result = prime * result + ((risk == null) ? 0 : risk.hashCode());
+			result = prime * result + ((confidence == null) ? 0 : confidence.hashCode());
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (this == object) {
+				return true;
+			}
+			if (!(object instanceof FilterKey)) {
+				return false;
+			}
+			FilterKey other = (FilterKey) object;
+			return (name == null ? other.name == null : name.equals(other.name))
+					&& risk == other.risk
+					&& confidence == other.confidence;
+		}
+		
+	}
+	
+}
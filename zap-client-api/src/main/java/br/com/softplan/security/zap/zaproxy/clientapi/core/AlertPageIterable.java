@@ -0,0 +1,86 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link Iterable} over ZAP's alerts that fetches them lazily, one {@code core.alerts} page at a time.
+ * <p>
+ * Only the current page is kept in memory, so the memory used is bounded by the page size regardless of
+ * the number of alerts. Each call to {@link #iterator()} starts a new cursor from the first alert.
+ * <p>
+ * As {@link Iterator} can't throw checked exceptions, failures while fetching a page are thrown as
+ * {@link IllegalStateException}s caused by the original {@link ClientApiException}.
+ * 
+ * @author pdsec
+ */
+class AlertPageIterable implements Iterable<Alert> {
+
+	private final ClientApi api;
+	private final String baseUrl;
+	private final int pageSize;
+	
+	AlertPageIterable(ClientApi api, String baseUrl, int pageSize) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("The page size must be greater than zero.");
+		}
+		this.api = api;
+		this.baseUrl = baseUrl;
+		this.pageSize = pageSize;
+	}
+	
+	@Override
+	public Iterator<Alert> iterator() {
+		return new AlertPageIterator();
+	}
+	
+	private class AlertPageIterator implements Iterator<Alert> {
+
+		private List<Alert> page = Collections.emptyList();
+		private int positionInPage;
+		private int nextStart;
+		private boolean lastPageFetched;
+		
+		@Override
+		public boolean hasNext() {
+			while (positionInPage >= page.size()) {
+				if (lastPageFetched) {
+					return false;
+				}
+				fetchNextPage();
+			}
+			return true;
+		}
+		
+		private void fetchNextPage() {
+			try {
+				page = api.getAlerts(baseUrl, nextStart, pageSize);
+			} catch (ClientApiException e) {
+				throw new IllegalStateException("Error fetching the alerts starting at " + nextStart + ".", e);
+			}
+			positionInPage = 0;
+			nextStart += page.size();
+			lastPageFetched = page.size() < pageSize;
+		}
+
+		@Override
+		public Alert next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Alert alert = page.get(positionInPage);
+			// Drop the reference so the page can be collected as it's consumed
+			page.set(positionInPage++, null);
+			return alert;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+	}
+	
+}
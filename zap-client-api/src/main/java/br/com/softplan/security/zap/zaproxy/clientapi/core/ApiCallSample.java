@@ -0,0 +1,68 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+/**
+ * The measurements of a single call to ZAP's API.
+ * <p>
+ * The time to first byte goes from the start of the call until the response headers are read, so it includes
+ * waiting for a connection, sending the request and the time ZAP takes to handle it. The body time is spent reading
+ * the response body, parsing it for the API views and actions, or copying it for the {@code other} calls.
+ *
+ * @author pdsec
+ */
+public final class ApiCallSample {
+	
+	private final String component;
+	private final String type;
+	private final String method;
+	private final long firstByteNanos;
+	private final long bodyNanos;
+	private final long bytesReceived;
+	private final boolean failed;
+	
+	public ApiCallSample(String component, String type, String method, 
+			long firstByteNanos, long bodyNanos, long bytesReceived, boolean failed) {
+		this.component = component;
+		this.type = type;
+		this.method = method;
+		this.firstByteNanos = firstByteNanos;
+		this.bodyNanos = bodyNanos;
+		this.bytesReceived = bytesReceived;
+		this.failed = failed;
+	}
+	
+	public String getComponent() {
+		return component;
+	}
+	
+	public String getType() {
+		return type;
+	}
+	
+	public String getMethod() {
+		return method;
+	}
+	
+	/**
+	 * @return the endpoint of the call, e.g. {@code spider/view/status}.
+	 */
+	public String getEndpoint() {
+		return component + "/" + type + "/" + method;
+	}
+	
+	public long getFirstByteNanos() {
+		return firstByteNanos;
+	}
+	
+	public long getBodyNanos() {
+		return bodyNanos;
+	}
+	
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+	
+	public boolean isFailed() {
+		return failed;
+	}
+
+}
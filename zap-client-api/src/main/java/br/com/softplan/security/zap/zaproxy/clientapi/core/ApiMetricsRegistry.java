@@ -0,0 +1,29 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+/**
+ * Receives the measurements of the calls made by {@link ClientApi} to ZAP's API.
+ * <p>
+ * Implementations must be thread-safe and cheap, since they are called on every API call.
+ *
+ * @author pdsec
+ * @see ClientApi#setMetricsRegistry(ApiMetricsRegistry)
+ * @see InMemoryApiMetricsRegistry
+ */
+public interface ApiMetricsRegistry {
+	
+	/**
+	 * Records a finished API call, successful or not.
+	 *
+	 * @param sample the measurements of the call.
+	 */
+	void recordCall(ApiCallSample sample);
+	
+	/**
+	 * Records the time taken to open a new connection to ZAP. Only transports that open their connections
+	 * explicitly (e.g. {@link PooledHttpTransport}) report it.
+	 *
+	 * @param connectNanos the connection time in nanoseconds.
+	 */
+	void recordConnect(long connectNanos);
+
+}
@@ -0,0 +1,48 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import javax.xml.stream.FactoryConfigurationError;
+
+/**
+ * Wire formats in which ZAP can serve the view and action API calls.
+ * 
+ * @author pdsec
+ */
+public enum ApiResponseFormat {
+	
+	XML("xml") {
+		@Override
+		public ApiResponseParser newParser() {
+			try {
+				return new StaxApiResponseParser();
+			} catch (FactoryConfigurationError e) {
+				return new DomApiResponseParser();
+			}
+		}
+	},
+	
+	JSON("JSON") {
+		@Override
+		public ApiResponseParser newParser() {
+			return new JsonApiResponseParser();
+		}
+	};
+	
+	private final String pathSegment;
+	
+	private ApiResponseFormat(String pathSegment) {
+		this.pathSegment = pathSegment;
+	}
+	
+	/**
+	 * @return the format as used in the API URL path (e.g. {@code http://zap/JSON/core/view/version/}).
+	 */
+	public String getPathSegment() {
+		return pathSegment;
+	}
+	
+	/**
+	 * @return a new parser for the responses served in this format.
+	 */
+	public abstract ApiResponseParser newParser();
+	
+}
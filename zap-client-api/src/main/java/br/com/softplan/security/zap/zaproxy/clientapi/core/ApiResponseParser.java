@@ -0,0 +1,24 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.io.InputStream;
+
+/**
+ * Parses the body of a ZAP API response into the {@link ApiResponse} hierarchy.
+ * 
+ * @author pdsec
+ */
+public interface ApiResponseParser {
+
+	/**
+	 * Parses the given response body.
+	 * <p>
+	 * Implementations must throw a {@link ClientApiException} with ZAP's error code and detail
+	 * when the response describes an API error.
+	 * 
+	 * @param in the response body (it's not closed by the parser).
+	 * @return the parsed response.
+	 * @throws ClientApiException if the response is an API error or it can't be parsed.
+	 */
+	ApiResponse parse(InputStream in) throws ClientApiException;
+	
+}
@@ -20,11 +20,14 @@
 package br.com.softplan.security.zap.zaproxy.clientapi.core;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
@@ -33,16 +36,16 @@ import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
-import org.w3c.dom.Document;
-
 import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert.Confidence;
 import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert.Risk;
 import br.com.softplan.security.zap.zaproxy.clientapi.gen.Acsrf;
@@ -65,10 +68,22 @@ import br.com.softplan.security.zap.zaproxy.clientapi.gen.SessionManagement;
 import br.com.softplan.security.zap.zaproxy.clientapi.gen.Spider;
 import br.com.softplan.security.zap.zaproxy.clientapi.gen.Users;
 
-public class ClientApi {
+public class ClientApi implements Closeable {
+
+	/**
+	 * Number of alerts fetched per {@code core.alerts} request when the alerts are iterated.
+	 */
+	public static final int DEFAULT_ALERTS_PAGE_SIZE = 500;
+
+	private static final int OTHER_BUFFER_SIZE = 8 * 1024;
+
 	private Proxy proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress("localhost", 8090));
+	private ClientApiTransport transport;
+	private ApiResponseFormat responseFormat = ApiResponseFormat.XML;
+	private ApiResponseParser responseParser = responseFormat.newParser();
 	private boolean debug = false;
 	private PrintStream debugStream = System.out;
+	private volatile ApiMetricsRegistry metricsRegistry;
 
 	// Note that any new API implementations added have to be added here manually
 	public Acsrf acsrf = new Acsrf(this);
@@ -96,8 +111,89 @@ public class ClientApi {
 	}
 	
 	public ClientApi (String zapAddress, int zapPort, boolean debug) {
+		this(zapAddress, zapPort, debug, new PooledHttpTransport(zapAddress, zapPort));
+	}
+
+	public ClientApi (String zapAddress, int zapPort, boolean debug, ClientApiTransport transport) {
 		proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress(zapAddress, zapPort));
 		this.debug = debug;
+		this.transport = transport;
+	}
+
+	/**
+	 * Replaces the transport used to call ZAP's API, closing the previous one.
+	 * 
+	 * @param transport the new transport.
+	 */
+	public void setTransport(ClientApiTransport transport) {
+		ClientApiTransport previous = this.transport;
+		this.transport = transport;
+		propagateMetricsRegistry();
+		if (previous != null && previous != transport) {
+			previous.close();
+		}
+	}
+
+	public ClientApiTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * Sets the registry that receives the measurements of every API call (and, for {@link PooledHttpTransport},
+	 * of every new connection). No measurements are taken while it's {@code null}, the default.
+	 * 
+	 * @param metricsRegistry the metrics registry, may be {@code null}.
+	 */
+	public void setMetricsRegistry(ApiMetricsRegistry metricsRegistry) {
+		this.metricsRegistry = metricsRegistry;
+		propagateMetricsRegistry();
+	}
+
+	public ApiMetricsRegistry getMetricsRegistry() {
+		return metricsRegistry;
+	}
+
+	private void propagateMetricsRegistry() {
+		if (transport instanceof PooledHttpTransport) {
+			((PooledHttpTransport) transport).setMetricsRegistry(metricsRegistry);
+		}
+	}
+
+	/**
+	 * Selects the format in which ZAP should serve the view and action calls, replacing the response parser accordingly.
+	 * <p>
+	 * The calls made with {@code callApiOther} (e.g. the reports) are not affected.
+	 * 
+	 * @param responseFormat the new response format.
+	 */
+	public void setResponseFormat(ApiResponseFormat responseFormat) {
+		this.responseFormat = responseFormat;
+		this.responseParser = responseFormat.newParser();
+	}
+
+	public ApiResponseFormat getResponseFormat() {
+		return responseFormat;
+	}
+
+	/**
+	 * Replaces the parser used to read ZAP's responses. It must handle the current response format.
+	 * 
+	 * @param responseParser the new parser.
+	 */
+	public void setResponseParser(ApiResponseParser responseParser) {
+		this.responseParser = responseParser;
+	}
+
+	public ApiResponseParser getResponseParser() {
+		return responseParser;
+	}
+
+	/**
+	 * Releases the connections kept by the API transport.
+	 */
+	@Override
+	public void close() {
+		transport.close();
 	}
 	
 	public void setDebugStream(PrintStream debugStream) {
@@ -172,68 +268,91 @@ public class ClientApi {
         if (response != null && response instanceof ApiResponseList) {
             ApiResponseList alertList = (ApiResponseList)response;
             for (ApiResponse resp : alertList.getItems()) {
-            	ApiResponseSet alertSet = (ApiResponseSet)resp;
-                alerts.add(new Alert(
-                		alertSet.getAttribute("alert"),
-                        alertSet.getAttribute("url"),
-                        Risk.valueOf(alertSet.getAttribute("risk")),
-                        Confidence.valueOf(alertSet.getAttribute("confidence")),
-                        alertSet.getAttribute("param"),
-                        alertSet.getAttribute("other"),
-                        alertSet.getAttribute("attack"),
-                        alertSet.getAttribute("description"),
-                        alertSet.getAttribute("reference"),
-                        alertSet.getAttribute("solution"),
-                        alertSet.getAttribute("evidence"),
-                        Integer.parseInt(alertSet.getAttribute("cweid")),
-                        Integer.parseInt(alertSet.getAttribute("wascid"))));
+                alerts.add(toAlert((ApiResponseSet)resp));
             }
         }
     	return alerts;
     }
 
+    /**
+     * Iterates over the alerts lazily, fetching them from {@code core.alerts} in pages of {@code pageSize} alerts
+     * as the iteration advances, so only one page is kept in memory at a time.
+     * <p>
+     * Errors fetching a page are thrown as {@link IllegalStateException}s caused by the {@link ClientApiException}.
+     * 
+     * @param baseUrl the base URL to filter the alerts, or {@code null} to iterate over all the alerts.
+     * @param pageSize the number of alerts fetched per request.
+     * @return an {@link Iterable} whose iterators start a new cursor from the first alert.
+     */
+    public Iterable<Alert> iterateAlerts(String baseUrl, int pageSize) {
+        return new AlertPageIterable(this, baseUrl, pageSize);
+    }
+
+    private static Alert toAlert(ApiResponseSet alertSet) {
+        return new Alert(
+                alertSet.getAttribute("alert"),
+                alertSet.getAttribute("url"),
+                Risk.valueOf(alertSet.getAttribute("risk")),
+                Confidence.valueOf(alertSet.getAttribute("confidence")),
+                alertSet.getAttribute("param"),
+                alertSet.getAttribute("other"),
+                alertSet.getAttribute("attack"),
+                alertSet.getAttribute("description"),
+                alertSet.getAttribute("reference"),
+                alertSet.getAttribute("solution"),
+                alertSet.getAttribute("evidence"),
+                Integer.parseInt(alertSet.getAttribute("cweid")),
+                Integer.parseInt(alertSet.getAttribute("wascid")));
+    }
+
     private HashMap<String, List<Alert>> checkForAlerts(List<Alert> ignoreAlerts, List<Alert> requireAlerts) throws ClientApiException {
-        List<Alert> reportAlerts = new ArrayList<>();
+        RemovableAlertList reportAlerts = new RemovableAlertList();
         List<Alert> ignoredAlerts = new ArrayList<>();
-        List<Alert> alerts = getAlerts(null, -1, -1);
-        for (Alert alert : alerts) {
-            boolean ignore = false;
-            if (ignoreAlerts != null) {
-                for (Alert ignoreAlert : ignoreAlerts) {
-                    if (alert.matches(ignoreAlert)) {
-                        if (debug) {
-                            debugStream.println("Ignoring alert " + ignoreAlert);
-                        }
-                        ignoredAlerts.add(alert);
-                        ignore = true;
-                        break;
-                    }
+        AlertFilterIndex ignoreIndex = ignoreAlerts != null ? new AlertFilterIndex(ignoreAlerts) : null;
+        AlertFilterIndex requireIndex = requireAlerts != null ? new AlertFilterIndex(requireAlerts) : null;
+        Iterator<Alert> alerts = iterateAlerts(null, DEFAULT_ALERTS_PAGE_SIZE).iterator();
+        while (hasNextAlert(alerts)) {
+            Alert alert = alerts.next();
+            Alert ignoreAlert = ignoreIndex != null ? ignoreIndex.findFirstMatch(alert) : null;
+            if (ignoreAlert != null) {
+                if (debug) {
+                    debugStream.println("Ignoring alert " + ignoreAlert);
                 }
-            }
-            if (! ignore) {
+                ignoredAlerts.add(alert);
+            } else {
                 reportAlerts.add(alert);
             }
-            if (requireAlerts != null) {
-                for (Alert requireAlert : requireAlerts) {
-                    if (alert.matches(requireAlert)) {
-                        if (debug) {
-                            debugStream.println("Found alert " + alert);
-                        }
-                        requireAlerts.remove(requireAlert);
-                        // Remove it from the not-ignored list as well
-                        reportAlerts.remove(alert);
-                        break;
-                    }
+            if (requireIndex != null && requireIndex.removeFirstMatch(alert) != null) {
+                if (debug) {
+                    debugStream.println("Found alert " + alert);
                 }
+                // Remove it from the not-ignored list as well
+                reportAlerts.remove(alert);
             }
         }
+        if (requireAlerts != null) {
+            List<Alert> notFoundAlerts = requireIndex.getRemainingFilters();
+            requireAlerts.clear();
+            requireAlerts.addAll(notFoundAlerts);
+        }
         HashMap<String, List<Alert>> results = new HashMap<>();
-        results.put("reportAlerts", reportAlerts);
+        results.put("reportAlerts", reportAlerts.toList());
         results.put("requireAlerts", requireAlerts);
         results.put("ignoredAlerts", ignoredAlerts);
         return results;
     }
 
+    private static boolean hasNextAlert(Iterator<Alert> alerts) throws ClientApiException {
+        try {
+            return alerts.hasNext();
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof ClientApiException) {
+                throw (ClientApiException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
 	private void accessUrlViaProxy (Proxy proxy, String apiurl) throws ClientApiException {
 		try {
 			URL url = new URL(apiurl);
@@ -268,64 +387,139 @@ public class ClientApi {
 
 	public ApiResponse callApi (String component, String type, String method,
 			Map<String, String> params) throws ClientApiException {
-		Document dom = this.callApiDom(component, type, method, params);
-		return ApiResponseFactory.getResponse(dom.getFirstChild());
-	}
-
-	private Document callApiDom (String component, String type, String method,
-			Map<String, String> params) throws ClientApiException {
+		CallTimer timer = startTimer(component, type, method);
+		InputStream in = null;
+		boolean succeeded = false;
 		try {
-			URL url = buildZapRequestUrl("xml", component, type, method, params);
+			URL url = buildZapRequestUrl(responseFormat.getPathSegment(), component, type, method, params);
 			if (debug) {
 				debugStream.println("Open URL: " + url);
 			}
-			//get the factory
-			DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-			//Using factory get an instance of document builder
-			DocumentBuilder db = dbf.newDocumentBuilder();
-			//parse using builder to get DOM representation of the XML file
-			return db.parse(getConnectionInputStream(url));
-		} catch (Exception e) {
+			in = timer.firstByte(getConnectionInputStream(url));
+			ApiResponse response = responseParser.parse(in);
+			succeeded = true;
+			return response;
+		} catch (IOException e) {
 			throw new ClientApiException(e);
+		} finally {
+			closeQuietly(in);
+			timer.finish(succeeded);
 		}
 	}
 
-	private InputStream getConnectionInputStream(URL url) throws IOException {
-		HttpURLConnection uc = (HttpURLConnection) url.openConnection(proxy);
-		uc.connect();
-		if (uc.getResponseCode() >= HttpURLConnection.HTTP_BAD_REQUEST) {
-			return uc.getErrorStream();
+	private static void closeQuietly(InputStream in) {
+		if (in == null) {
+			return;
+		}
+		try {
+			in.close();
+		} catch (IOException e) {
+			// Ignore
 		}
-		return uc.getInputStream();
+	}
+
+	private InputStream getConnectionInputStream(URL url) throws IOException {
+		return transport.openStream(url);
 	}
 
 	public byte[] callApiOther (String component, String type, String method,
 			Map<String, String> params) throws ClientApiException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		callApiOther(component, type, method, params, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Calls an API "other" method writing the response directly to the given stream, so that large responses
+	 * (e.g. the reports) don't need to be held in memory. The stream is not closed by this method.
+	 * 
+	 * @param component the API component (e.g. {@code core}).
+	 * @param type the method type, usually {@code other}.
+	 * @param method the API method (e.g. {@code htmlreport}).
+	 * @param params the method parameters, may be {@code null}.
+	 * @param out the stream where the response body will be written.
+	 * @return the number of bytes written.
+	 * @throws ClientApiException if the request fails or the response could not be written.
+	 */
+	public long callApiOther (String component, String type, String method,
+			Map<String, String> params, OutputStream out) throws ClientApiException {
+		CallTimer timer = startTimer(component, type, method);
+		InputStream in = null;
+		boolean succeeded = false;
 		try {
-			URL url = buildZapRequestUrl("other", component, type, method, params);
-			if (debug) {
-				debugStream.println("Open URL: " + url);
+			in = openApiOther(component, type, method, params, timer);
+			long total = 0;
+			byte[] buffer = new byte[OTHER_BUFFER_SIZE];
+			int bytesRead;
+			while ((bytesRead = in.read(buffer)) != -1) {
+				out.write(buffer, 0, bytesRead);
+				total += bytesRead;
 			}
-			InputStream in = getConnectionInputStream(url);
-			ByteArrayOutputStream out = new ByteArrayOutputStream();
-			byte[] buffer = new byte[8 * 1024];
-			try {
-				int bytesRead;
-			    while ((bytesRead = in.read(buffer)) != -1) {
-			    	out.write(buffer, 0, bytesRead);
-			    }
-			} finally {
-				out.close();
-				in.close();
+			succeeded = true;
+			return total;
+		} catch (IOException e) {
+			throw new ClientApiException(e);
+		} finally {
+			closeQuietly(in);
+			timer.finish(succeeded);
+		}
+	}
+
+	/**
+	 * Calls an API "other" method writing the response directly to the given channel (e.g. a {@code FileChannel}).
+	 * The channel is not closed by this method.
+	 * 
+	 * @param component the API component (e.g. {@code core}).
+	 * @param type the method type, usually {@code other}.
+	 * @param method the API method (e.g. {@code htmlreport}).
+	 * @param params the method parameters, may be {@code null}.
+	 * @param channel the channel where the response body will be written.
+	 * @return the number of bytes written.
+	 * @throws ClientApiException if the request fails or the response could not be written.
+	 */
+	public long callApiOther (String component, String type, String method,
+			Map<String, String> params, WritableByteChannel channel) throws ClientApiException {
+		CallTimer timer = startTimer(component, type, method);
+		InputStream in = null;
+		boolean succeeded = false;
+		try {
+			in = openApiOther(component, type, method, params, timer);
+			ReadableByteChannel source = Channels.newChannel(in);
+			ByteBuffer buffer = ByteBuffer.allocate(OTHER_BUFFER_SIZE);
+			long total = 0;
+			while (source.read(buffer) != -1) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					total += channel.write(buffer);
+				}
+				buffer.clear();
 			}
-			return out.toByteArray();
-			
-		} catch (Exception e) {
+			succeeded = true;
+			return total;
+		} catch (IOException e) {
 			throw new ClientApiException(e);
+		} finally {
+			closeQuietly(in);
+			timer.finish(succeeded);
+		}
+	}
+
+	private InputStream openApiOther(String component, String type, String method,
+			Map<String, String> params, CallTimer timer) throws IOException {
+		URL url = buildZapRequestUrl("other", component, type, method, params);
+		if (debug) {
+			debugStream.println("Open URL: " + url);
 		}
+		return timer.firstByte(getConnectionInputStream(url));
 	}
 
-    private static URL buildZapRequestUrl(
+	private CallTimer startTimer(String component, String type, String method) {
+		ApiMetricsRegistry registry = metricsRegistry;
+		return registry == null ? CallTimer.DISABLED : new CallTimer(registry, component, type, method);
+	}
+
+    // Package-private for the benchmarks
+    static URL buildZapRequestUrl(
             String format,
             String component,
             String type,
@@ -421,4 +615,84 @@ public class ClientApi {
             }
         }
     }
+
+	/**
+	 * Measures a single API call and reports it to the metrics registry.
+	 */
+	private static class CallTimer {
+
+		static final CallTimer DISABLED = new CallTimer(null, null, null, null);
+
+		private final ApiMetricsRegistry registry;
+		private final String component;
+		private final String type;
+		private final String method;
+		private final long start;
+		private long firstByte;
+		private CountingInputStream in;
+
+		CallTimer(ApiMetricsRegistry registry, String component, String type, String method) {
+			this.registry = registry;
+			this.component = component;
+			this.type = type;
+			this.method = method;
+			this.start = registry == null ? 0 : System.nanoTime();
+		}
+
+		InputStream firstByte(InputStream stream) {
+			if (registry == null) {
+				return stream;
+			}
+			firstByte = System.nanoTime();
+			in = new CountingInputStream(stream);
+			return in;
+		}
+
+		void finish(boolean succeeded) {
+			if (registry == null) {
+				return;
+			}
+			long end = System.nanoTime();
+			long firstByteNanos = (in == null ? end : firstByte) - start;
+			long bodyNanos = in == null ? 0 : end - firstByte;
+			long bytesReceived = in == null ? 0 : in.count;
+			registry.recordCall(new ApiCallSample(component, type, method, firstByteNanos, bodyNanos, bytesReceived, !succeeded));
+		}
+
+	}
+
+	private static class CountingInputStream extends FilterInputStream {
+
+		private long count;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int bytesRead = super.read(b, off, len);
+			if (bytesRead > 0) {
+				count += bytesRead;
+			}
+			return bytesRead;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+
+	}
 }
@@ -22,7 +22,6 @@ package br.com.softplan.security.zap.zaproxy.clientapi.core;
 import java.io.File;
 import java.net.ConnectException;
 import java.util.HashMap;
-import java.util.List;
 
 public class ClientApiMain {
 
@@ -88,8 +87,7 @@ public class ClientApiMain {
                     }
                     break;
                 case showAlerts:
-                	List<Alert> alerts = api.getAlerts(null, -1, -1);
-                	for (Alert alert : alerts) {
+                	for (Alert alert : api.iterateAlerts(null, ClientApi.DEFAULT_ALERTS_PAGE_SIZE)) {
                         System.out.println(alert.toString());
                 	}
                     break;
@@ -0,0 +1,35 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * Transport used by {@link ClientApi} to send the API requests to ZAP.
+ * <p>
+ * Implementations must be thread-safe, since the same {@link ClientApi} may be shared by many threads.
+ *
+ * @author pdsec
+ */
+public interface ClientApiTransport extends Closeable {
+
+	/**
+	 * Sends a GET request for the given API URL and returns the response body.
+	 * <p>
+	 * The body is returned even for error status codes, since ZAP describes API errors in the response body.
+	 * The caller must close the returned stream, which allows the underlying connection to be reused.
+	 *
+	 * @param url the API URL (e.g. {@code http://zap/xml/core/view/version/}).
+	 * @return the response body.
+	 * @throws IOException if the request could not be sent or the response could not be read.
+	 */
+	InputStream openStream(URL url) throws IOException;
+
+	/**
+	 * Releases any resources (e.g. pooled connections) held by this transport.
+	 */
+	@Override
+	void close();
+
+}
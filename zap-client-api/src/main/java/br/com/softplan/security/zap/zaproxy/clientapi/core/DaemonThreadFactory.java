@@ -0,0 +1,31 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ThreadFactory} that creates named daemon threads, so the executors that use them never keep the JVM
+ * (e.g. the Maven build) alive.
+ * 
+ * @author pdsec
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+	private final String namePrefix;
+	private final AtomicInteger threadCount = new AtomicInteger();
+	
+	/**
+	 * @param namePrefix the prefix of the thread names, which are followed by a sequential number.
+	 */
+	public DaemonThreadFactory(String namePrefix) {
+		this.namePrefix = namePrefix;
+	}
+	
+	@Override
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+	
+}
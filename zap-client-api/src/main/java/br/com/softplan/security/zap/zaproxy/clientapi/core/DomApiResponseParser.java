@@ -0,0 +1,35 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.io.InputStream;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+
+/**
+ * {@link ApiResponseParser} that builds a W3C DOM of the whole response before converting it with {@link ApiResponseFactory}.
+ * <p>
+ * It's kept as a fallback for {@link StaxApiResponseParser}, which avoids holding the DOM in memory.
+ * 
+ * @author pdsec
+ */
+public class DomApiResponseParser implements ApiResponseParser {
+
+	@Override
+	public ApiResponse parse(InputStream in) throws ClientApiException {
+		Document dom;
+		try {
+			//get the factory
+			DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+			//Using factory get an instance of document builder
+			DocumentBuilder db = dbf.newDocumentBuilder();
+			//parse using builder to get DOM representation of the XML file
+			dom = db.parse(in);
+		} catch (Exception e) {
+			throw new ClientApiException(e);
+		}
+		return ApiResponseFactory.getResponse(dom.getFirstChild());
+	}
+
+}
@@ -0,0 +1,38 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+
+/**
+ * {@link ClientApiTransport} that opens a new {@link HttpURLConnection} through ZAP's proxy for each request.
+ * <p>
+ * This was the only transport available before {@link PooledHttpTransport} and it's kept for environments
+ * where JVM wide settings (e.g. {@code http.keepAlive}) must be honored.
+ *
+ * @author pdsec
+ */
+public class HttpUrlConnectionTransport implements ClientApiTransport {
+
+	private final Proxy proxy;
+
+	public HttpUrlConnectionTransport(Proxy proxy) {
+		this.proxy = proxy;
+	}
+
+	@Override
+	public InputStream openStream(URL url) throws IOException {
+		HttpURLConnection uc = (HttpURLConnection) url.openConnection(proxy);
+		uc.connect();
+		if (uc.getResponseCode() >= HttpURLConnection.HTTP_BAD_REQUEST) {
+			return uc.getErrorStream();
+		}
+		return uc.getInputStream();
+	}
+
+	@Override
+	public void close() {}
+
+}
@@ -0,0 +1,146 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ApiMetricsRegistry} that aggregates the calls per endpoint in memory, with {@link LatencyHistogram}s
+ * for the time to first byte and the body time, and counters for the calls, errors and bytes received.
+ *
+ * @author pdsec
+ */
+public class InMemoryApiMetricsRegistry implements ApiMetricsRegistry {
+	
+	private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+	private final LatencyHistogram connectLatency = new LatencyHistogram();
+	
+	@Override
+	public void recordCall(ApiCallSample sample) {
+		String endpoint = sample.getEndpoint();
+		EndpointMetrics metrics = endpoints.get(endpoint);
+		if (metrics == null) {
+			EndpointMetrics newMetrics = new EndpointMetrics();
+			metrics = endpoints.putIfAbsent(endpoint, newMetrics);
+			if (metrics == null) {
+				metrics = newMetrics;
+			}
+		}
+		metrics.record(sample);
+	}
+	
+	@Override
+	public void recordConnect(long connectNanos) {
+		connectLatency.record(connectNanos);
+	}
+	
+	/**
+	 * @return the metrics of each endpoint (e.g. {@code spider/view/status}), sorted by endpoint.
+	 */
+	public Map<String, EndpointMetrics> getEndpointMetrics() {
+		return Collections.unmodifiableMap(new TreeMap<>(endpoints));
+	}
+	
+	/**
+	 * @return the number of calls recorded so far, for all the endpoints.
+	 */
+	public long getTotalCalls() {
+		long total = 0;
+		for (EndpointMetrics metrics : endpoints.values()) {
+			total += metrics.getCalls();
+		}
+		return total;
+	}
+	
+	public LatencyHistogram getConnectLatency() {
+		return connectLatency;
+	}
+	
+	/**
+	 * Builds a plain text summary of the metrics, with one line per endpoint. Latencies are in milliseconds.
+	 *
+	 * @return the summary.
+	 */
+	public String getSummary() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.ROOT, "%-45s %8s %7s %12s %10s %10s %10s %10s %10s%n", 
+				"endpoint", "calls", "errors", "bytes", "ttfb-avg", "ttfb-p95", "ttfb-max", "body-avg", "body-p95"));
+		long calls = 0;
+		long errors = 0;
+		long bytes = 0;
+		for (Map.Entry<String, EndpointMetrics> entry : getEndpointMetrics().entrySet()) {
+			EndpointMetrics metrics = entry.getValue();
+			LatencyHistogram firstByte = metrics.getFirstByteLatency();
+			LatencyHistogram body = metrics.getBodyLatency();
+			sb.append(String.format(Locale.ROOT, "%-45s %8d %7d %12d %10.1f %10.1f %10.1f %10.1f %10.1f%n", entry.getKey(),
+					metrics.getCalls(), metrics.getErrors(), metrics.getBytesReceived(),
+					millis(firstByte.getMeanNanos()), millis(firstByte.getPercentileNanos(95)), millis(firstByte.getMaxNanos()),
+					millis(body.getMeanNanos()), millis(body.getPercentileNanos(95))));
+			calls += metrics.getCalls();
+			errors += metrics.getErrors();
+			bytes += metrics.getBytesReceived();
+		}
+		sb.append(String.format(Locale.ROOT, "%-45s %8d %7d %12d%n", "total", calls, errors, bytes));
+		sb.append(String.format(Locale.ROOT, "connections opened: %d (avg %.1f ms, max %.1f ms)%n", connectLatency.getCount(),
+				millis(connectLatency.getMeanNanos()), millis(connectLatency.getMaxNanos())));
+		return sb.toString();
+	}
+	
+	private static double millis(long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+	
+	/**
+	 * The aggregated metrics of a single endpoint.
+	 */
+	public static class EndpointMetrics {
+		
+		private final AtomicLong calls = new AtomicLong();
+		private final AtomicLong errors = new AtomicLong();
+		private final AtomicLong bytesReceived = new AtomicLong();
+		private final LatencyHistogram firstByteLatency = new LatencyHistogram();
+		private final LatencyHistogram bodyLatency = new LatencyHistogram();
+		
+		void record(ApiCallSample sample) {
+			calls.incrementAndGet();
+			if (sample.isFailed()) {
+				errors.incrementAndGet();
+			}
+			bytesReceived.addAndGet(sample.getBytesReceived());
+			firstByteLatency.record(sample.getFirstByteNanos());
+			bodyLatency.record(sample.getBodyNanos());
+		}
+		
+		public long getCalls() {
+			return calls.get();
+		}
+		
+		public long getErrors() {
+			return errors.get();
+		}
+		
+		public double getErrorRate() {
+			long total = calls.get();
+			return total == 0 ? 0 : errors.get() / (double) total;
+		}
+		
+		public long getBytesReceived() {
+			return bytesReceived.get();
+		}
+		
+		public LatencyHistogram getFirstByteLatency() {
+			return firstByteLatency;
+		}
+		
+		public LatencyHistogram getBodyLatency() {
+			return bodyLatency;
+		}
+		
+	}
+
+}
@@ -0,0 +1,296 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ApiResponseParser} for ZAP's JSON responses, producing the same {@link ApiResponse} hierarchy
+ * that is built from the XML responses, so the generated API classes work unchanged.
+ * <p>
+ * The JSON values are mapped as follows:
+ * <ul>
+ * <li>the root object has a single member, whose name is the name of the response (e.g. {@code {"version":"2.4.3"}});</li>
+ * <li>strings, numbers, booleans and nulls are mapped to {@link ApiResponseElement};</li>
+ * <li>arrays are mapped to {@link ApiResponseList}, whose items are named after the array;</li>
+ * <li>objects with only scalar members are mapped to {@link ApiResponseSet};</li>
+ * <li>objects with a single non-scalar member are mapped to that member, and other objects to an {@link ApiResponseList} of their members;</li>
+ * <li>a root object with {@code code} and {@code message} members is an API error and is thrown as a {@link ClientApiException}.</li>
+ * </ul>
+ * 
+ * @author pdsec
+ */
+public class JsonApiResponseParser implements ApiResponseParser {
+
+	private static final String DEFAULT_ROOT_NAME = "ApiResponse";
+	
+	@Override
+	public ApiResponse parse(InputStream in) throws ClientApiException {
+		Object root;
+		try {
+			Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+			root = new JsonReader(reader).readDocument();
+		} catch (IOException e) {
+			throw new ClientApiException(e);
+		}
+		if (!(root instanceof Map)) {
+			return toResponse(DEFAULT_ROOT_NAME, root);
+		}
+		
+		@SuppressWarnings("unchecked")
+		Map<String, Object> members = (Map<String, Object>) root;
+		if (isError(members)) {
+			throw new ClientApiException(
+					toText(members.get("message")), toText(members.get("code")), toText(members.get("detail")));
+		}
+		if (members.size() == 1) {
+			Map.Entry<String, Object> member = members.entrySet().iterator().next();
+			return toResponse(member.getKey(), member.getValue());
+		}
+		return toResponse(DEFAULT_ROOT_NAME, members);
+	}
+	
+	private static boolean isError(Map<String, Object> members) {
+		return members.containsKey("code") && members.containsKey("message") && members.size() <= 3;
+	}
+
+	private static ApiResponse toResponse(String name, Object value) {
+		if (value instanceof List) {
+			ApiResponseList list = new ApiResponseList(name);
+			for (Object item : (List<?>) value) {
+				list.addItem(toResponse(name, item));
+			}
+			return list;
+		}
+		if (value instanceof Map) {
+			@SuppressWarnings("unchecked")
+			Map<String, Object> members = (Map<String, Object>) value;
+			if (hasOnlyScalarMembers(members)) {
+				Map<String, String> values = new HashMap<String, String>();
+				for (Map.Entry<String, Object> member : members.entrySet()) {
+					values.put(member.getKey(), toText(member.getValue()));
+				}
+				return new ApiResponseSet(name, values);
+			}
+			if (members.size() == 1) {
+				Map.Entry<String, Object> member = members.entrySet().iterator().next();
+				return toResponse(member.getKey(), member.getValue());
+			}
+			ApiResponseList list = new ApiResponseList(name);
+			for (Map.Entry<String, Object> member : members.entrySet()) {
+				list.addItem(toResponse(member.getKey(), member.getValue()));
+			}
+			return list;
+		}
+		return new ApiResponseElement(name, toText(value));
+	}
+	
+	private static boolean hasOnlyScalarMembers(Map<String, Object> members) {
+		for (Object value : members.values()) {
+			if (value instanceof List || value instanceof Map) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static String toText(Object value) {
+		return value == null ? "" : value.toString();
+	}
+	
+	/**
+	 * Minimal JSON reader that builds {@link LinkedHashMap}s, {@link ArrayList}s and {@link String}s
+	 * (numbers and literals are kept as they were written, like in the XML responses).
+	 */
+	static final class JsonReader {
+		
+		private static final int BUFFER_SIZE = 8 * 1024;
+		
+		private final Reader reader;
+		private final char[] buffer = new char[BUFFER_SIZE];
+		private int position;
+		private int limit;
+		private final StringBuilder text = new StringBuilder();
+		
+		JsonReader(Reader reader) {
+			this.reader = reader;
+		}
+		
+		Object readDocument() throws IOException {
+			Object value = readValue(nextNonWhitespace());
+			int c = nextNonWhitespace();
+			if (c != -1) {
+				throw syntaxError("Unexpected content after the JSON value", c);
+			}
+			return value;
+		}
+		
+		private Object readValue(int c) throws IOException {
+			switch (c) {
+			case '{':
+				return readObject();
+			case '[':
+				return readArray();
+			case '"':
+				return readString();
+			case -1:
+				throw new IOException("Unexpected end of the JSON document");
+			default:
+				return readLiteral(c);
+			}
+		}
+		
+		private Map<String, Object> readObject() throws IOException {
+			Map<String, Object> members = new LinkedHashMap<String, Object>();
+			int c = nextNonWhitespace();
+			if (c == '}') {
+				return members;
+			}
+			while (true) {
+				if (c != '"') {
+					throw syntaxError("Expected a member name", c);
+				}
+				String name = readString();
+				c = nextNonWhitespace();
+				if (c != ':') {
+					throw syntaxError("Expected ':'", c);
+				}
+				members.put(name, readValue(nextNonWhitespace()));
+				c = nextNonWhitespace();
+				if (c == '}') {
+					return members;
+				}
+				if (c != ',') {
+					throw syntaxError("Expected ',' or '}'", c);
+				}
+				c = nextNonWhitespace();
+			}
+		}
+		
+		private List<Object> readArray() throws IOException {
+			List<Object> items = new ArrayList<Object>();
+			int c = nextNonWhitespace();
+			if (c == ']') {
+				return items;
+			}
+			while (true) {
+				items.add(readValue(c));
+				c = nextNonWhitespace();
+				if (c == ']') {
+					return items;
+				}
+				if (c != ',') {
+					throw syntaxError("Expected ',' or ']'", c);
+				}
+				c = nextNonWhitespace();
+			}
+		}
+		
+		private String readString() throws IOException {
+			text.setLength(0);
+			while (true) {
+				int c = read();
+				switch (c) {
+				case '"':
+					return text.toString();
+				case '\\':
+					text.append(readEscaped());
+					break;
+				case -1:
+					throw new IOException("Unterminated JSON string");
+				default:
+					text.append((char) c);
+				}
+			}
+		}
+		
+		private char readEscaped() throws IOException {
+			int c = read();
+			switch (c) {
+			case '"':
+			case '\\':
+			case '/':
+				return (char) c;
+			case 'b':
+				return '\b';
+			case 'f':
+				return '\f';
+			case 'n':
+				return '\n';
+			case 'r':
+				return '\r';
+			case 't':
+				return '\t';
+			case 'u':
+				int code = 0;
+				for (int i = 0; i < 4; i++) {
+					int digit = Character.digit(read(), 16);
+					if (digit < 0) {
+						throw new IOException("Invalid unicode escape in JSON string");
+					}
+					code = (code << 4) | digit;
+				}
+				return (char) code;
+			default:
+				throw syntaxError("Invalid escape sequence", c);
+			}
+		}
+		
+		private Object readLiteral(int first) throws IOException {
+			text.setLength(0);
+			int c = first;
+			while (c != -1 && c != ',' && c != '}' && c != ']' && !isWhitespace(c)) {
+				text.append((char) c);
+				c = read();
+			}
+			if (c != -1) {
+				position--;
+			}
+			String literal = text.toString();
+			if ("null".equals(literal)) {
+				return null;
+			}
+			if (literal.isEmpty()) {
+				throw syntaxError("Expected a JSON value", first);
+			}
+			return literal;
+		}
+		
+		private int nextNonWhitespace() throws IOException {
+			int c;
+			do {
+				c = read();
+			} while (isWhitespace(c));
+			return c;
+		}
+		
+		private static boolean isWhitespace(int c) {
+			return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+		}
+		
+		private int read() throws IOException {
+			if (position == limit) {
+				limit = reader.read(buffer, 0, buffer.length);
+				position = 0;
+				if (limit <= 0) {
+					limit = 0;
+					return -1;
+				}
+			}
+			return buffer[position++];
+		}
+		
+		private static IOException syntaxError(String message, int c) {
+			return new IOException(message + (c == -1 ? " but the document ended" : " but found '" + (char) c + "'"));
+		}
+		
+	}
+	
+}
@@ -0,0 +1,80 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-safe histogram of latencies with fixed power of two buckets, from 1 microsecond up to about 35 minutes.
+ * <p>
+ * Recording is constant time and the memory footprint doesn't grow with the number of values. Percentiles are
+ * estimated as the upper bound of the bucket where they fall, so they are accurate within a factor of two.
+ *
+ * @author pdsec
+ */
+public class LatencyHistogram {
+	
+	private static final int NUMBER_OF_BUCKETS = 32;
+	
+	private final long[] buckets = new long[NUMBER_OF_BUCKETS];
+	private long count;
+	private long totalNanos;
+	private long maxNanos;
+	
+	public synchronized void record(long nanos) {
+		long value = Math.max(0, nanos);
+		buckets[bucketOf(value)]++;
+		count++;
+		totalNanos += value;
+		maxNanos = Math.max(maxNanos, value);
+	}
+	
+	public synchronized long getCount() {
+		return count;
+	}
+	
+	public synchronized long getTotalNanos() {
+		return totalNanos;
+	}
+	
+	public synchronized long getMaxNanos() {
+		return maxNanos;
+	}
+	
+	public synchronized long getMeanNanos() {
+		return count == 0 ? 0 : totalNanos / count;
+	}
+	
+	/**
+	 * Estimates the given percentile of the recorded values.
+	 *
+	 * @param percentile the percentile, from 0 to 100 (e.g. {@code 99}).
+	 * @return the estimated value in nanoseconds, never greater than the maximum recorded value.
+	 */
+	public synchronized long getPercentileNanos(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+		long seen = 0;
+		for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+			seen += buckets[i];
+			if (seen >= Math.max(1, rank)) {
+				return Math.min(maxNanos, upperBoundOf(i));
+			}
+		}
+		return maxNanos;
+	}
+	
+	private static int bucketOf(long nanos) {
+		long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+		int bucket = 64 - Long.numberOfLeadingZeros(micros);
+		return Math.min(bucket, NUMBER_OF_BUCKETS - 1);
+	}
+	
+	private static long upperBoundOf(int bucket) {
+		if (bucket == NUMBER_OF_BUCKETS - 1) {
+			return Long.MAX_VALUE;
+		}
+		return TimeUnit.MICROSECONDS.toNanos(1L << bucket);
+	}
+
+}
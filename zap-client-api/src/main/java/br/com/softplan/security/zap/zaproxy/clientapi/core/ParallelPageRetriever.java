@@ -0,0 +1,227 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Retrieves all the alerts or messages from ZAP by fetching their {@code core.alerts}/{@code core.messages}
+ * pages concurrently, instead of one page at a time.
+ * <p>
+ * The total is read first with {@code core.numberOfAlerts}/{@code core.numberOfMessages}, then the pages are
+ * fetched on a bounded executor and reassembled in their original order. Items added by ZAP after the total
+ * was read are fetched sequentially at the end.
+ * <p>
+ * Items that are too large to be kept all at once (e.g. messages with their bodies) can be handled page by page
+ * with {@link #forEachMessagesPage(String, PageHandler)}: only the pages being fetched are held in memory.
+ * 
+ * @author pdsec
+ */
+public class ParallelPageRetriever implements Closeable {
+
+	public static final int DEFAULT_PAGE_SIZE = 500;
+	public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+	
+	private final ClientApi api;
+	private final int pageSize;
+	private final ExecutorService executor;
+	private final boolean ownsExecutor;
+	private final int maxPagesAhead;
+	
+	public ParallelPageRetriever(ClientApi api) {
+		this(api, DEFAULT_PAGE_SIZE, DEFAULT_MAX_CONCURRENT_REQUESTS);
+	}
+	
+	/**
+	 * Creates a retriever with its own executor, which is shut down by {@link #close()}.
+	 * 
+	 * @param api the API used to fetch the pages.
+	 * @param pageSize the number of items fetched per request.
+	 * @param maxConcurrentRequests the maximum number of pages fetched at the same time.
+	 */
+	public ParallelPageRetriever(ClientApi api, int pageSize, int maxConcurrentRequests) {
+		this(api, pageSize, Executors.newFixedThreadPool(maxConcurrentRequests, new DaemonThreadFactory("zap-page-retriever-")), true, maxConcurrentRequests);
+	}
+	
+	/**
+	 * Creates a retriever that fetches the pages on the given executor, which is not shut down by {@link #close()}.
+	 * 
+	 * @param api the API used to fetch the pages.
+	 * @param pageSize the number of items fetched per request.
+	 * @param executor the executor that bounds the concurrent requests.
+	 */
+	public ParallelPageRetriever(ClientApi api, int pageSize, ExecutorService executor) {
+		this(api, pageSize, executor, false, DEFAULT_MAX_CONCURRENT_REQUESTS);
+	}
+	
+	private ParallelPageRetriever(ClientApi api, int pageSize, ExecutorService executor, boolean ownsExecutor, int maxPagesAhead) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("The page size must be greater than zero.");
+		}
+		this.api = api;
+		this.pageSize = pageSize;
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+		this.maxPagesAhead = Math.max(1, maxPagesAhead);
+	}
+	
+	/**
+	 * Retrieves all the alerts, optionally filtered by URL.
+	 * 
+	 * @param baseUrl the base URL to filter the alerts, or {@code null} to retrieve all the alerts.
+	 * @return the alerts, in the order they are returned by ZAP.
+	 * @throws ClientApiException if any of the pages can't be retrieved.
+	 */
+	public List<Alert> getAllAlerts(final String baseUrl) throws ClientApiException {
+		int total = parseCount(api.core.numberOfAlerts(baseUrl));
+		return retrieveAll(total, new PageFetcher<Alert>() {
+			@Override
+			public List<Alert> fetch(int start, int count) throws ClientApiException {
+				return api.getAlerts(baseUrl, start, count);
+			}
+		});
+	}
+	
+	/**
+	 * Retrieves all the HTTP messages, optionally filtered by URL.
+	 * 
+	 * @param baseUrl the base URL to filter the messages, or {@code null} to retrieve all the messages.
+	 * @return the messages, in the order they are returned by ZAP.
+	 * @throws ClientApiException if any of the pages can't be retrieved.
+	 */
+	public List<ApiResponse> getAllMessages(String baseUrl) throws ClientApiException {
+		final List<ApiResponse> messages = new ArrayList<ApiResponse>();
+		forEachMessagesPage(baseUrl, new PageHandler<ApiResponse>() {
+			@Override
+			public void handle(List<ApiResponse> page) {
+				messages.addAll(page);
+			}
+		});
+		return messages;
+	}
+	
+	/**
+	 * Hands the HTTP messages, optionally filtered by URL, to the given handler one page at a time, in the order
+	 * they are returned by ZAP. Each page can be dropped once it's handled, so the messages don't need to fit on
+	 * the heap all at once.
+	 * 
+	 * @param baseUrl the base URL to filter the messages, or {@code null} to handle all the messages.
+	 * @param handler the handler of each page of messages.
+	 * @throws ClientApiException if any of the pages can't be retrieved or handled.
+	 */
+	public void forEachMessagesPage(final String baseUrl, PageHandler<ApiResponse> handler) throws ClientApiException {
+		int total = parseCount(api.core.numberOfMessages(baseUrl));
+		retrieveAll(total, new PageFetcher<ApiResponse>() {
+			@Override
+			public List<ApiResponse> fetch(int start, int count) throws ClientApiException {
+				ApiResponse response = api.core.messages(baseUrl, String.valueOf(start), String.valueOf(count));
+				if (response instanceof ApiResponseList) {
+					return ((ApiResponseList) response).getItems();
+				}
+				return new ArrayList<ApiResponse>();
+			}
+		}, handler);
+	}
+	
+	private <T> List<T> retrieveAll(int total, PageFetcher<T> fetcher) throws ClientApiException {
+		final List<T> items = new ArrayList<T>(total);
+		retrieveAll(total, fetcher, new PageHandler<T>() {
+			@Override
+			public void handle(List<T> page) {
+				items.addAll(page);
+			}
+		});
+		return items;
+	}
+	
+	/**
+	 * Fetches the pages concurrently, at most {@link #maxPagesAhead} at a time, and hands them to the handler in order.
+	 */
+	private <T> void retrieveAll(int total, final PageFetcher<T> fetcher, PageHandler<T> handler) throws ClientApiException {
+		int numberOfPages = (total + pageSize - 1) / pageSize;
+		Deque<Future<List<T>>> pages = new ArrayDeque<Future<List<T>>>(maxPagesAhead);
+		int nextPage = 0;
+		int retrieved = 0;
+		List<T> lastPage = null;
+		try {
+			while (nextPage < numberOfPages || !pages.isEmpty()) {
+				for (; nextPage < numberOfPages && pages.size() < maxPagesAhead; nextPage++) {
+					final int start = nextPage * pageSize;
+					pages.add(executor.submit(new Callable<List<T>>() {
+						@Override
+						public List<T> call() throws ClientApiException {
+							return fetcher.fetch(start, pageSize);
+						}
+					}));
+				}
+				lastPage = pages.poll().get();
+				retrieved += lastPage.size();
+				handler.handle(lastPage);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ClientApiException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ClientApiException) {
+				throw (ClientApiException) e.getCause();
+			}
+			throw new ClientApiException(e);
+		} finally {
+			cancel(pages);
+		}
+		
+		// Fetches the items that may have been added after the total was read
+		while (lastPage == null || lastPage.size() == pageSize) {
+			lastPage = fetcher.fetch(retrieved, pageSize);
+			retrieved += lastPage.size();
+			handler.handle(lastPage);
+		}
+	}
+	
+	private static void cancel(Iterable<? extends Future<?>> futures) {
+		for (Future<?> future : futures) {
+			future.cancel(true);
+		}
+	}
+	
+	private static int parseCount(ApiResponse response) throws ClientApiException {
+		try {
+			return Integer.parseInt(((ApiResponseElement) response).getValue());
+		} catch (ClassCastException | NumberFormatException e) {
+			throw new ClientApiException(e);
+		}
+	}
+	
+	/**
+	 * Shuts down the executor, if it was created by this retriever.
+	 */
+	@Override
+	public void close() {
+		if (ownsExecutor) {
+			executor.shutdownNow();
+		}
+	}
+	
+	private interface PageFetcher<T> {
+		
+		List<T> fetch(int start, int count) throws ClientApiException;
+		
+	}
+	
+	/**
+	 * Handles the items retrieved by {@link ParallelPageRetriever#forEachMessagesPage(String, PageHandler)}, one page at a time.
+	 */
+	public interface PageHandler<T> {
+		
+		void handle(List<T> page) throws ClientApiException;
+		
+	}
+	
+}
@@ -0,0 +1,584 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+
+/**
+ * {@link ClientApiTransport} that keeps a bounded pool of persistent (keep-alive) HTTP/1.1 connections to ZAP.
+ * <p>
+ * The requests are sent to ZAP's proxy port with the absolute API URL (e.g. {@code GET http://zap/xml/...}),
+ * just like {@link HttpUrlConnectionTransport} does, but the connections are reused across calls instead of
+ * paying the TCP setup cost on every status, alert or site tree call.
+ * <p>
+ * At most {@code maxConnections} requests are in flight at the same time; further callers wait for a connection
+ * to be released. Connections idle for longer than {@code idleTimeoutInMillis} are evicted the next time the pool
+ * is used, so no background thread is needed. A read that gets no data for {@code readTimeoutInMillis} fails, so a
+ * hung ZAP doesn't hold the caller and its connection forever.
+ * <p>
+ * ZAP's API actions are GET requests with side effects (e.g. starting a scan), so a request is only retried on a new
+ * connection when it surely wasn't handled by ZAP: when an idle connection fails while the request is written, or
+ * when it is closed before any byte of the response arrives.
+ *
+ * @author pdsec
+ */
+public class PooledHttpTransport implements ClientApiTransport {
+
+	public static final int DEFAULT_MAX_CONNECTIONS = 4;
+	public static final long DEFAULT_IDLE_TIMEOUT_IN_MILLIS = 30 * 1000;
+	public static final int DEFAULT_CONNECT_TIMEOUT_IN_MILLIS = 30 * 1000;
+	// Generous, as ZAP may take minutes to generate the reports of large sessions
+	public static final int DEFAULT_READ_TIMEOUT_IN_MILLIS = 10 * 60 * 1000;
+
+	// Bodies left unread by the caller are drained up to this size so the connection can be reused
+	private static final int MAX_DRAIN_SIZE = 64 * 1024;
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	private final String host;
+	private final int port;
+	private final long idleTimeoutInMillis;
+	private final int connectTimeoutInMillis;
+	private final int readTimeoutInMillis;
+
+	private final Semaphore permits;
+	private final Deque<PooledConnection> idleConnections = new ArrayDeque<PooledConnection>();
+	private volatile boolean closed;
+	private volatile ApiMetricsRegistry metricsRegistry;
+
+	public PooledHttpTransport(String host, int port) {
+		this(host, port, DEFAULT_MAX_CONNECTIONS, DEFAULT_IDLE_TIMEOUT_IN_MILLIS);
+	}
+
+	public PooledHttpTransport(String host, int port, int maxConnections, long idleTimeoutInMillis) {
+		this(host, port, maxConnections, idleTimeoutInMillis, DEFAULT_CONNECT_TIMEOUT_IN_MILLIS);
+	}
+
+	public PooledHttpTransport(String host, int port, int maxConnections, long idleTimeoutInMillis, int connectTimeoutInMillis) {
+		this(host, port, maxConnections, idleTimeoutInMillis, connectTimeoutInMillis, DEFAULT_READ_TIMEOUT_IN_MILLIS);
+	}
+
+	public PooledHttpTransport(String host, int port, int maxConnections, long idleTimeoutInMillis, int connectTimeoutInMillis, 
+			int readTimeoutInMillis) {
+		if (maxConnections < 1) {
+			throw new IllegalArgumentException("maxConnections must be greater than zero.");
+		}
+		this.host = host;
+		this.port = port;
+		this.idleTimeoutInMillis = idleTimeoutInMillis;
+		this.connectTimeoutInMillis = connectTimeoutInMillis;
+		this.readTimeoutInMillis = readTimeoutInMillis;
+		this.permits = new Semaphore(maxConnections, true);
+	}
+
+	@Override
+	public InputStream openStream(URL url) throws IOException {
+		if (closed) {
+			throw new IOException("Transport is closed.");
+		}
+		acquirePermit();
+		try {
+			PooledConnection connection = pollIdleConnection();
+			while (connection != null && connection.isStale()) {
+				connection.closeQuietly();
+				connection = pollIdleConnection();
+			}
+			if (connection != null) {
+				try {
+					return connection.execute(url);
+				} catch (StaleConnectionException e) {
+					// ZAP closed the idle connection before handling the request, so it's safe to retry with a new one
+				}
+			}
+			return openConnection().execute(url);
+		} catch (IOException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the number of idle connections currently kept by the pool.
+	 */
+	public int getIdleConnectionCount() {
+		synchronized (idleConnections) {
+			return idleConnections.size();
+		}
+	}
+
+	/**
+	 * Sets the registry that receives the time taken to open each new connection.
+	 * 
+	 * @param metricsRegistry the metrics registry, may be {@code null}.
+	 */
+	public void setMetricsRegistry(ApiMetricsRegistry metricsRegistry) {
+		this.metricsRegistry = metricsRegistry;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		synchronized (idleConnections) {
+			while (!idleConnections.isEmpty()) {
+				idleConnections.poll().closeQuietly();
+			}
+		}
+	}
+
+	private void acquirePermit() throws InterruptedIOException {
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a connection to ZAP.");
+		}
+	}
+
+	private PooledConnection pollIdleConnection() {
+		long now = System.currentTimeMillis();
+		synchronized (idleConnections) {
+			evictExpiredConnections(now);
+			return idleConnections.pollFirst();
+		}
+	}
+
+	private void evictExpiredConnections(long now) {
+		while (!idleConnections.isEmpty()) {
+			PooledConnection oldest = idleConnections.peekLast();
+			if (now - oldest.lastUsed < idleTimeoutInMillis && !oldest.socket.isClosed()) {
+				return;
+			}
+			idleConnections.pollLast().closeQuietly();
+		}
+	}
+
+	private PooledConnection openConnection() throws IOException {
+		Socket socket = new Socket();
+		try {
+			socket.setTcpNoDelay(true);
+			socket.setKeepAlive(true);
+			socket.setSoTimeout(readTimeoutInMillis);
+			long start = System.nanoTime();
+			socket.connect(new InetSocketAddress(host, port), connectTimeoutInMillis);
+			ApiMetricsRegistry registry = metricsRegistry;
+			if (registry != null) {
+				registry.recordConnect(System.nanoTime() - start);
+			}
+			return new PooledConnection(socket);
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+	}
+
+	private void release(PooledConnection connection, boolean reusable) {
+		try {
+			if (reusable && !closed) {
+				connection.lastUsed = System.currentTimeMillis();
+				synchronized (idleConnections) {
+					// Most recently used first, so the oldest ones are the first to expire
+					idleConnections.addFirst(connection);
+					evictExpiredConnections(connection.lastUsed);
+				}
+			} else {
+				connection.closeQuietly();
+			}
+		} finally {
+			permits.release();
+		}
+	}
+
+	private static class StaleConnectionException extends IOException {
+
+		private static final long serialVersionUID = 2915208125489785364L;
+
+		StaleConnectionException(String message) {
+			super(message);
+		}
+	}
+
+	private class PooledConnection {
+
+		private final Socket socket;
+		private final InputStream in;
+		private final OutputStream out;
+		private long lastUsed;
+		private boolean used;
+
+		PooledConnection(Socket socket) throws IOException {
+			this.socket = socket;
+			this.in = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+			this.out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+		}
+
+		InputStream execute(URL url) throws IOException {
+			boolean reused = used;
+			used = true;
+			try {
+				try {
+					writeRequest(url);
+				} catch (IOException e) {
+					if (reused) {
+						throw new StaleConnectionException("Idle connection was closed by ZAP: " + e.getMessage());
+					}
+					throw e;
+				}
+				// From now on ZAP may have handled the request, so only a connection closed before any byte
+				// of the response is considered stale: a failure in the middle of the response is not retried
+				String statusLine = readLine(in);
+				if (statusLine == null) {
+					if (reused) {
+						throw new StaleConnectionException("Idle connection was closed by ZAP.");
+					}
+					throw new EOFException("Connection closed by ZAP before the response was sent.");
+				}
+				return readResponse(statusLine);
+			} catch (IOException | RuntimeException e) {
+				closeQuietly();
+				throw e;
+			}
+		}
+
+		private void writeRequest(URL url) throws IOException {
+			StringBuilder request = new StringBuilder(256);
+			request.append("GET ").append(url.toExternalForm()).append(" HTTP/1.1\r\n");
+			request.append("Host: ").append(url.getHost());
+			if (url.getPort() != -1) {
+				request.append(':').append(url.getPort());
+			}
+			request.append("\r\n");
+			request.append("Connection: keep-alive\r\n");
+			request.append("Proxy-Connection: keep-alive\r\n");
+			request.append("\r\n");
+			out.write(request.toString().getBytes(StandardCharsets.ISO_8859_1));
+			out.flush();
+		}
+
+		private InputStream readResponse(String statusLine) throws IOException {
+			int statusCode = parseStatusCode(statusLine);
+			boolean http10 = statusLine.startsWith("HTTP/1.0");
+
+			long contentLength = -1;
+			boolean chunked = false;
+			boolean keepAlive = !http10;
+			String line;
+			while ((line = readLine(in)) != null && !line.isEmpty()) {
+				int separator = line.indexOf(':');
+				if (separator <= 0) {
+					continue;
+				}
+				String name = line.substring(0, separator).trim().toLowerCase(Locale.ENGLISH);
+				String value = line.substring(separator + 1).trim();
+				if ("content-length".equals(name)) {
+					contentLength = Long.parseLong(value);
+				} else if ("transfer-encoding".equals(name)) {
+					chunked = value.toLowerCase(Locale.ENGLISH).contains("chunked");
+				} else if ("connection".equals(name) || "proxy-connection".equals(name)) {
+					String connection = value.toLowerCase(Locale.ENGLISH);
+					if (connection.contains("close")) {
+						keepAlive = false;
+					} else if (connection.contains("keep-alive")) {
+						keepAlive = keepAlive || http10;
+					}
+				}
+			}
+			if (line == null) {
+				throw new EOFException("Connection closed by ZAP while reading the response headers.");
+			}
+
+			if (statusCode == 100) {
+				String finalStatusLine = readLine(in);
+				if (finalStatusLine == null) {
+					throw new EOFException("Connection closed by ZAP before the response was sent.");
+				}
+				return readResponse(finalStatusLine);
+			}
+			if (statusCode == 204 || statusCode == 304) {
+				contentLength = 0;
+			}
+			if (chunked) {
+				return new ChunkedBodyStream(this, keepAlive);
+			}
+			if (contentLength >= 0) {
+				return new FixedLengthBodyStream(this, contentLength, keepAlive);
+			}
+			return new UntilCloseBodyStream(this);
+		}
+
+		/**
+		 * Checks, without blocking, whether ZAP closed this idle connection: an idle connection has nothing to read,
+		 * so either the end of the stream or unexpected data means it can't be used anymore.
+		 */
+		boolean isStale() {
+			int readTimeout;
+			try {
+				readTimeout = socket.getSoTimeout();
+			} catch (IOException e) {
+				return true;
+			}
+			try {
+				socket.setSoTimeout(1);
+				in.read();
+				return true;
+			} catch (SocketTimeoutException e) {
+				return false;
+			} catch (IOException e) {
+				return true;
+			} finally {
+				try {
+					socket.setSoTimeout(readTimeout);
+				} catch (IOException e) {
+					// The connection is broken, the next read or write will fail
+				}
+			}
+		}
+
+		void closeQuietly() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Ignore
+			}
+		}
+	}
+
+	private static int parseStatusCode(String statusLine) throws IOException {
+		String[] parts = statusLine.split(" ", 3);
+		if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+			throw new IOException("Invalid HTTP status line received from ZAP: " + statusLine);
+		}
+		try {
+			return Integer.parseInt(parts[1].trim());
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid HTTP status line received from ZAP: " + statusLine, e);
+		}
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder(64);
+		int c;
+		while ((c = in.read()) != -1) {
+			if (c == '\n') {
+				int length = line.length();
+				if (length > 0 && line.charAt(length - 1) == '\r') {
+					line.setLength(length - 1);
+				}
+				return line.toString();
+			}
+			line.append((char) c);
+		}
+		return line.length() == 0 ? null : line.toString();
+	}
+
+	/**
+	 * Base stream for response bodies: returns the connection to the pool once the body is fully consumed.
+	 */
+	private abstract class BodyStream extends InputStream {
+
+		protected final PooledConnection connection;
+		private final boolean reusable;
+		private boolean released;
+
+		BodyStream(PooledConnection connection, boolean reusable) {
+			this.connection = connection;
+			this.reusable = reusable;
+		}
+
+		protected abstract boolean isFinished();
+
+		@Override
+		public int read() throws IOException {
+			byte[] single = new byte[1];
+			int read = read(single, 0, 1);
+			return read == -1 ? -1 : single[0] & 0xff;
+		}
+
+		protected void finish() {
+			if (!released) {
+				released = true;
+				release(connection, reusable);
+			}
+		}
+
+		protected void fail() {
+			if (!released) {
+				released = true;
+				release(connection, false);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (released) {
+				return;
+			}
+			if (reusable && !isFinished()) {
+				drain();
+			}
+			if (isFinished()) {
+				finish();
+			} else {
+				fail();
+			}
+		}
+
+		private void drain() {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			long drained = 0;
+			try {
+				int read;
+				while (drained < MAX_DRAIN_SIZE && (read = read(buffer, 0, buffer.length)) != -1) {
+					drained += read;
+				}
+			} catch (IOException e) {
+				fail();
+			}
+		}
+	}
+
+	private class FixedLengthBodyStream extends BodyStream {
+
+		private long remaining;
+
+		FixedLengthBodyStream(PooledConnection connection, long contentLength, boolean reusable) {
+			super(connection, reusable);
+			this.remaining = contentLength;
+			if (remaining == 0) {
+				finish();
+			}
+		}
+
+		@Override
+		protected boolean isFinished() {
+			return remaining == 0;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining == 0) {
+				return -1;
+			}
+			int read;
+			try {
+				read = connection.in.read(b, off, (int) Math.min(len, remaining));
+			} catch (IOException e) {
+				fail();
+				throw e;
+			}
+			if (read == -1) {
+				fail();
+				throw new EOFException("Connection closed by ZAP before the whole response was read.");
+			}
+			remaining -= read;
+			if (remaining == 0) {
+				finish();
+			}
+			return read;
+		}
+	}
+
+	private class ChunkedBodyStream extends BodyStream {
+
+		private long chunkRemaining;
+		private boolean lastChunkRead;
+
+		ChunkedBodyStream(PooledConnection connection, boolean reusable) {
+			super(connection, reusable);
+		}
+
+		@Override
+		protected boolean isFinished() {
+			return lastChunkRead;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (lastChunkRead) {
+				return -1;
+			}
+			try {
+				if (chunkRemaining == 0) {
+					readChunkSize();
+					if (lastChunkRead) {
+						finish();
+						return -1;
+					}
+				}
+				int read = connection.in.read(b, off, (int) Math.min(len, chunkRemaining));
+				if (read == -1) {
+					throw new EOFException("Connection closed by ZAP before the whole response was read.");
+				}
+				chunkRemaining -= read;
+				if (chunkRemaining == 0) {
+					readLine(connection.in);
+				}
+				return read;
+			} catch (IOException | RuntimeException e) {
+				fail();
+				throw e;
+			}
+		}
+
+		private void readChunkSize() throws IOException {
+			String line = readLine(connection.in);
+			if (line == null) {
+				throw new EOFException("Connection closed by ZAP before the whole response was read.");
+			}
+			int extension = line.indexOf(';');
+			String size = (extension >= 0 ? line.substring(0, extension) : line).trim();
+			chunkRemaining = Long.parseLong(size, 16);
+			if (chunkRemaining == 0) {
+				// Skip the trailer headers
+				String trailer;
+				while ((trailer = readLine(connection.in)) != null && !trailer.isEmpty()) {}
+				lastChunkRead = true;
+			}
+		}
+	}
+
+	private class UntilCloseBodyStream extends BodyStream {
+
+		private boolean endOfStream;
+
+		UntilCloseBodyStream(PooledConnection connection) {
+			super(connection, false);
+		}
+
+		@Override
+		protected boolean isFinished() {
+			return endOfStream;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (endOfStream) {
+				return -1;
+			}
+			int read;
+			try {
+				read = connection.in.read(b, off, len);
+			} catch (IOException e) {
+				fail();
+				throw e;
+			}
+			if (read == -1) {
+				endOfStream = true;
+				finish();
+			}
+			return read;
+		}
+	}
+
+}
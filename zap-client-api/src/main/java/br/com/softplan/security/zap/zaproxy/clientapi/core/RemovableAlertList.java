@@ -0,0 +1,67 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only list of alerts that supports removing the first alert equal to a given one in constant time,
+ * like {@link List#remove(Object)} but without shifting the elements.
+ * <p>
+ * Removed alerts are replaced by tombstones that are discarded by {@link #toList()}.
+ * 
+ * @author pdsec
+ */
+class RemovableAlertList {
+
+	private final List<Alert> alerts = new ArrayList<>();
+	private final Map<Alert, ArrayDeque<Integer>> positionsByAlert = new HashMap<>();
+	private int size;
+	
+	void add(Alert alert) {
+		ArrayDeque<Integer> positions = positionsByAlert.get(alert);
+		if (positions == null) {
+			positions = new ArrayDeque<>();
+			positionsByAlert.put(alert, positions);
+		}
+		positions.addLast(alerts.size());
+		alerts.add(alert);
+		size++;
+	}
+	
+	/**
+	 * Removes the first alert equal to the given one.
+	 * 
+	 * @param alert the alert to be removed.
+	 * @return {@code true} if an alert was removed.
+	 */
+	boolean remove(Alert alert) {
+		ArrayDeque<Integer> positions = positionsByAlert.get(alert);
+		if (positions == null || positions.isEmpty()) {
+			return false;
+		}
+		alerts.set(positions.pollFirst(), null);
+		size--;
+		return true;
+	}
+	
+	int size() {
+		return size;
+	}
+	
+	/**
+	 * @return the alerts that weren't removed, in the order they were added.
+	 */
+	List<Alert> toList() {
+		List<Alert> list = new ArrayList<>(size);
+		for (Alert alert : alerts) {
+			if (alert != null) {
+				list.add(alert);
+			}
+		}
+		return list;
+	}
+	
+}
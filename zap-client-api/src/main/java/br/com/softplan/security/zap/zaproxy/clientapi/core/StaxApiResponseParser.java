@@ -0,0 +1,156 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * {@link ApiResponseParser} that reads ZAP's XML responses with a StAX pull parser, building
+ * {@link ApiResponseList}, {@link ApiResponseSet} and {@link ApiResponseElement} instances directly from the stream.
+ * <p>
+ * It produces the same structure as {@link ApiResponseFactory}, but without materializing a DOM first, which
+ * matters for big responses like {@code core.alerts}, {@code core.messages} and {@code spider.fullResults}.
+ * 
+ * @author pdsec
+ */
+public class StaxApiResponseParser implements ApiResponseParser {
+
+	private static final String TYPE_ATTRIBUTE = "type";
+	private static final String LIST_TYPE = "list";
+	private static final String SET_TYPE = "set";
+	private static final String EXCEPTION_TYPE = "exception";
+	
+	private final XMLInputFactory factory;
+	
+	/**
+	 * @throws javax.xml.stream.FactoryConfigurationError if no StAX implementation is available.
+	 */
+	public StaxApiResponseParser() {
+		factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+	}
+	
+	@Override
+	public ApiResponse parse(InputStream in) throws ClientApiException {
+		XMLStreamReader reader = null;
+		try {
+			reader = createReader(in);
+			if (reader.nextTag() != XMLStreamConstants.START_ELEMENT) {
+				throw new ClientApiException("Null node");
+			}
+			return readResponse(reader);
+		} catch (XMLStreamException e) {
+			throw new ClientApiException(e);
+		} finally {
+			closeQuietly(reader);
+		}
+	}
+
+	private XMLStreamReader createReader(InputStream in) throws XMLStreamException {
+		// XMLInputFactory isn't guaranteed to be thread-safe, while the readers are used by a single thread
+		synchronized (factory) {
+			return factory.createXMLStreamReader(in);
+		}
+	}
+
+	private static ApiResponse readResponse(XMLStreamReader reader) throws XMLStreamException, ClientApiException {
+		String name = reader.getLocalName();
+		String type = reader.getAttributeValue(null, TYPE_ATTRIBUTE);
+		
+		if (LIST_TYPE.equals(type)) {
+			return readList(reader, name);
+		}
+		if (SET_TYPE.equals(type)) {
+			return readSet(reader, name);
+		}
+		if (EXCEPTION_TYPE.equals(type)) {
+			String code = reader.getAttributeValue(null, "code");
+			String detail = reader.getAttributeValue(null, "detail");
+			throw new ClientApiException(readText(reader), code, detail);
+		}
+		return new ApiResponseElement(name, readText(reader));
+	}
+
+	private static ApiResponseList readList(XMLStreamReader reader, String name) throws XMLStreamException, ClientApiException {
+		ApiResponseList list = new ApiResponseList(name);
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				list.addItem(readResponse(reader));
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				break;
+			}
+		}
+		return list;
+	}
+	
+	private static ApiResponseSet readSet(XMLStreamReader reader, String name) throws XMLStreamException {
+		Map<String, String> values = new HashMap<String, String>();
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String attributeName = reader.getLocalName();
+				values.put(attributeName, readText(reader));
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				break;
+			}
+		}
+		return new ApiResponseSet(name, values);
+	}
+	
+	/**
+	 * Reads the text content of the current element, including the text of nested elements (like DOM's {@code getTextContent()}).
+	 * The reader is left positioned at the element's end tag.
+	 */
+	private static String readText(XMLStreamReader reader) throws XMLStreamException {
+		StringBuilder text = null;
+		String singleText = "";
+		int depth = 1;
+		while (depth > 0 && reader.hasNext()) {
+			int event = reader.next();
+			switch (event) {
+			case XMLStreamConstants.START_ELEMENT:
+				depth++;
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				depth--;
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				// Most elements have a single text node, so avoid the StringBuilder in that case
+				if (text == null && singleText.isEmpty()) {
+					singleText = reader.getText();
+				} else {
+					if (text == null) {
+						text = new StringBuilder(singleText);
+					}
+					text.append(reader.getText());
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		return text != null ? text.toString() : singleText;
+	}
+	
+	private static void closeQuietly(XMLStreamReader reader) {
+		if (reader != null) {
+			try {
+				reader.close();
+			} catch (XMLStreamException e) {
+				// Ignore
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,127 @@
+package br.com.softplan.security.zap.api;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.testng.annotations.Test;
+
+import br.com.softplan.security.zap.api.exception.ZapClientException;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ApiResponse;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ApiResponseElement;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ClientApiException;
+
+public class ApiCallBatchTest {
+
+	@Test
+	public void shouldExecuteTheCallsOfALaneInOrder() {
+		final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+		ApiCallBatch batch = new ApiCallBatch();
+		for (int i = 0; i < 20; i++) {
+			batch.add("lane", "call " + i, recording(executed, i));
+		}
+		
+		batch.execute();
+		
+		assertEquals(executed.size(), 20);
+		for (int i = 0; i < 20; i++) {
+			assertEquals(executed.get(i).intValue(), i);
+		}
+	}
+	
+	@Test
+	public void shouldExecuteEveryCallAndAggregateTheFailures() {
+		List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+		ApiCallBatch batch = new ApiCallBatch()
+				.add("spider", "first", failing())
+				.add("spider", "second", recording(executed, 2))
+				.add("ascan", "third", recording(executed, 3))
+				.add("ascan", "fourth", answering("FAIL"));
+		
+		try {
+			batch.execute();
+			fail("The failures should have been reported.");
+		} catch (ZapClientException e) {
+			assertTrue(e.getMessage().startsWith("2 of 4"));
+			assertTrue(e.getCause() instanceof ClientApiException);
+			assertEquals(e.getSuppressed().length, 1);
+		}
+		assertEquals(executed.size(), 2);
+	}
+	
+	@Test
+	public void shouldMergeLiteralsIntoEquivalentAlternations() {
+		String[] urls = {"http://app/a.b", "http://app/c(d)", "http://app/e"};
+		
+		List<String> regexes = ZapHelper.mergeIntoAlternations(urls, ".*");
+		
+		assertEquals(regexes.size(), 1);
+		Pattern pattern = Pattern.compile(regexes.get(0));
+		assertTrue(pattern.matcher("http://app/a.b/page").matches());
+		assertTrue(pattern.matcher("http://app/c(d)").matches());
+		assertTrue(pattern.matcher("http://app/e?x=1").matches());
+		assertTrue(!pattern.matcher("http://app/aXb").matches());
+		assertTrue(!pattern.matcher("http://other/e").matches());
+	}
+	
+	@Test
+	public void shouldKeepSingleValuesAsPlainQuotedRegexes() {
+		assertEquals(ZapHelper.mergeIntoAlternations(new String[] {"http://app/"}, ""), Collections.singletonList("\\Qhttp://app/\\E"));
+	}
+	
+	@Test
+	public void shouldSplitAlternationsThatWouldBeTooLong() {
+		String[] urls = new String[100];
+		for (int i = 0; i < urls.length; i++) {
+			urls[i] = "http://application.example.com/context-root-" + i;
+		}
+		
+		List<String> regexes = ZapHelper.mergeIntoAlternations(urls, "");
+		
+		assertTrue(regexes.size() > 1);
+		for (String regex : regexes) {
+			assertTrue(regex.length() <= ZapHelper.MAX_MERGED_REGEX_LENGTH + 5);
+		}
+		for (String url : urls) {
+			int matches = 0;
+			for (String regex : regexes) {
+				matches += Pattern.matches(regex, url) ? 1 : 0;
+			}
+			assertEquals(matches, 1);
+		}
+	}
+	
+	private static ApiCallBatch.ApiCall recording(final List<Integer> executed, final int id) {
+		return new ApiCallBatch.ApiCall() {
+			@Override
+			public ApiResponse call() {
+				executed.add(id);
+				return new ApiResponseElement("Result", "OK");
+			}
+		};
+	}
+	
+	private static ApiCallBatch.ApiCall answering(final String value) {
+		return new ApiCallBatch.ApiCall() {
+			@Override
+			public ApiResponse call() {
+				return new ApiResponseElement("Result", value);
+			}
+		};
+	}
+	
+	private static ApiCallBatch.ApiCall failing() {
+		return new ApiCallBatch.ApiCall() {
+			@Override
+			public ApiResponse call() throws ClientApiException {
+				throw new ClientApiException("Connection refused");
+			}
+		};
+	}
+	
+}
@@ -0,0 +1,99 @@
+package br.com.softplan.security.zap.api;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import br.com.softplan.security.zap.api.model.AnalysisInfo;
+import br.com.softplan.security.zap.commons.ZapInfo;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ClientApi;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ClientApiTransport;
+
+public class SessionManagerTest {
+
+	private static final ZapInfo ZAP_INFO = ZapInfo.builder().host("localhost").port(8090).build();
+	
+	private List<String> calls;
+	private String loadSessionResponse;
+	private ClientApi api;
+	
+	@BeforeMethod
+	public void setUp() {
+		calls = new ArrayList<>();
+		loadSessionResponse = "<Result>OK</Result>";
+		api = new ClientApi("localhost", 8090, false, new ClientApiTransport() {
+			@Override
+			public InputStream openStream(URL url) throws IOException {
+				String[] path = url.getPath().split("/");
+				String call = path[4] + "?" + url.getQuery();
+				calls.add(call);
+				String response = call.startsWith("loadSession") ? loadSessionResponse : "<Result>OK</Result>";
+				return new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8));
+			}
+			
+			@Override
+			public void close() {}
+		});
+	}
+	
+	@Test
+	public void shouldSwitchToANewSessionAfterLoadingTheSnapshot() {
+		assertTrue(new SessionManager().loadSnapshot(api, null, "abc"));
+		
+		assertEquals(calls.size(), 2);
+		assertTrue(calls.get(0).startsWith("loadSession") && calls.get(0).contains("name=zap-snapshot-abc"));
+		assertTrue(calls.get(1).startsWith("saveSession") && calls.get(1).contains("name=zap-session-0"));
+	}
+	
+	@Test
+	public void shouldReportMissingSnapshots() {
+		loadSessionResponse = "<Error><code>does_not_exist</code><message>Does Not Exist</message></Error>";
+		
+		assertFalse(new SessionManager().loadSnapshot(api, null, "abc"));
+		assertEquals(calls.size(), 1);
+	}
+	
+	@Test
+	public void shouldSaveTheSnapshotAndSwitchToANewSession() {
+		new SessionManager().saveSnapshot(api, null, "abc");
+		
+		assertEquals(calls.size(), 2);
+		assertTrue(calls.get(0).startsWith("saveSession") && calls.get(0).contains("name=zap-snapshot-abc"));
+		assertTrue(calls.get(1).startsWith("saveSession") && calls.get(1).contains("name=zap-session-0"));
+	}
+	
+	@Test
+	public void shouldComputeTheSameFingerprintForTheSameSessionConfiguration() {
+		AnalysisInfo relative = AnalysisInfo.builder().targetUrl("http://app/").context("/app1").technologies("Db", "OS").build();
+		AnalysisInfo absolute = AnalysisInfo.builder().targetUrl("http://app/").context("http://app/app1").technologies("Db", "OS")
+				.analysisTimeoutInMinutes(10).build();
+		
+		String fingerprint = SessionManager.snapshotFingerprint(ZAP_INFO, relative);
+		assertEquals(fingerprint.length(), 64);
+		assertEquals(SessionManager.snapshotFingerprint(ZAP_INFO, absolute), fingerprint);
+	}
+	
+	@Test
+	public void shouldComputeDifferentFingerprintsForDifferentSessionConfigurations() {
+		AnalysisInfo analysisInfo = AnalysisInfo.builder().targetUrl("http://app/").technologies("Db").build();
+		AnalysisInfo otherTechnologies = AnalysisInfo.builder().targetUrl("http://app/").technologies("OS").build();
+		ZapInfo otherZap = ZapInfo.builder().host("localhost").port(8091).build();
+		
+		String fingerprint = SessionManager.snapshotFingerprint(ZAP_INFO, analysisInfo);
+		assertNotEquals(SessionManager.snapshotFingerprint(ZAP_INFO, otherTechnologies), fingerprint);
+		assertNotEquals(SessionManager.snapshotFingerprint(otherZap, analysisInfo), fingerprint);
+	}
+	
+}
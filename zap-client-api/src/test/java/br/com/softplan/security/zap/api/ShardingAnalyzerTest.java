@@ -0,0 +1,46 @@
+package br.com.softplan.security.zap.api;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import br.com.softplan.security.zap.api.exception.ZapClientException;
+
+public class ShardingAnalyzerTest {
+
+	@Test
+	public void shouldSplitTheContextInRoundRobin() {
+		List<List<String>> shards = ShardingAnalyzer.splitContext(new String[] {"a", "b", "c", "d", "e"}, 2);
+		
+		assertEquals(shards.size(), 2);
+		assertEquals(shards.get(0), Arrays.asList("a", "c", "e"));
+		assertEquals(shards.get(1), Arrays.asList("b", "d"));
+	}
+	
+	@Test
+	public void shouldNotCreateMoreShardsThanContextUrls() {
+		List<List<String>> shards = ShardingAnalyzer.splitContext(new String[] {"a", "b"}, 4);
+		
+		assertEquals(shards.size(), 2);
+		assertEquals(shards.get(0), Arrays.asList("a"));
+		assertEquals(shards.get(1), Arrays.asList("b"));
+	}
+	
+	@Test(expectedExceptions = ZapClientException.class)
+	public void shouldRejectAnEmptyContext() {
+		ShardingAnalyzer.splitContext(new String[0], 2);
+	}
+	
+	@Test
+	public void shouldSplitTheTimeoutAcrossTheUrlsOfTheShard() {
+		assertEquals(ShardingAnalyzer.getTimeoutInMinutes(TimeUnit.MINUTES.toMillis(90), 3), 30);
+		// The time the first URL didn't use rolls over to the next ones
+		assertEquals(ShardingAnalyzer.getTimeoutInMinutes(TimeUnit.MINUTES.toMillis(80), 2), 40);
+		assertEquals(ShardingAnalyzer.getTimeoutInMinutes(TimeUnit.SECONDS.toMillis(10), 2), 1);
+	}
+	
+}
@@ -0,0 +1,385 @@
+package br.com.softplan.security.zap.api;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import br.com.softplan.security.zap.api.exception.ZapClientException;
+import br.com.softplan.security.zap.api.model.AnalysisInfo;
+import br.com.softplan.security.zap.api.model.AnalysisType;
+import br.com.softplan.security.zap.api.model.PhaseBudget;
+import br.com.softplan.security.zap.api.model.ScanProfile;
+import br.com.softplan.security.zap.api.model.ScanType;
+import br.com.softplan.security.zap.api.report.ZapReport;
+import br.com.softplan.security.zap.api.util.StubZapServer;
+import br.com.softplan.security.zap.commons.ZapInfo;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert;
+
+public class ZapClientStubTest {
+
+	@Test
+	public void shouldAnalyzeAgainstTheStub() throws IOException {
+		try (StubZapServer zap = StubZapServer.builder().numberOfAlerts(200).numberOfUrls(50).progressStep(25).start();
+				ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+			ZapReport report = zapClient.analyze(analysisInfo());
+			
+			assertEquals(report.getSpiderResults().size(), 50);
+			assertTrue(report.getHtmlReportAsString().contains("http://localhost:8080/app/page199"));
+			assertTrue(report.getXmlReportAsString().startsWith("<OWASPZAPReport"));
+			assertEquals(zap.countRequests("spider/view/status"), 4);
+			assertEquals(zap.countRequests("ascan/view/status"), 4);
+			assertFalse(report.isPartial());
+		}
+	}
+	
+	@Test
+	public void shouldWaitForThePassiveScanBeforeTheReport() throws IOException {
+		try (StubZapServer zap = StubZapServer.builder().passiveScanRecords(1000).progressStep(25).start();
+				ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+			zapClient.analyze(analysisInfo());
+			
+			List<String> requests = zap.getRequests();
+			int lastRecordsToScan = requests.lastIndexOf("pscan/view/recordsToScan");
+			assertEquals(zap.countRequests("pscan/view/recordsToScan"), 5);
+			assertTrue(lastRecordsToScan < requests.indexOf("core/other/htmlreport"));
+			assertTrue(lastRecordsToScan > requests.lastIndexOf("ascan/view/status"));
+		}
+	}
+	
+	@Test
+	public void shouldStillReportWhenTheBudgetsRunOut() throws IOException {
+		try (StubZapServer zap = StubZapServer.builder().progressStep(1).start();
+				ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+			AnalysisInfo analysisInfo = AnalysisInfo.builder(analysisInfo())
+					.phaseBudget(ScanType.SPIDER, PhaseBudget.ofMillis(1000))
+					.phaseBudget(ScanType.ACTIVE_SCAN, PhaseBudget.ofMillis(1000))
+					.build();
+			ZapReport report = zapClient.analyze(analysisInfo);
+			
+			assertTrue(report.isPartial());
+			assertEquals(report.getIncompleteScans(), Arrays.asList(ScanType.SPIDER, ScanType.ACTIVE_SCAN));
+			assertEquals(zap.countRequests("spider/action/stop"), 1);
+			assertEquals(zap.countRequests("ascan/action/stop"), 1);
+			assertTrue(report.getXmlReportAsString().startsWith("<OWASPZAPReport"));
+		}
+	}
+	
+	@Test
+	public void shouldOnlyScanWhatChangedSinceTheBaseline() throws IOException {
+		File baselineFile = File.createTempFile("zapBaseline", ".xml");
+		baselineFile.delete();
+		AnalysisInfo analysisInfo = AnalysisInfo.builder(analysisInfo())
+				.analysisType(AnalysisType.INCREMENTAL)
+				.baselineFile(baselineFile)
+				.build();
+		try {
+			try (StubZapServer zap = StubZapServer.builder().start();
+					ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+				assertTrue(zapClient.analyze(analysisInfo).getCarriedOverAlerts().isEmpty());
+				assertEquals(zap.getActiveScanTargets(), Arrays.asList("http://localhost:8080/app/"));
+			}
+			// Nothing is attacked, so ZAP doesn't raise the alerts again
+			try (StubZapServer zap = StubZapServer.builder().numberOfAlerts(0).start();
+					ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+				ZapReport report = zapClient.analyze(analysisInfo);
+				assertEquals(report.getCarriedOverAlerts().size(), 10);
+				assertTrue(zap.getActiveScanTargets().isEmpty());
+				// The carried over alerts are listed after the ones found by ZAP, under the same site
+				assertEquals(count(report.getXmlReportAsString(), "<site "), 1);
+				assertEquals(count(report.getXmlReportAsString(), "<alertitem>"), 10);
+				assertTrue(report.getHtmlReportAsString().contains("Carried Over Alerts"));
+			}
+			try (StubZapServer zap = StubZapServer.builder().numberOfAlerts(0).changedPages(3, 7).start();
+					ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+				assertEquals(zapClient.analyze(analysisInfo).getCarriedOverAlerts().size(), 8);
+				assertEquals(zap.getActiveScanTargets(), Arrays.asList("http://localhost:8080/app/page3", "http://localhost:8080/app/page7"));
+			}
+		} finally {
+			baselineFile.delete();
+		}
+	}
+	
+	@Test
+	public void shouldLeaveOutTheUrlsWithoutResponse() throws IOException {
+		File baselineFile = File.createTempFile("zapBaseline", ".xml");
+		baselineFile.delete();
+		AnalysisInfo analysisInfo = AnalysisInfo.builder(analysisInfo())
+				.analysisType(AnalysisType.INCREMENTAL)
+				.baselineFile(baselineFile)
+				.build();
+		try {
+			// The Spider visits 12 URLs, but only the first 10 have a message
+			try (StubZapServer zap = StubZapServer.builder().numberOfUrls(12).start();
+					ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+				zapClient.analyze(analysisInfo);
+			}
+			try (StubZapServer zap = StubZapServer.builder().numberOfUrls(12).numberOfAlerts(0).start();
+					ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+				zapClient.analyze(analysisInfo);
+				assertTrue(zap.getActiveScanTargets().isEmpty());
+			}
+		} finally {
+			baselineFile.delete();
+		}
+	}
+	
+	@Test
+	public void shouldNotCarryOverTheAlertsRaisedAgain() throws IOException {
+		File baselineFile = File.createTempFile("zapBaseline", ".xml");
+		baselineFile.delete();
+		AnalysisInfo.Builder analysisInfo = AnalysisInfo.builder(analysisInfo())
+				.analysisType(AnalysisType.INCREMENTAL)
+				.baselineFile(baselineFile);
+		try {
+			try (StubZapServer zap = StubZapServer.builder().start();
+					ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+				zapClient.analyze(analysisInfo.build());
+			}
+			// Nothing changed, but the passive scan raises the alerts of the first 4 pages again, including the High of page3
+			try (StubZapServer zap = StubZapServer.builder().numberOfAlerts(4).start();
+					ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+				ZapReport report = zapClient.analyze(analysisInfo.failFastThreshold("3 High").build());
+				
+				assertEquals(report.getCarriedOverAlerts().size(), 6);
+				for (Alert alert : report.getCarriedOverAlerts()) {
+					assertFalse(alert.getUrl().matches(".*/page[0-3]"), alert.getUrl());
+				}
+				assertEquals(count(report.getXmlReportAsString(), "<alertitem>"), 10);
+				// Only the High alerts of page3 (raised again) and page7 (carried over) count
+				assertFalse(report.isAlertThresholdReached());
+			}
+		} finally {
+			baselineFile.delete();
+		}
+	}
+	
+	@Test
+	public void shouldCountTheCarriedOverAlertsTowardsTheThreshold() throws IOException {
+		File baselineFile = File.createTempFile("zapBaseline", ".xml");
+		baselineFile.delete();
+		AnalysisInfo.Builder analysisInfo = AnalysisInfo.builder(analysisInfo())
+				.analysisType(AnalysisType.INCREMENTAL)
+				.baselineFile(baselineFile);
+		try {
+			try (StubZapServer zap = StubZapServer.builder().start();
+					ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+				zapClient.analyze(analysisInfo.build());
+			}
+			// ZAP finds nothing this time, the High alerts of the baseline reach the threshold
+			try (StubZapServer zap = StubZapServer.builder().numberOfAlerts(0).changedPages(1).start();
+					ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+				ZapReport report = zapClient.analyze(analysisInfo.failFastThreshold("2 High").build());
+				
+				assertTrue(report.isAlertThresholdReached());
+				assertEquals(report.getThresholdAlerts().size(), 2);
+				assertEquals(report.getIncompleteScans(), Arrays.asList(ScanType.ACTIVE_SCAN, ScanType.PASSIVE_SCAN));
+				assertTrue(zap.getActiveScanTargets().isEmpty());
+			}
+		} finally {
+			baselineFile.delete();
+		}
+	}
+	
+	@Test
+	public void shouldRunTheActiveScansConcurrently() throws IOException {
+		try (StubZapServer zap = StubZapServer.builder().start();
+				ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+			zapClient.analyze(AnalysisInfo.builder(analysisInfo()).maxConcurrentActiveScans(4).build());
+			
+			// The starting point itself and the subtree of each of the 10 pages
+			assertEquals(zap.getActiveScanTargets().size(), 11);
+			assertEquals(zap.getMaxConcurrentActiveScans(), 4);
+			assertTrue(zap.countRequests("ascan/view/scans") > 0);
+		}
+	}
+	
+	@Test
+	public void shouldScanEachContextUrlConcurrently() throws IOException {
+		try (StubZapServer zap = StubZapServer.builder().start();
+				ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+			zapClient.analyze(AnalysisInfo.builder(analysisInfo())
+					.context("http://localhost:8080/app/", "http://localhost:8080/admin/")
+					.maxConcurrentActiveScans(2)
+					.build());
+			
+			assertEquals(zap.getActiveScanTargets(), Arrays.asList("http://localhost:8080/app/", "http://localhost:8080/admin/"));
+			assertEquals(zap.getMaxConcurrentActiveScans(), 2);
+		}
+	}
+	
+	@Test
+	public void shouldApplyTheScanProfileDuringTheAnalysis() throws IOException {
+		try (StubZapServer zap = StubZapServer.builder().start();
+				ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+			zapClient.analyze(AnalysisInfo.builder(analysisInfo()).scanProfile("ci-fast").build());
+			
+			List<String> requests = zap.getRequests();
+			assertEquals(zap.countRequests("ascan/action/setOptionThreadPerHost"), 2);
+			assertTrue(requests.indexOf("ascan/action/setOptionThreadPerHost") < requests.indexOf("spider/action/scan"));
+			assertTrue(requests.lastIndexOf("ascan/action/setOptionThreadPerHost") > requests.lastIndexOf("ascan/view/status"));
+			assertEquals(zap.getOption("spider", "ThreadCount"), "2");
+			assertEquals(zap.getOption("spider", "MaxDepth"), "5");
+			assertEquals(zap.getOption("ascan", "ThreadPerHost"), "2");
+		}
+	}
+	
+	@Test
+	public void shouldRestoreTheScanOptionsWhenTheAnalysisFails() throws IOException {
+		try (StubZapServer zap = StubZapServer.builder().failing("ascan/action/scan", 1).start();
+				ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+			try {
+				zapClient.analyze(AnalysisInfo.builder(analysisInfo()).scanProfile(ScanProfile.DEEP).build());
+				fail("The analysis should have failed.");
+			} catch (ZapClientException e) {
+				assertEquals(zap.countRequests("spider/action/setOptionMaxDepth"), 2);
+				assertEquals(zap.getOption("spider", "MaxDepth"), "5");
+				assertEquals(zap.getOption("spider", "RequestWaitTime"), "200");
+			}
+		}
+	}
+	
+	@Test
+	public void shouldNotChangeTheScanOptionsWithoutAProfile() throws IOException {
+		try (StubZapServer zap = StubZapServer.builder().start();
+				ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+			zapClient.analyze(analysisInfo());
+			
+			assertEquals(zap.countRequests("spider/view/optionThreadCount"), 0);
+			assertEquals(zap.countRequests("spider/action/setOptionThreadCount"), 0);
+		}
+	}
+	
+	@Test
+	public void shouldThrottleTheActiveScanWhenTheTargetIsSlow() throws IOException {
+		try (StubZapServer zap = StubZapServer.builder().numberOfUrls(3).progressStep(20).targetResponseTimeInMillis(800).start();
+				ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+			zapClient.analyze(AnalysisInfo.builder(analysisInfo()).maxConcurrentActiveScans(2).activeScanLatencySloInMillis(200).build());
+			
+			List<String> threadsPerHost = zap.getOptionChanges("ascan", "ThreadPerHost");
+			List<String> delays = zap.getOptionChanges("ascan", "DelayInMs");
+			assertEquals(threadsPerHost.get(0), "1");
+			assertTrue(delays.contains("100"));
+			// Restored after the analysis
+			assertEquals(zap.getOption("ascan", "ThreadPerHost"), "2");
+			assertEquals(zap.getOption("ascan", "DelayInMs"), "0");
+		}
+	}
+	
+	@Test
+	public void shouldThrottleWithTheMessagesOfTheActiveScans() throws IOException {
+		// The scanner's messages are only listed by each scan, not among the session's messages
+		try (StubZapServer zap = StubZapServer.builder().numberOfUrls(3).numberOfMessages(0).progressStep(20).targetResponseTimeInMillis(800).start();
+				ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+			zapClient.analyze(AnalysisInfo.builder(analysisInfo()).maxConcurrentActiveScans(2).activeScanLatencySloInMillis(200).build());
+			
+			assertEquals(zap.getOptionChanges("ascan", "ThreadPerHost").get(0), "1");
+			assertTrue(zap.countRequests("ascan/view/messagesIds") > 0);
+			assertTrue(zap.countRequests("core/view/message") > 0);
+			assertEquals(zap.countRequests("core/view/messages"), 0);
+		}
+	}
+	
+	@Test
+	public void shouldSpeedTheActiveScanUpWhenTheTargetIsFast() throws IOException {
+		try (StubZapServer zap = StubZapServer.builder().numberOfUrls(3).progressStep(20).targetResponseTimeInMillis(20).start();
+				ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+			zapClient.analyze(AnalysisInfo.builder(analysisInfo()).maxConcurrentActiveScans(2).activeScanLatencySloInMillis(200).build());
+			
+			assertEquals(zap.getOptionChanges("ascan", "ThreadPerHost").get(0), "3");
+			assertEquals(zap.getOption("ascan", "ThreadPerHost"), "2");
+		}
+	}
+	
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void shouldRejectTheLatencySloWithoutConcurrentActiveScans() {
+		AnalysisInfo.builder(analysisInfo()).activeScanLatencySloInMillis(200).build();
+	}
+	
+	@Test
+	public void shouldStopEarlyWhenTheAlertThresholdIsReached() throws IOException {
+		try (StubZapServer zap = StubZapServer.builder().progressStep(10).start();
+				ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+			ZapReport report = zapClient.analyze(AnalysisInfo.builder(analysisInfo()).failFastThreshold("2 High").build());
+			
+			assertTrue(report.isAlertThresholdReached());
+			assertEquals(report.getThresholdAlerts().size(), 2);
+			assertTrue(report.isPartial());
+			assertTrue(report.getIncompleteScans().containsAll(Arrays.asList(ScanType.SPIDER, ScanType.ACTIVE_SCAN)));
+			assertEquals(zap.countRequests("spider/action/stop"), 1);
+			assertEquals(zap.countRequests("ascan/action/scan"), 0);
+			assertTrue(report.getXmlReportAsString().startsWith("<OWASPZAPReport"));
+		}
+	}
+	
+	@Test
+	public void shouldRunToTheEndBelowTheAlertThreshold() throws IOException {
+		try (StubZapServer zap = StubZapServer.builder().start();
+				ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+			ZapReport report = zapClient.analyze(AnalysisInfo.builder(analysisInfo()).failFastThreshold("1 High/Confirmed").build());
+			
+			assertFalse(report.isAlertThresholdReached());
+			assertFalse(report.isPartial());
+			assertEquals(zap.countRequests("ascan/action/scan"), 1);
+		}
+	}
+	
+	@Test
+	public void shouldStillReportWhenTheLastAlertThresholdCheckFails() throws IOException {
+		// The scans finish on their first status check, so only the check before the report reads the alerts
+		try (StubZapServer zap = StubZapServer.builder().progressStep(100).failing("core/view/numberOfAlerts", 1).start();
+				ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+			ZapReport report = zapClient.analyze(AnalysisInfo.builder(analysisInfo()).failFastThreshold("1 High").build());
+			
+			assertEquals(zap.countRequests("core/view/numberOfAlerts"), 1);
+			assertFalse(report.isAlertThresholdReached());
+			assertTrue(report.getXmlReportAsString().startsWith("<OWASPZAPReport"));
+		}
+	}
+	
+	@Test
+	public void shouldTolerateLatency() throws IOException {
+		try (StubZapServer zap = StubZapServer.builder().latencyInMillis(30).start();
+				ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+			ZapReport report = zapClient.analyze(analysisInfo());
+			
+			assertEquals(report.getSpiderResults().size(), 10);
+		}
+	}
+	
+	@Test(expectedExceptions = ZapClientException.class)
+	public void shouldFailWhenZapFails() throws IOException {
+		try (StubZapServer zap = StubZapServer.builder().failing("ascan/action/scan", 1).start();
+				ZapClient zapClient = new ZapClient(zapInfo(zap))) {
+			zapClient.analyze(analysisInfo());
+		}
+	}
+	
+	private static ZapInfo zapInfo(StubZapServer zap) {
+		return ZapInfo.builder().buildToUseRunningZap("localhost", zap.getPort());
+	}
+	
+	private static AnalysisInfo analysisInfo() {
+		return AnalysisInfo.builder()
+				.targetUrl("http://localhost:8080/app/")
+				.analysisType(AnalysisType.WITH_SPIDER)
+				.analysisTimeoutInMinutes(1)
+				.build();
+	}
+	
+	private static int count(String text, String token) {
+		int count = 0;
+		for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + 1)) {
+			count++;
+		}
+		return count;
+	}
+	
+}
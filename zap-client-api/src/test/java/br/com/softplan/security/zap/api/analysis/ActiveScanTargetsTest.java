@@ -0,0 +1,67 @@
+package br.com.softplan.security.zap.api.analysis;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class ActiveScanTargetsTest {
+	
+	@Test
+	public void shouldBoundTheConcurrentScans() {
+		ActiveScanTargets targets = new ActiveScanTargets(ActiveScanTargets.recursive(Arrays.asList("a", "b", "c")), 2);
+		
+		assertEquals(targets.nextToStart().getUrl(), "a");
+		targets.started("0");
+		assertEquals(targets.nextToStart().getUrl(), "b");
+		targets.started("1");
+		assertNull(targets.nextToStart());
+		
+		targets.update("0", 100);
+		targets.update("1", 50);
+		assertEquals(targets.getOverallProgress(), 50);
+		assertEquals(targets.nextToStart().getUrl(), "c");
+		targets.started("2");
+		
+		targets.update("1", 100);
+		targets.update("2", 100);
+		assertTrue(targets.isDone());
+		assertEquals(targets.getOverallProgress(), 100);
+	}
+	
+	@Test
+	public void shouldOnlyBeDoneAfterTheLastScan() {
+		ActiveScanTargets targets = new ActiveScanTargets(ActiveScanTargets.recursive(Arrays.asList("a", "b")), 2);
+		targets.nextToStart();
+		targets.started("0");
+		targets.nextToStart();
+		targets.started("1");
+		
+		targets.update("0", 100);
+		targets.update("1", 99);
+		assertFalse(targets.isDone());
+		assertEquals(targets.getOverallProgress(), 99);
+		
+		targets.clearPendingTargets();
+		assertEquals(targets.getRunningScanIds(), Arrays.asList("1"));
+	}
+	
+	@Test
+	public void shouldSplitIntoTopLevelSubtrees() {
+		List<String> knownUrls = Arrays.asList("http://app/", "http://app/a", "http://app/a/1", "http://app/b/", "http://app/b/1",
+				"http://app/c/x/1", "http://app/c/y", "http://app/?page=2", "http://other/a");
+		
+		List<String> targets = new ArrayList<>();
+		for (ActiveScanTargets.Target target : ActiveScanTargets.splitIntoTopLevelSubtrees("http://app/", knownUrls)) {
+			targets.add(target.toString());
+		}
+		assertEquals(targets, Arrays.asList("http://app/ (not recursive)", "http://app/a", "http://app/b", "http://app/c/x/1", "http://app/c/y"));
+	}
+
+}
@@ -0,0 +1,93 @@
+package br.com.softplan.security.zap.api.analysis;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class ActiveScanThrottleTest {
+	
+	@Test
+	public void shouldHalveTheThreadsAndThenAddDelayWhenTheTargetIsSlow() {
+		ActiveScanThrottle throttle = new ActiveScanThrottle(200, 8, 0);
+		
+		assertTrue(throttle.update(responseTimes(10, 500), 0));
+		assertEquals(throttle.getThreadsPerHost(), 4);
+		throttle.update(responseTimes(10, 500), 0);
+		throttle.update(responseTimes(10, 500), 0);
+		assertEquals(throttle.getThreadsPerHost(), 1);
+		assertEquals(throttle.getDelayInMillis(), 0);
+		
+		throttle.update(responseTimes(10, 500), 0);
+		assertEquals(throttle.getDelayInMillis(), 100);
+		throttle.update(responseTimes(10, 500), 0);
+		assertEquals(throttle.getDelayInMillis(), 200);
+	}
+	
+	@Test
+	public void shouldRemoveTheDelayAndThenAddThreadsWhenTheTargetIsFast() {
+		ActiveScanThrottle throttle = new ActiveScanThrottle(200, 1, 400);
+		
+		throttle.update(responseTimes(10, 50), 0);
+		assertEquals(throttle.getDelayInMillis(), 200);
+		throttle.update(responseTimes(10, 50), 0);
+		assertEquals(throttle.getDelayInMillis(), 100);
+		throttle.update(responseTimes(10, 50), 0);
+		assertEquals(throttle.getDelayInMillis(), 0);
+		assertEquals(throttle.getThreadsPerHost(), 1);
+		
+		throttle.update(responseTimes(10, 50), 0);
+		throttle.update(responseTimes(10, 50), 0);
+		assertEquals(throttle.getThreadsPerHost(), 3);
+	}
+	
+	@Test
+	public void shouldNotGoBeyondTheMaximumThreads() {
+		ActiveScanThrottle throttle = new ActiveScanThrottle(200, ActiveScanThrottle.MAX_THREADS_PER_HOST, 0);
+		
+		assertFalse(throttle.update(responseTimes(10, 50), 0));
+		assertEquals(throttle.getThreadsPerHost(), ActiveScanThrottle.MAX_THREADS_PER_HOST);
+	}
+	
+	@Test
+	public void shouldSlowDownWhenTheTargetAnswersErrors() {
+		ActiveScanThrottle throttle = new ActiveScanThrottle(200, 4, 0);
+		
+		assertTrue(throttle.update(responseTimes(10, 50), 2));
+		assertEquals(throttle.getThreadsPerHost(), 2);
+	}
+	
+	@Test
+	public void shouldUseTheNinetiethPercentile() {
+		ActiveScanThrottle throttle = new ActiveScanThrottle(200, 4, 0);
+		List<Long> responseTimes = responseTimes(9, 50);
+		responseTimes.add(5000L);
+		
+		// A single outlier in 10 responses is tolerated
+		throttle.update(responseTimes, 0);
+		assertEquals(throttle.getThreadsPerHost(), 5);
+	}
+	
+	@Test
+	public void shouldKeepTheSettingsCloseToTheSlo() {
+		ActiveScanThrottle throttle = new ActiveScanThrottle(200, 4, 0);
+		
+		assertFalse(throttle.update(responseTimes(10, 180), 0));
+		assertFalse(throttle.update(Arrays.asList(1000L, 1000L), 0));
+		assertEquals(throttle.getThreadsPerHost(), 4);
+	}
+	
+	private static List<Long> responseTimes(int count, long responseTimeInMillis) {
+		List<Long> responseTimes = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			responseTimes.add(responseTimeInMillis);
+		}
+		return responseTimes;
+	}
+
+}
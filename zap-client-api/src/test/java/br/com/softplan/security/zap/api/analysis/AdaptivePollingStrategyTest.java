@@ -0,0 +1,73 @@
+package br.com.softplan.security.zap.api.analysis;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+public class AdaptivePollingStrategyTest {
+
+	private static final long NO_DEADLINE = Long.MAX_VALUE;
+	
+	@Test
+	public void shouldCheckQuicklyTheFirstTime() {
+		PollingStrategy strategy = new AdaptivePollingStrategy(250, 500, 10000);
+		
+		assertEquals(strategy.nextDelayInMillis(0, 0, NO_DEADLINE), 250);
+	}
+	
+	@Test
+	public void shouldBackOffWhileTheProgressDoesNotChange() {
+		PollingStrategy strategy = new AdaptivePollingStrategy(250, 500, 3000);
+		
+		strategy.nextDelayInMillis(0, 0, NO_DEADLINE);
+		assertEquals(strategy.nextDelayInMillis(0, 250, NO_DEADLINE), 500);
+		assertEquals(strategy.nextDelayInMillis(0, 750, NO_DEADLINE), 1000);
+		assertEquals(strategy.nextDelayInMillis(0, 1750, NO_DEADLINE), 2000);
+		assertEquals(strategy.nextDelayInMillis(0, 3750, NO_DEADLINE), 3000);
+		assertEquals(strategy.nextDelayInMillis(0, 6750, NO_DEADLINE), 3000);
+	}
+	
+	@Test
+	public void shouldWaitForTheNextProgressStepBasedOnTheRateOfChange() {
+		PollingStrategy strategy = new AdaptivePollingStrategy(250, 100, 60000);
+		
+		strategy.nextDelayInMillis(0, 0, NO_DEADLINE);
+		// 10 points in 2 seconds: 200 ms per point
+		assertEquals(strategy.nextDelayInMillis(10, 2000, NO_DEADLINE), 200 * AdaptivePollingStrategy.PROGRESS_STEP);
+		// 1 point in 3 seconds: 3 seconds per point
+		assertEquals(strategy.nextDelayInMillis(11, 5000, NO_DEADLINE), 3000 * AdaptivePollingStrategy.PROGRESS_STEP);
+	}
+	
+	@Test
+	public void shouldNotWaitMoreThanTheTimeToFinish() {
+		PollingStrategy strategy = new AdaptivePollingStrategy(250, 100, 60000);
+		
+		strategy.nextDelayInMillis(0, 0, NO_DEADLINE);
+		// 98 points in 98 seconds: the remaining 2 points should take 2 seconds
+		assertEquals(strategy.nextDelayInMillis(98, 98000, NO_DEADLINE), 2000);
+	}
+	
+	@Test
+	public void shouldStayWithinTheDelayBounds() {
+		PollingStrategy strategy = new AdaptivePollingStrategy(250, 500, 10000);
+		
+		strategy.nextDelayInMillis(0, 0, NO_DEADLINE);
+		assertEquals(strategy.nextDelayInMillis(50, 100, NO_DEADLINE), 500);
+		assertEquals(strategy.nextDelayInMillis(51, 100000, NO_DEADLINE), 10000);
+	}
+	
+	@Test
+	public void shouldNotWaitBeyondTheDeadline() {
+		PollingStrategy strategy = new AdaptivePollingStrategy(250, 500, 10000);
+		
+		assertEquals(strategy.nextDelayInMillis(0, 0, 100), 100);
+		assertEquals(strategy.nextDelayInMillis(0, 100, 0), 0);
+		assertEquals(strategy.nextDelayInMillis(0, 200, -100), 0);
+	}
+	
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void shouldRejectInvalidBounds() {
+		new AdaptivePollingStrategy(250, 1000, 500);
+	}
+	
+}
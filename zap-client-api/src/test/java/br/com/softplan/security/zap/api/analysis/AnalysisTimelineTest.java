@@ -0,0 +1,92 @@
+package br.com.softplan.security.zap.api.analysis;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import br.com.softplan.security.zap.api.analysis.AnalysisTimeline.PhaseRecord;
+import br.com.softplan.security.zap.api.model.AnalysisInfo;
+import br.com.softplan.security.zap.api.model.AnalysisType;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ClientApi;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.InMemoryApiMetricsRegistry;
+
+public class AnalysisTimelineTest {
+	
+	@Test
+	public void shouldRecordThePhasesOfTheAnalysis() {
+		InMemoryApiMetricsRegistry apiMetrics = new InMemoryApiMetricsRegistry();
+		ClientApi api = new ClientApi("localhost", 8080, false, new ScriptedZapTransport(50));
+		api.setMetricsRegistry(apiMetrics);
+		AnalysisTimeline timeline = new AnalysisTimeline(apiMetrics);
+		BaseAnalyzer analyzer = AnalyzerFactory.makeAnalyzer("", api, newAnalysisInfo());
+		analyzer.setPhaseListener(timeline);
+		
+		analyzer.analyze(newAnalysisInfo());
+		
+		List<PhaseRecord> phases = timeline.getPhases();
+		assertEquals(phases.size(), 4);
+		assertEquals(phases.get(0).getPhase(), AnalysisPhase.SPIDER);
+		assertEquals(phases.get(1).getPhase(), AnalysisPhase.ACTIVE_SCAN);
+		assertEquals(phases.get(2).getPhase(), AnalysisPhase.PASSIVE_SCAN_DRAIN);
+		assertEquals(phases.get(3).getPhase(), AnalysisPhase.REPORT);
+		for (PhaseRecord phase : phases) {
+			assertTrue(phase.isSucceeded());
+			assertTrue(phase.getEndTimeInMillis() >= phase.getStartTimeInMillis());
+		}
+		
+		PhaseRecord spider = phases.get(0);
+		assertEquals(spider.getProgressSamples().size(), 2);
+		assertEquals(spider.getProgressSamples().get(1).getProgress(), 100);
+		// scan + 2 status calls
+		assertEquals(spider.getRequestCount(), 3);
+		assertEquals(phases.get(2).getItemsProcessed(), 0);
+		// 2 reports + Spider results
+		assertEquals(phases.get(3).getRequestCount(), 3);
+	}
+	
+	@Test
+	public void shouldOnlyCountTheFirstEndOfAPhase() {
+		AnalysisTimeline timeline = new AnalysisTimeline();
+		
+		timeline.phaseStarted(AnalysisPhase.ACTIVE_SCAN);
+		timeline.phaseProgress(AnalysisPhase.ACTIVE_SCAN, 40);
+		timeline.phaseFinished(AnalysisPhase.ACTIVE_SCAN, false);
+		timeline.phaseFinished(AnalysisPhase.ACTIVE_SCAN, true);
+		
+		PhaseRecord phase = timeline.getPhases().get(0);
+		assertFalse(phase.isSucceeded());
+		assertEquals(phase.getOutcome(), "FAILED");
+	}
+	
+	@Test
+	public void shouldSerializeTheTimelineAsJson() {
+		AnalysisTimeline timeline = new AnalysisTimeline();
+		assertEquals(timeline.toJson(), "{\n  \"phases\": []\n}\n");
+		
+		timeline.phaseStarted(AnalysisPhase.SPIDER);
+		timeline.phaseProgress(AnalysisPhase.SPIDER, 100);
+		timeline.phaseFinished(AnalysisPhase.SPIDER, true);
+		timeline.phaseStarted(AnalysisPhase.ACTIVE_SCAN);
+		
+		String json = timeline.toJson();
+		assertTrue(json.contains("{\"phase\": \"SPIDER\""), json);
+		assertTrue(json.contains("\"outcome\": \"SUCCEEDED\", \"requests\": 0, \"progress\": [{\"time\": "), json);
+		assertTrue(json.contains("\"percent\": 100}]}"), json);
+		assertTrue(json.contains("{\"phase\": \"ACTIVE_SCAN\""), json);
+		assertTrue(json.contains("\"end\": null"), json);
+		assertTrue(json.contains("\"outcome\": \"RUNNING\""), json);
+	}
+	
+	private static AnalysisInfo newAnalysisInfo() {
+		return AnalysisInfo.builder()
+				.targetUrl("http://localhost/")
+				.analysisType(AnalysisType.WITH_SPIDER)
+				.analysisTimeoutInMinutes(1)
+				.build();
+	}
+
+}
@@ -0,0 +1,111 @@
+package br.com.softplan.security.zap.api.analysis;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import br.com.softplan.security.zap.api.model.AnalysisInfo;
+import br.com.softplan.security.zap.api.model.AnalysisType;
+import br.com.softplan.security.zap.api.report.ZapReport;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ClientApi;
+
+public class AsyncAnalysisTest {
+
+	private ScheduledExecutorService scheduler;
+	
+	@BeforeMethod
+	public void setUp() {
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+	}
+	
+	@AfterMethod
+	public void tearDown() {
+		scheduler.shutdownNow();
+	}
+	
+	@Test
+	public void shouldRunTheScansAndGenerateTheReport() throws Exception {
+		ScriptedZapTransport transport = new ScriptedZapTransport(50);
+		BaseAnalyzer analyzer = newAnalyzer(transport);
+		final CountDownLatch listenerCalled = new CountDownLatch(1);
+		
+		AnalysisFuture future = analyzer.analyzeAsync(newAnalysisInfo(), scheduler);
+		future.addListener(new Runnable() {
+			@Override
+			public void run() {
+				listenerCalled.countDown();
+			}
+		});
+		ZapReport report = future.get(30, TimeUnit.SECONDS);
+		
+		assertEquals(report.getHtmlReportAsString(), "<html></html>");
+		assertTrue(report.getHtmlReportFile().isFile());
+		assertEquals(report.getSpiderResults().size(), 1);
+		assertTrue(listenerCalled.await(5, TimeUnit.SECONDS));
+		assertEquals(transport.getCalls().subList(0, 4), 
+				Arrays.asList("spider/action/scan", "spider/view/status", "spider/view/status", "ascan/action/scan"));
+	}
+	
+	@Test
+	public void shouldRunThePreparationBeforeTheScans() throws Exception {
+		final ScriptedZapTransport transport = new ScriptedZapTransport(100);
+		final StringBuilder callsBeforePreparation = new StringBuilder();
+		
+		AnalysisFuture future = newAnalyzer(transport).analyzeAsync(newAnalysisInfo(), scheduler, new Runnable() {
+			@Override
+			public void run() {
+				callsBeforePreparation.append(transport.getCalls().size());
+			}
+		});
+		future.get(30, TimeUnit.SECONDS);
+		
+		assertEquals(callsBeforePreparation.toString(), "0");
+	}
+	
+	@Test
+	public void shouldStopTheScanWhenCancelled() throws Exception {
+		ScriptedZapTransport transport = new ScriptedZapTransport(1);
+		AnalysisFuture future = newAnalyzer(transport).analyzeAsync(newAnalysisInfo(), scheduler);
+		
+		while (!transport.getCalls().contains("spider/view/status")) {
+			Thread.sleep(20);
+		}
+		assertTrue(future.cancel(true));
+		
+		assertTrue(future.isCancelled());
+		assertTrue(future.isDone());
+		assertTrue(transport.getCalls().contains("spider/action/stop"));
+		assertFalse(future.cancel(true));
+		try {
+			future.get();
+		} catch (CancellationException e) {
+			return;
+		}
+		throw new AssertionError("A CancellationException was expected");
+	}
+	
+	private static BaseAnalyzer newAnalyzer(ScriptedZapTransport transport) {
+		ClientApi api = new ClientApi("localhost", 8080, false, transport);
+		return AnalyzerFactory.makeAnalyzer("", api, newAnalysisInfo());
+	}
+	
+	private static AnalysisInfo newAnalysisInfo() {
+		return AnalysisInfo.builder()
+				.targetUrl("http://localhost/")
+				.analysisType(AnalysisType.WITH_SPIDER)
+				.analysisTimeoutInMinutes(1)
+				.build();
+	}
+	
+}
@@ -0,0 +1,69 @@
+package br.com.softplan.security.zap.api.analysis;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert;
+
+public class IncrementalBaselineTest {
+	
+	@Test
+	public void shouldOnlyFingerprintTheStatusLineAndTheBody() {
+		String fingerprint = IncrementalBaseline.fingerprint("HTTP/1.1 200 OK\r\nDate: Mon, 1 Jan 2024", "body");
+		
+		assertEquals(IncrementalBaseline.fingerprint("HTTP/1.1 200 OK\r\nDate: Tue, 2 Jan 2024", "body"), fingerprint);
+		assertNotEquals(IncrementalBaseline.fingerprint("HTTP/1.1 500 Internal Server Error", "body"), fingerprint);
+		assertNotEquals(IncrementalBaseline.fingerprint("HTTP/1.1 200 OK", "other body"), fingerprint);
+	}
+	
+	@Test
+	public void shouldFindTheNewAndChangedUrls() {
+		Map<String, String> previous = new LinkedHashMap<>();
+		previous.put("http://app/a", "1");
+		previous.put("http://app/b", "2");
+		IncrementalBaseline baseline = new IncrementalBaseline(previous, Arrays.asList(new Alert("XSS", "http://app/a")));
+		
+		Map<String, String> current = new LinkedHashMap<>();
+		current.put("http://app/a", "1");
+		current.put("http://app/b", "changed");
+		current.put("http://app/c", "3");
+		
+		assertEquals(baseline.findChangedUrls(current), Arrays.asList("http://app/b", "http://app/c"));
+		assertEquals(baseline.getAlertsOf(Arrays.asList("http://app/a")).size(), 1);
+		assertEquals(baseline.getAlertsOf(Arrays.asList("http://app/b")).size(), 0);
+	}
+	
+	@Test
+	public void shouldReduceTheUrlsToTheirSubtrees() {
+		assertEquals(IncrementalBaseline.toSubtreeRoots(Arrays.asList(
+				"http://app/page10", "http://app/admin/users", "http://app/admin", "http://app/page1", "http://app/page1?id=2", "http://app/admin2")), 
+				Arrays.asList("http://app/admin", "http://app/admin2", "http://app/page1", "http://app/page10"));
+	}
+	
+	@Test
+	public void shouldSaveAndLoadTheBaseline() throws IOException {
+		File file = File.createTempFile("zapBaseline", ".xml");
+		Map<String, String> fingerprints = new LinkedHashMap<>();
+		fingerprints.put("http://app/a?x=1&y=<2>", "abc");
+		Alert alert = new Alert("SQL Injection", "http://app/a?x=1&y=<2>", "High", "Medium", "x", null);
+		
+		new IncrementalBaseline(fingerprints, Arrays.asList(alert)).save(file);
+		IncrementalBaseline loaded = IncrementalBaseline.load(file);
+		
+		assertEquals(loaded.getFingerprints(), fingerprints);
+		assertEquals(loaded.getAlerts(), Arrays.asList(alert));
+		assertEquals(loaded.getAlerts().get(0).getRisk(), Alert.Risk.High);
+		file.delete();
+		assertNull(IncrementalBaseline.load(file));
+	}
+
+}
@@ -0,0 +1,41 @@
+package br.com.softplan.security.zap.api.analysis;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+public class PassiveScanDrainTest {
+	
+	@Test
+	public void shouldOnlyFinishWhenTheQueueIsEmpty() {
+		PassiveScanDrain drain = new PassiveScanDrain(200, 0);
+		
+		assertEquals(drain.update(100), 50);
+		assertEquals(drain.update(1), 99);
+		assertEquals(drain.update(0), 100);
+		assertEquals(drain.getRecordsScanned(), 200);
+	}
+	
+	@Test
+	public void shouldBeRelativeToTheLargestQueue() {
+		PassiveScanDrain drain = new PassiveScanDrain(100, 0);
+		
+		assertEquals(drain.update(400), 0);
+		assertEquals(drain.update(100), 75);
+		assertEquals(drain.getRecordsScanned(), 300);
+	}
+	
+	@Test
+	public void shouldMeasureTheThroughput() {
+		PassiveScanDrain drain = new PassiveScanDrain(500, 1000);
+		drain.update(0);
+		
+		assertEquals(drain.getRecordsPerSecond(3000), 250.0);
+	}
+	
+	@Test
+	public void shouldBeFinishedWhenThereIsNothingToScan() {
+		assertEquals(new PassiveScanDrain(0, 0).getProgress(), 100);
+	}
+
+}
@@ -0,0 +1,73 @@
+package br.com.softplan.security.zap.api.analysis;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import br.com.softplan.security.zap.zaproxy.clientapi.core.ClientApiTransport;
+
+/**
+ * {@link ClientApiTransport} that answers the spider, active scan and report calls of an analysis,
+ * with each status call advancing the progress by a fixed step.
+ */
+class ScriptedZapTransport implements ClientApiTransport {
+
+	private final int progressStep;
+	private final AtomicInteger spiderProgress = new AtomicInteger();
+	private final AtomicInteger activeScanProgress = new AtomicInteger();
+	private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+	
+	ScriptedZapTransport(int progressStep) {
+		this.progressStep = progressStep;
+	}
+	
+	List<String> getCalls() {
+		return calls;
+	}
+	
+	@Override
+	public InputStream openStream(URL url) throws IOException {
+		// e.g. /xml/spider/view/status/ -> spider/view/status
+		String[] path = url.getPath().split("/");
+		String call = path[2] + "/" + path[3] + "/" + path[4];
+		calls.add(call);
+		return new ByteArrayInputStream(respond(call).getBytes(StandardCharsets.UTF_8));
+	}
+	
+	private String respond(String call) {
+		switch (call) {
+		case "spider/action/scan":
+		case "ascan/action/scan":
+			return "<scan>0</scan>";
+		case "spider/view/status":
+			return "<status>" + advance(spiderProgress) + "</status>";
+		case "ascan/view/status":
+			return "<status>" + advance(activeScanProgress) + "</status>";
+		case "pscan/view/recordsToScan":
+			return "<recordsToScan>0</recordsToScan>";
+		case "spider/view/results":
+			return "<results type=\"list\"><url>http://localhost/</url></results>";
+		case "core/other/htmlreport":
+			return "<html></html>";
+		case "core/other/xmlreport":
+			return "<OWASPZAPReport></OWASPZAPReport>";
+		default:
+			return "<Result>OK</Result>";
+		}
+	}
+	
+	private int advance(AtomicInteger progress) {
+		int value = progress.addAndGet(progressStep);
+		return Math.min(100, value);
+	}
+	
+	@Override
+	public void close() {}
+	
+}
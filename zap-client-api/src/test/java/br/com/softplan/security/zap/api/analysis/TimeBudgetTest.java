@@ -0,0 +1,63 @@
+package br.com.softplan.security.zap.api.analysis;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import br.com.softplan.security.zap.api.model.PhaseBudget;
+import br.com.softplan.security.zap.api.model.ScanType;
+
+public class TimeBudgetTest {
+	
+	@Test
+	public void shouldOnlyUseTheAnalysisTimeoutWithoutBudgets() {
+		TimeBudget timeBudget = new TimeBudget(1000, 0);
+		
+		assertEquals(timeBudget.startScan(ScanType.SPIDER, 10), 1000);
+		assertEquals(timeBudget.getScanRemainingTimeInMillis(400), 600);
+		assertEquals(timeBudget.startScan(ScanType.ACTIVE_SCAN, 500), 1000);
+	}
+	
+	@Test
+	public void shouldRollTheUnusedTimeOver() {
+		Map<ScanType, PhaseBudget> budgets = new EnumMap<>(ScanType.class);
+		budgets.put(ScanType.SPIDER, PhaseBudget.ofFraction(0.2));
+		budgets.put(ScanType.ACTIVE_SCAN, PhaseBudget.ofFraction(0.5));
+		TimeBudget timeBudget = new TimeBudget(100000, Arrays.asList(ScanType.SPIDER, ScanType.PASSIVE_SCAN, ScanType.ACTIVE_SCAN), budgets, 0);
+		
+		assertEquals(timeBudget.startScan(ScanType.SPIDER, 0), 20000);
+		// The scan without a budget can't touch the time reserved for the Active Scan
+		assertEquals(timeBudget.startScan(ScanType.PASSIVE_SCAN, 5000), 50000);
+		// The 15 s left by the Spider roll over to the Active Scan
+		assertEquals(timeBudget.startScan(ScanType.ACTIVE_SCAN, 10000), 75000);
+		assertEquals(timeBudget.getAnalysisRemainingTimeInMillis(10000), 90000);
+	}
+	
+	@Test
+	public void shouldKeepTheTimeReservedForTheNextScans() {
+		Map<ScanType, PhaseBudget> budgets = new EnumMap<>(ScanType.class);
+		budgets.put(ScanType.SPIDER, PhaseBudget.ofFraction(0.6));
+		budgets.put(ScanType.ACTIVE_SCAN, PhaseBudget.ofMillis(60000));
+		TimeBudget timeBudget = new TimeBudget(100000, Arrays.asList(ScanType.SPIDER, ScanType.ACTIVE_SCAN), budgets, 0);
+		
+		assertEquals(timeBudget.startScan(ScanType.SPIDER, 0), 40000);
+		assertEquals(timeBudget.startScan(ScanType.ACTIVE_SCAN, 40000), 100000);
+	}
+	
+	@Test
+	public void shouldNeverGoPastTheAnalysisDeadline() {
+		Map<ScanType, PhaseBudget> budgets = new EnumMap<>(ScanType.class);
+		budgets.put(ScanType.ACTIVE_SCAN, PhaseBudget.ofFraction(0.5));
+		TimeBudget timeBudget = new TimeBudget(100000, Arrays.asList(ScanType.SPIDER, ScanType.ACTIVE_SCAN), budgets, 0);
+		
+		assertEquals(timeBudget.startScan(ScanType.SPIDER, 0), 50000);
+		assertEquals(timeBudget.startScan(ScanType.ACTIVE_SCAN, 70000), 100000);
+		// Scans out of the planned sequence are only limited by the analysis deadline
+		assertEquals(timeBudget.startScan(ScanType.AJAX_SPIDER, 80000), 100000);
+	}
+
+}
@@ -4,6 +4,7 @@ import static org.testng.Assert.assertEquals;
 
 import org.testng.annotations.Test;
 
+@SuppressWarnings("deprecation")
 public class ZapAnalysisTimeoutExceptionTest {
 
 	@Test
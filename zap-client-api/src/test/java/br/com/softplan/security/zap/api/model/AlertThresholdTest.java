@@ -0,0 +1,57 @@
+package br.com.softplan.security.zap.api.model;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert.Confidence;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert.Risk;
+
+public class AlertThresholdTest {
+	
+	@Test
+	public void shouldParseTheThresholds() {
+		AlertThreshold threshold = AlertThreshold.parse("3 high/confirmed");
+		assertEquals(threshold.getCount(), 3);
+		assertEquals(threshold.getMinimumRisk(), Risk.High);
+		assertEquals(threshold.getMinimumConfidence(), Confidence.Confirmed);
+		
+		threshold = AlertThreshold.parse(" Medium ");
+		assertEquals(threshold.getCount(), 1);
+		assertEquals(threshold.getMinimumRisk(), Risk.Medium);
+		assertNull(threshold.getMinimumConfidence());
+	}
+	
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void shouldRejectUnknownRisks() {
+		AlertThreshold.parse("2 Critical");
+	}
+	
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void shouldRejectInvalidCounts() {
+		AlertThreshold.parse("0 High");
+	}
+	
+	@Test
+	public void shouldMatchTheAlertsOfAtLeastTheGivenLevels() {
+		AlertThreshold threshold = AlertThreshold.parse("1 Medium/High");
+		
+		assertTrue(threshold.matches(new Alert("XSS", "http://localhost/", Risk.High, Confidence.Confirmed)));
+		assertTrue(threshold.matches(new Alert("XSS", "http://localhost/", Risk.Medium, Confidence.High)));
+		assertFalse(threshold.matches(new Alert("XSS", "http://localhost/", Risk.High, Confidence.Medium)));
+		assertFalse(threshold.matches(new Alert("XSS", "http://localhost/", Risk.Low, Confidence.Confirmed)));
+		assertFalse(threshold.matches(new Alert("XSS", "http://localhost/")));
+	}
+	
+	@Test
+	public void shouldKeepTheThresholdWhenCopyingTheAnalysisInfo() {
+		AnalysisInfo analysisInfo = AnalysisInfo.builder().targetUrl("http://localhost/").failFastThreshold("2 High").build();
+		
+		assertEquals(AnalysisInfo.builder(analysisInfo).build().getFailFastThreshold().toString(), "2 High");
+	}
+
+}
@@ -0,0 +1,62 @@
+package br.com.softplan.security.zap.api.model;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+public class PhaseBudgetTest {
+	
+	@Test
+	public void shouldParsePercentages() {
+		assertEquals(PhaseBudget.parse("25%").getAllocationInMillis(60000), 15000);
+		assertEquals(PhaseBudget.parse(" 100 % ").getAllocationInMillis(60000), 60000);
+	}
+	
+	@Test
+	public void shouldParseMinutesLimitedByTheTimeout() {
+		assertEquals(PhaseBudget.parse("2").getAllocationInMillis(600000), 120000);
+		assertEquals(PhaseBudget.parse("30").getAllocationInMillis(600000), 600000);
+	}
+	
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void shouldRejectInvalidBudgets() {
+		PhaseBudget.parse("half");
+	}
+	
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void shouldRejectFractionsAboveTheTimeout() {
+		PhaseBudget.parse("150%");
+	}
+	
+	@Test
+	public void shouldBuildTheBudgetsFromStrings() {
+		Map<String, String> budgets = new HashMap<>();
+		budgets.put("spider", "20%");
+		budgets.put("ACTIVE_SCAN", "10");
+		AnalysisInfo analysisInfo = AnalysisInfo.builder().targetUrl("http://localhost/").phaseBudgets(budgets).build();
+		
+		assertEquals(analysisInfo.getPhaseBudgets().size(), 2);
+		assertEquals(analysisInfo.getPhaseBudgets().get(ScanType.SPIDER).getAllocationInMillis(1000), 200);
+		assertEquals(AnalysisInfo.builder(analysisInfo).build().getPhaseBudgets(), analysisInfo.getPhaseBudgets());
+	}
+	
+	@Test
+	public void shouldParseTheScanTypesRegardlessOfTheDefaultLocale() {
+		Locale defaultLocale = Locale.getDefault();
+		Locale.setDefault(new Locale("tr", "TR"));
+		try {
+			AnalysisInfo analysisInfo = AnalysisInfo.builder().targetUrl("http://localhost/")
+					.phaseBudgets(Collections.singletonMap("spider", "20%")).build();
+			
+			assertEquals(analysisInfo.getPhaseBudgets().keySet(), Collections.singleton(ScanType.SPIDER));
+		} finally {
+			Locale.setDefault(defaultLocale);
+		}
+	}
+
+}
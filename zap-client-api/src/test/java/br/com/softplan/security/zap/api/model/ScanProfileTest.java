@@ -0,0 +1,31 @@
+package br.com.softplan.security.zap.api.model;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import org.testng.annotations.Test;
+
+public class ScanProfileTest {
+	
+	@Test
+	public void shouldParseTheProfileNames() {
+		assertEquals(ScanProfile.parse("ci-fast"), ScanProfile.CI_FAST);
+		assertEquals(ScanProfile.parse(" Balanced "), ScanProfile.BALANCED);
+		assertEquals(ScanProfile.parse("DEEP"), ScanProfile.DEEP);
+		assertEquals(ScanProfile.parse("ci_fast"), ScanProfile.CI_FAST);
+	}
+	
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void shouldRejectUnknownProfiles() {
+		ScanProfile.parse("turbo");
+	}
+	
+	@Test
+	public void shouldKeepTheProfileWhenCopyingTheAnalysisInfo() {
+		AnalysisInfo analysisInfo = AnalysisInfo.builder().targetUrl("http://localhost/").scanProfile("deep").build();
+		
+		assertEquals(AnalysisInfo.builder(analysisInfo).build().getScanProfile(), ScanProfile.DEEP);
+		assertNull(AnalysisInfo.builder().targetUrl("http://localhost/").scanProfile((String) null).build().getScanProfile());
+	}
+
+}
@@ -0,0 +1,107 @@
+package br.com.softplan.security.zap.api.report;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+public class ZapReportMergerTest {
+
+	@Test
+	public void shouldReturnTheReportItselfWhenThereIsOnlyOne() {
+		ZapReport report = newReport("<html><body>a</body></html>", "<OWASPZAPReport/>", "url1");
+		
+		assertSame(ZapReportMerger.merge(Arrays.asList(report)), report);
+	}
+	
+	@Test
+	public void shouldMergeTheSitesAndAlertsOfTheXmlReports() {
+		ZapReport first = newReport("<html><body>a</body></html>",
+				"<OWASPZAPReport version=\"2.4.3\"><site name=\"http://localhost:8080\"><alerts>"
+				+ "<alertitem><alert>XSS</alert><uri>http://localhost:8080/app1/</uri></alertitem>"
+				+ "</alerts></site></OWASPZAPReport>", "url1");
+		ZapReport second = newReport("<html><body>b</body></html>",
+				"<OWASPZAPReport version=\"2.4.3\"><site name=\"http://localhost:8080\"><alerts>"
+				+ "<alertitem><alert>XSS</alert><uri>http://localhost:8080/app1/</uri></alertitem>"
+				+ "<alertitem><alert>SQL Injection</alert><uri>http://localhost:8080/app2/</uri></alertitem>"
+				+ "</alerts></site><site name=\"http://localhost:9090\"><alerts/></site></OWASPZAPReport>", "url2");
+		
+		String xml = ZapReportMerger.merge(Arrays.asList(first, second)).getXmlReportAsString();
+		
+		assertEquals(count(xml, "<site "), 2);
+		assertEquals(count(xml, "<alertitem>"), 2);
+		assertTrue(xml.contains("SQL Injection"));
+		assertTrue(xml.contains("http://localhost:9090"));
+	}
+	
+	@Test
+	public void shouldAppendTheHtmlBodiesAndUniteTheSpiderResults() {
+		ZapReport first = newReport("<html><head></head><body>first</body></html>", "<OWASPZAPReport/>", "url1", "url2");
+		ZapReport second = newReport("<html><body bgcolor=\"#fff\">second</body></html>", "<OWASPZAPReport/>", "url2", "url3");
+		
+		ZapReport merged = ZapReportMerger.merge(Arrays.asList(first, second));
+		
+		String html = merged.getHtmlReportAsString();
+		assertTrue(html.startsWith("<html><head></head><body>first"));
+		assertTrue(html.endsWith("second</body></html>"));
+		assertEquals(count(html, "<body"), 1);
+		assertEquals(merged.getSpiderResults(), Arrays.asList("url1", "url2", "url3"));
+	}
+	
+	@Test
+	public void shouldStreamFileReportsIntoTemporaryFiles() throws IOException {
+		ZapReport first = newFileReport("<HTML><BODY>first</BODY></HTML>",
+				"<?xml version=\"1.0\"?><OWASPZAPReport><site name=\"http://localhost:8080\"></site></OWASPZAPReport>");
+		ZapReport second = newFileReport("no body",
+				"<OWASPZAPReport><site name=\"http://localhost:8080\"><alerts>"
+				+ "<alertitem><alert>XSS</alert></alertitem><alertitem><alert>XSS</alert></alertitem>"
+				+ "</alerts></site></OWASPZAPReport>");
+		
+		ZapReport merged = ZapReportMerger.merge(Arrays.asList(first, second));
+		try {
+			assertTrue(merged.hasTemporaryFiles());
+			assertEquals(merged.getHtmlReportAsString(), "<HTML><BODY>first\n<hr/>\nno body</BODY></HTML>");
+			String xml = merged.getXmlReportAsString();
+			assertEquals(count(xml, "<site "), 1);
+			assertEquals(count(xml, "<alerts>"), 1);
+			assertEquals(count(xml, "<alertitem>"), 1);
+		} finally {
+			merged.deleteTemporaryFiles();
+			first.deleteTemporaryFiles();
+			second.deleteTemporaryFiles();
+		}
+		assertFalse(merged.getHtmlReportFile().exists());
+		assertFalse(merged.getXmlReportFile().exists());
+	}
+	
+	private static ZapReport newFileReport(String html, String xml) throws IOException {
+		File htmlFile = File.createTempFile("zapReportMergerTest", ".html");
+		File xmlFile = File.createTempFile("zapReportMergerTest", ".xml");
+		Files.write(htmlFile.toPath(), html.getBytes(StandardCharsets.UTF_8));
+		Files.write(xmlFile.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+		ZapReport report = new ZapReport(htmlFile, xmlFile, Arrays.asList("url1"));
+		report.setTemporaryFiles(true);
+		return report;
+	}
+	
+	private static ZapReport newReport(String html, String xml, String... spiderResults) {
+		return new ZapReport(html.getBytes(), xml.getBytes(), Arrays.asList(spiderResults));
+	}
+	
+	private static int count(String text, String token) {
+		int count = 0;
+		for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + 1)) {
+			count++;
+		}
+		return count;
+	}
+	
+}
@@ -122,4 +122,62 @@ public class ZapReportUtilTest {
 		report.delete();
 	}
 	
+	@Test
+	public void saveFileBackedReportsTest() throws IOException {
+		File htmlSource = File.createTempFile("zapReport", ".html");
+		File xmlSource = File.createTempFile("zapReport", ".xml");
+		Files.write(htmlSource.toPath(), fakeReportBytes);
+		Files.write(xmlSource.toPath(), new byte[] {5, 6});
+		ZapReport fileBackedReport = new ZapReport(htmlSource, xmlSource, new ArrayList<String>(Arrays.asList(fakeSpiderResults)));
+		
+		File htmlReport = ZapReportUtil.saveHtmlReport(fileBackedReport, TEST_DIR);
+		File xmlReport = ZapReportUtil.saveXmlReport(fileBackedReport, TEST_DIR);
+		
+		assertEquals(Files.readAllBytes(htmlReport.toPath()), fakeReportBytes);
+		assertEquals(Files.readAllBytes(xmlReport.toPath()), new byte[] {5, 6});
+		assertEquals(fileBackedReport.getHtmlReport(), fakeReportBytes);
+		
+		htmlReport.delete();
+		xmlReport.delete();
+		htmlSource.delete();
+		xmlSource.delete();
+	}
+	
+	@Test
+	public void saveAllReportsDeletesTemporaryFilesTest() throws IOException {
+		File htmlSource = File.createTempFile("zapReport", ".html");
+		File xmlSource = File.createTempFile("zapReport", ".xml");
+		Files.write(htmlSource.toPath(), fakeReportBytes);
+		Files.write(xmlSource.toPath(), new byte[] {5, 6});
+		ZapReport temporaryReport = new ZapReport(htmlSource, xmlSource, new ArrayList<String>(Arrays.asList(fakeSpiderResults)));
+		temporaryReport.setTemporaryFiles(true);
+		
+		ZapReportUtil.saveAllReports(temporaryReport, TEST_DIR);
+		
+		assertFalse(htmlSource.exists());
+		assertFalse(xmlSource.exists());
+		assertFalse(temporaryReport.hasTemporaryFiles());
+		assertEquals(temporaryReport.getHtmlReportFile(), new File(TEST_DIR, "zapReport.html"));
+		assertEquals(temporaryReport.getXmlReport(), new byte[] {5, 6});
+		
+		for (String report : Arrays.asList("zapReport.html", "zapReport.xml", "zapSpiderResults.html", "zapSpiderResults.xml")) {
+			new File(TEST_DIR, report).delete();
+		}
+	}
+	
+	@Test
+	public void deleteTemporaryFilesKeepsTheOtherFilesTest() throws IOException {
+		File htmlSource = File.createTempFile("zapReport", ".html");
+		File xmlSource = File.createTempFile("zapReport", ".xml");
+		ZapReport fileBackedReport = new ZapReport(htmlSource, xmlSource, new ArrayList<String>(Arrays.asList(fakeSpiderResults)));
+		
+		fileBackedReport.deleteTemporaryFiles();
+		assertTrue(htmlSource.exists());
+		
+		fileBackedReport.setTemporaryFiles(true);
+		fileBackedReport.deleteTemporaryFiles();
+		assertFalse(htmlSource.exists());
+		assertFalse(xmlSource.exists());
+	}
+	
 }
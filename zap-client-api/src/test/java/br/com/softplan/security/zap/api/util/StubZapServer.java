@@ -0,0 +1,584 @@
+package br.com.softplan.security.zap.api.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import br.com.softplan.security.zap.zaproxy.clientapi.core.DaemonThreadFactory;
+
+/**
+ * In-process stub of the ZAP API, used to test the client offline and deterministically.
+ * <p>
+ * It answers the {@code /xml/} and {@code /other/} endpoints used by {@code ClientApi} and the generated API classes,
+ * both as a proxy (absolute URLs like {@code http://zap/xml/...}, as sent by {@code ClientApi}) and directly (as sent by
+ * the boot code). Scans progress by a fixed step on each status call, the volume of alerts, messages and Spider results
+ * is configurable, and latency and failures can be injected. Unknown actions answer {@code OK}.
+ *
+ * @author pdsec
+ */
+public class StubZapServer implements Closeable {
+	
+	private static final String OK = "<Result>OK</Result>";
+	
+	private final HttpServer server;
+	private final ExecutorService executor;
+	
+	private final int numberOfAlerts;
+	private final int numberOfUrls;
+	private final int numberOfMessages;
+	private final int progressStep;
+	private final int ajaxSpiderStatusChecks;
+	private final int passiveScanRecords;
+	private final Set<Integer> changedPages;
+	private final long latencyInMillis;
+	private final long startupTimeInMillis;
+	private final long targetResponseTimeInMillis;
+	private final Map<String, AtomicInteger> failures;
+	
+	private final long startTime = System.currentTimeMillis();
+	private final AtomicInteger spiderProgress = new AtomicInteger();
+	private final Map<String, AtomicInteger> activeScans = new ConcurrentHashMap<>();
+	private final AtomicInteger nextActiveScanId = new AtomicInteger();
+	private final AtomicInteger maxConcurrentActiveScans = new AtomicInteger();
+	private final AtomicInteger ajaxSpiderChecks = new AtomicInteger();
+	private final AtomicInteger passiveScanRecordsLeft;
+	private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+	private final List<String> activeScanTargets = Collections.synchronizedList(new ArrayList<String>());
+	private final Map<String, String> options = new ConcurrentHashMap<>();
+	private final List<String> optionChanges = Collections.synchronizedList(new ArrayList<String>());
+	
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * @return the port the stub is listening on.
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+	
+	/**
+	 * @return the endpoints requested so far, in order (e.g. {@code spider/view/status}).
+	 */
+	public List<String> getRequests() {
+		synchronized (requests) {
+			return new ArrayList<>(requests);
+		}
+	}
+	
+	/**
+	 * @return the URLs the Active Scans were started on, in order.
+	 */
+	public List<String> getActiveScanTargets() {
+		synchronized (activeScanTargets) {
+			return new ArrayList<>(activeScanTargets);
+		}
+	}
+	
+	/**
+	 * @return the maximum number of Active Scans that were running at the same time.
+	 */
+	public int getMaxConcurrentActiveScans() {
+		return maxConcurrentActiveScans.get();
+	}
+	
+	/**
+	 * @param component the API component (e.g. {@code spider}).
+	 * @param option the option name (e.g. {@code ThreadCount}).
+	 * @return the current value of the option, starting with ZAP's default.
+	 */
+	public String getOption(String component, String option) {
+		return options.get(component + "/" + option);
+	}
+	
+	/**
+	 * @param component the API component (e.g. {@code ascan}).
+	 * @param option the option name (e.g. {@code ThreadPerHost}).
+	 * @return the values the option was set to, in order.
+	 */
+	public List<String> getOptionChanges(String component, String option) {
+		List<String> values = new ArrayList<>();
+		synchronized (optionChanges) {
+			for (String change : optionChanges) {
+				if (change.startsWith(component + "/" + option + "=")) {
+					values.add(change.substring(change.indexOf('=') + 1));
+				}
+			}
+		}
+		return values;
+	}
+	
+	public int countRequests(String endpoint) {
+		int count = 0;
+		for (String request : getRequests()) {
+			if (request.equals(endpoint)) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+	
+	private StubZapServer(Builder builder) throws IOException {
+		this.options.put("spider/ThreadCount", "2");
+		this.options.put("spider/MaxDepth", "5");
+		this.options.put("spider/RequestWaitTime", "200");
+		this.options.put("ascan/ThreadPerHost", "2");
+		this.options.put("ascan/HostPerScan", "2");
+		this.options.put("ascan/DelayInMs", "0");
+		this.numberOfAlerts = builder.numberOfAlerts;
+		this.numberOfUrls = builder.numberOfUrls;
+		this.numberOfMessages = builder.numberOfMessages;
+		this.progressStep = builder.progressStep;
+		this.ajaxSpiderStatusChecks = builder.ajaxSpiderStatusChecks;
+		this.passiveScanRecords = builder.passiveScanRecords;
+		this.passiveScanRecordsLeft = new AtomicInteger(builder.passiveScanRecords);
+		this.changedPages = new HashSet<>(builder.changedPages);
+		this.latencyInMillis = builder.latencyInMillis;
+		this.startupTimeInMillis = builder.startupTimeInMillis;
+		this.targetResponseTimeInMillis = builder.targetResponseTimeInMillis;
+		this.failures = new ConcurrentHashMap<>(builder.failures);
+		
+		this.executor = Executors.newCachedThreadPool(new DaemonThreadFactory("stub-zap-"));
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		this.server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					respond(exchange);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		this.server.setExecutor(executor);
+		this.server.start();
+	}
+	
+	private void respond(HttpExchange exchange) throws IOException {
+		sleep(latencyInMillis);
+		
+		// e.g. /xml/spider/view/status/ -> xml, spider/view/status
+		String[] path = exchange.getRequestURI().getPath().split("/");
+		if (path.length < 5) {
+			send(exchange, 404, "Not Found");
+			return;
+		}
+		String format = path[1];
+		String endpoint = path[2] + "/" + path[3] + "/" + path[4];
+		requests.add(endpoint);
+		
+		if (System.currentTimeMillis() - startTime < startupTimeInMillis) {
+			send(exchange, 503, "ZAP is starting");
+			return;
+		}
+		if (shouldFail(endpoint)) {
+			String body = "other".equals(format) ? "Internal Error"
+					: "<error type=\"exception\" code=\"internal_error\">Injected failure on " + endpoint + "</error>";
+			send(exchange, 500, body);
+			return;
+		}
+		send(exchange, 200, respond(endpoint, parseQuery(exchange.getRequestURI().getRawQuery())));
+	}
+	
+	private boolean shouldFail(String endpoint) {
+		AtomicInteger remaining = failures.get(endpoint);
+		return remaining != null && remaining.getAndDecrement() > 0;
+	}
+	
+	private String respond(String endpoint, Map<String, String> params) {
+		String[] parts = endpoint.split("/");
+		if (parts[2].startsWith("option") && options.containsKey(parts[0] + "/" + parts[2].substring("option".length()))) {
+			String name = parts[2];
+			return "<" + name + ">" + options.get(parts[0] + "/" + name.substring("option".length())) + "</" + name + ">";
+		}
+		if (parts[2].startsWith("setOption") && options.containsKey(parts[0] + "/" + parts[2].substring("setOption".length()))) {
+			options.put(parts[0] + "/" + parts[2].substring("setOption".length()), params.get("Integer"));
+			optionChanges.add(parts[0] + "/" + parts[2].substring("setOption".length()) + "=" + params.get("Integer"));
+			return OK;
+		}
+		switch (endpoint) {
+		case "core/view/version":
+			return "<version>2.4.3</version>";
+		case "spider/action/scan":
+			spiderProgress.set(0);
+			return "<scan>0</scan>";
+		case "spider/view/status":
+			return "<status>" + advance(spiderProgress) + "</status>";
+		case "spider/view/results":
+			return urlsXml("results");
+		case "ajaxSpider/view/status":
+			return ajaxSpiderChecks.incrementAndGet() > ajaxSpiderStatusChecks ? "<status>stopped</status>" : "<status>running</status>";
+		case "ascan/action/scan":
+			return "<scan>" + startActiveScan(params.get("url")) + "</scan>";
+		case "ascan/view/status":
+			return "<status>" + advance(activeScans.get(params.get("scanId"))) + "</status>";
+		case "ascan/view/scans":
+			return activeScansXml();
+		case "ascan/view/messagesIds":
+			return messagesIdsXml(params.get("scanId"));
+		case "ascan/action/stop":
+			activeScans.get(params.get("scanId")).set(100);
+			return OK;
+		case "core/view/urls":
+			return urlsXml("urls");
+		case "pscan/view/recordsToScan":
+			return "<recordsToScan>" + drainPassiveScanRecords() + "</recordsToScan>";
+		case "core/view/numberOfAlerts":
+			return "<numberOfAlerts>" + numberOfAlerts + "</numberOfAlerts>";
+		case "core/view/alerts":
+			return alertsXml(params);
+		case "core/view/numberOfMessages":
+			return "<numberOfMessages>" + numberOfMessages + "</numberOfMessages>";
+		case "core/view/messages":
+			return messagesXml(params);
+		case "core/view/message":
+			return "<message type=\"set\"><id>" + params.get("id") + "</id><rtt>" + targetResponseTimeInMillis
+					+ "</rtt><responseHeader>HTTP/1.1 200 OK</responseHeader><responseBody></responseBody></message>";
+		case "core/other/htmlreport":
+			return htmlReport();
+		case "core/other/xmlreport":
+			return xmlReport();
+		default:
+			return OK;
+		}
+	}
+	
+	private synchronized int startActiveScan(String url) {
+		activeScanTargets.add(url);
+		int runningScans = 1;
+		for (AtomicInteger progress : activeScans.values()) {
+			if (progress.get() < 100) {
+				runningScans++;
+			}
+		}
+		maxConcurrentActiveScans.set(Math.max(maxConcurrentActiveScans.get(), runningScans));
+		int scanId = nextActiveScanId.getAndIncrement();
+		activeScans.put(String.valueOf(scanId), new AtomicInteger());
+		return scanId;
+	}
+	
+	/**
+	 * Like ZAP's scans view, every running scan progresses between the checks.
+	 */
+	private String activeScansXml() {
+		StringBuilder sb = new StringBuilder("<scans type=\"list\">");
+		for (Map.Entry<String, AtomicInteger> scan : new TreeMap<>(activeScans).entrySet()) {
+			int progress = scan.getValue().get() < 100 ? advance(scan.getValue()) : 100;
+			sb.append("<scan type=\"set\"><id>").append(scan.getKey()).append("</id><progress>").append(progress)
+				.append("</progress><state>").append(progress < 100 ? "RUNNING" : "FINISHED").append("</state></scan>");
+		}
+		return sb.append("</scans>").toString();
+	}
+	
+	/**
+	 * Like a scan sending requests as it progresses, each scan has as many messages as its progress. As in ZAP,
+	 * they are not part of the session's messages listed by {@code core.messages}.
+	 */
+	private String messagesIdsXml(String scanId) {
+		StringBuilder sb = new StringBuilder("<messagesIds type=\"list\">");
+		AtomicInteger progress = activeScans.get(scanId);
+		for (int i = 0; progress != null && i < progress.get(); i++) {
+			sb.append("<id>").append(Integer.parseInt(scanId) * 1000 + i).append("</id>");
+		}
+		return sb.append("</messagesIds>").toString();
+	}
+	
+	private int advance(AtomicInteger progress) {
+		return Math.min(100, progress.addAndGet(progressStep));
+	}
+	
+	private int drainPassiveScanRecords() {
+		int step = Math.max(1, passiveScanRecords * progressStep / 100);
+		int left;
+		int next;
+		do {
+			left = passiveScanRecordsLeft.get();
+			next = Math.max(0, left - step);
+		} while (!passiveScanRecordsLeft.compareAndSet(left, next));
+		return left;
+	}
+	
+	private String urlsXml(String listName) {
+		StringBuilder sb = new StringBuilder("<" + listName + " type=\"list\">");
+		for (int i = 0; i < numberOfUrls; i++) {
+			sb.append("<url>").append(url(i)).append("</url>");
+		}
+		return sb.append("</" + listName + ">").toString();
+	}
+	
+	private String alertsXml(Map<String, String> params) {
+		int[] range = range(params, numberOfAlerts);
+		StringBuilder sb = new StringBuilder("<alerts type=\"list\">");
+		for (int i = range[0]; i < range[1]; i++) {
+			sb.append("<alert type=\"set\">")
+				.append("<alert>Alert ").append(i % 10).append("</alert>")
+				.append("<url>").append(url(i)).append("</url>")
+				.append("<risk>").append(RISKS[i % RISKS.length]).append("</risk>")
+				.append("<confidence>Medium</confidence>")
+				.append("<param>p</param><other></other><attack></attack><description></description>")
+				.append("<reference></reference><solution></solution><evidence></evidence>")
+				.append("<cweid>79</cweid><wascid>8</wascid>")
+				.append("</alert>");
+		}
+		return sb.append("</alerts>").toString();
+	}
+	
+	private String messagesXml(Map<String, String> params) {
+		int[] range = range(params, numberOfMessages);
+		StringBuilder sb = new StringBuilder("<messages type=\"list\">");
+		for (int i = range[0]; i < range[1]; i++) {
+			sb.append("<message type=\"set\"><id>").append(i).append("</id>")
+				.append("<requestHeader>GET ").append(url(i)).append(" HTTP/1.1</requestHeader>")
+				.append("<responseHeader>HTTP/1.1 200 OK</responseHeader>")
+				.append("<responseBody>Page ").append(i).append(changedPages.contains(i) ? " (changed)" : "").append("</responseBody></message>");
+		}
+		return sb.append("</messages>").toString();
+	}
+	
+	private String htmlReport() {
+		StringBuilder sb = new StringBuilder("<html><head><title>ZAP Scanning Report</title></head><body><table>");
+		for (int i = 0; i < numberOfAlerts; i++) {
+			sb.append("<tr><td>Alert ").append(i % 10).append("</td><td>").append(url(i)).append("</td></tr>");
+		}
+		return sb.append("</table></body></html>").toString();
+	}
+	
+	private String xmlReport() {
+		StringBuilder sb = new StringBuilder("<OWASPZAPReport version=\"2.4.3\"><site name=\"http://localhost:8080\"><alerts>");
+		for (int i = 0; i < numberOfAlerts; i++) {
+			sb.append("<alertitem><alert>Alert ").append(i % 10).append("</alert><uri>").append(url(i)).append("</uri></alertitem>");
+		}
+		return sb.append("</alerts></site></OWASPZAPReport>").toString();
+	}
+	
+	private static final String[] RISKS = {"Informational", "Low", "Medium", "High"};
+	
+	private static String url(int i) {
+		return "http://localhost:8080/app/page" + i;
+	}
+	
+	private static int[] range(Map<String, String> params, int total) {
+		int start = parseInt(params.get("start"), 0);
+		int count = parseInt(params.get("count"), -1);
+		start = Math.max(0, Math.min(start, total));
+		int end = count <= 0 ? total : Math.min(total, start + count);
+		return new int[] {start, end};
+	}
+	
+	private static int parseInt(String value, int defaultValue) {
+		return value == null || value.isEmpty() ? defaultValue : Integer.parseInt(value);
+	}
+	
+	private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+		Map<String, String> params = new HashMap<>();
+		if (query != null) {
+			for (String pair : query.split("&")) {
+				int separator = pair.indexOf('=');
+				if (separator > 0) {
+					params.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"), URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+				}
+			}
+		}
+		return params;
+	}
+	
+	private static void send(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=UTF-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+	
+	private static void sleep(long millis) {
+		if (millis <= 0) {
+			return;
+		}
+		try {
+			TimeUnit.MILLISECONDS.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	public static class Builder {
+		
+		private int numberOfAlerts = 10;
+		private int numberOfUrls = 10;
+		private int numberOfMessages = 10;
+		private int progressStep = 50;
+		private int ajaxSpiderStatusChecks = 1;
+		private int passiveScanRecords;
+		private Set<Integer> changedPages = new HashSet<>();
+		private long latencyInMillis;
+		private long startupTimeInMillis;
+		private long targetResponseTimeInMillis = 100;
+		private Map<String, AtomicInteger> failures = new HashMap<>();
+		
+		/**
+		 * Sets the number of alerts returned by the alert views and included in the reports.
+		 *
+		 * @param numberOfAlerts the number of alerts (default: {@code 10}).
+		 * @return this {@code Builder} instance.
+		 */
+		public Builder numberOfAlerts(int numberOfAlerts) {
+			this.numberOfAlerts = numberOfAlerts;
+			return this;
+		}
+		
+		/**
+		 * Sets the number of URLs visited by the Spider.
+		 *
+		 * @param numberOfUrls the number of URLs (default: {@code 10}).
+		 * @return this {@code Builder} instance.
+		 */
+		public Builder numberOfUrls(int numberOfUrls) {
+			this.numberOfUrls = numberOfUrls;
+			return this;
+		}
+		
+		/**
+		 * Sets the number of messages returned by the message views.
+		 *
+		 * @param numberOfMessages the number of messages (default: {@code 10}).
+		 * @return this {@code Builder} instance.
+		 */
+		public Builder numberOfMessages(int numberOfMessages) {
+			this.numberOfMessages = numberOfMessages;
+			return this;
+		}
+		
+		/**
+		 * Sets how much the Spider and Active Scan progress on each status call.
+		 *
+		 * @param progressStep the progress step, from 1 to 100 (default: {@code 50}).
+		 * @return this {@code Builder} instance.
+		 */
+		public Builder progressStep(int progressStep) {
+			this.progressStep = progressStep;
+			return this;
+		}
+		
+		/**
+		 * Sets how many status calls answer that the AJAX Spider is running.
+		 *
+		 * @param ajaxSpiderStatusChecks the number of status calls (default: {@code 1}).
+		 * @return this {@code Builder} instance.
+		 */
+		public Builder ajaxSpiderStatusChecks(int ajaxSpiderStatusChecks) {
+			this.ajaxSpiderStatusChecks = ajaxSpiderStatusChecks;
+			return this;
+		}
+		
+		/**
+		 * Sets the number of records in the passive scan queue. Each {@code recordsToScan} call answers the records
+		 * left and then drains them by the progress step (as a percentage of the initial records).
+		 *
+		 * @param passiveScanRecords the number of records (default: {@code 0}).
+		 * @return this {@code Builder} instance.
+		 */
+		public Builder passiveScanRecords(int passiveScanRecords) {
+			this.passiveScanRecords = passiveScanRecords;
+			return this;
+		}
+		
+		/**
+		 * Changes the responses of the given pages in the messages views, as if they had been modified.
+		 *
+		 * @param pages the numbers of the pages (default: none).
+		 * @return this {@code Builder} instance.
+		 */
+		public Builder changedPages(Integer... pages) {
+			this.changedPages.addAll(Arrays.asList(pages));
+			return this;
+		}
+		
+		/**
+		 * Sets the latency added to every response.
+		 *
+		 * @param latencyInMillis the latency in milliseconds (default: {@code 0}).
+		 * @return this {@code Builder} instance.
+		 */
+		public Builder latencyInMillis(long latencyInMillis) {
+			this.latencyInMillis = latencyInMillis;
+			return this;
+		}
+		
+		/**
+		 * Sets how long the stub answers {@code 503} to every request after being started, simulating ZAP's initialization.
+		 *
+		 * @param startupTimeInMillis the startup time in milliseconds (default: {@code 0}).
+		 * @return this {@code Builder} instance.
+		 */
+		public Builder startupTimeInMillis(long startupTimeInMillis) {
+			this.startupTimeInMillis = startupTimeInMillis;
+			return this;
+		}
+		
+		/**
+		 * Sets the response time of the target reported for the messages sent by the Active Scans.
+		 *
+		 * @param targetResponseTimeInMillis the response time in milliseconds (default: {@code 100}).
+		 * @return this {@code Builder} instance.
+		 */
+		public Builder targetResponseTimeInMillis(long targetResponseTimeInMillis) {
+			this.targetResponseTimeInMillis = targetResponseTimeInMillis;
+			return this;
+		}
+		
+		/**
+		 * Makes the next requests to the given endpoint fail: API views and actions answer a ZAP exception,
+		 * and the {@code other} endpoints answer a plain HTTP error.
+		 *
+		 * @param endpoint the endpoint, e.g. {@code spider/view/status}.
+		 * @param times how many requests should fail.
+		 * @return this {@code Builder} instance.
+		 */
+		public Builder failing(String endpoint, int times) {
+			this.failures.put(endpoint, new AtomicInteger(times));
+			return this;
+		}
+		
+		/**
+		 * Starts a {@link StubZapServer} on a free local port.
+		 *
+		 * @return the started {@link StubZapServer} instance.
+		 * @throws IOException if the server could not be started.
+		 */
+		public StubZapServer start() throws IOException {
+			return new StubZapServer(this);
+		}
+		
+	}
+
+}
@@ -0,0 +1,107 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert.Confidence;
+import br.com.softplan.security.zap.zaproxy.clientapi.core.Alert.Risk;
+
+public class AlertFilterIndexTest {
+
+	@Test
+	public void shouldTreatNullFieldsAsWildcards() {
+		Alert anyXss = new Alert("XSS", null, (Risk) null, (Confidence) null);
+		Alert anyHighRisk = new Alert(null, null, Risk.High, null);
+		AlertFilterIndex index = new AlertFilterIndex(Arrays.asList(anyXss, anyHighRisk));
+		
+		assertSame(index.findFirstMatch(new Alert("XSS", "http://localhost/", Risk.Low, Confidence.Low)), anyXss);
+		assertSame(index.findFirstMatch(new Alert("SQL Injection", "http://localhost/", Risk.High, Confidence.Low)), anyHighRisk);
+		assertNull(index.findFirstMatch(new Alert("SQL Injection", "http://localhost/", Risk.Low, Confidence.Low)));
+	}
+	
+	@Test
+	public void shouldReturnTheFirstMatchingFilterInTheOriginalOrder() {
+		Random random = new Random(42);
+		List<Alert> filters = randomAlerts(random, 300, true);
+		AlertFilterIndex index = new AlertFilterIndex(filters);
+		
+		for (Alert alert : randomAlerts(random, 2000, false)) {
+			assertSame(index.findFirstMatch(alert), bruteForceFirstMatch(filters, alert));
+		}
+	}
+	
+	@Test
+	public void shouldRemoveMatchesLikeTheListBasedImplementation() {
+		Random random = new Random(7);
+		List<Alert> filters = randomAlerts(random, 200, true);
+		List<Alert> remainingFilters = new ArrayList<>(filters);
+		AlertFilterIndex index = new AlertFilterIndex(filters);
+		
+		for (Alert alert : randomAlerts(random, 500, false)) {
+			Alert expected = bruteForceFirstMatch(remainingFilters, alert);
+			if (expected != null) {
+				remainingFilters.remove(expected);
+			}
+			assertSame(index.removeFirstMatch(alert), expected);
+		}
+		assertEquals(index.getRemainingFilters(), remainingFilters);
+	}
+	
+	@Test
+	public void shouldClassifyAlertsInCheckAlerts() throws ClientApiException {
+		List<String[]> alerts = new ArrayList<>();
+		alerts.add(new String[] {"XSS", "http://localhost/a", "High", "Medium"});
+		alerts.add(new String[] {"Cookie No HttpOnly Flag", "http://localhost/b", "Low", "Medium"});
+		alerts.add(new String[] {"SQL Injection", "http://localhost/c", "High", "Medium"});
+		ClientApi api = new ClientApi("localhost", 8080, false, new FakeAlertsTransport(alerts));
+		
+		List<Alert> ignoreAlerts = new ArrayList<>();
+		ignoreAlerts.add(new Alert(null, null, Risk.Low, null));
+		List<Alert> requireAlerts = new ArrayList<>();
+		requireAlerts.add(new Alert("XSS", null, Risk.High, null));
+		requireAlerts.add(new Alert("Path Traversal", null, (Risk) null, (Confidence) null));
+		
+		try {
+			api.checkAlerts(ignoreAlerts, requireAlerts);
+			fail("A ClientApiException was expected");
+		} catch (ClientApiException e) {
+			assertTrue(e.getMessage().startsWith("Found 1 alerts"), e.getMessage());
+			assertTrue(e.getMessage().contains("SQL Injection"), e.getMessage());
+			assertTrue(e.getMessage().contains("Not found 1 alerts"), e.getMessage());
+		}
+		assertEquals(requireAlerts.size(), 1);
+		assertEquals(requireAlerts.get(0).getAlert(), "Path Traversal");
+	}
+	
+	private static Alert bruteForceFirstMatch(List<Alert> filters, Alert alert) {
+		for (Alert filter : filters) {
+			if (alert.matches(filter)) {
+				return filter;
+			}
+		}
+		return null;
+	}
+	
+	private static List<Alert> randomAlerts(Random random, int count, boolean withWildcards) {
+		String[] names = {"XSS", "SQL Injection", "Path Traversal", "CSRF", "Cookie No HttpOnly Flag"};
+		List<Alert> alerts = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			String name = withWildcards && random.nextInt(3) == 0 ? null : names[random.nextInt(names.length)];
+			Risk risk = withWildcards && random.nextInt(2) == 0 ? null : Risk.values()[random.nextInt(Risk.values().length)];
+			Confidence confidence = withWildcards && random.nextInt(2) == 0 ? null : Confidence.values()[random.nextInt(Confidence.values().length)];
+			alerts.add(new Alert(name, "http://localhost/" + i, risk, confidence));
+		}
+		return alerts;
+	}
+	
+}
@@ -0,0 +1,72 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.testng.annotations.Test;
+
+public class AlertPageIterableTest {
+
+	@Test
+	public void shouldFetchAllAlertsInPages() {
+		FakeAlertsTransport transport = new FakeAlertsTransport(25);
+		ClientApi api = new ClientApi("localhost", 8080, false, transport);
+		
+		int count = 0;
+		for (Alert alert : api.iterateAlerts(null, 10)) {
+			assertEquals(alert.getUrl(), "http://localhost/page" + count);
+			count++;
+		}
+		
+		assertEquals(count, 25);
+		assertEquals(transport.getRequestedUrls().size(), 3);
+		assertTrue(transport.getRequestedUrls().get(2).getQuery().contains("start=20"));
+	}
+	
+	@Test
+	public void shouldFetchPagesOnlyWhenTheIterationAdvances() {
+		FakeAlertsTransport transport = new FakeAlertsTransport(25);
+		ClientApi api = new ClientApi("localhost", 8080, false, transport);
+		
+		Iterator<Alert> alerts = api.iterateAlerts(null, 10).iterator();
+		assertEquals(transport.getRequestedUrls().size(), 0);
+		
+		for (int i = 0; i < 10; i++) {
+			alerts.next();
+		}
+		assertEquals(transport.getRequestedUrls().size(), 1);
+		
+		alerts.next();
+		assertEquals(transport.getRequestedUrls().size(), 2);
+	}
+	
+	@Test
+	public void shouldStopWithAnEmptyPageWhenTheLastPageIsFull() {
+		FakeAlertsTransport transport = new FakeAlertsTransport(20);
+		ClientApi api = new ClientApi("localhost", 8080, false, transport);
+		
+		int count = 0;
+		for (Iterator<Alert> alerts = api.iterateAlerts(null, 10).iterator(); alerts.hasNext(); alerts.next()) {
+			count++;
+		}
+		
+		assertEquals(count, 20);
+		assertEquals(transport.getRequestedUrls().size(), 3);
+	}
+	
+	@Test
+	public void shouldHandleNoAlerts() {
+		ClientApi api = new ClientApi("localhost", 8080, false, new FakeAlertsTransport(0));
+		
+		assertFalse(api.iterateAlerts(null, 10).iterator().hasNext());
+	}
+	
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void shouldRejectInvalidPageSizes() {
+		new ClientApi("localhost", 8080, false, new FakeAlertsTransport(0)).iterateAlerts(null, 0);
+	}
+	
+}
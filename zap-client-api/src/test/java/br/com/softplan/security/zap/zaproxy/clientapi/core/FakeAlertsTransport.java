@@ -0,0 +1,121 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ClientApiTransport} that serves {@code core.alerts}, {@code core.numberOfAlerts},
+ * {@code core.messages} and {@code core.numberOfMessages} from generated data, recording the requested URLs.
+ */
+class FakeAlertsTransport implements ClientApiTransport {
+
+	private final List<String[]> alerts;
+	private final int numberOfMessages;
+	private final List<URL> requestedUrls = Collections.synchronizedList(new ArrayList<URL>());
+	
+	FakeAlertsTransport(int numberOfAlerts) {
+		this(numberOfAlerts, 0);
+	}
+	
+	FakeAlertsTransport(int numberOfAlerts, int numberOfMessages) {
+		this.alerts = new ArrayList<>();
+		for (int i = 0; i < numberOfAlerts; i++) {
+			alerts.add(new String[] {"Alert " + (i % 7), "http://localhost/page" + i, Alert.Risk.values()[i % 4].name(), Alert.Confidence.values()[i % 4].name()});
+		}
+		this.numberOfMessages = numberOfMessages;
+	}
+	
+	FakeAlertsTransport(List<String[]> alerts) {
+		this.alerts = alerts;
+		this.numberOfMessages = 0;
+	}
+	
+	List<URL> getRequestedUrls() {
+		return requestedUrls;
+	}
+	
+	@Override
+	public InputStream openStream(URL url) throws IOException {
+		requestedUrls.add(url);
+		String path = url.getPath();
+		Map<String, String> params = parseQuery(url.getQuery());
+		String body;
+		if (path.endsWith("/core/view/alerts/")) {
+			body = alertsXml(params);
+		} else if (path.endsWith("/core/view/numberOfAlerts/")) {
+			body = "<numberOfAlerts>" + alerts.size() + "</numberOfAlerts>";
+		} else if (path.endsWith("/core/view/messages/")) {
+			body = messagesXml(params);
+		} else if (path.endsWith("/core/view/numberOfMessages/")) {
+			body = "<numberOfMessages>" + numberOfMessages + "</numberOfMessages>";
+		} else {
+			body = "<error type=\"exception\" code=\"bad_view\">Bad View</error>";
+		}
+		return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	private String alertsXml(Map<String, String> params) {
+		int[] range = range(params, alerts.size());
+		StringBuilder sb = new StringBuilder("<alerts type=\"list\">");
+		for (int i = range[0]; i < range[1]; i++) {
+			String[] alert = alerts.get(i);
+			sb.append("<alert type=\"set\">")
+				.append("<alert>").append(alert[0]).append("</alert>")
+				.append("<url>").append(alert[1]).append("</url>")
+				.append("<risk>").append(alert[2]).append("</risk>")
+				.append("<confidence>").append(alert[3]).append("</confidence>")
+				.append("<param></param><other></other><attack></attack><description></description>")
+				.append("<reference></reference><solution></solution><evidence></evidence>")
+				.append("<cweid>79</cweid><wascid>8</wascid>")
+				.append("</alert>");
+		}
+		return sb.append("</alerts>").toString();
+	}
+	
+	private String messagesXml(Map<String, String> params) {
+		int[] range = range(params, numberOfMessages);
+		StringBuilder sb = new StringBuilder("<messages type=\"list\">");
+		for (int i = range[0]; i < range[1]; i++) {
+			sb.append("<message type=\"set\"><id>").append(i).append("</id></message>");
+		}
+		return sb.append("</messages>").toString();
+	}
+	
+	private static int[] range(Map<String, String> params, int total) {
+		int start = parseInt(params.get("start"), 0);
+		int count = parseInt(params.get("count"), -1);
+		start = Math.max(0, Math.min(start, total));
+		int end = count <= 0 ? total : Math.min(total, start + count);
+		return new int[] {start, end};
+	}
+	
+	private static int parseInt(String value, int defaultValue) {
+		return value == null || value.isEmpty() ? defaultValue : Integer.parseInt(value);
+	}
+	
+	private static Map<String, String> parseQuery(String query) throws IOException {
+		Map<String, String> params = new HashMap<>();
+		if (query != null) {
+			for (String pair : query.split("&")) {
+				int separator = pair.indexOf('=');
+				if (separator > 0) {
+					params.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"), URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+				}
+			}
+		}
+		return params;
+	}
+	
+	@Override
+	public void close() {}
+	
+}
@@ -0,0 +1,120 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import br.com.softplan.security.zap.zaproxy.clientapi.core.InMemoryApiMetricsRegistry.EndpointMetrics;
+
+public class InMemoryApiMetricsRegistryTest {
+	
+	@Test
+	public void shouldRecordTheCallsPerEndpoint() throws ClientApiException {
+		InMemoryApiMetricsRegistry registry = new InMemoryApiMetricsRegistry();
+		ClientApi api = new ClientApi("localhost", 8080, false, new FakeAlertsTransport(3));
+		api.setMetricsRegistry(registry);
+		
+		api.core.numberOfAlerts("");
+		api.core.numberOfAlerts("");
+		api.getAlerts("", 0, 3);
+		api.callApiOther("core", "other", "htmlreport", null, new ByteArrayOutputStream());
+		
+		EndpointMetrics numberOfAlerts = registry.getEndpointMetrics().get("core/view/numberOfAlerts");
+		assertEquals(numberOfAlerts.getCalls(), 2);
+		assertEquals(numberOfAlerts.getErrors(), 0);
+		assertEquals(numberOfAlerts.getFirstByteLatency().getCount(), 2);
+		assertTrue(registry.getEndpointMetrics().get("core/view/alerts").getBytesReceived() > 100);
+		assertEquals(registry.getEndpointMetrics().get("core/other/htmlreport").getCalls(), 1);
+		assertTrue(registry.getSummary().contains("core/view/alerts"));
+	}
+	
+	@Test
+	public void shouldRecordFailedCalls() {
+		InMemoryApiMetricsRegistry registry = new InMemoryApiMetricsRegistry();
+		ClientApi api = new ClientApi("localhost", 8080, false, new FakeAlertsTransport(0));
+		api.setMetricsRegistry(registry);
+		
+		try {
+			api.spider.status("0");
+			fail("A ClientApiException was expected");
+		} catch (ClientApiException e) {
+			EndpointMetrics status = registry.getEndpointMetrics().get("spider/view/status");
+			assertEquals(status.getCalls(), 1);
+			assertEquals(status.getErrorRate(), 1.0);
+		}
+	}
+	
+	@Test
+	public void shouldRecordFailedStreamingCalls() throws ClientApiException {
+		InMemoryApiMetricsRegistry registry = new InMemoryApiMetricsRegistry();
+		ClientApi api = new ClientApi("localhost", 8080, false, new ClientApiTransport() {
+			@Override
+			public InputStream openStream(URL url) throws IOException {
+				throw new IllegalStateException("Connection pool closed");
+			}
+			
+			@Override
+			public void close() {}
+		});
+		api.setMetricsRegistry(registry);
+		
+		try {
+			api.callApiOther("core", "other", "htmlreport", null, new ByteArrayOutputStream());
+			fail("An IllegalStateException was expected");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		
+		api = new ClientApi("localhost", 8080, false, new FakeAlertsTransport(1));
+		api.setMetricsRegistry(registry);
+		try {
+			api.callApiOther("core", "other", "xmlreport", null, new OutputStream() {
+				@Override
+				public void write(int b) throws IOException {
+					throw new IOException("Disk full");
+				}
+			});
+			fail("A ClientApiException was expected");
+		} catch (ClientApiException e) {
+			// Expected
+		}
+		
+		assertEquals(registry.getEndpointMetrics().get("core/other/htmlreport").getErrorRate(), 1.0);
+		assertEquals(registry.getEndpointMetrics().get("core/other/xmlreport").getErrorRate(), 1.0);
+	}
+	
+	@Test
+	public void shouldNotMeasureWithoutRegistry() throws ClientApiException {
+		ClientApi api = new ClientApi("localhost", 8080, false, new FakeAlertsTransport(1));
+		
+		api.core.numberOfAlerts("");
+		
+		assertNull(api.getMetricsRegistry());
+	}
+	
+	@Test
+	public void shouldEstimatePercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+		}
+		
+		assertEquals(histogram.getCount(), 100);
+		assertEquals(histogram.getMaxNanos(), TimeUnit.MILLISECONDS.toNanos(100));
+		long p50 = histogram.getPercentileNanos(50);
+		assertTrue(p50 >= TimeUnit.MILLISECONDS.toNanos(50) && p50 <= TimeUnit.MILLISECONDS.toNanos(100), "p50: " + p50);
+		assertEquals(histogram.getPercentileNanos(100), histogram.getMaxNanos());
+		assertEquals(new LatencyHistogram().getPercentileNanos(99), 0);
+	}
+
+}
@@ -0,0 +1,107 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class JsonApiResponseParserTest {
+
+	private final ApiResponseParser jsonParser = new JsonApiResponseParser();
+	private final ApiResponseParser xmlParser = new StaxApiResponseParser();
+	
+	@DataProvider(name = "equivalentResponses")
+	public Object[][] equivalentResponses() {
+		return new Object[][] {
+			{ "{\"version\":\"2.4.3\"}", "<version>2.4.3</version>" },
+			{ "{\"Result\":\"OK\"}", "<Result>OK</Result>" },
+			{ "{\"urls\":[\"http://localhost/a\",\"http://localhost/b?x=1&y=2\"]}",
+				"<urls type=\"list\"><url>http://localhost/a</url><url>http://localhost/b?x=1&amp;y=2</url></urls>" },
+			{ "{\"urls\":[]}", "<urls type=\"list\"></urls>" },
+			{ "{ \"scans\" : [ { \"id\" : \"0\", \"progress\" : \"100\", \"state\" : \"FINISHED\" } ] }",
+				"<scans type=\"list\"><scan type=\"set\"><id>0</id><progress>100</progress><state>FINISHED</state></scan></scans>" },
+		};
+	}
+	
+	@Test(dataProvider = "equivalentResponses")
+	public void shouldProduceTheSameStructureAsTheXmlResponse(String json, String xml) throws ClientApiException {
+		ApiResponse fromJson = jsonParser.parse(toStream(json));
+		ApiResponse fromXml = xmlParser.parse(toStream(xml));
+		
+		assertEquals(fromJson.getClass(), fromXml.getClass());
+		assertEquals(fromJson.getName(), fromXml.getName());
+		if (fromJson instanceof ApiResponseElement) {
+			assertEquals(((ApiResponseElement) fromJson).getValue(), ((ApiResponseElement) fromXml).getValue());
+		}
+		if (fromJson instanceof ApiResponseList) {
+			assertEquals(((ApiResponseList) fromJson).getItems().size(), ((ApiResponseList) fromXml).getItems().size());
+		}
+	}
+	
+	@Test
+	public void shouldMapAlertsToSets() throws ClientApiException {
+		String json = "{\"alerts\":[{\"alert\":\"Cross Site Scripting\",\"risk\":\"High\",\"confidence\":\"Medium\","
+				+ "\"url\":\"http://localhost/search?q=<script>\",\"evidence\":\"\\\"quoted\\\" \\u00e9\",\"id\":12}]}";
+		
+		ApiResponseList alerts = (ApiResponseList) jsonParser.parse(toStream(json));
+		
+		assertEquals(alerts.getItems().size(), 1);
+		ApiResponseSet alert = (ApiResponseSet) alerts.getItems().get(0);
+		assertEquals(alert.getAttribute("alert"), "Cross Site Scripting");
+		assertEquals(alert.getAttribute("risk"), "High");
+		assertEquals(alert.getAttribute("url"), "http://localhost/search?q=<script>");
+		assertEquals(alert.getAttribute("evidence"), "\"quoted\" \u00e9");
+		assertEquals(alert.getAttribute("id"), "12");
+	}
+	
+	@Test
+	public void shouldMapNestedListsLikeTheXmlResponse() throws ClientApiException {
+		String json = "{\"fullResults\":[{\"urlsInScope\":[{\"url\":\"http://localhost/\",\"statusCode\":\"200\"}]},"
+				+ "{\"urlsOutOfScope\":[\"http://example.com/\"]}]}";
+		
+		ApiResponseList fullResults = (ApiResponseList) jsonParser.parse(toStream(json));
+		
+		assertEquals(fullResults.getName(), "fullResults");
+		assertEquals(fullResults.getItems().size(), 2);
+		ApiResponseList inScope = (ApiResponseList) fullResults.getItems().get(0);
+		assertEquals(inScope.getName(), "urlsInScope");
+		assertEquals(((ApiResponseSet) inScope.getItems().get(0)).getAttribute("statusCode"), "200");
+		ApiResponseList outOfScope = (ApiResponseList) fullResults.getItems().get(1);
+		assertEquals(((ApiResponseElement) outOfScope.getItems().get(0)).getValue(), "http://example.com/");
+	}
+	
+	@Test
+	public void shouldThrowApiErrorsWithCodeAndMessage() {
+		try {
+			jsonParser.parse(toStream("{\"code\":\"bad_view\",\"message\":\"Bad View\"}"));
+			fail("A ClientApiException was expected");
+		} catch (ClientApiException e) {
+			assertEquals(e.getMessage(), "Bad View");
+			assertEquals(e.getCode(), "bad_view");
+		}
+	}
+	
+	@Test
+	public void shouldRejectMalformedDocuments() {
+		String[] malformedDocuments = { "", "{\"version\":", "{\"version\" \"2.4.3\"}", "{\"urls\":[\"a\" \"b\"]}", "{} {}" };
+		for (String json : malformedDocuments) {
+			try {
+				jsonParser.parse(toStream(json));
+				fail("A ClientApiException was expected for: " + json);
+			} catch (ClientApiException e) {
+				assertTrue(e.getCause() != null, json);
+			}
+		}
+	}
+	
+	private static InputStream toStream(String json) {
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+	}
+	
+}
@@ -0,0 +1,90 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class ParallelPageRetrieverTest {
+
+	@Test
+	public void shouldRetrieveAllAlertsInOrder() throws ClientApiException {
+		FakeAlertsTransport transport = new FakeAlertsTransport(1234);
+		ClientApi api = new ClientApi("localhost", 8080, false, transport);
+		
+		try (ParallelPageRetriever retriever = new ParallelPageRetriever(api, 100, 4)) {
+			List<Alert> alerts = retriever.getAllAlerts(null);
+			
+			assertEquals(alerts.size(), 1234);
+			for (int i = 0; i < alerts.size(); i++) {
+				assertEquals(alerts.get(i).getUrl(), "http://localhost/page" + i);
+			}
+		}
+		// numberOfAlerts + 13 pages
+		assertEquals(transport.getRequestedUrls().size(), 14);
+	}
+	
+	@Test
+	public void shouldFetchTheItemsAddedAfterTheTotalWasRead() throws ClientApiException {
+		FakeAlertsTransport transport = new FakeAlertsTransport(200);
+		ClientApi api = new ClientApi("localhost", 8080, false, transport);
+		
+		try (ParallelPageRetriever retriever = new ParallelPageRetriever(api, 100, 2)) {
+			List<Alert> alerts = retriever.getAllAlerts(null);
+			
+			assertEquals(alerts.size(), 200);
+		}
+		assertTrue(transport.getRequestedUrls().get(transport.getRequestedUrls().size() - 1).getQuery().contains("start=200"));
+	}
+	
+	@Test
+	public void shouldRetrieveAllMessagesInOrder() throws ClientApiException {
+		ClientApi api = new ClientApi("localhost", 8080, false, new FakeAlertsTransport(0, 345));
+		
+		try (ParallelPageRetriever retriever = new ParallelPageRetriever(api, 50, 3)) {
+			List<ApiResponse> messages = retriever.getAllMessages(null);
+			
+			assertEquals(messages.size(), 345);
+			for (int i = 0; i < messages.size(); i++) {
+				assertEquals(((ApiResponseSet) messages.get(i)).getAttribute("id"), String.valueOf(i));
+			}
+		}
+	}
+	
+	@Test
+	public void shouldHandleTheMessagesOnePageAtATime() throws ClientApiException {
+		ClientApi api = new ClientApi("localhost", 8080, false, new FakeAlertsTransport(0, 345));
+		final List<Integer> pageSizes = new ArrayList<>();
+		final List<String> ids = new ArrayList<>();
+		
+		try (ParallelPageRetriever retriever = new ParallelPageRetriever(api, 50, 3)) {
+			retriever.forEachMessagesPage(null, new ParallelPageRetriever.PageHandler<ApiResponse>() {
+				@Override
+				public void handle(List<ApiResponse> page) {
+					pageSizes.add(page.size());
+					for (ApiResponse message : page) {
+						ids.add(((ApiResponseSet) message).getAttribute("id"));
+					}
+				}
+			});
+		}
+		assertEquals(pageSizes, Arrays.asList(50, 50, 50, 50, 50, 50, 45));
+		for (int i = 0; i < ids.size(); i++) {
+			assertEquals(ids.get(i), String.valueOf(i));
+		}
+	}
+	
+	@Test
+	public void shouldHandleNoAlerts() throws ClientApiException {
+		ClientApi api = new ClientApi("localhost", 8080, false, new FakeAlertsTransport(0));
+		
+		try (ParallelPageRetriever retriever = new ParallelPageRetriever(api)) {
+			assertTrue(retriever.getAllAlerts(null).isEmpty());
+		}
+	}
+	
+}
@@ -0,0 +1,215 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class PooledHttpTransportTest {
+
+	private static final String BODY = "<version>2.4.3</version>";
+	
+	private ServerSocket serverSocket;
+	private AtomicInteger acceptedConnections;
+	private AtomicInteger receivedRequests;
+	private volatile String responseMode;
+	private PooledHttpTransport transport;
+	
+	@BeforeMethod
+	public void setUp() throws IOException {
+		serverSocket = new ServerSocket(0);
+		acceptedConnections = new AtomicInteger();
+		receivedRequests = new AtomicInteger();
+		responseMode = "length";
+		transport = new PooledHttpTransport("localhost", serverSocket.getLocalPort(), 2, 60000);
+		
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (!serverSocket.isClosed()) {
+					try {
+						final Socket socket = serverSocket.accept();
+						acceptedConnections.incrementAndGet();
+						Thread handler = new Thread(new Runnable() {
+							@Override
+							public void run() {
+								serve(socket);
+							}
+						});
+						handler.setDaemon(true);
+						handler.start();
+					} catch (IOException e) {
+						return;
+					}
+				}
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+	
+	@AfterMethod
+	public void tearDown() throws IOException {
+		transport.close();
+		serverSocket.close();
+	}
+	
+	@Test
+	public void testConnectionIsReusedAcrossCalls() throws IOException {
+		for (int i = 0; i < 5; i++) {
+			assertEquals(call(), BODY);
+		}
+		assertEquals(acceptedConnections.get(), 1);
+		assertEquals(transport.getIdleConnectionCount(), 1);
+	}
+	
+	@Test
+	public void testChunkedResponsesAreReadAndConnectionIsReused() throws IOException {
+		responseMode = "chunked";
+		assertEquals(call(), BODY);
+		assertEquals(call(), BODY);
+		assertEquals(acceptedConnections.get(), 1);
+	}
+	
+	@Test
+	public void testConnectionIsNotReusedWhenServerAsksToClose() throws IOException {
+		responseMode = "close";
+		assertEquals(call(), BODY);
+		assertEquals(call(), BODY);
+		assertEquals(acceptedConnections.get(), 2);
+		assertEquals(transport.getIdleConnectionCount(), 0);
+	}
+	
+	@Test
+	public void testUnreadBodyIsDrainedOnClose() throws IOException {
+		InputStream in = transport.openStream(new URL("http://zap/xml/core/view/version/"));
+		assertEquals(in.read(), '<');
+		in.close();
+		
+		assertEquals(call(), BODY);
+		assertEquals(acceptedConnections.get(), 1);
+	}
+	
+	@Test
+	public void testIdleConnectionsAreEvicted() throws IOException, InterruptedException {
+		transport.close();
+		transport = new PooledHttpTransport("localhost", serverSocket.getLocalPort(), 2, 1);
+		call();
+		Thread.sleep(20);
+		call();
+		assertTrue(acceptedConnections.get() >= 2);
+	}
+	
+	@Test
+	public void testIdleConnectionClosedByServerIsReplaced() throws IOException {
+		responseMode = "silent-close";
+		assertEquals(call(), BODY);
+		assertEquals(call(), BODY);
+		assertEquals(acceptedConnections.get(), 2);
+		assertEquals(receivedRequests.get(), 2);
+	}
+	
+	@Test
+	public void testRequestIsNotRetriedWhenConnectionFailsDuringTheResponse() throws IOException {
+		assertEquals(call(), BODY);
+		responseMode = "reset";
+		try {
+			call();
+			fail("The request should have failed.");
+		} catch (IOException e) {
+			// Expected: ZAP may have handled the request, so it must not be sent again
+		}
+		assertEquals(receivedRequests.get(), 2);
+	}
+	
+	@Test
+	public void testReusedConnectionKeepsItsReadTimeout() throws IOException {
+		transport.close();
+		transport = new PooledHttpTransport("localhost", serverSocket.getLocalPort(), 2, 60000, 1000, 200);
+		assertEquals(call(), BODY);
+		responseMode = "hang";
+		long start = System.currentTimeMillis();
+		try {
+			call();
+			fail("The request should have timed out.");
+		} catch (SocketTimeoutException e) {
+			// Expected: the liveness check of the idle connection must not drop its read timeout
+		}
+		assertEquals(acceptedConnections.get(), 1);
+		assertTrue(System.currentTimeMillis() - start < 5000);
+	}
+	
+	private String call() throws IOException {
+		try (InputStream in = transport.openStream(new URL("http://zap/xml/core/view/version/"))) {
+			return IOUtils.toString(in, StandardCharsets.UTF_8);
+		}
+	}
+	
+	private void serve(Socket socket) {
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+			OutputStream out = socket.getOutputStream();
+			String requestLine;
+			while ((requestLine = reader.readLine()) != null) {
+				assertTrue(requestLine.startsWith("GET http://zap/xml/"));
+				String header;
+				while ((header = reader.readLine()) != null && !header.isEmpty()) {}
+				receivedRequests.incrementAndGet();
+				
+				byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+				if ("hang".equals(responseMode)) {
+					continue;
+				}
+				if ("reset".equals(responseMode)) {
+					out.write("HTTP/1.1 2".getBytes(StandardCharsets.ISO_8859_1));
+					out.flush();
+					socket.setSoLinger(true, 0);
+					socket.close();
+					return;
+				}
+				if ("chunked".equals(responseMode)) {
+					out.write(("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+							+ Integer.toHexString(5) + "\r\n" + BODY.substring(0, 5) + "\r\n"
+							+ Integer.toHexString(body.length - 5) + "\r\n" + BODY.substring(5) + "\r\n"
+							+ "0\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+				} else {
+					boolean close = "close".equals(responseMode);
+					out.write(("HTTP/1.1 200 OK\r\nContent-Length: " + body.length + "\r\n"
+							+ (close ? "Connection: close\r\n" : "") + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+					out.write(body);
+					if (close || "silent-close".equals(responseMode)) {
+						out.flush();
+						socket.close();
+						return;
+					}
+				}
+				out.flush();
+			}
+		} catch (IOException e) {
+			// Connection closed by the client
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Ignore
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,98 @@
+package br.com.softplan.security.zap.zaproxy.clientapi.core;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class StaxApiResponseParserTest {
+
+	private final ApiResponseParser staxParser = new StaxApiResponseParser();
+	private final ApiResponseParser domParser = new DomApiResponseParser();
+	
+	@DataProvider(name = "responses")
+	public Object[][] responses() {
+		return new Object[][] {
+			{ "<?xml version=\"1.0\" encoding=\"UTF-8\"?><version>2.4.3</version>" },
+			{ "<Result>OK</Result>" },
+			{ "<numberOfAlerts></numberOfAlerts>" },
+			{ "<urls type=\"list\"><url>http://localhost/a</url><url>http://localhost/b?x=1&amp;y=2</url></urls>" },
+			{ "<urls type=\"list\"></urls>" },
+			{ "<alerts type=\"list\">"
+					+ "<alert type=\"set\">"
+					+ "<alert>Cross Site Scripting</alert>"
+					+ "<risk>High</risk>"
+					+ "<confidence>Medium</confidence>"
+					+ "<url>http://localhost/search?q=&lt;script&gt;</url>"
+					+ "<evidence><![CDATA[<script>alert(1)</script>]]></evidence>"
+					+ "</alert>"
+					+ "<alert type=\"set\"><alert>Cookie No HttpOnly Flag</alert><risk>Low</risk><param></param></alert>"
+					+ "</alerts>" },
+			{ "<scans type=\"list\"><scan type=\"set\"><id>0</id><progress>100</progress></scan></scans>" },
+		};
+	}
+	
+	@Test(dataProvider = "responses")
+	public void shouldProduceTheSameResponseAsTheDomParser(String xml) throws ClientApiException {
+		ApiResponse expected = domParser.parse(toStream(xml));
+		ApiResponse actual = staxParser.parse(toStream(xml));
+		
+		assertEquals(actual.getClass(), expected.getClass());
+		assertEquals(actual.getName(), expected.getName());
+		assertEquals(actual.toString(0), expected.toString(0));
+	}
+	
+	@Test
+	public void shouldBuildSetsWithTheirAttributes() throws ClientApiException {
+		ApiResponseList alerts = (ApiResponseList) staxParser.parse(toStream(
+				"<alerts type=\"list\"><alert type=\"set\"><alert>XSS</alert><risk>High</risk></alert></alerts>"));
+		
+		assertEquals(alerts.getItems().size(), 1);
+		ApiResponseSet alert = (ApiResponseSet) alerts.getItems().get(0);
+		assertEquals(alert.getAttribute("alert"), "XSS");
+		assertEquals(alert.getAttribute("risk"), "High");
+	}
+	
+	@Test
+	public void shouldIgnoreWhitespaceBetweenElements() throws ClientApiException {
+		ApiResponseList alerts = (ApiResponseList) staxParser.parse(toStream(
+				"<alerts type=\"list\">\n  <alert type=\"set\">\n    <risk>High</risk>\n  </alert>\n</alerts>"));
+		
+		assertEquals(alerts.getItems().size(), 1);
+		assertEquals(((ApiResponseSet) alerts.getItems().get(0)).getAttribute("risk"), "High");
+	}
+	
+	@Test
+	public void shouldThrowApiExceptionsWithCodeAndDetail() {
+		try {
+			staxParser.parse(toStream("<error type=\"exception\" code=\"bad_view\" detail=\"foo\">Bad View</error>"));
+			fail("A ClientApiException was expected");
+		} catch (ClientApiException e) {
+			assertEquals(e.getMessage(), "Bad View");
+			assertEquals(e.getCode(), "bad_view");
+			assertEquals(e.getDetail(), "foo");
+		}
+	}
+	
+	@Test
+	public void shouldNotResolveExternalEntities() {
+		String xml = "<?xml version=\"1.0\"?><!DOCTYPE version [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]><version>&xxe;</version>";
+		try {
+			ApiResponse response = staxParser.parse(toStream(xml));
+			assertTrue(((ApiResponseElement) response).getValue().isEmpty());
+		} catch (ClientApiException e) {
+			// Rejecting the document is also acceptable
+		}
+	}
+	
+	private static InputStream toStream(String xml) {
+		return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+	}
+	
+}
@@ -9,7 +9,6 @@ import br.com.softplan.security.zap.api.model.AnalysisInfo;
 import br.com.softplan.security.zap.api.model.AuthenticationInfo;
 import br.com.softplan.security.zap.api.report.ZapReport;
 import br.com.softplan.security.zap.commons.ZapInfo;
-import br.com.softplan.security.zap.commons.boot.Zap;
 
 /**
  * Goal to execute a full analysis with ZAP.
@@ -28,17 +27,25 @@ public class AnalyzeMojo extends ZapMojo {
 		ZapInfo zapInfo = buildZapInfo();
 		AuthenticationInfo authenticationInfo = buildAuthenticationInfo();
 		AnalysisInfo analysisInfo = buildAnalysisInfo();
+		if (isShareZapAcrossReactor()) {
+			// The shared ZAP still holds the previous module's session
+			analysisInfo = AnalysisInfo.builder(analysisInfo).shouldStartNewSession(true).build();
+		}
 
 		ZapClient zapClient = new ZapClient(zapInfo, authenticationInfo);
+		ZapReport zapReport;
 		try {
-			Zap.startZap(zapInfo);
-			ZapReport zapReport = zapClient.analyze(analysisInfo);
+			startZap(zapInfo);
+			zapReport = zapClient.analyze(analysisInfo);
 			saveReport(zapReport);
 		} finally {
-			Zap.stopZap();
+			saveAnalysisMetrics(zapClient);
+			zapClient.close();
+			stopZap(zapInfo);
 		}
 
 		getLog().info("ZAP analysis finished.");
+		failIfAlertThresholdReached(zapReport);
 	}
 	
 }
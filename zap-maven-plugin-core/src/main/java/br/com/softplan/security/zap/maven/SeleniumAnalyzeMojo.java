@@ -10,7 +10,6 @@ import br.com.softplan.security.zap.api.model.AnalysisType;
 import br.com.softplan.security.zap.api.model.AuthenticationInfo;
 import br.com.softplan.security.zap.api.report.ZapReport;
 import br.com.softplan.security.zap.commons.ZapInfo;
-import br.com.softplan.security.zap.commons.boot.Zap;
 
 /**
  * Run ZAP's Active Scan and generates the reports. <b>No Spider is executed.</b>
@@ -35,14 +34,18 @@ public class SeleniumAnalyzeMojo extends ZapMojo {
 		AnalysisInfo analysisInfo = buildAnalysisInfo(AnalysisType.ACTIVE_SCAN_ONLY);
 
 		ZapClient zapClient = new ZapClient(zapInfo, authenticationInfo);
+		ZapReport zapReport;
 		try {
-			ZapReport zapReport = zapClient.analyze(analysisInfo);
+			zapReport = zapClient.analyze(analysisInfo);
 			saveReport(zapReport);
 		} finally {
-			Zap.stopZap();
+			saveAnalysisMetrics(zapClient);
+			zapClient.close();
+			stopZap(zapInfo);
 		}
 
 		getLog().info("ZAP analysis finished.");
+		failIfAlertThresholdReached(zapReport);
 	}
 	
 }
@@ -4,8 +4,6 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
 
-import br.com.softplan.security.zap.commons.boot.Zap;
-
 /**
  * Starts ZAP.
  * <p>
@@ -24,7 +22,7 @@ public class StartZapMojo extends ZapMojo {
 
 	@Override
 	public void doExecute() throws MojoExecutionException, MojoFailureException {
-		Zap.startZap(buildZapInfo());
+		startZap(buildZapInfo());
 	}
 	
 }
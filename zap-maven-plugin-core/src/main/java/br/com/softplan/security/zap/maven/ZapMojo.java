@@ -1,12 +1,24 @@
 package br.com.softplan.security.zap.maven;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
 
+import br.com.softplan.security.zap.api.ZapClient;
+import br.com.softplan.security.zap.api.exception.ZapClientException;
 import br.com.softplan.security.zap.api.model.AnalysisInfo;
 import br.com.softplan.security.zap.api.model.AnalysisType;
 import br.com.softplan.security.zap.api.model.AuthenticationInfo;
@@ -14,6 +26,8 @@ import br.com.softplan.security.zap.api.model.SeleniumDriver;
 import br.com.softplan.security.zap.api.report.ZapReport;
 import br.com.softplan.security.zap.api.report.ZapReportUtil;
 import br.com.softplan.security.zap.commons.ZapInfo;
+import br.com.softplan.security.zap.commons.boot.SharedZap;
+import br.com.softplan.security.zap.commons.boot.Zap;
 
 /**
  * Abstract Mojo used as a base for the other ZAP Mojos. 
@@ -22,6 +36,13 @@ import br.com.softplan.security.zap.commons.ZapInfo;
  */
 public abstract class ZapMojo extends AbstractMojo {
 	
+	/**
+	 * The goals that release the shared ZAP when their module is done with it.
+	 */
+	private static final List<String> RELEASING_GOALS = Arrays.asList("analyze", "seleniumAnalyze");
+	
+	private static final String COMMAND_LINE_EXECUTION_ID = "default-cli";
+	
 	// Common
 	/**
      * Disables the plug-in execution.
@@ -56,6 +77,41 @@ public abstract class ZapMojo extends AbstractMojo {
 	 */
 	@Parameter(defaultValue="480")   private int analysisTimeoutInMinutes;
 	
+	/**
+	 * Time budgets of the scans, as a fraction of the analysis timeout (e.g. {@code 25%}) or in minutes (e.g. {@code 30}).
+	 * The keys are the scans: {@code SPIDER}, {@code AJAX_SPIDER}, {@code PASSIVE_SCAN} and {@code ACTIVE_SCAN}.
+	 * A scan that runs out of its budget is stopped, and the time a scan leaves unused rolls over to the next ones.
+	 */
+	@Parameter private Map<String, String> phaseBudgets;
+	
+	/**
+	 * Maximum number of Active Scans running at the same time. With more than one, each context URL (or each top-level
+	 * subtree of the Active Scan starting point) is scanned separately and concurrently.
+	 */
+	@Parameter(property = "zap.maxConcurrentActiveScans", defaultValue="1") private int maxConcurrentActiveScans;
+	
+	/**
+	 * Profile of ZAP's Spider and Active Scan performance options (threads, depth and delays) to be used during the analysis:
+	 * {@code ci-fast}, {@code balanced} or {@code deep}. ZAP's previous options are restored after the analysis.
+	 * By default, ZAP's current options are kept.
+	 */
+	@Parameter(property = "zap.scanProfile") private String scanProfile;
+	
+	/**
+	 * Response time in milliseconds the target should hold during the Active Scan (e.g. on a shared environment).
+	 * The Active Scan threads per host and delay between requests are adjusted to keep the target's latency under it.
+	 * ZAP only applies the new settings to the scans started afterwards, so it requires {@code maxConcurrentActiveScans}
+	 * greater than 1. With {@code 0}, ZAP's settings are kept during the scan.
+	 */
+	@Parameter(property = "zap.activeScanLatencySloInMillis", defaultValue="0") private long activeScanLatencySloInMillis;
+	
+	/**
+	 * Alerts that make the analysis fail fast, as an optional number of alerts followed by a risk and optionally a confidence
+	 * (e.g. {@code 3 High} or {@code 1 High/Confirmed}). Once ZAP finds that many alerts, the scans are stopped, the partial
+	 * report is saved and the build fails. By default, the analysis always runs to the end.
+	 */
+	@Parameter(property = "zap.failFastThreshold") private String failFastThreshold;
+	
 	/**
 	 * Indicates whether ZAP should execute the AJAX Spider after the default Spider (it can improve the scan on applications that rely on AJAX).
 	 */
@@ -66,11 +122,29 @@ public abstract class ZapMojo extends AbstractMojo {
 	 */
 	@Parameter(defaultValue="false") private boolean shouldRunPassiveScanOnly;
 	
+	/**
+	 * In case it's true, the Active Scan only attacks the URLs that are new or changed since the previous analysis,
+	 * and the alerts of the other URLs are carried over from it. Ignored if the Active Scan is not executed.
+	 */
+	@Parameter(property = "zap.shouldRunIncrementalAnalysis", defaultValue="false") private boolean shouldRunIncrementalAnalysis;
+	
+	/**
+	 * File with the state of the previous analysis, used by the incremental analysis. It must survive between builds,
+	 * so it's usually kept outside the build directory.
+	 */
+	@Parameter(defaultValue="${project.basedir}/zapBaseline.xml") private File baselineFile;
+	
 	/**
 	 * Indicates whether a new session should be started on ZAP before the analysis.
 	 */
 	@Parameter(defaultValue="true")  private boolean shouldStartNewSession;
 	
+	/**
+	 * Indicates whether the new session should be restored from a snapshot of a previous session with the same configuration
+	 * (it's created by the first analysis). Not used with authentication.
+	 */
+	@Parameter(property = "zap.shouldUseSessionSnapshot", defaultValue="false") private boolean shouldUseSessionSnapshot;
+	
 	// ZAP
 	/**
 	 * Port where ZAP is running or will run.
@@ -112,6 +186,12 @@ public abstract class ZapMojo extends AbstractMojo {
 	 */
 	@Parameter(defaultValue="120000") private Integer initializationTimeoutInMillis;
 	
+	/**
+	 * Indicates whether ZAP should be started only once and shared by all the modules of the reactor.
+	 * ZAP is stopped after the last module that uses the plug-in is analyzed, and each analysis runs on a new session.
+	 */
+	@Parameter(property = "zap.shareZapAcrossReactor", defaultValue="false") private boolean shareZapAcrossReactor;
+	
 	/**
 	 * Absolute or relative path where the generated reports will be saved.
 	 */
@@ -201,6 +281,15 @@ public abstract class ZapMojo extends AbstractMojo {
 	 */
 	@Parameter(defaultValue="80") private int port;
 	
+	// Build
+	@Parameter(defaultValue="${session}", readonly=true, required=true) private MavenSession session;
+	
+	@Parameter(defaultValue="${project}", readonly=true, required=true) private MavenProject project;
+	
+	@Parameter(defaultValue="${plugin}", readonly=true, required=true) private PluginDescriptor plugin;
+	
+	@Parameter(defaultValue="${mojoExecution}", readonly=true, required=true) private MojoExecution mojoExecution;
+	
 	protected ZapInfo buildZapInfo() {
 		return ZapInfo.builder()
 				.host   (zapHost)
@@ -249,6 +338,8 @@ public abstract class ZapMojo extends AbstractMojo {
 			}
 			if (shouldRunPassiveScanOnly) {
 				analysisType = AnalysisType.SPIDER_ONLY;
+			} else if (shouldRunIncrementalAnalysis) {
+				analysisType = AnalysisType.INCREMENTAL;
 			}
 		}
 		return buildAnalysisInfo(analysisType);
@@ -262,12 +353,27 @@ public abstract class ZapMojo extends AbstractMojo {
 				.context(context)
 				.technologies(technologies)
 				.analysisTimeoutInMinutes(analysisTimeoutInMinutes)
+				.phaseBudgets(phaseBudgets)
+				.maxConcurrentActiveScans(maxConcurrentActiveScans)
+				.scanProfile(scanProfile)
+				.activeScanLatencySloInMillis(activeScanLatencySloInMillis)
+				.failFastThreshold(failFastThreshold)
 				.analysisType(analysisType)
 				.shouldStartNewSession(shouldStartNewSession)
+				.shouldUseSessionSnapshot(shouldUseSessionSnapshot)
+				.baselineFile(baselineFile)
 				.build();
 	}
 	
 	protected void saveReport(ZapReport zapReport) {
+		if (zapReport.isPartial() && zapReport.isAlertThresholdReached()) {
+			getLog().warn("The fail-fast threshold was reached, the report is partial. Scans that did not finish: " + zapReport.getIncompleteScans());
+		} else if (zapReport.isPartial()) {
+			getLog().warn("The analysis ran out of time, the report is partial. Scans that did not finish: " + zapReport.getIncompleteScans());
+		}
+		if (!zapReport.getCarriedOverAlerts().isEmpty()) {
+			getLog().info(zapReport.getCarriedOverAlerts().size() + " alerts of unchanged URLs were carried over from the baseline (" + baselineFile + ") and added to the reports.");
+		}
 		getLog().info("Saving Reports...");
 		if (reportPath != null) {
 			ZapReportUtil.saveAllReports(zapReport, reportPath.getAbsolutePath());
@@ -276,6 +382,97 @@ public abstract class ZapMojo extends AbstractMojo {
 		}
 	}
 	
+	/**
+	 * Fails the build if the analysis reached its fail-fast threshold. It should be called once the report is saved.
+	 */
+	protected void failIfAlertThresholdReached(ZapReport zapReport) throws MojoFailureException {
+		if (zapReport.isAlertThresholdReached()) {
+			throw new MojoFailureException("ZAP found " + zapReport.getThresholdAlerts().size() + " alerts matching the fail-fast threshold ("
+					+ failFastThreshold + "), e.g. '" + zapReport.getThresholdAlerts().get(0).getAlert() + "' at "
+					+ zapReport.getThresholdAlerts().get(0).getUrl() + ". See the saved report for details.");
+		}
+	}
+	
+	/**
+	 * Saves the summary of the calls made to ZAP's API and the analysis timeline next to the reports.
+	 * Failures are only logged, so they never hide the outcome of the analysis.
+	 */
+	protected void saveAnalysisMetrics(ZapClient zapClient) {
+		try {
+			if (reportPath != null) {
+				ZapReportUtil.saveApiMetrics(zapClient.getApiMetrics(), reportPath.getAbsolutePath());
+				ZapReportUtil.saveTimeline(zapClient.getTimeline(), reportPath.getAbsolutePath());
+			} else {
+				ZapReportUtil.saveApiMetrics(zapClient.getApiMetrics());
+				ZapReportUtil.saveTimeline(zapClient.getTimeline());
+			}
+		} catch (ZapClientException e) {
+			getLog().warn("Could not save the analysis metrics: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Starts ZAP, or reuses the ZAP started by a previous module in case it's shared across the reactor.
+	 */
+	protected void startZap(ZapInfo zapInfo) {
+		if (shareZapAcrossReactor) {
+			SharedZap.startZap(zapInfo, getProjectsSharingZap());
+		} else {
+			Zap.startZap(zapInfo);
+		}
+	}
+	
+	/**
+	 * Stops ZAP. In case it's shared across the reactor, it's only stopped after the last module that uses it.
+	 */
+	protected void stopZap(ZapInfo zapInfo) {
+		if (shareZapAcrossReactor) {
+			SharedZap.release(zapInfo, project.getId());
+		} else {
+			Zap.stopZap();
+		}
+	}
+	
+	private List<String> getProjectsSharingZap() {
+		// When the goal is invoked from the command line it runs on every module of the reactor
+		boolean invokedFromCommandLine = COMMAND_LINE_EXECUTION_ID.equals(mojoExecution.getExecutionId());
+		return getProjectsSharingZap(session.getProjects(), plugin.getPluginLookupKey(), invokedFromCommandLine);
+	}
+	
+	/**
+	 * @param reactorProjects the projects of the reactor that will be built, which leaves out the modules filtered out (e.g. by {@code -pl}).
+	 * @param pluginKey the key of this plug-in.
+	 * @param invokedFromCommandLine whether the goal was invoked from the command line.
+	 * @return the identifiers of the projects that will release the shared ZAP: the ones with an execution of a goal that releases it.
+	 */
+	static List<String> getProjectsSharingZap(List<MavenProject> reactorProjects, String pluginKey, boolean invokedFromCommandLine) {
+		List<String> projectIds = new ArrayList<>();
+		for (MavenProject reactorProject : reactorProjects) {
+			if (invokedFromCommandLine || hasReleasingExecution(reactorProject.getPlugin(pluginKey))) {
+				projectIds.add(reactorProject.getId());
+			}
+		}
+		return projectIds;
+	}
+	
+	private static boolean hasReleasingExecution(Plugin plugin) {
+		if (plugin == null) {
+			return false;
+		}
+		for (PluginExecution execution : plugin.getExecutions()) {
+			for (String goal : execution.getGoals()) {
+				if (RELEASING_GOALS.contains(goal)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	protected boolean isShareZapAcrossReactor() {
+		return this.shareZapAcrossReactor;
+	}
+	
 	protected String getTargetUrl() {
 		return this.targetUrl;
 	}
@@ -284,6 +481,10 @@ public abstract class ZapMojo extends AbstractMojo {
 	public final void execute() throws MojoExecutionException, MojoFailureException {
 		if (skip) {
             getLog().info( "Zap is skipped." );
+            if (shareZapAcrossReactor && RELEASING_GOALS.contains(mojoExecution.getGoal())) {
+                // The module is still one of the expected users of the shared ZAP
+                SharedZap.release(buildZapInfo(), project.getId());
+            }
             return;
         }
 		
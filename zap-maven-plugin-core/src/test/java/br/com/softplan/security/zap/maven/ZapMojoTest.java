@@ -0,0 +1,61 @@
+package br.com.softplan.security.zap.maven;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.project.MavenProject;
+import org.testng.annotations.Test;
+
+public class ZapMojoTest {
+
+	private static final String PLUGIN_KEY = "br.com.softplan.security.zap:zap-maven-plugin";
+
+	@Test
+	public void shouldOnlyShareZapWithTheModulesThatReleaseIt() {
+		List<MavenProject> reactorProjects = Arrays.asList(
+				project("parent"),
+				project("analyzed", "analyze"),
+				project("pluginWithoutAnalysis"),
+				project("startsZapOnly", "startZap"),
+				project("seleniumAnalyzed", "startZap", "seleniumAnalyze"));
+
+		assertEquals(ZapMojo.getProjectsSharingZap(reactorProjects, PLUGIN_KEY, false),
+				Arrays.asList("app:analyzed:jar:1.0", "app:seleniumAnalyzed:jar:1.0"));
+	}
+
+	@Test
+	public void shouldShareZapWithEveryModuleWhenInvokedFromTheCommandLine() {
+		List<MavenProject> reactorProjects = Arrays.asList(project("parent"), project("pluginWithoutAnalysis"));
+
+		assertEquals(ZapMojo.getProjectsSharingZap(reactorProjects, PLUGIN_KEY, true),
+				Arrays.asList("app:parent:jar:1.0", "app:pluginWithoutAnalysis:jar:1.0"));
+	}
+
+	/**
+	 * @param goals the goals bound to the executions of the plug-in, which is declared by every project but the parent.
+	 */
+	private static MavenProject project(String artifactId, String... goals) {
+		MavenProject project = new MavenProject();
+		project.setGroupId("app");
+		project.setArtifactId(artifactId);
+		project.setVersion("1.0");
+		if (!artifactId.equals("parent")) {
+			Plugin plugin = new Plugin();
+			plugin.setGroupId("br.com.softplan.security.zap");
+			plugin.setArtifactId("zap-maven-plugin");
+			for (String goal : goals) {
+				PluginExecution execution = new PluginExecution();
+				execution.setId(goal);
+				execution.addGoal(goal);
+				plugin.addExecution(execution);
+			}
+			project.getBuild().addPlugin(plugin);
+		}
+		return project;
+	}
+
+}
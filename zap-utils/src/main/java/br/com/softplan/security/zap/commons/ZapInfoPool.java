@@ -0,0 +1,119 @@
+package br.com.softplan.security.zap.commons;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.softplan.security.zap.commons.boot.ZapBoot;
+import br.com.softplan.security.zap.commons.boot.ZapBootFactory;
+import br.com.softplan.security.zap.commons.exception.ZapInitializationException;
+
+/**
+ * A pool of ZAP instances, each one described by a {@link ZapInfo}.
+ * <p>
+ * The instances may be of any kind supported by {@link ZapInfo} (local processes, Docker containers or
+ * instances that are already running), and they are started and stopped together. The instances that must be
+ * started by the pool should use different ports.
+ * 
+ * @author pdsec
+ */
+public class ZapInfoPool implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ZapInfoPool.class);
+	
+	private final List<ZapInfo> zapInfos;
+	private final List<ZapBoot> zapBoots = new ArrayList<>();
+	
+	public ZapInfoPool(List<ZapInfo> zapInfos) {
+		if (zapInfos == null || zapInfos.isEmpty()) {
+			throw new IllegalArgumentException("The pool must have at least one ZAP instance.");
+		}
+		this.zapInfos = Collections.unmodifiableList(new ArrayList<>(zapInfos));
+	}
+	
+	public static ZapInfoPool of(ZapInfo... zapInfos) {
+		return new ZapInfoPool(Arrays.asList(zapInfos));
+	}
+	
+	public List<ZapInfo> getZapInfos() {
+		return zapInfos;
+	}
+	
+	public int size() {
+		return zapInfos.size();
+	}
+	
+	/**
+	 * Starts all the ZAP instances of the pool in parallel, waiting for all of them to be initialized.
+	 * <p>
+	 * If any of the instances fails to start, the ones that were started are stopped.
+	 * 
+	 * @throws ZapInitializationException if any of the instances could not be started.
+	 */
+	public synchronized void startAll() {
+		List<Thread> threads = new ArrayList<>();
+		final List<RuntimeException> failures = Collections.synchronizedList(new ArrayList<RuntimeException>());
+		for (final ZapInfo zapInfo : zapInfos) {
+			final ZapBoot zapBoot = ZapBootFactory.makeZapBoot(zapInfo);
+			LOGGER.debug("ZAP at port {} will be started by: [{}].", zapInfo.getPort(), zapBoot.getClass().getSimpleName());
+			zapBoots.add(zapBoot);
+			
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						zapBoot.startZap(zapInfo);
+					} catch (RuntimeException e) {
+						failures.add(e);
+					}
+				}
+			}, "zap-boot-" + zapInfo.getPort());
+			thread.start();
+			threads.add(thread);
+		}
+		
+		try {
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failures.add(new ZapInitializationException("Interrupted while waiting for the ZAP instances to start.", e));
+		}
+		
+		if (!failures.isEmpty()) {
+			stopAll();
+			ZapInitializationException exception = new ZapInitializationException(
+					failures.size() + " of " + zapInfos.size() + " ZAP instances could not be started.", failures.get(0));
+			for (int i = 1; i < failures.size(); i++) {
+				exception.addSuppressed(failures.get(i));
+			}
+			throw exception;
+		}
+	}
+	
+	/**
+	 * Stops all the ZAP instances started by the pool.
+	 */
+	public synchronized void stopAll() {
+		for (ZapBoot zapBoot : zapBoots) {
+			try {
+				zapBoot.stopZap();
+			} catch (RuntimeException e) {
+				LOGGER.error("Error stopping ZAP.", e);
+			}
+		}
+		zapBoots.clear();
+	}
+	
+	@Override
+	public void close() {
+		stopAll();
+	}
+	
+}
@@ -2,8 +2,12 @@ package br.com.softplan.security.zap.commons.boot;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.ConnectException;
 import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 
 import org.slf4j.Logger;
@@ -20,9 +24,12 @@ public abstract class AbstractZapBoot implements ZapBoot {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(AbstractZapBoot.class);
 	
-	private static final String HEAD = "HEAD";
+	private static final String VERSION_VIEW_PATH = "/xml/core/view/version/";
 	
-	static final long ZAP_INITIALIZATION_POLLING_INTERVAL_IN_MILLIS = 5  * 1000;
+	static final long ZAP_INITIALIZATION_INITIAL_POLLING_INTERVAL_IN_MILLIS = 50;
+	static final long ZAP_INITIALIZATION_MAX_POLLING_INTERVAL_IN_MILLIS = 1000;
+	static final int ZAP_PROBE_CONNECT_TIMEOUT_IN_MILLIS = 500;
+	static final int ZAP_PROBE_READ_TIMEOUT_IN_MILLIS = 2000;
 	
 	static final String DEFAULT_ZAP_OPTIONS = "-daemon -config api.disablekey=true -config api.incerrordetails=true -config proxy.ip=0.0.0.0";
 	
@@ -34,8 +41,31 @@ public abstract class AbstractZapBoot implements ZapBoot {
 		return isZapRunning("localhost", port);
 	}
 	
+	/**
+	 * Checks if ZAP is ready to receive API calls.
+	 * <p>
+	 * A plain TCP connection is tried first, which fails fast while ZAP hasn't opened its port yet.
+	 * Only then the (cheap) {@code core/view/version} API view is requested.
+	 */
 	static boolean isZapRunning(String host, int port) {
-		return getResponseFromZap(host, port) == HttpURLConnection.HTTP_OK;
+		if (host == null || !isPortOpen(host, port)) {
+			return false;
+		}
+		int responseCode = getResponseFromZap(host, port);
+		// A ZAP configured to require an API key still proves it's up by rejecting the request
+		return responseCode == HttpURLConnection.HTTP_OK
+				|| responseCode == HttpURLConnection.HTTP_UNAUTHORIZED
+				|| responseCode == HttpURLConnection.HTTP_FORBIDDEN;
+	}
+	
+	private static boolean isPortOpen(String host, int port) {
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(host, port), ZAP_PROBE_CONNECT_TIMEOUT_IN_MILLIS);
+			return true;
+		} catch (IOException e) {
+			LOGGER.debug("ZAP port is not open yet at {}:{}.", host, port);
+			return false;
+		}
 	}
 	
 	static int getResponseFromZap(String host, int port) {
@@ -43,17 +73,23 @@ public abstract class AbstractZapBoot implements ZapBoot {
 			return -1;
 		}
 		
-		String url = "http://" + host + ":" + port;
+		String url = "http://" + host + ":" + port + VERSION_VIEW_PATH;
 		
 		int responseCode = -1;
+		HttpURLConnection conn = null;
 		try {
-			HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
-			conn.setRequestMethod(HEAD);
+			conn = (HttpURLConnection) new URL(url).openConnection(Proxy.NO_PROXY);
+			conn.setConnectTimeout(ZAP_PROBE_CONNECT_TIMEOUT_IN_MILLIS);
+			conn.setReadTimeout(ZAP_PROBE_READ_TIMEOUT_IN_MILLIS);
 			responseCode = conn.getResponseCode();
-		} catch (ConnectException e) {
+		} catch (SocketException | SocketTimeoutException e) {
 			LOGGER.debug("ZAP could not be reached at {}:{}.", host, port);
 		} catch (IOException e) {
 			LOGGER.error("Error trying to get a response from ZAP.", e);
+		} finally {
+			if (conn != null) {
+				conn.disconnect();
+			}
 		}
 		return responseCode;
 	}
@@ -62,20 +98,29 @@ public abstract class AbstractZapBoot implements ZapBoot {
 		waitForZapInitialization("localhost", port, timeoutInMillis);
 	}
 	
+	/**
+	 * Waits for ZAP to be ready, probing it with an exponential backoff that starts at
+	 * {@value #ZAP_INITIALIZATION_INITIAL_POLLING_INTERVAL_IN_MILLIS} ms and is capped at
+	 * {@value #ZAP_INITIALIZATION_MAX_POLLING_INTERVAL_IN_MILLIS} ms, so a fast startup is detected right away.
+	 */
 	static void waitForZapInitialization(String host, int port, long timeoutInMillis) {
 		long startUpTime = System.currentTimeMillis();
-		do {
-			if (System.currentTimeMillis() - startUpTime > timeoutInMillis) {
+		long pollingInterval = ZAP_INITIALIZATION_INITIAL_POLLING_INTERVAL_IN_MILLIS;
+		LOGGER.info("Checking if ZAP has started at {}:{}...", host, port);
+		while (!isZapRunning(host, port)) {
+			long remainingTime = timeoutInMillis - (System.currentTimeMillis() - startUpTime);
+			if (remainingTime <= 0) {
 				String message = "ZAP did not start before the timeout (" + timeoutInMillis + " ms).";
 				LOGGER.error(message);
 				throw new ZapInitializationTimeoutException(message);
 			}
 			
-			sleep(ZAP_INITIALIZATION_POLLING_INTERVAL_IN_MILLIS);
-			LOGGER.info("Checking if ZAP has started at {}:{}...", host, port);
-		} while (!isZapRunning(host, port));
+			sleep(Math.min(pollingInterval, remainingTime));
+			pollingInterval = Math.min(pollingInterval * 2, ZAP_INITIALIZATION_MAX_POLLING_INTERVAL_IN_MILLIS);
+			LOGGER.debug("Checking if ZAP has started at {}:{}...", host, port);
+		}
 		
-		LOGGER.info("ZAP has started!");
+		LOGGER.info("ZAP has started in {} ms!", System.currentTimeMillis() - startUpTime);
 	}
 	
 	private static void sleep(long millis) {
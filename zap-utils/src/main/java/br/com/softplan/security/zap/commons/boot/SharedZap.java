@@ -0,0 +1,130 @@
+package br.com.softplan.security.zap.commons.boot;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.softplan.security.zap.commons.ZapInfo;
+
+/**
+ * Build scoped registry of ZAP instances shared by many users (e.g. the modules of a Maven reactor).
+ * <p>
+ * The first user to call {@link #startZap(ZapInfo, Collection)} starts ZAP, and the following ones
+ * simply reuse it. ZAP is stopped once every expected user has called {@link #release(ZapInfo, String)},
+ * or when the JVM shuts down, whichever comes first.
+ *
+ * @author pdsec
+ */
+public final class SharedZap {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SharedZap.class);
+	
+	private static final Map<String, SharedInstance> INSTANCES = new HashMap<>();
+	private static final Map<String, Set<String>> RELEASED_BEFORE_START = new HashMap<>();
+	
+	private static boolean shutdownHookRegistered;
+	
+	/**
+	 * Starts ZAP, unless it was already started by another user.
+	 *
+	 * @param zapInfo an object with all the information needed to start ZAP.
+	 * @param expectedUsers the identifiers of all the users that will share this ZAP instance.
+	 */
+	public static synchronized void startZap(ZapInfo zapInfo, Collection<String> expectedUsers) {
+		String key = keyOf(zapInfo);
+		if (INSTANCES.containsKey(key)) {
+			LOGGER.info("Reusing the shared ZAP instance at {}.", key);
+			return;
+		}
+		
+		ZapBoot zap = ZapBootFactory.makeZapBoot(zapInfo);
+		LOGGER.debug("Shared ZAP will be started by: [{}].", zap.getClass().getSimpleName());
+		zap.startZap(zapInfo);
+		
+		SharedInstance instance = new SharedInstance(zap, expectedUsers);
+		// e.g. the modules that skipped the analysis before ZAP was started
+		Set<String> releasedUsers = RELEASED_BEFORE_START.remove(key);
+		if (releasedUsers != null) {
+			instance.remainingUsers.removeAll(releasedUsers);
+		}
+		INSTANCES.put(key, instance);
+		registerShutdownHook();
+	}
+	
+	/**
+	 * Informs that the given user doesn't need ZAP anymore. ZAP is stopped after the last expected user releases it.
+	 * A user may release ZAP before it's started, in which case it won't be waited for.
+	 *
+	 * @param zapInfo the information of the shared ZAP instance.
+	 * @param user the identifier of the user, one of the expected users informed when ZAP was started.
+	 */
+	public static synchronized void release(ZapInfo zapInfo, String user) {
+		String key = keyOf(zapInfo);
+		SharedInstance instance = INSTANCES.get(key);
+		if (instance == null) {
+			if (!RELEASED_BEFORE_START.containsKey(key)) {
+				RELEASED_BEFORE_START.put(key, new LinkedHashSet<String>());
+			}
+			RELEASED_BEFORE_START.get(key).add(user);
+			return;
+		}
+		
+		instance.remainingUsers.remove(user);
+		if (instance.remainingUsers.isEmpty()) {
+			LOGGER.info("Stopping the shared ZAP instance at {}.", key);
+			INSTANCES.remove(key);
+			instance.zap.stopZap();
+		} else {
+			LOGGER.debug("Shared ZAP instance at {} is still needed by: {}.", key, instance.remainingUsers);
+		}
+	}
+	
+	/**
+	 * Stops all the shared ZAP instances, no matter if there are users that didn't release them.
+	 */
+	public static synchronized void stopAll() {
+		for (SharedInstance instance : INSTANCES.values()) {
+			instance.zap.stopZap();
+		}
+		INSTANCES.clear();
+		RELEASED_BEFORE_START.clear();
+	}
+	
+	private static void registerShutdownHook() {
+		if (shutdownHookRegistered) {
+			return;
+		}
+		// Failed builds may never release ZAP, so it's also stopped when the JVM exits
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				stopAll();
+			}
+		}, "shared-zap-shutdown"));
+		shutdownHookRegistered = true;
+	}
+	
+	private static String keyOf(ZapInfo zapInfo) {
+		return zapInfo.getHost() + ":" + zapInfo.getPort();
+	}
+	
+	private static class SharedInstance {
+		
+		private final ZapBoot zap;
+		private final Set<String> remainingUsers;
+		
+		SharedInstance(ZapBoot zap, Collection<String> expectedUsers) {
+			this.zap = zap;
+			this.remainingUsers = new LinkedHashSet<>(expectedUsers);
+		}
+		
+	}
+	
+	private SharedZap() {}
+	
+}
@@ -10,7 +10,7 @@ import br.com.softplan.security.zap.commons.ZapInfo;
  */
 public final class ZapBootFactory {
 
-	static ZapBoot makeZapBoot(ZapInfo zapInfo) {
+	public static ZapBoot makeZapBoot(ZapInfo zapInfo) {
 		if (zapInfo.shouldRunWithDocker()) {
 			return new ZapDockerBoot();
 		}
@@ -33,7 +33,7 @@ public class ZapDockerBoot extends AbstractZapBoot {
 	public  static final String CAS_AUTH_SCRIPT_DEFAULT_DOCKER_PATH = "/zap/scripts/";
 	private static final String CAS_AUTH_SCRIPT_FILE_NAME = "cas-auth.js";
 	
-	private static Process zap;
+	private Process zap;
 	
 	@Override
 	public void startZap(ZapInfo zapInfo) {
@@ -104,7 +104,7 @@ public class ZapDockerBoot extends AbstractZapBoot {
 		startCommand.append(zapInfo.getPort());
 	}
 	
-	private static void startZap(String path, String startCommand) throws IOException {
+	private void startZap(String path, String startCommand) throws IOException {
 		ProcessBuilder processBuilder = new ProcessBuilder(startCommand.split(" +"));
 //		processBuilder.directory(new File(path));
 		
@@ -25,7 +25,7 @@ public class ZapLocalBoot extends AbstractZapBoot {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(ZapLocalBoot.class);
 	
-	private static Process zap;
+	private Process zap;
 	
 	@Override
 	public void startZap(ZapInfo zapInfo) {
@@ -52,7 +52,7 @@ public class ZapLocalBoot extends AbstractZapBoot {
 		}
 	}
 
-	private static void start(ZapInfo zapInfo) throws IOException {
+	private void start(ZapInfo zapInfo) throws IOException {
 		String startCommand = buildStartCommand(zapInfo);
 		ProcessBuilder processBuilder = new ProcessBuilder(startCommand.split(" +"));
 		processBuilder.directory(getZapWorkingDirectory(zapInfo));